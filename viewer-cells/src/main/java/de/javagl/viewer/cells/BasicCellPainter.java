@@ -27,19 +27,28 @@
 package de.javagl.viewer.cells;
 
 import java.awt.BasicStroke;
+import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.function.Function;
 import java.util.function.ToDoubleFunction;
 
 import de.javagl.geom.AffineTransforms;
 import de.javagl.viewer.ObjectPainter;
+import de.javagl.viewer.painters.LabelBatch;
 import de.javagl.viewer.painters.LabelPainter;
 import de.javagl.viewer.painters.StringBoundsUtils;
 
@@ -63,6 +72,14 @@ import de.javagl.viewer.painters.StringBoundsUtils;
  * </ul>
  * for all cells, or for each cell individually via a {@link Function}. <br>
  * <br>
+ * Alternatively, the fill paints, draw paints, draw strokes and scaling 
+ * factors may be given as arrays, via {@link CellStyles}.<br>
+ * <br>
+ * When this painter is used in a {@link CellMapPanel}, then the cells
+ * are painted in batches of cells that share the same styles, unless 
+ * the cells are rectangles, or this is an instance of a subclass 
+ * without {@link CellStyles}.<br>
+ * <br>
  * Unless otherwise stated: If any of the given functions is <code>null</code>, 
  * or returns <code>null</code> for a particular cell, then the corresponding 
  * painting operation will not be performed.<br>
@@ -107,6 +124,12 @@ public class BasicCellPainter implements ObjectPainter<Cell>
     private static final Rectangle2D UNIT_RECTANGLE = 
         new Rectangle2D.Double(0,0,1,1);
     
+    /**
+     * The maximum number of cells whose shapes are collected in paths
+     * before the paths are painted
+     */
+    private static final int MAX_BATCH_SIZE = 1024;
+    
     /**
      * A rectangle instance used for internal computations 
      */
@@ -183,11 +206,47 @@ public class BasicCellPainter implements ObjectPainter<Cell>
      */
     private final LabelPainter labelPainter;
     
+    /**
+     * The batch that collects the labels while multiple cells are 
+     * painted, between calls to {@link #beginLabelBatch()} and
+     * {@link #endLabelBatch(Graphics2D)}
+     */
+    private final LabelBatch labelBatch;
+    
+    /**
+     * Whether the labels are currently added to the {@link #labelBatch},
+     * instead of being painted immediately
+     */
+    private boolean batchingLabels;
+    
     /**
      * Whether this painter is hiding long labels
      */
     private boolean hidingLongLabels;
 
+    /**
+     * The {@link CellStyles}, which override the functions for the 
+     * styles that they contain. This may be <code>null</code>.
+     */
+    private CellStyles cellStyles;
+    
+    /**
+     * The batches of cells that share the same {@link #cellStyles}
+     */
+    private final CellStyleBatches cellStyleBatches;
+    
+    /**
+     * The {@link CellOutlineBatch} instances that have been drawn, and
+     * may be re-used for the next batches
+     */
+    private final List<CellOutlineBatch> outlineBatchPool;
+    
+    /**
+     * The size of the cells on the screen, in pixels, below which the
+     * cells are painted as a raster image
+     */
+    private double rasterThreshold;
+    
     /**
      * The function that provides the scaling for the cells
      */
@@ -259,6 +318,10 @@ public class BasicCellPainter implements ObjectPainter<Cell>
         this.backupContentTransform = new AffineTransform();
         
         this.labelPainter = new LabelPainter();
+        this.labelBatch = new LabelBatch();
+        this.batchingLabels = false;
+        this.cellStyleBatches = new CellStyleBatches();
+        this.outlineBatchPool = new ArrayList<CellOutlineBatch>();
 
         setLabelFont(new Font("Dialog", Font.PLAIN, 1).deriveFont(10.0f));
         setLabelAnchor(new Point2D.Double(0.5, 0.5));
@@ -684,6 +747,95 @@ public class BasicCellPainter implements ObjectPainter<Cell>
         return hidingLongLabels;
     }
     
+    /**
+     * Set the {@link CellStyles} that provide the styles for the cells.<br>
+     * <br>
+     * For each array that has been obtained from the given styles (for
+     * example, the {@link CellStyles#getFillPaintIndices() fill paint
+     * indices}), the styles from this array will be used instead of the
+     * ones that are provided by the corresponding function. The size of
+     * the given styles must match the size of the {@link CellMap} whose
+     * cells are painted. Otherwise, an <code>IllegalStateException</code>
+     * will be thrown when the cells are painted.<br>
+     * <br>
+     * When this painter is used in a {@link CellMapPanel}, the styles
+     * are not <code>null</code>, and the cells are not rectangles, then 
+     * the visible cells are painted in batches: First, all cells are 
+     * filled, in the order of their fill paints. Then, all cells are 
+     * drawn, in the order of their draw paints and strokes. Finally, the 
+     * contents and labels of all cells are painted. In this case, the 
+     * {@link #paintCell(Graphics2D, AffineTransform, double, double, Cell)
+     * paintCell} method will not be called. Since all outlines are 
+     * drawn after all cells have been filled, the result may differ from 
+     * painting the cells individually where the outlines of a cell 
+     * overlap adjacent cells.
+     * 
+     * @param cellStyles The {@link CellStyles}. May be <code>null</code>.
+     */
+    public final void setCellStyles(CellStyles cellStyles)
+    {
+        this.cellStyles = cellStyles;
+    }
+    
+    /**
+     * Returns the {@link CellStyles} that provide the styles for the cells.
+     * This may be <code>null</code>.
+     * 
+     * @return The {@link CellStyles}
+     */
+    public final CellStyles getCellStyles()
+    {
+        return cellStyles;
+    }
+    
+    /**
+     * Set the size of the cells on the screen, in pixels, below which
+     * the cells will be painted as a raster image.<br>
+     * <br>
+     * When this painter is used in a {@link CellMapPanel}, and the cells
+     * are smaller than the given number of pixels on the screen, then 
+     * the cells will not be painted individually. Instead, the 
+     * {@link #getFillPaint(Cell) fill paints} of the cells will be written
+     * into an image with one pixel per cell, which is scaled to the area
+     * that is covered by the cells. Only fill paints that are 
+     * {@link Color}s will be taken into account, and the cell outlines, 
+     * contents, labels and scaling will be omitted. For hexagon cells,
+     * the image only approximates the layout of the cells.<br>
+     * <br>
+     * The default value is 0.0, meaning that the cells will be painted
+     * individually. The only exception is that when there are more 
+     * visible cells than there are pixels on the screen, this painter 
+     * only fills the cells, and all fill paints are colors, then the 
+     * cells are painted as a raster image, regardless of the raster 
+     * threshold, because the individual cells could not be distinguished
+     * on the screen anyway.
+     * 
+     * @param rasterThreshold The raster threshold
+     * @throws IllegalArgumentException If the given value is negative
+     */
+    public final void setRasterThreshold(double rasterThreshold)
+    {
+        if (rasterThreshold < 0)
+        {
+            throw new IllegalArgumentException(
+                "The raster threshold may not be negative, but is " + 
+                rasterThreshold);
+        }
+        this.rasterThreshold = rasterThreshold;
+    }
+    
+    /**
+     * Returns the size of the cells on the screen, in pixels, below which
+     * the cells will be painted as a raster image.<br>
+     * <br>
+     * See {@link #setRasterThreshold(double)} for details.
+     * 
+     * @return The raster threshold
+     */
+    public final double getRasterThreshold()
+    {
+        return rasterThreshold;
+    }
     
     /**
      * Set the scaling that will be used for all cells
@@ -818,6 +970,11 @@ public class BasicCellPainter implements ObjectPainter<Cell>
      */
     protected final Paint getFillPaint(Cell cell)
     {
+        if (cellStyles != null && cellStyles.hasFillPaints())
+        {
+            return cellStyles.getFillPaint(
+                cellStyles.getIndex(cell.getX(), cell.getY()));
+        }
         if (fillPaintFunction == null)
         {
             return null;
@@ -836,6 +993,11 @@ public class BasicCellPainter implements ObjectPainter<Cell>
      */
     protected final Paint getDrawPaint(Cell cell)
     {
+        if (cellStyles != null && cellStyles.hasDrawPaints())
+        {
+            return cellStyles.getDrawPaint(
+                cellStyles.getIndex(cell.getX(), cell.getY()));
+        }
         if (drawPaintFunction == null)
         {
             return null;
@@ -854,6 +1016,11 @@ public class BasicCellPainter implements ObjectPainter<Cell>
      */
     protected final Stroke getDrawStroke(Cell cell)
     {
+        if (cellStyles != null && cellStyles.hasDrawStrokes())
+        {
+            return cellStyles.getDrawStroke(
+                cellStyles.getIndex(cell.getX(), cell.getY()));
+        }
         if (drawStrokeFunction == null)
         {
             return null;
@@ -928,6 +1095,11 @@ public class BasicCellPainter implements ObjectPainter<Cell>
      */
     protected final double getScaling(Cell cell)
     {
+         if (cellStyles != null && cellStyles.hasScalings())
+         {
+             return cellStyles.getScaling(
+                 cellStyles.getIndex(cell.getX(), cell.getY()));
+         }
          if (scalingFunction == null)
          {
              return 1.0;
@@ -1064,49 +1236,83 @@ public class BasicCellPainter implements ObjectPainter<Cell>
     /**
      * Compute the scaled transform for the given cell, by concatenating
      * the given base transform with a transform that scales the given 
-     * cell about its center by the scaling factor that is given via
-     * the given scaling function
+     * cell about its center by the given scaling factor
      * 
      * @param baseTransform The base transform 
-     * @param scalingFunction  The scaling function. If this is 
-     * <code>null</code> or returns <code>null</code> for the given
-     * cell, then no scaling will be applied, and the result will 
-     * be the base transform
+     * @param scaling The scaling factor. If this is 1.0, then the result
+     * will be the base transform
      * @param cell The cell
      * @param result The transform that will store the result
      */
     private static void computeScaledTransform(
-        AffineTransform baseTransform, 
-        Function<? super Cell, ? extends Number> scalingFunction,
+        AffineTransform baseTransform, double scaling,
         Cell cell, AffineTransform result)
     {
         result.setTransform(baseTransform);
-        if (scalingFunction != null)
+        if (scaling != 1.0)
         {
-            Number scaling = scalingFunction.apply(cell);
-            if (scaling != null)
-            {
-                double s = scaling.doubleValue();
-                double centerX = cell.getCenterX();
-                double centerY = cell.getCenterY();
-                result.translate(centerX, centerY);
-                result.scale(s, s);
-                result.translate(-centerX, -centerY);
-            }
+            double centerX = cell.getCenterX();
+            double centerY = cell.getCenterY();
+            result.translate(centerX, centerY);
+            result.scale(scaling, scaling);
+            result.translate(-centerX, -centerY);
         }
     }
     
 
+    /**
+     * Start collecting the labels that are painted by subsequent calls to
+     * {@link #paint(Graphics2D, AffineTransform, double, double, Cell)},
+     * so that they may be painted at once by calling 
+     * {@link #endLabelBatch(Graphics2D)}. This reduces the number of 
+     * changes of the graphics state when many cells are painted.
+     */
+    void beginLabelBatch()
+    {
+        batchingLabels = true;
+    }
+    
+    /**
+     * Paint all labels that have been collected since the last call to
+     * {@link #beginLabelBatch()}, and paint labels immediately again
+     * afterwards
+     * 
+     * @param g The Graphics used for painting
+     */
+    void endLabelBatch(Graphics2D g)
+    {
+        batchingLabels = false;
+        labelBatch.paint(g);
+    }
+
     @Override
     public void paint(
         Graphics2D g, AffineTransform worldToScreen,
         double w, double h, Cell cell)
     {
-        computeScaledTransform(worldToScreen, scalingFunction, cell, 
+        computeScaledTransform(worldToScreen, getScaling(cell), cell, 
             scaledWorldToScreenTransform);
         paintCell(g, scaledWorldToScreenTransform, w, h, cell);
-
-        computeScaledTransform(worldToScreen, contentScalingFunction, cell, 
+        paintForeground(g, worldToScreen, w, h, cell);
+    }
+    
+    /**
+     * Paint the content and the label of the given cell, if the content 
+     * area of the cell is visible
+     * 
+     * @param g The Graphics used for painting 
+     * @param worldToScreen The world-to-screen transform
+     * @param w The width of the area, in screen coordinates, for 
+     * which this painter is responsible 
+     * @param h The height of the area, in screen coordinates, for 
+     * which this painter is responsible 
+     * @param cell The object to paint
+     */
+    private void paintForeground(
+        Graphics2D g, AffineTransform worldToScreen,
+        double w, double h, Cell cell)
+    {
+        computeScaledTransform(worldToScreen, getContentScaling(cell), cell, 
             contentTransform);
         cell.concatenateWithContentTransform(
             contentTransform, contentTransform);
@@ -1121,6 +1327,336 @@ public class BasicCellPainter implements ObjectPainter<Cell>
     }
     
 
+    /**
+     * Make sure that the size of the {@link #setCellStyles(CellStyles) 
+     * cell styles} matches the size of the given {@link CellMap}. This 
+     * is called before the cells of the map are painted with this 
+     * painter, in any way.
+     * 
+     * @param cellMap The {@link CellMap}
+     * @throws IllegalStateException If the size of the cell styles does
+     * not match the size of the given {@link CellMap}
+     */
+    void validateCellStyles(CellMap cellMap)
+    {
+        if (cellStyles != null && 
+            (cellStyles.getSizeX() != cellMap.getSizeX() ||
+             cellStyles.getSizeY() != cellMap.getSizeY()))
+        {
+            throw new IllegalStateException(
+                "The cell styles have a size of (" + cellStyles.getSizeX() + 
+                "," + cellStyles.getSizeY() + "), but the cell map has " + 
+                "a size of (" + cellMap.getSizeX() + "," + 
+                cellMap.getSizeY() + ")");
+        }
+    }
+    
+    /**
+     * Paint the cells of the given {@link CellMap} that are in the given
+     * range.<br>
+     * <br>
+     * If this is an instance of a subclass and there are no 
+     * {@link #setCellStyles(CellStyles) cell styles}, or the cells are
+     * rectangles, then each cell is painted with 
+     * {@link #paint(Graphics2D, AffineTransform, double, double, Cell)},
+     * because rectangles are filled and drawn faster individually than 
+     * as part of a path. Otherwise, the cells are painted in batches: 
+     * The shapes of all 
+     * cells with the same fill paint are collected in one path, in screen
+     * coordinates, which is filled at once. The outlines of all cells with
+     * the same draw paint and stroke are collected in one path, where 
+     * edges that are shared by adjacent cells are only added once, and 
+     * which is drawn at once. Afterwards, the contents and labels are 
+     * painted for each cell.
+     * 
+     * @param g The Graphics used for painting 
+     * @param worldToScreen The world-to-screen transform
+     * @param w The width of the area, in screen coordinates, for 
+     * which this painter is responsible 
+     * @param h The height of the area, in screen coordinates, for 
+     * which this painter is responsible 
+     * @param cellMap The {@link CellMap}
+     * @param cellRange The range of cells to paint
+     */
+    void paintCells(Graphics2D g, AffineTransform worldToScreen, 
+        double w, double h, CellMap cellMap, Rectangle cellRange)
+    {
+        if (cellRange.isEmpty())
+        {
+            return;
+        }
+        AffineTransform atCell = new AffineTransform();
+        Cell cell = cellMap.getCell(cellRange.x, cellRange.y, null);
+        boolean batched = !isRectangle(cell) && 
+            (cellStyles != null || getClass() == BasicCellPainter.class);
+        if (!batched)
+        {
+            for (int x=cellRange.x; x<cellRange.x+cellRange.width; x++)
+            {
+                for (int y=cellRange.y; y<cellRange.y+cellRange.height; y++)
+                {
+                    cell = cellMap.getCell(x, y, cell);
+                    atCell.setTransform(worldToScreen);
+                    paint(g, atCell, w, h, cell);
+                }
+            }
+            return;
+        }
+        
+        long cellCount = (long)cellRange.width * cellRange.height;
+        int fillOrder[] = null;
+        int drawOrder[] = null;
+        if (cellStyles != null)
+        {
+            cellStyleBatches.update(cellStyles, cellRange);
+            fillOrder = cellStyleBatches.getFillOrder();
+            drawOrder = cellStyleBatches.getDrawOrder();
+        }
+        
+        Map<Paint, Path2D> fillPaths = new LinkedHashMap<Paint, Path2D>();
+        Paint lastFillPaint = null;
+        Path2D lastFillPath = null;
+        int batchSize = 0;
+        for (long i=0; i<cellCount; i++)
+        {
+            if (batchSize == MAX_BATCH_SIZE)
+            {
+                fillPaths(g, fillPaths);
+                lastFillPaint = null;
+                batchSize = 0;
+            }
+            cell = getBatchCell(cellMap, cellRange, fillOrder, i, cell);
+            Paint fillPaint = getFillPaint(cell);
+            if (fillPaint == null)
+            {
+                continue;
+            }
+            if (fillPaint != lastFillPaint)
+            {
+                lastFillPaint = fillPaint;
+                lastFillPath = fillPaths.computeIfAbsent(
+                    fillPaint, p -> new Path2D.Double(Path2D.WIND_NON_ZERO));
+            }
+            computeScaledTransform(worldToScreen, getScaling(cell), cell, 
+                scaledWorldToScreenTransform);
+            lastFillPath.append(cell.getShapePathIterator(
+                scaledWorldToScreenTransform), false);
+            batchSize++;
+        }
+        fillPaths(g, fillPaths);
+        
+        Map<Paint, Map<Stroke, CellOutlineBatch>> outlineBatches = 
+            new LinkedHashMap<Paint, Map<Stroke, CellOutlineBatch>>();
+        Paint lastDrawPaint = null;
+        Stroke lastDrawStroke = null;
+        CellOutlineBatch lastOutlineBatch = null;
+        batchSize = 0;
+        for (long i=0; i<cellCount; i++)
+        {
+            if (batchSize == MAX_BATCH_SIZE)
+            {
+                drawOutlines(g, outlineBatches, false);
+                batchSize = 0;
+            }
+            cell = getBatchCell(cellMap, cellRange, drawOrder, i, cell);
+            Paint drawPaint = getDrawPaint(cell);
+            Stroke drawStroke = getDrawStroke(cell);
+            if (drawPaint == null || drawStroke == null)
+            {
+                continue;
+            }
+            if (drawPaint != lastDrawPaint || drawStroke != lastDrawStroke)
+            {
+                lastDrawPaint = drawPaint;
+                lastDrawStroke = drawStroke;
+                Map<Stroke, CellOutlineBatch> strokeBatches = 
+                    outlineBatches.computeIfAbsent(drawPaint, 
+                        p -> new LinkedHashMap<Stroke, CellOutlineBatch>());
+                lastOutlineBatch = strokeBatches.computeIfAbsent(
+                    drawStroke, s -> obtainOutlineBatch());
+            }
+            computeScaledTransform(worldToScreen, getScaling(cell), cell, 
+                scaledWorldToScreenTransform);
+            lastOutlineBatch.append(cell.getShapePathIterator(
+                scaledWorldToScreenTransform));
+            batchSize++;
+        }
+        drawOutlines(g, outlineBatches, true);
+        
+        if (!hasForeground())
+        {
+            return;
+        }
+        for (int x=cellRange.x; x<cellRange.x+cellRange.width; x++)
+        {
+            for (int y=cellRange.y; y<cellRange.y+cellRange.height; y++)
+            {
+                cell = cellMap.getCell(x, y, cell);
+                atCell.setTransform(worldToScreen);
+                paintForeground(g, atCell, w, h, cell);
+            }
+        }
+    }
+    
+    /**
+     * Fill the given paths with their paints, and clear the given map
+     * 
+     * @param g The Graphics used for painting
+     * @param fillPaths The mapping from paints to paths
+     */
+    private static void fillPaths(Graphics2D g, Map<Paint, Path2D> fillPaths)
+    {
+        for (Entry<Paint, Path2D> entry : fillPaths.entrySet())
+        {
+            g.setPaint(entry.getKey());
+            g.fill(entry.getValue());
+        }
+        fillPaths.clear();
+    }
+    
+    /**
+     * Returns a {@link CellOutlineBatch} from the pool of batches that 
+     * have already been drawn, or a new one if the pool is empty
+     * 
+     * @return The {@link CellOutlineBatch}
+     */
+    private CellOutlineBatch obtainOutlineBatch()
+    {
+        if (outlineBatchPool.isEmpty())
+        {
+            return new CellOutlineBatch();
+        }
+        return outlineBatchPool.remove(outlineBatchPool.size() - 1);
+    }
+    
+    /**
+     * Draw the given outlines with their paints and strokes. If the 
+     * given flag is <code>false</code>, then only the paths of the 
+     * batches are cleared, and the batches keep their edges, so that 
+     * edges that are shared with cells of later batches are not drawn
+     * again. Otherwise, the batches are reset and returned to the pool, 
+     * and the given map is cleared.
+     * 
+     * @param g The Graphics used for painting
+     * @param outlineBatches The mapping from paints to strokes to outlines
+     * @param finished Whether all outlines have been added
+     */
+    private void drawOutlines(Graphics2D g, 
+        Map<Paint, Map<Stroke, CellOutlineBatch>> outlineBatches,
+        boolean finished)
+    {
+        for (Entry<Paint, Map<Stroke, CellOutlineBatch>> entry : 
+            outlineBatches.entrySet())
+        {
+            g.setPaint(entry.getKey());
+            for (Entry<Stroke, CellOutlineBatch> strokeEntry : 
+                entry.getValue().entrySet())
+            {
+                CellOutlineBatch outlineBatch = strokeEntry.getValue();
+                if (!outlineBatch.isEmpty())
+                {
+                    g.setStroke(strokeEntry.getKey());
+                    g.draw(outlineBatch.getPath());
+                }
+                if (finished)
+                {
+                    outlineBatch.reset();
+                    outlineBatchPool.add(outlineBatch);
+                }
+                else
+                {
+                    outlineBatch.clearPath();
+                }
+            }
+        }
+        if (finished)
+        {
+            outlineBatches.clear();
+        }
+    }
+    
+    /**
+     * Returns the i-th cell that should be painted in a batch. If the
+     * given order is <code>null</code>, then this is the i-th cell of
+     * the given range, row by row. Otherwise, it is the cell whose
+     * {@link CellStyles#getIndex(int, int) index} is the i-th element
+     * of the given order.
+     * 
+     * @param cellMap The {@link CellMap}
+     * @param cellRange The range of cells
+     * @param order The order of the cells. May be <code>null</code>.
+     * @param i The index of the cell in the batch
+     * @param reusedCell The cell that may be reused
+     * @return The cell
+     */
+    private Cell getBatchCell(CellMap cellMap, Rectangle cellRange, 
+        int order[], long i, Cell reusedCell)
+    {
+        if (order == null)
+        {
+            int x = cellRange.x + (int)(i % cellRange.width);
+            int y = cellRange.y + (int)(i / cellRange.width);
+            return cellMap.getCell(x, y, reusedCell);
+        }
+        int index = order[(int)i];
+        int sizeX = cellStyles.getSizeX();
+        return cellMap.getCell(index % sizeX, index / sizeX, reusedCell);
+    }
+    
+    /**
+     * Returns whether the shape of the given cell is a rectangle
+     * 
+     * @param cell The cell
+     * @return Whether the cell is a rectangle
+     */
+    private static boolean isRectangle(Cell cell)
+    {
+        if (cell instanceof ImplicitCell)
+        {
+            return ((ImplicitCell)cell).isRectangle();
+        }
+        return cell.getShape() instanceof Rectangle2D;
+    }
+    
+    /**
+     * Returns whether this painter only fills the cells. This is the 
+     * case when this is not an instance of a subclass, and there are no
+     * draw paints, contents or labels.
+     * 
+     * @return Whether this painter only fills the cells
+     */
+    boolean isFillingOnly()
+    {
+        if (hasForeground())
+        {
+            return false;
+        }
+        if (cellStyles != null && cellStyles.hasDrawPaints())
+        {
+            return false;
+        }
+        return drawPaintFunction == null;
+    }
+    
+    /**
+     * Returns whether this painter may paint any cell contents or labels.
+     * This is the case when any of the functions for the content or the
+     * labels is not <code>null</code>, or when this is an instance of a
+     * subclass that may paint custom contents.
+     * 
+     * @return Whether this painter may paint a foreground
+     */
+    private boolean hasForeground()
+    {
+        if (getClass() != BasicCellPainter.class)
+        {
+            return true;
+        }
+        return contentFillPaintFunction != null ||
+            contentDrawPaintFunction != null ||
+            labelFunction != null;
+    }
+    
     /**
      * Perform the painting operations for the cell (the "background")
      * on the given Graphics. The default implementation will only perform 
@@ -1422,14 +1958,20 @@ public class BasicCellPainter implements ObjectPainter<Cell>
             }
         }
         
-        g.setPaint(labelPaint);
-        g.setFont(font);
-        
+        labelPainter.setFont(font);
+        labelPainter.setPaint(labelPaint);
         labelPainter.setLabelAnchor(
             labelAnchor.getX(), labelAnchor.getY());
         labelPainter.setLabelLocation(
             labelLocation.getX(), labelLocation.getY());
-        labelPainter.paint(g, worldToScreen, w, h, label);
+        if (batchingLabels)
+        {
+            labelPainter.addLabel(labelBatch, worldToScreen, label);
+        }
+        else
+        {
+            labelPainter.paint(g, worldToScreen, w, h, label);
+        }
     }
 }
 
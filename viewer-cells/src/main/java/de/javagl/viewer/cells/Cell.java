@@ -28,6 +28,7 @@ package de.javagl.viewer.cells;
 
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
 
 /**
  * Interface describing one cell in a {@link CellMap}
@@ -55,6 +56,25 @@ public interface Cell
      */
     Shape getShape();
     
+    /**
+     * Returns a path iterator for the {@link #getShape() shape} of this 
+     * cell, transformed with the given transform. This may be used for 
+     * appending the shape of the cell to a path, without creating the 
+     * shape. The returned iterator may refer to internal state of this
+     * cell, and thus has to be used before the cell is modified, or 
+     * this method is called again.<br>
+     * <br>
+     * By default, this returns the path iterator of the 
+     * {@link #getShape() shape}.
+     * 
+     * @param at The optional transform, which may be <code>null</code>
+     * @return The path iterator
+     */
+    default PathIterator getShapePathIterator(AffineTransform at)
+    {
+        return getShape().getPathIterator(at);
+    }
+    
     /**
      * Returns the x-coordinate of the origin of this cell.
      * 
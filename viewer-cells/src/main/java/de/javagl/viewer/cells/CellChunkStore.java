@@ -0,0 +1,67 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.io.IOException;
+
+/**
+ * Interface for classes that can load and save the chunks of cell values
+ * of a {@link ChunkedCellMap}, so that chunks that have not been used
+ * recently may be evicted from memory.
+ */
+public interface CellChunkStore
+{
+    /**
+     * Load the values of the chunk with the given coordinates. The 
+     * returned array must contain the values of the cells of the chunk,
+     * row by row. Returns <code>null</code> if the chunk was not saved,
+     * meaning that all its values are 0.
+     * 
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     * @param chunkSize The size of the chunk, in number of cells, in
+     * x- and y-direction
+     * @return The values, or <code>null</code>
+     * @throws IOException If the chunk could not be loaded
+     */
+    int[] load(int chunkX, int chunkY, int chunkSize) throws IOException;
+    
+    /**
+     * Save the values of the chunk with the given coordinates. If the
+     * given values are <code>null</code>, then all values of the chunk
+     * are 0, and a previously saved state of the chunk may be deleted.
+     * 
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     * @param chunkSize The size of the chunk, in number of cells, in
+     * x- and y-direction
+     * @param values The values, or <code>null</code>
+     * @throws IOException If the chunk could not be saved
+     */
+    void save(int chunkX, int chunkY, int chunkSize, int values[]) 
+        throws IOException;
+}
@@ -0,0 +1,123 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Methods to create {@link CellChunkStore} instances
+ */
+public class CellChunkStores
+{
+    /**
+     * Creates a {@link CellChunkStore} that stores each chunk in one file 
+     * in the given directory. The values are stored as 32 bit integers 
+     * in little-endian byte order. Chunks whose values are all 0 are not
+     * stored. The directory will be created if it does not exist yet.
+     * 
+     * @param directory The directory
+     * @return The {@link CellChunkStore}
+     * @throws NullPointerException If the given directory is 
+     * <code>null</code>
+     */
+    public static CellChunkStore createDirectoryStore(Path directory)
+    {
+        Objects.requireNonNull(directory, "The directory may not be null");
+        return new CellChunkStore()
+        {
+            @Override
+            public int[] load(int chunkX, int chunkY, int chunkSize)
+                throws IOException
+            {
+                Path path = resolve(directory, chunkX, chunkY);
+                if (!Files.exists(path))
+                {
+                    return null;
+                }
+                byte bytes[] = Files.readAllBytes(path);
+                int values[] = new int[chunkSize * chunkSize];
+                if (bytes.length != values.length * Integer.BYTES)
+                {
+                    throw new IOException("Expected " + 
+                        values.length * Integer.BYTES + " bytes in " + 
+                        path + ", but found " + bytes.length);
+                }
+                IntBuffer buffer = ByteBuffer.wrap(bytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                buffer.get(values);
+                return values;
+            }
+            
+            @Override
+            public void save(
+                int chunkX, int chunkY, int chunkSize, int values[])
+                throws IOException
+            {
+                Path path = resolve(directory, chunkX, chunkY);
+                if (values == null)
+                {
+                    Files.deleteIfExists(path);
+                    return;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(
+                    values.length * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.asIntBuffer().put(values);
+                Files.createDirectories(directory);
+                Files.write(path, buffer.array());
+            }
+        };
+    }
+    
+    /**
+     * Returns the path of the file for the chunk with the given 
+     * coordinates in the given directory
+     * 
+     * @param directory The directory
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     * @return The path
+     */
+    private static Path resolve(Path directory, int chunkX, int chunkY)
+    {
+        return directory.resolve("chunk_" + chunkX + "_" + chunkY + ".bin");
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private CellChunkStores()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import de.javagl.viewer.Painter;
+
+/**
+ * Package-private class for caching the contents of a layer of cells in
+ * image tiles.<br>
+ * <br>
+ * The tiles have a size of {@link #TILE_SIZE} pixels (taking the 
+ * device scaling into account), and are aligned to the world origin, 
+ * so that they may be re-used when the view is translated. They are 
+ * painted for discrete zoom levels, with {@link #LEVELS_PER_OCTAVE} 
+ * levels for each doubling of the scaling factor. The level of a 
+ * scaling factor is the next larger level, and the tiles are scaled
+ * down to the actual scaling factor when they are drawn. This way, the 
+ * tiles may be re-used while zooming, and when returning to a previous
+ * zoom level. When the capacity of the cache is exceeded, the least 
+ * recently used tiles are removed.<br>
+ * <br>
+ * Tiles can only be used when the world-to-screen transform does not
+ * contain a rotation or shear. When the scaling factor matches a zoom 
+ * level, then the tiles are placed at integer pixel positions, so they 
+ * may be offset by up to half a pixel, compared to painting the layer 
+ * directly. Otherwise, they are drawn with bilinear interpolation.
+ */
+final class CellLayerTileCache
+{
+    /**
+     * The size of the tiles, in pixels
+     */
+    private static final int TILE_SIZE = 256;
+    
+    /**
+     * The number of discrete zoom levels for which tiles are painted,
+     * for each doubling of the scaling factor
+     */
+    private static final int LEVELS_PER_OCTAVE = 4;
+    
+    /**
+     * The tolerance for considering a scaling factor to match a zoom
+     * level, relative to the scaling factor
+     */
+    private static final double LEVEL_EPSILON = 1e-6;
+    
+    /**
+     * The default capacity of the cache, in number of tiles
+     */
+    private static final int DEFAULT_CAPACITY = 128;
+    
+    /**
+     * The margin, in pixels, by which the bounds of invalidated areas are
+     * extended, to take into account strokes that extend beyond cells
+     */
+    private static final double INVALIDATION_MARGIN_PX = 4.0;
+    
+    /**
+     * The key of a tile
+     */
+    private static final class TileKey
+    {
+        /**
+         * The scaling factor of the zoom level in x-direction, in device
+         * pixels per world unit
+         */
+        private final double scaleX;
+        
+        /**
+         * The scaling factor of the zoom level in y-direction, in device
+         * pixels per world unit
+         */
+        private final double scaleY;
+        
+        /**
+         * The device scaling factor in x-direction
+         */
+        private final double deviceScaleX;
+        
+        /**
+         * The device scaling factor in y-direction
+         */
+        private final double deviceScaleY;
+        
+        /**
+         * The x-index of the tile
+         */
+        private final long tx;
+        
+        /**
+         * The y-index of the tile
+         */
+        private final long ty;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param scaleX The scaling of the zoom level in x-direction
+         * @param scaleY The scaling of the zoom level in y-direction
+         * @param deviceScaleX The device scaling in x-direction
+         * @param deviceScaleY The device scaling in y-direction
+         * @param tx The x-index of the tile
+         * @param ty The y-index of the tile
+         */
+        TileKey(double scaleX, double scaleY, 
+            double deviceScaleX, double deviceScaleY, long tx, long ty)
+        {
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            this.deviceScaleX = deviceScaleX;
+            this.deviceScaleY = deviceScaleY;
+            this.tx = tx;
+            this.ty = ty;
+        }
+        
+        /**
+         * Returns whether the tile with this key intersects the given 
+         * world rectangle, extended by the given margin in pixels
+         * 
+         * @param worldBounds The world rectangle
+         * @param margin The margin
+         * @return Whether the tile intersects the rectangle
+         */
+        boolean intersects(Rectangle2D worldBounds, double margin)
+        {
+            double x0 = worldBounds.getMinX() * scaleX;
+            double x1 = worldBounds.getMaxX() * scaleX;
+            double y0 = worldBounds.getMinY() * scaleY;
+            double y1 = worldBounds.getMaxY() * scaleY;
+            double minX = Math.min(x0, x1) - margin;
+            double maxX = Math.max(x0, x1) + margin;
+            double minY = Math.min(y0, y1) - margin;
+            double maxY = Math.max(y0, y1) + margin;
+            return maxX >= tx * TILE_SIZE && minX <= (tx + 1) * TILE_SIZE &&
+                maxY >= ty * TILE_SIZE && minY <= (ty + 1) * TILE_SIZE;
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(
+                scaleX, scaleY, deviceScaleX, deviceScaleY, tx, ty);
+        }
+        
+        @Override
+        public boolean equals(Object object)
+        {
+            if (this == object)
+            {
+                return true;
+            }
+            if (!(object instanceof TileKey))
+            {
+                return false;
+            }
+            TileKey other = (TileKey)object;
+            return Double.compare(scaleX, other.scaleX) == 0 &&
+                Double.compare(scaleY, other.scaleY) == 0 &&
+                Double.compare(deviceScaleX, other.deviceScaleX) == 0 &&
+                Double.compare(deviceScaleY, other.deviceScaleY) == 0 &&
+                tx == other.tx && ty == other.ty;
+        }
+    }
+    
+    /**
+     * The number of tiles that have been visible in the last call to
+     * {@link #paint(Graphics2D, AffineTransform, double, double, Painter)}.
+     * The cache will always retain at least this number of tiles.
+     */
+    private int visibleTiles;
+    
+    /**
+     * The tiles, in access order
+     */
+    private final Map<TileKey, BufferedImage> tiles;
+    
+    /**
+     * Default constructor
+     */
+    CellLayerTileCache()
+    {
+        this.tiles = new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true);
+    }
+    
+    /**
+     * Paint the visible tiles of the layer that is painted by the given
+     * painter. Tiles that are not contained in the cache are created by
+     * letting the given painter paint into them.<br>
+     * <br>
+     * If the tiles can not be used for the given transform, or the 
+     * transform of the given graphics, then nothing is painted, and
+     * <code>false</code> is returned.
+     * 
+     * @param g The graphics to paint to
+     * @param worldToScreen The world-to-screen transform
+     * @param w The width of the screen area
+     * @param h The height of the screen area
+     * @param layerPainter The painter that paints the layer
+     * @return Whether the tiles have been painted
+     */
+    boolean paint(Graphics2D g, AffineTransform worldToScreen, 
+        double w, double h, Painter layerPainter)
+    {
+        AffineTransform deviceTransform = g.getTransform();
+        if (!isScalingAndTranslation(worldToScreen) ||
+            !isScalingAndTranslation(deviceTransform) ||
+            deviceTransform.getScaleX() <= 0 || 
+            deviceTransform.getScaleY() <= 0)
+        {
+            return false;
+        }
+        AffineTransform fullTransform = new AffineTransform(deviceTransform);
+        fullTransform.concatenate(worldToScreen);
+        double scaleX = fullTransform.getScaleX();
+        double scaleY = fullTransform.getScaleY();
+        if (scaleX == 0 || scaleY == 0)
+        {
+            return false;
+        }
+        double deviceScaleX = deviceTransform.getScaleX();
+        double deviceScaleY = deviceTransform.getScaleY();
+        double levelScaleX = computeLevelScale(scaleX);
+        double levelScaleY = computeLevelScale(scaleY);
+        double residualX = scaleX / levelScaleX;
+        double residualY = scaleY / levelScaleY;
+        boolean residual = residualX != 1.0 || residualY != 1.0;
+        double offsetX = fullTransform.getTranslateX();
+        double offsetY = fullTransform.getTranslateY();
+        if (!residual)
+        {
+            offsetX = Math.round(offsetX);
+            offsetY = Math.round(offsetY);
+        }
+        
+        Rectangle2D screenBounds = new Rectangle2D.Double(0, 0, w, h);
+        Rectangle clipBounds = g.getClipBounds();
+        if (clipBounds != null)
+        {
+            Rectangle2D.intersect(screenBounds, clipBounds, screenBounds);
+            if (screenBounds.isEmpty())
+            {
+                return true;
+            }
+        }
+        Rectangle2D deviceBounds = deviceTransform.createTransformedShape(
+            screenBounds).getBounds2D();
+        double levelTileSizeX = TILE_SIZE * residualX;
+        double levelTileSizeY = TILE_SIZE * residualY;
+        long tx0 = (long)Math.floor(
+            (deviceBounds.getMinX() - offsetX) / levelTileSizeX);
+        long tx1 = (long)Math.floor(
+            (deviceBounds.getMaxX() - offsetX) / levelTileSizeX);
+        long ty0 = (long)Math.floor(
+            (deviceBounds.getMinY() - offsetY) / levelTileSizeY);
+        long ty1 = (long)Math.floor(
+            (deviceBounds.getMaxY() - offsetY) / levelTileSizeY);
+        visibleTiles = (int)Math.min(Integer.MAX_VALUE, 
+            (tx1 - tx0 + 1) * (ty1 - ty0 + 1));
+        
+        g.setTransform(new AffineTransform());
+        Object oldInterpolation = 
+            g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        if (residual)
+        {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, 
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        AffineTransform tileToDevice = new AffineTransform();
+        for (long ty = ty0; ty <= ty1; ty++)
+        {
+            for (long tx = tx0; tx <= tx1; tx++)
+            {
+                TileKey key = new TileKey(levelScaleX, levelScaleY, 
+                    deviceScaleX, deviceScaleY, tx, ty);
+                BufferedImage tile = tiles.get(key);
+                if (tile == null)
+                {
+                    tile = createTile(g, levelScaleX, levelScaleY, 
+                        deviceTransform, tx, ty, layerPainter);
+                    tiles.put(key, tile);
+                }
+                if (residual)
+                {
+                    tileToDevice.setToTranslation(
+                        offsetX + tx * levelTileSizeX, 
+                        offsetY + ty * levelTileSizeY);
+                    tileToDevice.scale(residualX, residualY);
+                    g.drawImage(tile, tileToDevice, null);
+                }
+                else
+                {
+                    g.drawImage(tile, 
+                        (int)(offsetX + tx * TILE_SIZE), 
+                        (int)(offsetY + ty * TILE_SIZE), null);
+                }
+            }
+        }
+        if (residual && oldInterpolation != null)
+        {
+            g.setRenderingHint(
+                RenderingHints.KEY_INTERPOLATION, oldInterpolation);
+        }
+        g.setTransform(deviceTransform);
+        removeEldestTiles();
+        return true;
+    }
+    
+    /**
+     * Compute the scaling factor of the zoom level for the given scaling
+     * factor. This is the smallest scaling factor of a zoom level that 
+     * is not smaller than the absolute value of the given one, with the
+     * sign of the given one. If the given scaling factor matches a zoom
+     * level, up to a small tolerance, then it is returned directly.
+     * 
+     * @param scale The scaling factor
+     * @return The scaling factor of the zoom level
+     */
+    private static double computeLevelScale(double scale)
+    {
+        double absScale = Math.abs(scale);
+        double level = Math.log(absScale) / Math.log(2) * LEVELS_PER_OCTAVE;
+        double roundedLevel = Math.rint(level);
+        double levelScale = 
+            Math.pow(2.0, roundedLevel / LEVELS_PER_OCTAVE);
+        if (Math.abs(levelScale - absScale) <= absScale * LEVEL_EPSILON)
+        {
+            return scale;
+        }
+        levelScale = Math.pow(2.0, Math.ceil(level) / LEVELS_PER_OCTAVE);
+        return Math.copySign(levelScale, scale);
+    }
+    
+    /**
+     * Create the tile with the given indices, by letting the given 
+     * painter paint into it
+     * 
+     * @param g The graphics whose rendering hints should be used
+     * @param levelScaleX The scaling of the zoom level in x-direction, 
+     * in device pixels per world unit
+     * @param levelScaleY The scaling of the zoom level in y-direction, 
+     * in device pixels per world unit
+     * @param deviceTransform The transform of the graphics
+     * @param tx The x-index of the tile
+     * @param ty The y-index of the tile
+     * @param layerPainter The painter
+     * @return The tile
+     */
+    private static BufferedImage createTile(Graphics2D g, 
+        double levelScaleX, double levelScaleY, 
+        AffineTransform deviceTransform, long tx, long ty, 
+        Painter layerPainter)
+    {
+        BufferedImage tile = new BufferedImage(
+            TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D tg = tile.createGraphics();
+        tg.setRenderingHints(g.getRenderingHints());
+        Composite composite = tg.getComposite();
+        tg.setComposite(AlphaComposite.Clear);
+        tg.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+        tg.setComposite(composite);
+        
+        // The graphics contains the device scaling, and the painter 
+        // receives the world-to-screen transform with the translation 
+        // that moves the tile to the origin
+        double deviceScaleX = deviceTransform.getScaleX();
+        double deviceScaleY = deviceTransform.getScaleY();
+        tg.scale(deviceScaleX, deviceScaleY);
+        double tw = TILE_SIZE / deviceScaleX;
+        double th = TILE_SIZE / deviceScaleY;
+        tg.setClip(new Rectangle2D.Double(0, 0, tw, th));
+        AffineTransform worldToTile = new AffineTransform(
+            levelScaleX / deviceScaleX, 0, 0, levelScaleY / deviceScaleY, 
+            -tx * tw, -ty * th);
+        layerPainter.paint(tg, worldToTile, tw, th);
+        tg.dispose();
+        return tile;
+    }
+    
+    /**
+     * Returns whether the given transform only consists of a scaling
+     * and a translation
+     * 
+     * @param at The transform
+     * @return Whether the transform is a scaling and translation
+     */
+    private static boolean isScalingAndTranslation(AffineTransform at)
+    {
+        return at.getShearX() == 0 && at.getShearY() == 0;
+    }
+    
+    /**
+     * Remove the least recently used tiles, until the number of tiles
+     * does not exceed the capacity, or the number of visible tiles
+     */
+    private void removeEldestTiles()
+    {
+        int capacity = Math.max(DEFAULT_CAPACITY, visibleTiles);
+        Iterator<BufferedImage> iterator = tiles.values().iterator();
+        while (tiles.size() > capacity && iterator.hasNext())
+        {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+    
+    /**
+     * Remove all tiles that intersect the given world rectangle
+     * 
+     * @param worldBounds The world rectangle
+     */
+    void invalidate(Rectangle2D worldBounds)
+    {
+        tiles.keySet().removeIf(
+            key -> key.intersects(worldBounds, INVALIDATION_MARGIN_PX));
+    }
+    
+    /**
+     * Remove all tiles
+     */
+    void clear()
+    {
+        tiles.clear();
+    }
+}
@@ -26,6 +26,8 @@
  */
 package de.javagl.viewer.cells;
 
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
 
 /**
  * An interface that describes the visual representation of a map
@@ -60,6 +62,30 @@ public interface CellMap
      */
     Cell getCell(int x, int y);
     
+    /**
+     * Returns the {@link Cell} with the given coordinates, possibly by
+     * updating and returning the given cell object. This is intended for
+     * iterating over many cells without creating a new object for each
+     * cell. When the returned object is passed to this method again, it 
+     * may be modified to describe another cell. So it should not be 
+     * stored, and only be used until the next call to this method.<br>
+     * <br>
+     * The default implementation returns {@link #getCell(int, int)}.
+     * 
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @param reusedCell A cell object that was returned by a previous 
+     * call to this method, or <code>null</code>
+     * @return The cell
+     * @throws IndexOutOfBoundsException If one of the given coordinates
+     * is negative or not smaller than {@link #getSizeX()} 
+     * and {@link #getSizeY()}, respectively.
+     */
+    default Cell getCell(int x, int y, Cell reusedCell)
+    {
+        return getCell(x, y);
+    }
+    
     /**
      * Returns the {@link Cell} at the given world coordinates, or 
      * <code>null</code> if there is no cell.
@@ -70,5 +96,67 @@ public interface CellMap
      * <code>null</code>
      */
     Cell getCellAt(double worldX, double worldY);
+    
+    /**
+     * Computes the range of cell coordinates that contains (at least) all
+     * cells that intersect the given world rectangle. The result is a 
+     * rectangle whose location is the minimum cell coordinates, and whose
+     * size is the number of cells in x- and y-direction. It is empty if 
+     * no cell intersects the given rectangle.<br>
+     * <br>
+     * This is used for painting only the visible cells. The default 
+     * implementation returns the range of all cells.
+     * 
+     * @param worldBounds The world rectangle
+     * @param result The rectangle that will store the result. If this is
+     * <code>null</code>, then a new rectangle will be created and returned.
+     * @return The cell range
+     */
+    default Rectangle computeCellRange(
+        Rectangle2D worldBounds, Rectangle result)
+    {
+        if (result == null)
+        {
+            result = new Rectangle();
+        }
+        result.setBounds(0, 0, getSizeX(), getSizeY());
+        return result;
+    }
+    
+    /**
+     * Computes the bounds of all cells of this map, in world coordinates.
+     * Returns <code>null</code> if this map does not contain any cells.
+     * <br>
+     * <br>
+     * The default implementation computes the union of the bounds of 
+     * the shapes of all cells. Implementations should override this 
+     * method to compute the bounds more efficiently.
+     * 
+     * @return The bounds
+     */
+    default Rectangle2D computeBounds()
+    {
+        Rectangle2D totalBounds = null;
+        int sizeX = getSizeX();
+        int sizeY = getSizeY();
+        Cell cell = null;
+        for (int x=0; x<sizeX; x++)
+        {
+            for (int y=0; y<sizeY; y++)
+            {
+                cell = getCell(x, y, cell);
+                Rectangle2D bounds = cell.getShape().getBounds2D();
+                if (totalBounds == null)
+                {
+                    totalBounds = bounds;
+                }
+                else
+                {
+                    Rectangle2D.union(totalBounds, bounds, totalBounds);
+                }
+            }
+        }
+        return totalBounds;
+    }
 	
 }
\ No newline at end of file
@@ -26,9 +26,18 @@
  */
 package de.javagl.viewer.cells;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -45,11 +54,37 @@ import de.javagl.viewer.Painter;
  * It maintains several {@link ObjectPainter ObjectPainter&lt;Cell&gt;} 
  * instances, referred to as <i>cell painters</i>. The 
  * {@link #paint(Graphics2D, AffineTransform, double, double) paint} 
- * method simply iterates over all {@link Cell}s of the {@link CellMap}, 
- * and paints them using the cell painters.
+ * method iterates over the {@link Cell}s of the {@link CellMap} that
+ * are visible, as determined with 
+ * {@link CellMap#computeCellRange(Rectangle2D, Rectangle)}, and paints 
+ * them using the cell painters.<br>
+ * <br>
+ * When the cells are smaller on the screen than the 
+ * {@link BasicCellPainter#setRasterThreshold(double) raster threshold}
+ * of a {@link BasicCellPainter}, then the fill colors of the cells are
+ * written into an image with one pixel per cell, and this image is
+ * painted instead of the individual cells. This is also done when 
+ * there are more visible cells than there are pixels on the screen,
+ * regardless of the raster threshold, but only when the painter only
+ * fills the cells, and all fill paints are colors, so that the raster
+ * image shows what is visible when the cells are painted 
+ * individually.<br>
+ * <br>
+ * Layers may be marked as {@link #setLayerStatic(int, boolean) static}. 
+ * The cells of static layers are painted into image tiles that are 
+ * cached and re-used when the view is translated, or the same zoom level
+ * is displayed again. These tiles have to be invalidated explicitly when
+ * the appearance of cells in static layers changes.
  */
 class CellMapPainter implements Painter
 {
+    /**
+     * The margin, in pixels, by which the visible area is extended 
+     * when determining the visible cells, to take into account 
+     * strokes that extend beyond the cells
+     */
+    private static final double CULLING_MARGIN_PX = 2.0;
+    
     /**
      * The {@link CellMap} that this painter is painting
      */
@@ -61,6 +96,25 @@ class CellMapPainter implements Painter
      */
     private final Map<Integer, List<ObjectPainter<? super Cell>>> cellPainters;
     
+    /**
+     * The bounds of the {@link #cellMap}, in world coordinates. This is 
+     * computed lazily, when it is required for painting the cells as a 
+     * raster, and reset when the cell map changes.
+     */
+    private Rectangle2D cellMapBounds;
+    
+    /**
+     * The image that the cells are written into when they are painted 
+     * as a raster. This is re-created when a larger image is required.
+     */
+    private BufferedImage rasterImage;
+    
+    /**
+     * The map from the indices of layers that are static to the
+     * {@link CellLayerTileCache} for the respective layer
+     */
+    private final Map<Integer, CellLayerTileCache> staticLayers;
+    
     /**
      * Default constructor
      */
@@ -68,6 +122,7 @@ class CellMapPainter implements Painter
     {
         cellPainters = 
             new TreeMap<Integer, List<ObjectPainter<? super Cell>>>();
+        staticLayers = new HashMap<Integer, CellLayerTileCache>();
     }
     
     /**
@@ -78,6 +133,90 @@ class CellMapPainter implements Painter
     void setCellMap(CellMap cellMap)
     {
     	this.cellMap = cellMap;
+    	this.cellMapBounds = null;
+    	invalidateStaticLayers();
+    }
+    
+    /**
+     * Set whether the given layer is static. See 
+     * {@link CellMapPanel#setLayerStatic(int, boolean)}.
+     * 
+     * @param layer The layer
+     * @param isStatic Whether the layer is static
+     */
+    void setLayerStatic(int layer, boolean isStatic)
+    {
+        if (isStatic)
+        {
+            if (!staticLayers.containsKey(layer))
+            {
+                staticLayers.put(layer, new CellLayerTileCache());
+            }
+        }
+        else
+        {
+            staticLayers.remove(layer);
+        }
+    }
+    
+    /**
+     * Returns whether the given layer is static
+     * 
+     * @param layer The layer
+     * @return Whether the layer is static
+     */
+    boolean isLayerStatic(int layer)
+    {
+        return staticLayers.containsKey(layer);
+    }
+    
+    /**
+     * Returns whether any layer is static
+     * 
+     * @return Whether any layer is static
+     */
+    boolean hasStaticLayers()
+    {
+        return !staticLayers.isEmpty();
+    }
+    
+    /**
+     * Remove all cached tiles of all static layers
+     */
+    void invalidateStaticLayers()
+    {
+        for (CellLayerTileCache tileCache : staticLayers.values())
+        {
+            tileCache.clear();
+        }
+    }
+    
+    /**
+     * Remove the cached tiles of all static layers that intersect the 
+     * given rectangle, in world coordinates
+     * 
+     * @param worldBounds The rectangle, in world coordinates
+     */
+    void invalidateStaticLayers(Rectangle2D worldBounds)
+    {
+        for (CellLayerTileCache tileCache : staticLayers.values())
+        {
+            tileCache.invalidate(worldBounds);
+        }
+    }
+    
+    /**
+     * Remove all cached tiles of the given layer, if it is static
+     * 
+     * @param layer The layer
+     */
+    private void invalidateStaticLayer(int layer)
+    {
+        CellLayerTileCache tileCache = staticLayers.get(layer);
+        if (tileCache != null)
+        {
+            tileCache.clear();
+        }
     }
     
     /**
@@ -96,6 +235,7 @@ class CellMapPainter implements Painter
             cellPainters.put(layer, list);
         }
         list.add(cellPainter);
+        invalidateStaticLayer(layer);
     }
     
     /**
@@ -113,6 +253,7 @@ class CellMapPainter implements Painter
             boolean wasContained = list.remove(cellPainter);
             if (wasContained)
             {
+                invalidateStaticLayer(entry.getKey());
                 if (list.isEmpty())
                 {
                     toRemove.add(entry.getKey());
@@ -128,6 +269,7 @@ class CellMapPainter implements Painter
     void clearCellPainters()
     {
         cellPainters.clear();
+        invalidateStaticLayers();
     }
     
     @Override
@@ -138,24 +280,293 @@ class CellMapPainter implements Painter
     	{
     		return;
     	}
-        int sizeX = cellMap.getSizeX();
-        int sizeY = cellMap.getSizeY();
+        if (cellMap instanceof ChunkedCellMap)
+        {
+            ChunkedCellMap chunkedCellMap = (ChunkedCellMap)cellMap;
+            chunkedCellMap.setPinnedCellRange(
+                computeVisibleCellRange(worldToScreen, w, h, null));
+        }
+        for (Entry<Integer, List<ObjectPainter<? super Cell>>> entry : 
+            cellPainters.entrySet())
+        {
+            List<ObjectPainter<? super Cell>> list = entry.getValue();
+            CellLayerTileCache tileCache = staticLayers.get(entry.getKey());
+            if (tileCache != null)
+            {
+                boolean painted = tileCache.paint(g, worldToScreen, w, h, 
+                    (tg, tileWorldToScreen, tw, th) -> 
+                        paintLayer(tg, tileWorldToScreen, tw, th, list));
+                if (painted)
+                {
+                    continue;
+                }
+            }
+            paintLayer(g, worldToScreen, w, h, list);
+        }
+    }
+    
+    /**
+     * Paint the visible cells with the given cell painters of one layer
+     * 
+     * @param g The graphics to paint to
+     * @param worldToScreen The world-to-screen transform
+     * @param w The width of the screen area
+     * @param h The height of the screen area
+     * @param list The cell painters
+     * @throws IllegalStateException If the size of the cell styles of
+     * a {@link BasicCellPainter} does not match the size of the cell map
+     */
+    private void paintLayer(Graphics2D g, AffineTransform worldToScreen, 
+        double w, double h, List<ObjectPainter<? super Cell>> list)
+    {
+        for (ObjectPainter<? super Cell> cellPainter : list)
+        {
+            if (cellPainter instanceof BasicCellPainter)
+            {
+                BasicCellPainter basicCellPainter = 
+                    (BasicCellPainter)cellPainter;
+                basicCellPainter.validateCellStyles(cellMap);
+            }
+        }
+        Rectangle cellRange = 
+            computeVisibleCellRange(worldToScreen, w, h, g.getClipBounds());
+        if (cellRange.isEmpty())
+        {
+            return;
+        }
+        int minX = cellRange.x;
+        int minY = cellRange.y;
+        int maxX = cellRange.x + cellRange.width;
+        int maxY = cellRange.y + cellRange.height;
         AffineTransform atCell = new AffineTransform();
-        for (List<ObjectPainter<? super Cell>> list : cellPainters.values())
+        AffineTransform cellToScreen = null;
+        double pixelsPerCell = Double.NaN;
+        Cell cell = null;
+        for (ObjectPainter<? super Cell> cellPainter : list)
         {
-            for (ObjectPainter<? super Cell> cellPainter : list)
+            if (cellPainter instanceof BasicCellPainter)
             {
-                for (int x=0; x<sizeX; x++)
+                BasicCellPainter basicCellPainter = 
+                    (BasicCellPainter)cellPainter;
+                double rasterThreshold = 
+                    basicCellPainter.getRasterThreshold();
+                boolean exceedsPixels = 
+                    (long)cellRange.width * cellRange.height > w * h &&
+                    basicCellPainter.isFillingOnly();
+                if ((rasterThreshold > 0 || exceedsPixels) && 
+                    Double.isNaN(pixelsPerCell))
+                {
+                    cellToScreen = computeCellToScreen(worldToScreen);
+                    pixelsPerCell = computePixelsPerCell(cellToScreen);
+                }
+                if (cellToScreen != null && pixelsPerCell < rasterThreshold)
                 {
-                    for (int y=0; y<sizeY; y++)
+                    paintRaster(g, basicCellPainter, 
+                        cellToScreen, pixelsPerCell, cellRange, false);
+                    continue;
+                }
+                if (cellToScreen != null && exceedsPixels)
+                {
+                    boolean painted = paintRaster(g, basicCellPainter, 
+                        cellToScreen, pixelsPerCell, cellRange, true);
+                    if (painted)
                     {
-                        Cell cell = cellMap.getCell(x, y);
-                        atCell.setTransform(worldToScreen);
-                        cellPainter.paint(g, atCell, w, h, cell);
+                        continue;
                     }
                 }
+                basicCellPainter.beginLabelBatch();
+                basicCellPainter.paintCells(
+                    g, worldToScreen, w, h, cellMap, cellRange);
+                basicCellPainter.endLabelBatch(g);
+                continue;
             }
+            for (int x=minX; x<maxX; x++)
+            {
+                for (int y=minY; y<maxY; y++)
+                {
+                    cell = cellMap.getCell(x, y, cell);
+                    atCell.setTransform(worldToScreen);
+                    cellPainter.paint(g, atCell, w, h, cell);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compute the transform from cell coordinates to screen coordinates. 
+     * This is the transform that maps the rectangle that is spanned by 
+     * the cell coordinates to the bounds of the {@link #cellMap}, 
+     * concatenated with the given world-to-screen transform. Returns 
+     * <code>null</code> if the cell map does not contain any cells.
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @return The cell-to-screen transform
+     */
+    private AffineTransform computeCellToScreen(AffineTransform worldToScreen)
+    {
+        if (cellMapBounds == null)
+        {
+            cellMapBounds = cellMap.computeBounds();
+            if (cellMapBounds == null)
+            {
+                return null;
+            }
+        }
+        AffineTransform cellToScreen = new AffineTransform(worldToScreen);
+        cellToScreen.translate(cellMapBounds.getX(), cellMapBounds.getY());
+        cellToScreen.scale(
+            cellMapBounds.getWidth() / cellMap.getSizeX(), 
+            cellMapBounds.getHeight() / cellMap.getSizeY());
+        return cellToScreen;
+    }
+    
+    /**
+     * Compute the size of a cell on the screen, in pixels, for the given
+     * cell-to-screen transform. This is the smaller one of the lengths of
+     * the edges of a cell. If the given transform is <code>null</code>,
+     * then positive infinity is returned.
+     * 
+     * @param cellToScreen The cell-to-screen transform
+     * @return The size of a cell on the screen
+     */
+    private static double computePixelsPerCell(AffineTransform cellToScreen)
+    {
+        if (cellToScreen == null)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        double sx = Math.hypot(
+            cellToScreen.getScaleX(), cellToScreen.getShearY());
+        double sy = Math.hypot(
+            cellToScreen.getShearX(), cellToScreen.getScaleY());
+        return Math.min(sx, sy);
+    }
+    
+    /**
+     * Paint the cells in the given range as a raster image. The fill 
+     * colors of the given {@link BasicCellPainter} are written into an
+     * image with one pixel per cell, which is painted with the given 
+     * cell-to-screen transform. If a cell covers less than one pixel, 
+     * then only every n-th cell is written into the image, so that the 
+     * image is not larger than the area that it covers on the screen.
+     * Fill paints that are not colors are omitted. If the given flag is
+     * <code>true</code>, then nothing is painted when any fill paint is 
+     * not a color.
+     * 
+     * @param g The graphics to paint to
+     * @param basicCellPainter The {@link BasicCellPainter}
+     * @param cellToScreen The cell-to-screen transform
+     * @param pixelsPerCell The size of a cell on the screen
+     * @param cellRange The range of cells to paint
+     * @param requireColors Whether all fill paints must be colors
+     * @return Whether the raster image was painted
+     */
+    private boolean paintRaster(Graphics2D g, 
+        BasicCellPainter basicCellPainter, AffineTransform cellToScreen, 
+        double pixelsPerCell, Rectangle cellRange, boolean requireColors)
+    {
+        int step = Math.max(1, (int)(1.0 / pixelsPerCell));
+        int rasterSizeX = (cellRange.width + step - 1) / step;
+        int rasterSizeY = (cellRange.height + step - 1) / step;
+        if (rasterImage == null || 
+            rasterImage.getWidth() < rasterSizeX ||
+            rasterImage.getHeight() < rasterSizeY)
+        {
+            int sizeX = rasterSizeX;
+            int sizeY = rasterSizeY;
+            if (rasterImage != null)
+            {
+                sizeX = Math.max(sizeX, rasterImage.getWidth());
+                sizeY = Math.max(sizeY, rasterImage.getHeight());
+            }
+            rasterImage = 
+                new BufferedImage(sizeX, sizeY, BufferedImage.TYPE_INT_ARGB);
+        }
+        DataBufferInt dataBuffer = 
+            (DataBufferInt)rasterImage.getRaster().getDataBuffer();
+        int pixels[] = dataBuffer.getData();
+        int scanlineStride = rasterImage.getWidth();
+        Cell cell = null;
+        for (int ry=0; ry<rasterSizeY; ry++)
+        {
+            int y = cellRange.y + ry * step;
+            int offset = ry * scanlineStride;
+            for (int rx=0; rx<rasterSizeX; rx++)
+            {
+                int x = cellRange.x + rx * step;
+                cell = cellMap.getCell(x, y, cell);
+                Paint paint = basicCellPainter.getFillPaint(cell);
+                int argb = 0;
+                if (paint instanceof Color)
+                {
+                    argb = ((Color)paint).getRGB();
+                }
+                else if (paint != null && requireColors)
+                {
+                    return false;
+                }
+                pixels[offset + rx] = argb;
+            }
+        }
+        
+        AffineTransform imageToScreen = new AffineTransform(cellToScreen);
+        imageToScreen.translate(cellRange.x, cellRange.y);
+        imageToScreen.scale(step, step);
+        Object oldInterpolation = 
+            g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, 
+            RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(rasterImage.getSubimage(0, 0, rasterSizeX, rasterSizeY), 
+            imageToScreen, null);
+        if (oldInterpolation != null)
+        {
+            g.setRenderingHint(
+                RenderingHints.KEY_INTERPOLATION, oldInterpolation);
+        }
+        return true;
+    }
+    
+    /**
+     * Compute the range of cell coordinates of the cells that are visible
+     * in the given screen area
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param w The width of the screen area
+     * @param h The height of the screen area
+     * @param clipBounds The bounds of the clipping area of the graphics.
+     * If this is not <code>null</code>, then only the cells in this 
+     * area are considered to be visible.
+     * @return The cell range
+     */
+    private Rectangle computeVisibleCellRange(
+        AffineTransform worldToScreen, double w, double h, 
+        Rectangle clipBounds)
+    {
+        Rectangle2D screenBounds = new Rectangle2D.Double(0, 0, w, h);
+        if (clipBounds != null)
+        {
+            Rectangle2D.intersect(screenBounds, clipBounds, screenBounds);
+            if (screenBounds.isEmpty())
+            {
+                return new Rectangle();
+            }
+        }
+        screenBounds.setRect(
+            screenBounds.getX() - CULLING_MARGIN_PX, 
+            screenBounds.getY() - CULLING_MARGIN_PX, 
+            screenBounds.getWidth() + CULLING_MARGIN_PX * 2, 
+            screenBounds.getHeight() + CULLING_MARGIN_PX * 2);
+        Rectangle2D worldBounds = null;
+        try
+        {
+            worldBounds = worldToScreen.createInverse()
+                .createTransformedShape(screenBounds).getBounds2D();
+        }
+        catch (NoninvertibleTransformException e)
+        {
+            return new Rectangle();
         }
+        return cellMap.computeCellRange(worldBounds, null);
     }
     
 }
\ No newline at end of file
@@ -26,9 +26,23 @@
  */
 package de.javagl.viewer.cells;
 
-import java.awt.Shape;
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import de.javagl.viewer.MouseControls;
 import de.javagl.viewer.ObjectPainter;
@@ -44,7 +58,17 @@ import de.javagl.viewer.Viewer;
  * <br>
  * The {@link BasicCellPainter} class offers a flexible base implementation
  * of a cell painter, that allows creating own cell painters with minimal
- * implementation effort.
+ * implementation effort.<br>
+ * <br>
+ * When the state of only a few cells changes, then these cells may be
+ * {@link #markDirty(int, int) marked as dirty}. From then on, the panel
+ * keeps an image of the last frame, and only repaints the areas that 
+ * are covered by the dirty cells.<br>
+ * <br>
+ * Layers whose appearance rarely changes may be marked as 
+ * {@link #setLayerStatic(int, boolean) static}. These layers are painted
+ * into image tiles that are re-used when the view is translated, so that
+ * only the remaining layers have to be painted for each frame.
  */
 public class CellMapPanel extends Viewer
 {
@@ -52,6 +76,27 @@ public class CellMapPanel extends Viewer
      * Serial UID
      */
     private static final long serialVersionUID = 345530708914201681L;
+    
+    /**
+     * The delay, in milliseconds, after the first cell was 
+     * {@link #markDirty(int, int) marked as dirty}, until the 
+     * dirty cells are repainted
+     */
+    private static final int DIRTY_REPAINT_DELAY_MS = 16;
+    
+    /**
+     * The margin, in pixels, by which the screen bounds of dirty cells 
+     * are extended, to take into account strokes that extend beyond 
+     * the cells
+     */
+    private static final int DIRTY_MARGIN_PX = 2;
+    
+    /**
+     * The size of the screen tiles, in pixels, that the dirty areas 
+     * are aligned to, so that the number of repainted regions remains
+     * bounded even when many cells are dirty
+     */
+    private static final int DIRTY_TILE_SIZE = 32;
 
     /**
      * The {@link CellMap} that is painted 
@@ -63,6 +108,64 @@ public class CellMapPanel extends Viewer
      */
     private CellMapPainter cellMapPainter;
     
+    /**
+     * The object for synchronizing the access to the dirty cells
+     */
+    private final Object dirtyCellsLock;
+    
+    /**
+     * The coordinates of the cells that have been marked as dirty,
+     * as (x,y) pairs
+     */
+    private int dirtyCells[];
+    
+    /**
+     * The number of cells that have been marked as dirty
+     */
+    private int dirtyCellCount;
+    
+    /**
+     * The timer that triggers the repaint of the dirty cells
+     */
+    private final Timer dirtyCellsTimer;
+    
+    /**
+     * The regions, in screen coordinates, that have to be painted 
+     * into the {@link #frameImage} with the next repaint
+     */
+    private final List<Rectangle> dirtyRegions;
+    
+    /**
+     * The image that contains the last frame
+     */
+    private BufferedImage frameImage;
+    
+    /**
+     * Whether the {@link #frameImage} still reflects the current state, 
+     * except for the {@link #dirtyRegions}. This is reset with any 
+     * repaint request that was not caused by dirty cells, possibly 
+     * from other threads.
+     */
+    private volatile boolean frameImageValid;
+    
+    /**
+     * Whether a repaint is currently requested for the dirty regions only
+     */
+    private boolean repaintingDirtyRegions;
+    
+    /**
+     * Whether the painters are painted into the {@link #frameImage}. 
+     * This is set when the first cell is {@link #markDirty(int, int) 
+     * marked as dirty}. Until then, the painters are painted directly.
+     */
+    private volatile boolean usingFrameImage;
+    
+    /**
+     * The listener that is added to a {@link ChunkedCellMap}, to be 
+     * informed about chunks that have been loaded in the background
+     */
+    private final Consumer<Rectangle> chunkLoadListener;
+    
     /**
      * Creates a new cell map panel.<br>
      * <br>
@@ -76,6 +179,15 @@ public class CellMapPanel extends Viewer
      */
     public CellMapPanel()
     {
+        this.dirtyCellsLock = new Object();
+        this.dirtyCells = new int[32];
+        this.dirtyRegions = new ArrayList<Rectangle>();
+        this.dirtyCellsTimer = 
+            new Timer(DIRTY_REPAINT_DELAY_MS, e -> repaintDirtyCells());
+        this.dirtyCellsTimer.setRepeats(false);
+        this.chunkLoadListener = cellRange -> 
+            SwingUtilities.invokeLater(() -> chunkLoaded(cellRange));
+        
         setMouseControl(MouseControls.createDefault(this, true, true));
         setCellMapPainter(new CellMapPainter());
     }
@@ -101,7 +213,9 @@ public class CellMapPanel extends Viewer
      * of the given painter will be called when this panel is repainted,
      * passing in the {@link Cell}s of the current {@link CellMap} as
      * the last argument (if the current {@link CellMap} is not 
-     * <code>null</code>)
+     * <code>null</code>). The same {@link Cell} object may be reused 
+     * for passing different cells to the painter, so the painter 
+     * should not store references to the cells that it receives.
      * 
      * @param cellPainter The cell painter to add
      * @param layer The layer
@@ -134,6 +248,60 @@ public class CellMapPanel extends Viewer
         repaint();
     }
     
+    /**
+     * Set whether the given layer is static.<br>
+     * <br>
+     * The cells of a static layer are painted into image tiles, which
+     * are aligned to the world coordinate system and stored for each 
+     * zoom level. These tiles are re-used when the view is translated 
+     * or repainted, so that only the layers that are not static have to 
+     * be painted for each frame. The least recently used tiles are 
+     * discarded when the number of cached tiles becomes too large.<br>
+     * <br>
+     * The tiles are discarded when the {@link CellMap} or the cell 
+     * painters of the layer change, and the tiles that contain cells 
+     * that are {@link #markDirty(int, int) marked as dirty} are 
+     * discarded as well. When the appearance of the cells in a static 
+     * layer changes otherwise, then {@link #invalidateStaticLayers()} 
+     * has to be called.<br>
+     * <br>
+     * The cell painters of static layers should not paint beyond the
+     * bounds of the cells, because the contents of the tiles are clipped
+     * at the tile borders. When the view is rotated, static layers are
+     * painted like all other layers.
+     * 
+     * @param layer The layer
+     * @param isStatic Whether the layer is static
+     */
+    public final void setLayerStatic(int layer, boolean isStatic)
+    {
+        cellMapPainter.setLayerStatic(layer, isStatic);
+        repaint();
+    }
+    
+    /**
+     * Returns whether the given layer is 
+     * {@link #setLayerStatic(int, boolean) static}
+     * 
+     * @param layer The layer
+     * @return Whether the layer is static
+     */
+    public final boolean isLayerStatic(int layer)
+    {
+        return cellMapPainter.isLayerStatic(layer);
+    }
+    
+    /**
+     * Discard the image tiles of all 
+     * {@link #setLayerStatic(int, boolean) static} layers, so that 
+     * these layers are painted again, and trigger a repaint
+     */
+    public final void invalidateStaticLayers()
+    {
+        cellMapPainter.invalidateStaticLayers();
+        repaint();
+    }
+    
     /**
      * Set the {@link CellMap} that will be used for painting. <br>
      * <br>
@@ -143,12 +311,27 @@ public class CellMapPanel extends Viewer
      * Otherwise, when this panel is repainted, the {@link Cell}s of the 
      * given {@link CellMap} will be passed to the {@link ObjectPainter#paint} 
      * method of all {@link #addCellPainter(ObjectPainter, int) cell painters}
-     * that have been added to this panel.
+     * that have been added to this panel.<br>
+     * <br>
+     * If the given map is a {@link ChunkedCellMap}, then this panel is
+     * repainted when a chunk of the map was loaded in the background, 
+     * and the tiles of {@link #setLayerStatic(int, boolean) static} 
+     * layers that contain the chunk are discarded.
      * 
      * @param cellMap The {@link CellMap}
      */
     public final void setCellMap(CellMap cellMap)
     {
+        if (this.cellMap instanceof ChunkedCellMap)
+        {
+            ChunkedCellMap chunkedCellMap = (ChunkedCellMap)this.cellMap;
+            chunkedCellMap.removeChunkLoadListener(chunkLoadListener);
+        }
+        if (cellMap instanceof ChunkedCellMap)
+        {
+            ChunkedCellMap chunkedCellMap = (ChunkedCellMap)cellMap;
+            chunkedCellMap.addChunkLoadListener(chunkLoadListener);
+        }
         this.cellMap = cellMap;
         this.cellMapPainter.setCellMap(this.cellMap);
         repaint();
@@ -194,25 +377,7 @@ public class CellMapPanel extends Viewer
         Rectangle2D totalBounds = null;
         if (cellMap != null)
         {
-            int sizeX = cellMap.getSizeX();
-            int sizeY = cellMap.getSizeY();
-            for (int x=0; x<sizeX; x++)
-            {
-                for (int y=0; y<sizeY; y++)
-                {
-                    Cell cell = cellMap.getCell(x, y);
-                    Shape shape = cell.getShape();
-                    Rectangle2D bounds = shape.getBounds2D();
-                    if (totalBounds == null)
-                    {
-                        totalBounds = bounds;
-                    }
-                    else
-                    {
-                        Rectangle2D.union(totalBounds, bounds, totalBounds);
-                    }
-                }
-            }
+            totalBounds = cellMap.computeBounds();
         }
         if (totalBounds == null)
         {
@@ -230,5 +395,328 @@ public class CellMapPanel extends Viewer
         setDisplayedWorldArea(totalBounds);
     }
     
+    /**
+     * Mark the cell with the given coordinates as dirty. This indicates
+     * that the appearance of the cell has changed, and that it has to 
+     * be repainted. All cells that are marked as dirty within a short 
+     * time (about one frame) are repainted at once, by painting the 
+     * area that they cover on the screen into an image of the last 
+     * frame.<br>
+     * <br>
+     * The area of a cell is assumed to be the bounds of its 
+     * {@link Cell#getShape() shape}, plus a small margin. When the cell 
+     * painters paint beyond this area, or the change of one cell affects
+     * the appearance of other cells, then {@link #repaint()} has to be 
+     * called instead.<br>
+     * <br>
+     * This method may be called from any thread. Coordinates that are 
+     * not valid for the current {@link CellMap} are ignored.
+     * 
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     */
+    public final void markDirty(int x, int y)
+    {
+        usingFrameImage = true;
+        synchronized (dirtyCellsLock)
+        {
+            if (dirtyCellCount * 2 == dirtyCells.length)
+            {
+                dirtyCells = Arrays.copyOf(dirtyCells, dirtyCells.length * 2);
+            }
+            dirtyCells[dirtyCellCount * 2 + 0] = x;
+            dirtyCells[dirtyCellCount * 2 + 1] = y;
+            dirtyCellCount++;
+            if (dirtyCellCount == 1)
+            {
+                dirtyCellsTimer.start();
+            }
+        }
+    }
+    
+    /**
+     * Called on the event dispatch thread when the chunk of a 
+     * {@link ChunkedCellMap} that covers the given range of cells was
+     * loaded. This discards the image tiles of static layers that 
+     * contain these cells, and triggers a repaint.
+     * 
+     * @param cellRange The range of cells
+     */
+    private void chunkLoaded(Rectangle cellRange)
+    {
+        if (!(cellMap instanceof ChunkedCellMap))
+        {
+            return;
+        }
+        if (cellMapPainter.hasStaticLayers())
+        {
+            int minX = Math.max(0, cellRange.x);
+            int minY = Math.max(0, cellRange.y);
+            int maxX = Math.min(cellMap.getSizeX(), 
+                cellRange.x + cellRange.width) - 1;
+            int maxY = Math.min(cellMap.getSizeY(), 
+                cellRange.y + cellRange.height) - 1;
+            Rectangle2D bounds = null;
+            Cell cell = null;
+            for (int x = minX; x <= maxX; x++)
+            {
+                for (int y = minY; y <= maxY; y++)
+                {
+                    if (x != minX && x != maxX && y != minY && y != maxY)
+                    {
+                        y = maxY - 1;
+                        continue;
+                    }
+                    cell = cellMap.getCell(x, y, cell);
+                    Rectangle2D cellBounds = cell.getShape().getBounds2D();
+                    if (bounds == null)
+                    {
+                        bounds = cellBounds;
+                    }
+                    else
+                    {
+                        bounds.add(cellBounds);
+                    }
+                }
+            }
+            if (bounds != null)
+            {
+                cellMapPainter.invalidateStaticLayers(bounds);
+            }
+        }
+        repaint();
+    }
+    
+    /**
+     * Discard the image tiles of static layers that contain the cells 
+     * with the given coordinates
+     * 
+     * @param cells The cell coordinates, as (x,y) pairs
+     * @param count The number of cells
+     */
+    private void invalidateStaticTiles(int cells[], int count)
+    {
+        int sizeX = cellMap.getSizeX();
+        int sizeY = cellMap.getSizeY();
+        Cell cell = null;
+        for (int i=0; i<count; i++)
+        {
+            int x = cells[i * 2 + 0];
+            int y = cells[i * 2 + 1];
+            if (x < 0 || x >= sizeX || y < 0 || y >= sizeY)
+            {
+                continue;
+            }
+            cell = cellMap.getCell(x, y, cell);
+            cellMapPainter.invalidateStaticLayers(
+                cell.getShape().getBounds2D());
+        }
+    }
+    
+    /**
+     * Compute the screen regions that are covered by the cells that have
+     * been {@link #markDirty(int, int) marked as dirty}, and trigger a 
+     * repaint of these regions. The regions are aligned to tiles with
+     * a size of {@link #DIRTY_TILE_SIZE}, and adjacent tiles in one row
+     * are combined into one region. The image tiles of static layers
+     * that contain the dirty cells are discarded.
+     */
+    private void repaintDirtyCells()
+    {
+        int cells[];
+        int count;
+        synchronized (dirtyCellsLock)
+        {
+            count = dirtyCellCount;
+            cells = Arrays.copyOf(dirtyCells, count * 2);
+            dirtyCellCount = 0;
+        }
+        if (cellMap == null)
+        {
+            return;
+        }
+        if (cellMapPainter.hasStaticLayers())
+        {
+            invalidateStaticTiles(cells, count);
+        }
+        int w = getWidth();
+        int h = getHeight();
+        if (w <= 0 || h <= 0)
+        {
+            return;
+        }
+        if (!frameImageValid)
+        {
+            repaint();
+            return;
+        }
+        int tilesX = (w + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE;
+        int tilesY = (h + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE;
+        BitSet dirtyTiles = new BitSet(tilesX * tilesY);
+        AffineTransform worldToScreen = getWorldToScreen();
+        int sizeX = cellMap.getSizeX();
+        int sizeY = cellMap.getSizeY();
+        Cell cell = null;
+        for (int i=0; i<count; i++)
+        {
+            int x = cells[i * 2 + 0];
+            int y = cells[i * 2 + 1];
+            if (x < 0 || x >= sizeX || y < 0 || y >= sizeY)
+            {
+                continue;
+            }
+            cell = cellMap.getCell(x, y, cell);
+            Rectangle2D bounds = worldToScreen.createTransformedShape(
+                cell.getShape().getBounds2D()).getBounds2D();
+            int minTileX = (int)Math.floor(
+                (bounds.getMinX() - DIRTY_MARGIN_PX) / DIRTY_TILE_SIZE);
+            int minTileY = (int)Math.floor(
+                (bounds.getMinY() - DIRTY_MARGIN_PX) / DIRTY_TILE_SIZE);
+            int maxTileX = (int)Math.floor(
+                (bounds.getMaxX() + DIRTY_MARGIN_PX) / DIRTY_TILE_SIZE);
+            int maxTileY = (int)Math.floor(
+                (bounds.getMaxY() + DIRTY_MARGIN_PX) / DIRTY_TILE_SIZE);
+            minTileX = Math.max(0, minTileX);
+            minTileY = Math.max(0, minTileY);
+            maxTileX = Math.min(tilesX - 1, maxTileX);
+            maxTileY = Math.min(tilesY - 1, maxTileY);
+            for (int ty = minTileY; ty <= maxTileY; ty++)
+            {
+                for (int tx = minTileX; tx <= maxTileX; tx++)
+                {
+                    dirtyTiles.set(tx + ty * tilesX);
+                }
+            }
+        }
+        
+        Rectangle union = null;
+        for (int ty = 0; ty < tilesY; ty++)
+        {
+            int tx = 0;
+            while (tx < tilesX)
+            {
+                if (!dirtyTiles.get(tx + ty * tilesX))
+                {
+                    tx++;
+                    continue;
+                }
+                int startX = tx;
+                while (tx < tilesX && dirtyTiles.get(tx + ty * tilesX))
+                {
+                    tx++;
+                }
+                Rectangle region = new Rectangle(
+                    startX * DIRTY_TILE_SIZE, ty * DIRTY_TILE_SIZE, 
+                    (tx - startX) * DIRTY_TILE_SIZE, DIRTY_TILE_SIZE);
+                dirtyRegions.add(region);
+                if (union == null)
+                {
+                    union = new Rectangle(region);
+                }
+                else
+                {
+                    union.add(region);
+                }
+            }
+        }
+        if (union == null)
+        {
+            return;
+        }
+        repaintingDirtyRegions = true;
+        repaint(union);
+        repaintingDirtyRegions = false;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * Any repaint request that is not caused by 
+     * {@link #markDirty(int, int) dirty cells} invalidates the cached
+     * image of the last frame.
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height)
+    {
+        if (!repaintingDirtyRegions)
+        {
+            frameImageValid = false;
+        }
+        super.repaint(tm, x, y, width, height);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * Once a cell has been {@link #markDirty(int, int) marked as dirty},
+     * the painters of this panel are painted into an image of the last 
+     * frame. When only dirty cells have to be repainted, then only the 
+     * regions of this image that are covered by these cells are painted
+     * again. As long as no cell has been marked as dirty, the painters
+     * are painted directly.
+     */
+    @Override
+    protected void paintComponent(Graphics gr)
+    {
+        if (!usingFrameImage)
+        {
+            super.paintComponent(gr);
+            return;
+        }
+        Graphics2D g = (Graphics2D)gr;
+        int w = getWidth();
+        int h = getHeight();
+        if (w <= 0 || h <= 0)
+        {
+            return;
+        }
+        
+        // Take the device scaling into account, to not paint
+        // blurry cells on high-resolution screens
+        AffineTransform deviceTransform = g.getTransform();
+        double scaleX = Math.max(1.0, Math.abs(deviceTransform.getScaleX()));
+        double scaleY = Math.max(1.0, Math.abs(deviceTransform.getScaleY()));
+        int iw = (int)Math.ceil(w * scaleX);
+        int ih = (int)Math.ceil(h * scaleY);
+        if (frameImage == null || 
+            frameImage.getWidth() != iw || frameImage.getHeight() != ih)
+        {
+            frameImage = new BufferedImage(
+                iw, ih, BufferedImage.TYPE_INT_ARGB);
+            frameImageValid = false;
+        }
+        Graphics2D ig = frameImage.createGraphics();
+        ig.scale((double)iw / w, (double)ih / h);
+        Composite composite = ig.getComposite();
+        if (!frameImageValid)
+        {
+            // Set the image to be valid before painting, so that
+            // repaint requests that are issued by other threads
+            // during the painting invalidate it again
+            frameImageValid = true;
+            dirtyRegions.clear();
+            ig.setClip(0, 0, w, h);
+            ig.setComposite(AlphaComposite.Clear);
+            ig.fillRect(0, 0, w, h);
+            ig.setComposite(composite);
+            super.paintComponent(ig);
+        }
+        else
+        {
+            for (Rectangle dirtyRegion : dirtyRegions)
+            {
+                ig.setClip(dirtyRegion);
+                ig.setComposite(AlphaComposite.Clear);
+                ig.fill(dirtyRegion);
+                ig.setComposite(composite);
+                super.paintComponent(ig);
+            }
+            dirtyRegions.clear();
+        }
+        ig.dispose();
+        g.drawImage(frameImage, 0, 0, w, h, null);
+    }
     
-}
\ No newline at end of file
+}
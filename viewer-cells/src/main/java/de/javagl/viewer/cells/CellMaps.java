@@ -26,6 +26,8 @@
  */
 package de.javagl.viewer.cells;
 
+import java.awt.Rectangle;
+
 import de.javagl.hexagon.HexagonGrid;
 
 /**
@@ -65,6 +67,57 @@ public class CellMaps
     }
     
     
+    /**
+     * Make sure that the given cell coordinates are valid for a cell map
+     * with the given size
+     * 
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @param sizeX The size of the cell map in x-direction
+     * @param sizeY The size of the cell map in y-direction
+     * @throws IndexOutOfBoundsException If one of the given coordinates
+     * is negative or not smaller than the respective size
+     */
+    static void checkCellCoordinates(int x, int y, int sizeX, int sizeY)
+    {
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY)
+        {
+            throw new IndexOutOfBoundsException(
+                "The cell coordinates (" + x + "," + y + ") are not " +
+                "valid for a cell map of size (" + sizeX + "," + sizeY + ")");
+        }
+    }
+    
+    /**
+     * Store the given range of cell coordinates in the given rectangle,
+     * after clamping it to the valid range of cell coordinates
+     * 
+     * @param x0 The minimum x-coordinate, inclusive
+     * @param y0 The minimum y-coordinate, inclusive
+     * @param x1 The maximum x-coordinate, inclusive
+     * @param y1 The maximum y-coordinate, inclusive
+     * @param sizeX The size of the cell map in x-direction
+     * @param sizeY The size of the cell map in y-direction
+     * @param result The rectangle that will store the result. If this is
+     * <code>null</code>, then a new rectangle will be created and returned.
+     * @return The cell range
+     */
+    static Rectangle clampCellRange(double x0, double y0, 
+        double x1, double y1, int sizeX, int sizeY, Rectangle result)
+    {
+        if (result == null)
+        {
+            result = new Rectangle();
+        }
+        int minX = (int)Math.max(0, Math.min(sizeX, x0));
+        int minY = (int)Math.max(0, Math.min(sizeY, y0));
+        int maxX = (int)Math.max(-1, Math.min(sizeX - 1, x1));
+        int maxY = (int)Math.max(-1, Math.min(sizeY - 1, y1));
+        result.setBounds(minX, minY, 
+            Math.max(0, maxX - minX + 1), Math.max(0, maxY - minY + 1));
+        return result;
+    }
+    
     /**
      * Private constructor to prevent instantiation
      */
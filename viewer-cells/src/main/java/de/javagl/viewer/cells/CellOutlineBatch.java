@@ -0,0 +1,434 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * Package-private class that collects the outlines of multiple cells 
+ * that are drawn with the same paint and stroke, in one path in screen 
+ * coordinates. Straight edges that are shared by adjacent cells are 
+ * only added once.<br>
+ * <br>
+ * The path may be {@link #clearPath() cleared} after it was drawn, 
+ * while the edges are kept, so that edges that are shared with cells
+ * that are added later are still only drawn once. In order to limit 
+ * the memory that is required for the edges, they are only kept up to
+ * a {@link #MAX_EDGE_COUNT maximum number}. Beyond that, edges that 
+ * are shared with cells that have been added earlier may be drawn 
+ * twice.<br>
+ * <br>
+ * Instances of this class may be {@link #reset() reset} and re-used 
+ * for multiple batches, so that the storage for the path and the edges
+ * does not have to be allocated again.
+ */
+final class CellOutlineBatch
+{
+    /**
+     * The factor for quantizing screen coordinates, so that the end
+     * points of shared edges of adjacent cells are considered to be 
+     * equal despite rounding errors
+     */
+    private static final double QUANTIZATION = 256.0;
+    
+    /**
+     * The initial capacity of the {@link EdgeSet}
+     */
+    private static final int INITIAL_EDGE_CAPACITY = 1024;
+    
+    /**
+     * The maximum number of edges that are kept. When this number is
+     * reached, then the {@link EdgeSet} is cleared.
+     */
+    private static final int MAX_EDGE_COUNT = 1 << 18;
+    
+    /**
+     * The path containing the outlines
+     */
+    private final Path2D path;
+    
+    /**
+     * The straight edges that have already been added
+     */
+    private final EdgeSet edges;
+    
+    /**
+     * The coordinates of the current path segment
+     */
+    private final double coords[];
+    
+    /**
+     * Whether the current end point of the {@link #path} is valid
+     */
+    private boolean hasEnd;
+    
+    /**
+     * The x-coordinate of the current end point of the {@link #path}
+     */
+    private double endX;
+    
+    /**
+     * The y-coordinate of the current end point of the {@link #path}
+     */
+    private double endY;
+    
+    /**
+     * Whether any segment was added since the last {@link #reset()}
+     */
+    private boolean empty;
+    
+    /**
+     * Default constructor
+     */
+    CellOutlineBatch()
+    {
+        this.path = new Path2D.Double();
+        this.edges = new EdgeSet(INITIAL_EDGE_CAPACITY);
+        this.coords = new double[6];
+        this.empty = true;
+    }
+    
+    /**
+     * Remove all outlines from this batch
+     */
+    void reset()
+    {
+        clearPath();
+        edges.clear();
+    }
+    
+    /**
+     * Remove the outlines from the path of this batch, but keep the 
+     * edges, so that edges that are added again are not added to the 
+     * path again
+     */
+    void clearPath()
+    {
+        path.reset();
+        hasEnd = false;
+        empty = true;
+    }
+    
+    /**
+     * Returns whether this batch does not contain any outlines
+     * 
+     * @return Whether this batch is empty
+     */
+    boolean isEmpty()
+    {
+        return empty;
+    }
+    
+    /**
+     * Add the outline that is described by the given path iterator.
+     * 
+     * @param pathIterator The path iterator, in screen coordinates
+     */
+    void append(PathIterator pathIterator)
+    {
+        double startX = 0;
+        double startY = 0;
+        double lastX = 0;
+        double lastY = 0;
+        while (!pathIterator.isDone())
+        {
+            int type = pathIterator.currentSegment(coords);
+            switch (type)
+            {
+                case PathIterator.SEG_MOVETO:
+                    startX = coords[0];
+                    startY = coords[1];
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+                    
+                case PathIterator.SEG_LINETO:
+                    appendEdge(lastX, lastY, coords[0], coords[1]);
+                    lastX = coords[0];
+                    lastY = coords[1];
+                    break;
+                    
+                case PathIterator.SEG_QUADTO:
+                    moveTo(lastX, lastY);
+                    path.quadTo(coords[0], coords[1], coords[2], coords[3]);
+                    lastX = coords[2];
+                    lastY = coords[3];
+                    setEnd(lastX, lastY);
+                    break;
+                    
+                case PathIterator.SEG_CUBICTO:
+                    moveTo(lastX, lastY);
+                    path.curveTo(coords[0], coords[1], 
+                        coords[2], coords[3], coords[4], coords[5]);
+                    lastX = coords[4];
+                    lastY = coords[5];
+                    setEnd(lastX, lastY);
+                    break;
+                    
+                case PathIterator.SEG_CLOSE:
+                    if (lastX != startX || lastY != startY)
+                    {
+                        appendEdge(lastX, lastY, startX, startY);
+                    }
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+                    
+                default:
+                    break;
+            }
+            pathIterator.next();
+        }
+    }
+    
+    /**
+     * Add the straight edge between the given points to the path, if 
+     * it was not added yet
+     * 
+     * @param x0 The x-coordinate of the start point
+     * @param y0 The y-coordinate of the start point
+     * @param x1 The x-coordinate of the end point
+     * @param y1 The y-coordinate of the end point
+     */
+    private void appendEdge(double x0, double y0, double x1, double y1)
+    {
+        long qx0 = Math.round(x0 * QUANTIZATION);
+        long qy0 = Math.round(y0 * QUANTIZATION);
+        long qx1 = Math.round(x1 * QUANTIZATION);
+        long qy1 = Math.round(y1 * QUANTIZATION);
+        if (edges.size() >= MAX_EDGE_COUNT)
+        {
+            edges.clear();
+        }
+        boolean added = false;
+        if (qx0 < qx1 || (qx0 == qx1 && qy0 <= qy1))
+        {
+            added = edges.add(qx0, qy0, qx1, qy1);
+        }
+        else
+        {
+            added = edges.add(qx1, qy1, qx0, qy0);
+        }
+        if (!added)
+        {
+            return;
+        }
+        moveTo(x0, y0);
+        path.lineTo(x1, y1);
+        setEnd(x1, y1);
+    }
+    
+    /**
+     * Start a new sub-path at the given point, unless the current 
+     * sub-path already ends at this point
+     * 
+     * @param x The x-coordinate
+     * @param y The y-coordinate
+     */
+    private void moveTo(double x, double y)
+    {
+        if (!hasEnd || endX != x || endY != y)
+        {
+            path.moveTo(x, y);
+        }
+    }
+    
+    /**
+     * Set the current end point of the path
+     * 
+     * @param x The x-coordinate
+     * @param y The y-coordinate
+     */
+    private void setEnd(double x, double y)
+    {
+        empty = false;
+        hasEnd = true;
+        endX = x;
+        endY = y;
+    }
+    
+    /**
+     * Returns the path containing the outlines
+     * 
+     * @return The path
+     */
+    Path2D getPath()
+    {
+        return path;
+    }
+    
+    /**
+     * A hash set of straight edges, where each edge is given by the 
+     * quantized coordinates of its end points, which are ordered so that
+     * the edge does not depend on its direction. The coordinates are 
+     * stored in a primitive array with open addressing. Each slot has a
+     * stamp, so that the set can be cleared without touching the slots.
+     */
+    private static final class EdgeSet
+    {
+        /**
+         * The coordinates of the edges, four for each slot
+         */
+        private long coordinates[];
+        
+        /**
+         * The stamps of the slots. A slot is occupied if its stamp is
+         * equal to the current {@link #generation}.
+         */
+        private int stamps[];
+        
+        /**
+         * The current generation, which is incremented when the set 
+         * is cleared
+         */
+        private int generation;
+        
+        /**
+         * The number of edges in this set
+         */
+        private int size;
+        
+        /**
+         * Creates a new set with the given initial capacity, which must
+         * be a power of two
+         * 
+         * @param capacity The capacity
+         */
+        EdgeSet(int capacity)
+        {
+            this.coordinates = new long[capacity * 4];
+            this.stamps = new int[capacity];
+            this.generation = 1;
+        }
+        
+        /**
+         * Remove all edges from this set
+         */
+        void clear()
+        {
+            size = 0;
+            generation++;
+            if (generation == Integer.MAX_VALUE)
+            {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+        }
+        
+        /**
+         * Returns the number of edges in this set
+         * 
+         * @return The number of edges
+         */
+        int size()
+        {
+            return size;
+        }
+        
+        /**
+         * Add the given edge to this set, if it is not contained yet
+         * 
+         * @param x0 The x-coordinate of the first point
+         * @param y0 The y-coordinate of the first point
+         * @param x1 The x-coordinate of the second point
+         * @param y1 The y-coordinate of the second point
+         * @return Whether the edge was added
+         */
+        boolean add(long x0, long y0, long x1, long y1)
+        {
+            if ((size + 1) * 2 > stamps.length)
+            {
+                grow();
+            }
+            int mask = stamps.length - 1;
+            int slot = hash(x0, y0, x1, y1) & mask;
+            while (stamps[slot] == generation)
+            {
+                int c = slot * 4;
+                if (coordinates[c + 0] == x0 && coordinates[c + 1] == y0 &&
+                    coordinates[c + 2] == x1 && coordinates[c + 3] == y1)
+                {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int c = slot * 4;
+            coordinates[c + 0] = x0;
+            coordinates[c + 1] = y0;
+            coordinates[c + 2] = x1;
+            coordinates[c + 3] = y1;
+            stamps[slot] = generation;
+            size++;
+            return true;
+        }
+        
+        /**
+         * Double the capacity of this set, and insert the edges that it
+         * contains into the new slots
+         */
+        private void grow()
+        {
+            long oldCoordinates[] = coordinates;
+            int oldStamps[] = stamps;
+            int oldGeneration = generation;
+            coordinates = new long[oldCoordinates.length * 2];
+            stamps = new int[oldStamps.length * 2];
+            generation = 1;
+            size = 0;
+            for (int i = 0; i < oldStamps.length; i++)
+            {
+                if (oldStamps[i] == oldGeneration)
+                {
+                    int c = i * 4;
+                    add(oldCoordinates[c + 0], oldCoordinates[c + 1], 
+                        oldCoordinates[c + 2], oldCoordinates[c + 3]);
+                }
+            }
+        }
+        
+        /**
+         * Compute the hash code of the given edge
+         * 
+         * @param x0 The x-coordinate of the first point
+         * @param y0 The y-coordinate of the first point
+         * @param x1 The x-coordinate of the second point
+         * @param y1 The y-coordinate of the second point
+         * @return The hash code
+         */
+        private static int hash(long x0, long y0, long x1, long y1)
+        {
+            long h = x0;
+            h = h * 31 + y0;
+            h = h * 31 + x1;
+            h = h * 31 + y1;
+            h *= 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * A spatial index for the cells of a {@link CellMap}, which allows
+ * looking up the cell at a certain world position, regardless of the
+ * layout of the cells.<br>
+ * <br>
+ * The bounding rectangle of all cells is divided into a regular grid of
+ * buckets, whose size is the average size of the cells. Each bucket 
+ * stores the cells whose bounds overlap the bucket. A lookup only has 
+ * to test the few cells that are stored in the bucket that contains
+ * the given position.
+ */
+final class CellSpatialIndex
+{
+    /**
+     * The minimum x-coordinate of the bucket grid
+     */
+    private final double minX;
+    
+    /**
+     * The minimum y-coordinate of the bucket grid
+     */
+    private final double minY;
+    
+    /**
+     * The size of one bucket in x-direction
+     */
+    private final double bucketSizeX;
+    
+    /**
+     * The size of one bucket in y-direction
+     */
+    private final double bucketSizeY;
+    
+    /**
+     * The number of buckets in x-direction
+     */
+    private final int bucketsX;
+    
+    /**
+     * The number of buckets in y-direction
+     */
+    private final int bucketsY;
+    
+    /**
+     * The cells in each bucket, where the bucket (x,y) is stored at 
+     * index x+y*bucketsX. Empty buckets may be <code>null</code>.
+     */
+    private final Cell[][] buckets;
+    
+    /**
+     * Creates a new spatial index for the given cell map. The shapes of
+     * the cells may not change after the index was created.
+     * 
+     * @param cellMap The {@link CellMap}
+     */
+    CellSpatialIndex(CellMap cellMap)
+    {
+        int sizeX = cellMap.getSizeX();
+        int sizeY = cellMap.getSizeY();
+        int cellCount = sizeX * sizeY;
+        Rectangle2D[] cellBounds = new Rectangle2D[cellCount];
+        Rectangle2D totalBounds = null;
+        double sumSizeX = 0;
+        double sumSizeY = 0;
+        for (int y = 0; y < sizeY; y++)
+        {
+            for (int x = 0; x < sizeX; x++)
+            {
+                Cell cell = cellMap.getCell(x, y);
+                Rectangle2D bounds = cell.getShape().getBounds2D();
+                cellBounds[x + y * sizeX] = bounds;
+                sumSizeX += bounds.getWidth();
+                sumSizeY += bounds.getHeight();
+                if (totalBounds == null)
+                {
+                    totalBounds = new Rectangle2D.Double();
+                    totalBounds.setRect(bounds);
+                }
+                else
+                {
+                    totalBounds.add(bounds);
+                }
+            }
+        }
+        if (totalBounds == null)
+        {
+            totalBounds = new Rectangle2D.Double();
+        }
+        this.minX = totalBounds.getMinX();
+        this.minY = totalBounds.getMinY();
+        int countX = 1;
+        int countY = 1;
+        if (cellCount > 0)
+        {
+            double averageSizeX = sumSizeX / cellCount;
+            double averageSizeY = sumSizeY / cellCount;
+            countX = computeBucketCount(
+                totalBounds.getWidth(), averageSizeX, sizeX);
+            countY = computeBucketCount(
+                totalBounds.getHeight(), averageSizeY, sizeY);
+        }
+        this.bucketsX = countX;
+        this.bucketsY = countY;
+        this.bucketSizeX = Math.max(
+            Double.MIN_NORMAL, totalBounds.getWidth() / bucketsX);
+        this.bucketSizeY = Math.max(
+            Double.MIN_NORMAL, totalBounds.getHeight() / bucketsY);
+        
+        int[] counts = new int[bucketsX * bucketsY];
+        for (Rectangle2D bounds : cellBounds)
+        {
+            int bx0 = computeBucketX(bounds.getMinX());
+            int bx1 = computeBucketX(bounds.getMaxX());
+            int by0 = computeBucketY(bounds.getMinY());
+            int by1 = computeBucketY(bounds.getMaxY());
+            for (int by = by0; by <= by1; by++)
+            {
+                for (int bx = bx0; bx <= bx1; bx++)
+                {
+                    counts[bx + by * bucketsX]++;
+                }
+            }
+        }
+        this.buckets = new Cell[bucketsX * bucketsY][];
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] > 0)
+            {
+                buckets[i] = new Cell[counts[i]];
+                counts[i] = 0;
+            }
+        }
+        for (int y = 0; y < sizeY; y++)
+        {
+            for (int x = 0; x < sizeX; x++)
+            {
+                Rectangle2D bounds = cellBounds[x + y * sizeX];
+                int bx0 = computeBucketX(bounds.getMinX());
+                int bx1 = computeBucketX(bounds.getMaxX());
+                int by0 = computeBucketY(bounds.getMinY());
+                int by1 = computeBucketY(bounds.getMaxY());
+                for (int by = by0; by <= by1; by++)
+                {
+                    for (int bx = bx0; bx <= bx1; bx++)
+                    {
+                        int index = bx + by * bucketsX;
+                        buckets[index][counts[index]++] = 
+                            cellMap.getCell(x, y);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compute the number of buckets along one axis
+     * 
+     * @param totalSize The total size of all cells along the axis
+     * @param averageSize The average size of one cell along the axis
+     * @param cellCount The number of cells along the axis
+     * @return The number of buckets
+     */
+    private static int computeBucketCount(
+        double totalSize, double averageSize, int cellCount)
+    {
+        if (!(averageSize > 0))
+        {
+            return 1;
+        }
+        double count = Math.ceil(totalSize / averageSize);
+        return (int)Math.max(1, Math.min(count, Math.max(1, cellCount * 2)));
+    }
+    
+    /**
+     * Compute the bucket x-index for the given x-coordinate, clamped to
+     * the valid range
+     * 
+     * @param x The x-coordinate
+     * @return The bucket index
+     */
+    private int computeBucketX(double x)
+    {
+        int bx = (int)Math.floor((x - minX) / bucketSizeX);
+        return Math.max(0, Math.min(bucketsX - 1, bx));
+    }
+
+    /**
+     * Compute the bucket y-index for the given y-coordinate, clamped to
+     * the valid range
+     * 
+     * @param y The y-coordinate
+     * @return The bucket index
+     */
+    private int computeBucketY(double y)
+    {
+        int by = (int)Math.floor((y - minY) / bucketSizeY);
+        return Math.max(0, Math.min(bucketsY - 1, by));
+    }
+    
+    /**
+     * Returns the cell whose shape contains the given point, or 
+     * <code>null</code> if there is no such cell
+     * 
+     * @param worldX The world x-coordinate
+     * @param worldY The world y-coordinate
+     * @return The cell
+     */
+    Cell getCellAt(double worldX, double worldY)
+    {
+        double fx = (worldX - minX) / bucketSizeX;
+        double fy = (worldY - minY) / bucketSizeY;
+        if (!(fx >= 0 && fx <= bucketsX && fy >= 0 && fy <= bucketsY))
+        {
+            return null;
+        }
+        int bx = Math.min(bucketsX - 1, (int)fx);
+        int by = Math.min(bucketsY - 1, (int)fy);
+        Cell[] bucket = buckets[bx + by * bucketsX];
+        if (bucket == null)
+        {
+            return null;
+        }
+        for (Cell cell : bucket)
+        {
+            Shape shape = cell.getShape();
+            if (shape.contains(worldX, worldY))
+            {
+                return cell;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.awt.Rectangle;
+
+/**
+ * Package-private class that groups the cells in a certain range by 
+ * their style keys, as given by {@link CellStyles}. It maintains the 
+ * orders in which the cells should be filled and drawn, so that cells 
+ * with the same paint and stroke are painted one after another. The 
+ * orders are only re-computed when the cell range or the 
+ * {@link CellStyles#getVersion() version} of the styles changes.
+ */
+final class CellStyleBatches
+{
+    /**
+     * The {@link CellStyles} for which the orders have been computed
+     */
+    private CellStyles cellStyles;
+    
+    /**
+     * The version of the {@link #cellStyles} for which the orders
+     * have been computed
+     */
+    private long version;
+    
+    /**
+     * The range of cells for which the orders have been computed
+     */
+    private final Rectangle cellRange;
+    
+    /**
+     * The number of cells in the current range
+     */
+    private int cellCount;
+    
+    /**
+     * The indices of the cells in the current range, row by row
+     */
+    private int rangeIndices[];
+    
+    /**
+     * The style keys of the cells, used for sorting
+     */
+    private int keys[];
+    
+    /**
+     * The indices of the cells, in the order in which they should be 
+     * filled. Only the first {@link #cellCount} elements are valid.
+     */
+    private int fillOrder[];
+    
+    /**
+     * The indices of the cells, in the order in which they should be 
+     * drawn. Only the first {@link #cellCount} elements are valid.
+     */
+    private int drawOrder[];
+    
+    /**
+     * Default constructor
+     */
+    CellStyleBatches()
+    {
+        this.cellRange = new Rectangle();
+        this.rangeIndices = new int[0];
+        this.keys = new int[0];
+        this.fillOrder = new int[0];
+        this.drawOrder = new int[0];
+    }
+    
+    /**
+     * Make sure that the orders are up to date for the given 
+     * {@link CellStyles} and the given range of cells
+     * 
+     * @param newCellStyles The {@link CellStyles}
+     * @param newCellRange The range of cells
+     */
+    void update(CellStyles newCellStyles, Rectangle newCellRange)
+    {
+        if (cellStyles == newCellStyles && 
+            version == newCellStyles.getVersion() &&
+            cellRange.equals(newCellRange))
+        {
+            return;
+        }
+        cellStyles = newCellStyles;
+        version = newCellStyles.getVersion();
+        cellRange.setBounds(newCellRange);
+        cellCount = cellRange.width * cellRange.height;
+        if (rangeIndices.length < cellCount)
+        {
+            rangeIndices = new int[cellCount];
+            keys = new int[cellCount];
+            fillOrder = new int[cellCount];
+            drawOrder = new int[cellCount];
+        }
+        int k = 0;
+        for (int y=cellRange.y; y<cellRange.y+cellRange.height; y++)
+        {
+            for (int x=cellRange.x; x<cellRange.x+cellRange.width; x++)
+            {
+                rangeIndices[k++] = cellStyles.getIndex(x, y);
+            }
+        }
+        
+        int paintCount = cellStyles.getPaintCount();
+        int strokeCount = cellStyles.getStrokeCount();
+        
+        boolean hasFillPaints = cellStyles.hasFillPaints();
+        for (int i=0; i<cellCount; i++)
+        {
+            int index = rangeIndices[i];
+            keys[i] = hasFillPaints ? 
+                cellStyles.getFillPaintIndex(index) + 1 : 0;
+        }
+        sort(paintCount + 1, fillOrder);
+        
+        boolean hasDrawPaints = cellStyles.hasDrawPaints();
+        boolean hasDrawStrokes = cellStyles.hasDrawStrokes();
+        for (int i=0; i<cellCount; i++)
+        {
+            int index = rangeIndices[i];
+            int paintKey = hasDrawPaints ? 
+                cellStyles.getDrawPaintIndex(index) + 1 : 0;
+            int strokeKey = hasDrawStrokes ? 
+                cellStyles.getDrawStrokeIndex(index) + 1 : 0;
+            keys[i] = paintKey * (strokeCount + 1) + strokeKey;
+        }
+        sort((paintCount + 1) * (strokeCount + 1), drawOrder);
+    }
+    
+    /**
+     * Sort the {@link #rangeIndices} by the current {@link #keys}, using 
+     * a counting sort, and write the result into the given array
+     * 
+     * @param keyCount The number of different keys
+     * @param result The array that will store the result
+     */
+    private void sort(int keyCount, int result[])
+    {
+        int starts[] = new int[keyCount + 1];
+        for (int i=0; i<cellCount; i++)
+        {
+            starts[keys[i] + 1]++;
+        }
+        for (int i=0; i<keyCount; i++)
+        {
+            starts[i + 1] += starts[i];
+        }
+        for (int i=0; i<cellCount; i++)
+        {
+            result[starts[keys[i]]++] = rangeIndices[i];
+        }
+    }
+    
+    /**
+     * Returns the number of cells in the current range
+     * 
+     * @return The number of cells
+     */
+    int getCellCount()
+    {
+        return cellCount;
+    }
+    
+    /**
+     * Returns the indices of the cells, in the order in which they should
+     * be filled. Only the first {@link #getCellCount()} elements are valid.
+     * 
+     * @return The fill order
+     */
+    int[] getFillOrder()
+    {
+        return fillOrder;
+    }
+    
+    /**
+     * Returns the indices of the cells, in the order in which they should
+     * be drawn. Only the first {@link #getCellCount()} elements are valid.
+     * 
+     * @return The draw order
+     */
+    int[] getDrawOrder()
+    {
+        return drawOrder;
+    }
+    
+}
@@ -0,0 +1,465 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.awt.Paint;
+import java.awt.Stroke;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A columnar storage of the styles of the cells of a {@link CellMap}, 
+ * which may be assigned to a {@link BasicCellPainter} via 
+ * {@link BasicCellPainter#setCellStyles(CellStyles)}.<br>
+ * <br>
+ * The styles are stored as primitive arrays that contain one element 
+ * for each cell. The element for the cell with the coordinates (x,y) 
+ * is stored at the {@link #getIndex(int, int) index} 
+ * <code>x + y * sizeX</code>. The fill paints, draw paints and draw 
+ * strokes are given as indices into a {@link #setPaints(Paint...) paint
+ * palette} and a {@link #setStrokes(Stroke...) stroke palette}. An index
+ * that is not valid for the respective palette (for example, -1) means 
+ * that the corresponding painting operation will be skipped for the 
+ * respective cell.<br>
+ * <br>
+ * The arrays are created when they are first obtained, and are returned
+ * directly, so that they may be filled, for example, with the results 
+ * of a simulation. As long as one of the arrays has not been obtained, 
+ * the {@link BasicCellPainter} will use the corresponding function 
+ * for the respective style, as before. After the contents of the arrays
+ * have been modified, {@link #markModified()} has to be called, so that
+ * the painter can update data that it derived from the styles. 
+ */
+public final class CellStyles
+{
+    /**
+     * The size of the cell map, in number of cells, in x-direction
+     */
+    private final int sizeX;
+    
+    /**
+     * The size of the cell map, in number of cells, in y-direction
+     */
+    private final int sizeY;
+    
+    /**
+     * The paint palette
+     */
+    private Paint paints[];
+    
+    /**
+     * The stroke palette
+     */
+    private Stroke strokes[];
+    
+    /**
+     * The indices of the fill paints. This is <code>null</code> until 
+     * it is obtained with {@link #getFillPaintIndices()}.
+     */
+    private int fillPaintIndices[];
+    
+    /**
+     * The indices of the draw paints. This is <code>null</code> until 
+     * it is obtained with {@link #getDrawPaintIndices()}.
+     */
+    private int drawPaintIndices[];
+    
+    /**
+     * The indices of the draw strokes. This is <code>null</code> until 
+     * it is obtained with {@link #getDrawStrokeIndices()}.
+     */
+    private int drawStrokeIndices[];
+    
+    /**
+     * The scaling factors. This is <code>null</code> until it is 
+     * obtained with {@link #getScalings()}.
+     */
+    private double scalings[];
+    
+    /**
+     * The version, which is incremented with each modification
+     */
+    private long version;
+    
+    /**
+     * Creates new cell styles for a {@link CellMap} with the given size
+     * 
+     * @param sizeX The size of the cell map, in number of cells, in 
+     * x-direction
+     * @param sizeY The size of the cell map, in number of cells, in 
+     * y-direction
+     * @throws IllegalArgumentException If one of the sizes is negative,
+     * or the total number of cells is larger than 
+     * <code>Integer.MAX_VALUE</code>
+     */
+    public CellStyles(int sizeX, int sizeY)
+    {
+        if (sizeX < 0 || sizeY < 0)
+        {
+            throw new IllegalArgumentException(
+                "The size may not be negative, but is "+sizeX+"x"+sizeY);
+        }
+        if ((long)sizeX * sizeY > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(
+                "The number of cells is too large: "+sizeX+"x"+sizeY);
+        }
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.paints = new Paint[0];
+        this.strokes = new Stroke[0];
+    }
+    
+    /**
+     * Returns the size of the cell map, in number of cells, in x-direction
+     * 
+     * @return The size in x-direction
+     */
+    public int getSizeX()
+    {
+        return sizeX;
+    }
+    
+    /**
+     * Returns the size of the cell map, in number of cells, in y-direction
+     * 
+     * @return The size in y-direction
+     */
+    public int getSizeY()
+    {
+        return sizeY;
+    }
+    
+    /**
+     * Returns the index of the elements for the cell with the given 
+     * coordinates in the arrays of this instance. This is 
+     * <code>x + y * sizeX</code>.
+     * 
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @return The index
+     */
+    public int getIndex(int x, int y)
+    {
+        return x + y * sizeX;
+    }
+    
+    /**
+     * Set the paint palette. The {@link #getFillPaintIndices() fill paint 
+     * indices} and {@link #getDrawPaintIndices() draw paint indices} 
+     * refer to the given paints. A copy of the given array will be stored.
+     * This will {@link #markModified() mark} the styles as modified.
+     * 
+     * @param paints The paints
+     * @throws NullPointerException If the given array is <code>null</code>
+     */
+    public void setPaints(Paint ... paints)
+    {
+        Objects.requireNonNull(paints, "The paints may not be null");
+        this.paints = paints.clone();
+        markModified();
+    }
+    
+    /**
+     * Set the stroke palette. The {@link #getDrawStrokeIndices() draw 
+     * stroke indices} refer to the given strokes. A copy of the given 
+     * array will be stored. This will {@link #markModified() mark} the 
+     * styles as modified.
+     * 
+     * @param strokes The strokes
+     * @throws NullPointerException If the given array is <code>null</code>
+     */
+    public void setStrokes(Stroke ... strokes)
+    {
+        Objects.requireNonNull(strokes, "The strokes may not be null");
+        this.strokes = strokes.clone();
+        markModified();
+    }
+    
+    /**
+     * Returns the array containing the indices of the fill paints of 
+     * the cells in the {@link #setPaints(Paint...) paint palette}. 
+     * When this array is created, it is filled with -1, meaning that
+     * the cells will not be filled.
+     * 
+     * @return The fill paint indices
+     */
+    public int[] getFillPaintIndices()
+    {
+        if (fillPaintIndices == null)
+        {
+            fillPaintIndices = createIndices();
+        }
+        return fillPaintIndices;
+    }
+    
+    /**
+     * Returns the array containing the indices of the draw paints of 
+     * the cells in the {@link #setPaints(Paint...) paint palette}. 
+     * When this array is created, it is filled with -1, meaning that
+     * the cells will not be drawn.
+     * 
+     * @return The draw paint indices
+     */
+    public int[] getDrawPaintIndices()
+    {
+        if (drawPaintIndices == null)
+        {
+            drawPaintIndices = createIndices();
+        }
+        return drawPaintIndices;
+    }
+    
+    /**
+     * Returns the array containing the indices of the draw strokes of 
+     * the cells in the {@link #setStrokes(Stroke...) stroke palette}. 
+     * When this array is created, it is filled with -1, meaning that
+     * the cells will not be drawn.
+     * 
+     * @return The draw stroke indices
+     */
+    public int[] getDrawStrokeIndices()
+    {
+        if (drawStrokeIndices == null)
+        {
+            drawStrokeIndices = createIndices();
+        }
+        return drawStrokeIndices;
+    }
+    
+    /**
+     * Returns the array containing the scaling factors of the cells. 
+     * When this array is created, it is filled with 1.0.
+     * 
+     * @return The scaling factors
+     */
+    public double[] getScalings()
+    {
+        if (scalings == null)
+        {
+            scalings = new double[sizeX * sizeY];
+            Arrays.fill(scalings, 1.0);
+        }
+        return scalings;
+    }
+    
+    /**
+     * Create an array for palette indices, filled with -1
+     * 
+     * @return The array
+     */
+    private int[] createIndices()
+    {
+        int indices[] = new int[sizeX * sizeY];
+        Arrays.fill(indices, -1);
+        return indices;
+    }
+    
+    /**
+     * Notify this instance that the contents of the arrays have been 
+     * modified. This will increase the {@link #getVersion() version}.
+     */
+    public void markModified()
+    {
+        version++;
+    }
+    
+    /**
+     * Returns the version of these styles. This is increased each time
+     * the styles are {@link #markModified() marked as modified}.
+     * 
+     * @return The version
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+    
+    /**
+     * Returns the number of paints in the paint palette
+     * 
+     * @return The number of paints
+     */
+    int getPaintCount()
+    {
+        return paints.length;
+    }
+    
+    /**
+     * Returns the number of strokes in the stroke palette
+     * 
+     * @return The number of strokes
+     */
+    int getStrokeCount()
+    {
+        return strokes.length;
+    }
+    
+    /**
+     * Returns whether the fill paint indices have been created
+     * 
+     * @return Whether there are fill paints
+     */
+    boolean hasFillPaints()
+    {
+        return fillPaintIndices != null;
+    }
+    
+    /**
+     * Returns whether the draw paint indices have been created
+     * 
+     * @return Whether there are draw paints
+     */
+    boolean hasDrawPaints()
+    {
+        return drawPaintIndices != null;
+    }
+    
+    /**
+     * Returns whether the draw stroke indices have been created
+     * 
+     * @return Whether there are draw strokes
+     */
+    boolean hasDrawStrokes()
+    {
+        return drawStrokeIndices != null;
+    }
+    
+    /**
+     * Returns whether the scaling factors have been created
+     * 
+     * @return Whether there are scalings
+     */
+    boolean hasScalings()
+    {
+        return scalings != null;
+    }
+    
+    /**
+     * Returns the index of the fill paint of the cell with the given 
+     * index, or -1 if the index is not valid for the paint palette
+     * 
+     * @param index The index of the cell
+     * @return The index of the fill paint
+     */
+    int getFillPaintIndex(int index)
+    {
+        return validate(fillPaintIndices[index], paints.length);
+    }
+    
+    /**
+     * Returns the index of the draw paint of the cell with the given 
+     * index, or -1 if the index is not valid for the paint palette
+     * 
+     * @param index The index of the cell
+     * @return The index of the draw paint
+     */
+    int getDrawPaintIndex(int index)
+    {
+        return validate(drawPaintIndices[index], paints.length);
+    }
+    
+    /**
+     * Returns the index of the draw stroke of the cell with the given 
+     * index, or -1 if the index is not valid for the stroke palette
+     * 
+     * @param index The index of the cell
+     * @return The index of the draw stroke
+     */
+    int getDrawStrokeIndex(int index)
+    {
+        return validate(drawStrokeIndices[index], strokes.length);
+    }
+    
+    /**
+     * Returns the given palette index if it is in [0, size), and -1
+     * otherwise
+     * 
+     * @param paletteIndex The palette index
+     * @param size The size of the palette
+     * @return The validated index
+     */
+    private static int validate(int paletteIndex, int size)
+    {
+        if (paletteIndex >= 0 && paletteIndex < size)
+        {
+            return paletteIndex;
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the fill paint for the cell with the given index, or 
+     * <code>null</code> if the cell should not be filled
+     * 
+     * @param index The index of the cell
+     * @return The fill paint
+     */
+    Paint getFillPaint(int index)
+    {
+        int paintIndex = getFillPaintIndex(index);
+        return paintIndex < 0 ? null : paints[paintIndex];
+    }
+    
+    /**
+     * Returns the draw paint for the cell with the given index, or 
+     * <code>null</code> if the cell should not be drawn
+     * 
+     * @param index The index of the cell
+     * @return The draw paint
+     */
+    Paint getDrawPaint(int index)
+    {
+        int paintIndex = getDrawPaintIndex(index);
+        return paintIndex < 0 ? null : paints[paintIndex];
+    }
+    
+    /**
+     * Returns the draw stroke for the cell with the given index, or 
+     * <code>null</code> if the cell should not be drawn
+     * 
+     * @param index The index of the cell
+     * @return The draw stroke
+     */
+    Stroke getDrawStroke(int index)
+    {
+        int strokeIndex = getDrawStrokeIndex(index);
+        return strokeIndex < 0 ? null : strokes[strokeIndex];
+    }
+    
+    /**
+     * Returns the scaling for the cell with the given index
+     * 
+     * @param index The index of the cell
+     * @return The scaling
+     */
+    double getScaling(int index)
+    {
+        return scalings[index];
+    }
+    
+}
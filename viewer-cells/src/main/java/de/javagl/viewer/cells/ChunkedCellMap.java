@@ -0,0 +1,993 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Implementation of a {@link CellMap} that stores one <code>int</code> 
+ * value for each cell, in chunks of cells that are created lazily. This
+ * is intended for very large maps where most of the cells are empty, 
+ * meaning that their value is 0.<br>
+ * <br>
+ * The geometry of the cells is given by another {@link CellMap}, which
+ * usually is one of the implicit maps that are created with 
+ * {@link CellMaps}. All methods of the {@link CellMap} interface are 
+ * delegated to this map, and do not access the chunks. The values of 
+ * the cells may be used by the cell painters, for example, as in
+ * <pre><code>
+ * ChunkedCellMap cellMap = new ChunkedCellMap(
+ *     CellMaps.createRectangle(1000000, 1000000, 1.0, 1.0), 64);
+ * cellMap.setChunkStore(chunkStore);
+ * cellMap.setLoadExecutor(loadExecutor, null);
+ * basicCellPainter.setFillPaintFunction(cell -&gt; 
+ *     palette[cellMap.getResidentValue(cell.getX(), cell.getY(), 0)]);
+ * basicCellPainter.setRasterThreshold(2.0);
+ * </code></pre>
+ * When the map is zoomed out, far more cells are visible than can be
+ * painted individually. When the cells are smaller than the 
+ * {@link BasicCellPainter#setRasterThreshold(double) raster threshold},
+ * or there are more visible cells than pixels on the screen and the
+ * painter only fills the cells with colors, then only about one cell 
+ * per pixel is painted, as a raster image.<br>
+ * <br>
+ * The chunks are square blocks of cells. A chunk is created when a 
+ * non-zero value is set for one of its cells. When all values of a 
+ * chunk become 0, then the chunk is removed.<br>
+ * <br>
+ * When a {@link CellChunkStore} is {@link #setChunkStore(CellChunkStore) 
+ * set}, then the chunks that have not been used recently are saved and
+ * evicted from memory, as soon as the chunks that are in memory exceed
+ * the {@link #setMemoryBudget(long) memory budget}. They are loaded 
+ * again when their values are accessed, for example, when they become
+ * visible. Without a store, all chunks remain in memory.<br>
+ * <br>
+ * Painters should read the values with 
+ * {@link #getResidentValue(int, int, int)}. When a 
+ * {@link #setLoadExecutor(Executor, Runnable) load executor} is set, 
+ * then this method does not access the store. Instead, it returns a 
+ * placeholder value for chunks that are not in memory, and loads them
+ * in the background. When the map is painted in a {@link CellMapPanel},
+ * then the chunks that are visible are 
+ * {@link #setPinnedCellRange(Rectangle) pinned}, so that they are not
+ * evicted while they are painted. When a chunk was loaded, the panel 
+ * discards the tiles of {@link CellMapPanel#setLayerStatic(int, boolean)
+ * static layers} that contain the chunk, and is repainted. When the 
+ * map is painted otherwise, then the callback that is passed to the 
+ * load executor has to trigger the repaint.<br>
+ * <br>
+ * The methods that access the values are synchronized, so that the 
+ * values may be modified by other threads while the map is painted. 
+ * If an evicted chunk can not be saved or loaded, then an
+ * {@link UncheckedIOException} is thrown.
+ */
+public final class ChunkedCellMap implements CellMap
+{
+    /**
+     * The default memory budget, in bytes
+     */
+    private static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    
+    /**
+     * The factor by which the number of chunks that are known to be 
+     * empty may exceed the number of chunks that may be in memory
+     */
+    private static final int EMPTY_CHUNK_CACHE_FACTOR = 16;
+    
+    /**
+     * The factor by which the number of chunks that are in memory may 
+     * exceed the number that is given by the memory budget, when the 
+     * additional chunks are pinned
+     */
+    private static final int PINNED_CHUNK_FACTOR = 4;
+    
+    /**
+     * A chunk of cell values
+     */
+    private static final class Chunk
+    {
+        /**
+         * The values, row by row
+         */
+        final int values[];
+        
+        /**
+         * The number of values that are not 0
+         */
+        int nonZeroCount;
+        
+        /**
+         * Whether the values have been modified since they have been
+         * loaded or saved
+         */
+        boolean modified;
+        
+        /**
+         * Whether the chunk has been saved in the store
+         */
+        boolean stored;
+        
+        /**
+         * Creates a new chunk with the given values
+         * 
+         * @param values The values
+         */
+        Chunk(int values[])
+        {
+            this.values = values;
+            for (int value : values)
+            {
+                if (value != 0)
+                {
+                    nonZeroCount++;
+                }
+            }
+        }
+    }
+    
+    /**
+     * The {@link CellMap} that defines the geometry of the cells
+     */
+    private final CellMap cellMap;
+    
+    /**
+     * The size of the chunks, in number of cells, in x- and y-direction
+     */
+    private final int chunkSize;
+    
+    /**
+     * The chunks that are currently in memory, in the order of their 
+     * last access
+     */
+    private final LinkedHashMap<Long, Chunk> chunks;
+    
+    /**
+     * The keys of the chunks that are known to not exist in the store,
+     * in the order of their last access
+     */
+    private final LinkedHashMap<Long, Boolean> emptyChunks;
+    
+    /**
+     * The {@link CellChunkStore}. May be <code>null</code>.
+     */
+    private CellChunkStore chunkStore;
+    
+    /**
+     * The maximum number of chunks that may be in memory when there
+     * is a {@link #chunkStore}
+     */
+    private int maxResidentChunks;
+    
+    /**
+     * The {@link #setLoadExecutor(Executor, Runnable) load executor}.
+     * May be <code>null</code>.
+     */
+    private Executor loadExecutor;
+    
+    /**
+     * The callback that is called when a chunk was loaded by the
+     * {@link #loadExecutor}
+     */
+    private Runnable loadCallback;
+    
+    /**
+     * The keys of the chunks that are currently loaded by the 
+     * {@link #loadExecutor}, mapped to an object that identifies the
+     * load request. When a chunk is created, loaded or removed by other
+     * means, then its entry is removed, and the result of the pending 
+     * load is discarded.
+     */
+    private final Map<Long, Object> pendingLoads;
+    
+    /**
+     * The listeners that are informed about the range of cells of each
+     * chunk that was loaded by the {@link #loadExecutor}
+     */
+    private final List<Consumer<? super Rectangle>> chunkLoadListeners;
+    
+    /**
+     * The minimum x-coordinate of the pinned chunks, inclusive
+     */
+    private int pinnedMinChunkX;
+    
+    /**
+     * The minimum y-coordinate of the pinned chunks, inclusive
+     */
+    private int pinnedMinChunkY;
+    
+    /**
+     * The maximum x-coordinate of the pinned chunks, exclusive
+     */
+    private int pinnedMaxChunkX;
+    
+    /**
+     * The maximum y-coordinate of the pinned chunks, exclusive
+     */
+    private int pinnedMaxChunkY;
+    
+    /**
+     * Whether the {@link #cachedKey} and {@link #cachedChunk} are valid
+     */
+    private boolean cacheValid;
+    
+    /**
+     * The key of the chunk that was accessed most recently
+     */
+    private long cachedKey;
+    
+    /**
+     * The chunk that was accessed most recently, or <code>null</code>
+     * if this chunk does not exist
+     */
+    private Chunk cachedChunk;
+    
+    /**
+     * Creates a new, empty chunked cell map
+     * 
+     * @param cellMap The {@link CellMap} that defines the geometry of
+     * the cells
+     * @param chunkSize The size of the chunks, in number of cells, in 
+     * x- and y-direction
+     * @throws NullPointerException If the given cell map is 
+     * <code>null</code>
+     * @throws IllegalArgumentException If the chunk size is not positive,
+     * or a chunk would contain more than <code>Integer.MAX_VALUE</code>
+     * cells
+     */
+    public ChunkedCellMap(CellMap cellMap, int chunkSize)
+    {
+        this.cellMap = 
+            Objects.requireNonNull(cellMap, "The cellMap may not be null");
+        if (chunkSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The chunk size must be positive, but is "+chunkSize);
+        }
+        if ((long)chunkSize * chunkSize > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(
+                "The chunk size is too large: "+chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true);
+        this.emptyChunks = new LinkedHashMap<Long, Boolean>(16, 0.75f, true);
+        this.pendingLoads = new HashMap<Long, Object>();
+        this.chunkLoadListeners = 
+            new CopyOnWriteArrayList<Consumer<? super Rectangle>>();
+        setMemoryBudget(DEFAULT_MEMORY_BUDGET);
+    }
+    
+    /**
+     * Set the {@link CellChunkStore} that is used for saving and loading
+     * the chunks that are evicted from memory. If this is 
+     * <code>null</code>, then all chunks remain in memory. 
+     * 
+     * @param chunkStore The {@link CellChunkStore}
+     */
+    public synchronized void setChunkStore(CellChunkStore chunkStore)
+    {
+        this.chunkStore = chunkStore;
+        this.emptyChunks.clear();
+        this.pendingLoads.clear();
+        this.cacheValid = false;
+        for (Chunk chunk : chunks.values())
+        {
+            chunk.modified = true;
+            chunk.stored = false;
+        }
+        evictChunks(0);
+    }
+    
+    /**
+     * Set the executor that is used for loading the chunks that are 
+     * accessed with {@link #getResidentValue(int, int, int)} and are not
+     * in memory. If this is <code>null</code>, then these chunks are 
+     * loaded in the calling thread.
+     * 
+     * @param loadExecutor The load executor
+     * @param loadCallback The callback that will be called, on an 
+     * arbitrary thread, when a chunk was loaded. When this map is not
+     * painted in a {@link CellMapPanel}, this will usually call 
+     * <code>repaint()</code> on the component that this map is painted 
+     * in. A {@link CellMapPanel} repaints itself. May be 
+     * <code>null</code>.
+     */
+    public synchronized void setLoadExecutor(
+        Executor loadExecutor, Runnable loadCallback)
+    {
+        this.loadExecutor = loadExecutor;
+        this.loadCallback = loadCallback;
+        this.pendingLoads.clear();
+    }
+    
+    /**
+     * Add the given listener that will be informed, on an arbitrary 
+     * thread, about the range of cells of each chunk that was loaded 
+     * by the {@link #setLoadExecutor(Executor, Runnable) load executor}. 
+     * The listener is informed before the load callback is called.
+     * 
+     * @param chunkLoadListener The listener
+     */
+    void addChunkLoadListener(Consumer<? super Rectangle> chunkLoadListener)
+    {
+        chunkLoadListeners.add(chunkLoadListener);
+    }
+    
+    /**
+     * Remove the given listener
+     * 
+     * @param chunkLoadListener The listener
+     * @see #addChunkLoadListener(Consumer)
+     */
+    void removeChunkLoadListener(
+        Consumer<? super Rectangle> chunkLoadListener)
+    {
+        chunkLoadListeners.remove(chunkLoadListener);
+    }
+    
+    /**
+     * Set the range of cells whose chunks should not be evicted from 
+     * memory. This is called by the {@link CellMapPanel} with the range 
+     * of cells that are visible, so that these chunks are not evicted 
+     * and loaded again in each frame. The pinned chunks may exceed the
+     * {@link #setMemoryBudget(long) memory budget} by a factor of 4. 
+     * Beyond that, the pinned chunks that have been used least recently
+     * are evicted as well.
+     * 
+     * @param cellRange The range of cells. If this is <code>null</code>
+     * or empty, then no chunks are pinned.
+     */
+    public synchronized void setPinnedCellRange(Rectangle cellRange)
+    {
+        if (cellRange == null || cellRange.isEmpty())
+        {
+            pinnedMinChunkX = 0;
+            pinnedMinChunkY = 0;
+            pinnedMaxChunkX = 0;
+            pinnedMaxChunkY = 0;
+            return;
+        }
+        int minX = Math.max(0, cellRange.x);
+        int minY = Math.max(0, cellRange.y);
+        long maxX = Math.min(getSizeX(), (long)cellRange.x + cellRange.width);
+        long maxY = Math.min(getSizeY(), (long)cellRange.y + cellRange.height);
+        pinnedMinChunkX = minX / chunkSize;
+        pinnedMinChunkY = minY / chunkSize;
+        pinnedMaxChunkX = (int)((maxX + chunkSize - 1) / chunkSize);
+        pinnedMaxChunkY = (int)((maxY + chunkSize - 1) / chunkSize);
+    }
+    
+    /**
+     * Set the maximum number of bytes that may be occupied by the values
+     * of the chunks that are in memory. This is only taken into account
+     * when a {@link #setChunkStore(CellChunkStore) chunk store} is set.
+     * At least one chunk always remains in memory. The default budget
+     * is 64 MB.
+     * 
+     * @param memoryBudget The memory budget, in bytes
+     * @throws IllegalArgumentException If the budget is negative
+     */
+    public synchronized void setMemoryBudget(long memoryBudget)
+    {
+        if (memoryBudget < 0)
+        {
+            throw new IllegalArgumentException(
+                "The memory budget may not be negative, but is "+memoryBudget);
+        }
+        long chunkBytes = (long)chunkSize * chunkSize * Integer.BYTES;
+        long max = Math.max(1, memoryBudget / chunkBytes);
+        this.maxResidentChunks = (int)Math.min(Integer.MAX_VALUE, max);
+        evictChunks(0);
+    }
+    
+    /**
+     * Returns the size of the chunks, in number of cells, in x- and 
+     * y-direction
+     * 
+     * @return The chunk size
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+    
+    /**
+     * Returns the number of chunks that are currently in memory
+     * 
+     * @return The number of chunks
+     */
+    public synchronized int getResidentChunkCount()
+    {
+        return chunks.size();
+    }
+    
+    /**
+     * Returns the value of the cell with the given coordinates. This is
+     * 0 if the cell is in a chunk that does not exist.
+     * 
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @return The value
+     * @throws IndexOutOfBoundsException If the coordinates are not valid
+     * for this map
+     * @throws UncheckedIOException If the chunk had to be loaded from the
+     * {@link CellChunkStore}, or other chunks had to be evicted and saved,
+     * and this caused an IOException
+     */
+    public synchronized int getValue(int x, int y)
+    {
+        CellMaps.checkCellCoordinates(x, y, getSizeX(), getSizeY());
+        Chunk chunk = obtainChunk(x / chunkSize, y / chunkSize, false);
+        if (chunk == null)
+        {
+            return 0;
+        }
+        return chunk.values[localIndex(x, y)];
+    }
+    
+    /**
+     * Returns the value of the cell with the given coordinates, if it is
+     * available without accessing the {@link CellChunkStore}. This is 
+     * intended for painters.<br>
+     * <br>
+     * If the cell is in a chunk that is in memory, then its value is 
+     * returned. If the chunk is known to not exist, then 0 is returned.
+     * Otherwise, when a {@link #setLoadExecutor(Executor, Runnable) load
+     * executor} is set, then the chunk is loaded with this executor, and
+     * the given placeholder is returned. When no load executor is set, 
+     * then this method behaves like {@link #getValue(int, int)}.
+     * 
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @param placeholder The value to return when the chunk is not in 
+     * memory
+     * @return The value
+     * @throws IndexOutOfBoundsException If the coordinates are not valid
+     * for this map
+     * @throws UncheckedIOException If no load executor is set, and 
+     * accessing the {@link CellChunkStore} caused an IOException
+     */
+    public synchronized int getResidentValue(int x, int y, int placeholder)
+    {
+        CellMaps.checkCellCoordinates(x, y, getSizeX(), getSizeY());
+        int chunkX = x / chunkSize;
+        int chunkY = y / chunkSize;
+        long k = key(chunkX, chunkY);
+        if (loadExecutor != null && (!cacheValid || cachedKey != k))
+        {
+            Long key = k;
+            if (!chunks.containsKey(key) && chunkStore != null && 
+                emptyChunks.get(key) == null)
+            {
+                requestLoad(chunkX, chunkY);
+                return placeholder;
+            }
+        }
+        Chunk chunk = obtainChunk(chunkX, chunkY, false);
+        if (chunk == null)
+        {
+            return 0;
+        }
+        return chunk.values[localIndex(x, y)];
+    }
+    
+    /**
+     * Set the value of the cell with the given coordinates. If the cell 
+     * is in a chunk that does not exist and the value is not 0, then 
+     * the chunk is created. If all values of the chunk become 0, then 
+     * the chunk is removed.
+     * 
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @param value The value
+     * @throws IndexOutOfBoundsException If the coordinates are not valid
+     * for this map
+     * @throws UncheckedIOException If the chunk had to be loaded from the
+     * {@link CellChunkStore}, or other chunks had to be evicted and saved,
+     * and this caused an IOException
+     */
+    public synchronized void setValue(int x, int y, int value)
+    {
+        CellMaps.checkCellCoordinates(x, y, getSizeX(), getSizeY());
+        int chunkX = x / chunkSize;
+        int chunkY = y / chunkSize;
+        Chunk chunk = obtainChunk(chunkX, chunkY, value != 0);
+        if (chunk == null)
+        {
+            return;
+        }
+        int index = localIndex(x, y);
+        int oldValue = chunk.values[index];
+        if (oldValue == value)
+        {
+            return;
+        }
+        chunk.values[index] = value;
+        chunk.modified = true;
+        if (oldValue == 0)
+        {
+            chunk.nonZeroCount++;
+        }
+        else if (value == 0)
+        {
+            chunk.nonZeroCount--;
+            if (chunk.nonZeroCount == 0)
+            {
+                removeChunk(chunkX, chunkY, chunk);
+            }
+        }
+    }
+    
+    /**
+     * Save all chunks that have been modified since they have been 
+     * loaded or saved. This has no effect if no 
+     * {@link #setChunkStore(CellChunkStore) chunk store} is set.
+     * 
+     * @throws IOException If a chunk could not be saved
+     */
+    public synchronized void flush() throws IOException
+    {
+        if (chunkStore == null)
+        {
+            return;
+        }
+        for (Entry<Long, Chunk> entry : chunks.entrySet())
+        {
+            saveChunk(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Load the chunk with the given coordinates with the 
+     * {@link #loadExecutor}, unless it is already being loaded
+     * 
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     */
+    private void requestLoad(int chunkX, int chunkY)
+    {
+        Long key = key(chunkX, chunkY);
+        if (pendingLoads.containsKey(key))
+        {
+            return;
+        }
+        Object request = new Object();
+        pendingLoads.put(key, request);
+        CellChunkStore store = chunkStore;
+        Runnable callback = loadCallback;
+        loadExecutor.execute(() -> 
+        {
+            try
+            {
+                if (!loadChunk(store, chunkX, chunkY, request))
+                {
+                    return;
+                }
+                fireChunkLoaded(chunkX, chunkY);
+                if (callback != null)
+                {
+                    callback.run();
+                }
+            }
+            catch (RuntimeException e)
+            {
+                SwingUtilities.invokeLater(() -> 
+                {
+                    throw e;
+                });
+            }
+        });
+    }
+    
+    /**
+     * Inform all chunk load listeners about the range of cells of the 
+     * chunk with the given coordinates
+     * 
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     */
+    private void fireChunkLoaded(int chunkX, int chunkY)
+    {
+        if (chunkLoadListeners.isEmpty())
+        {
+            return;
+        }
+        int minX = chunkX * chunkSize;
+        int minY = chunkY * chunkSize;
+        int sizeX = Math.min(chunkSize, getSizeX() - minX);
+        int sizeY = Math.min(chunkSize, getSizeY() - minY);
+        for (Consumer<? super Rectangle> listener : chunkLoadListeners)
+        {
+            listener.accept(new Rectangle(minX, minY, sizeX, sizeY));
+        }
+    }
+    
+    /**
+     * Load the chunk with the given coordinates from the given store. 
+     * This is called by the {@link #loadExecutor}, and does not hold 
+     * the lock of this map while the store is accessed.
+     * 
+     * @param store The {@link CellChunkStore}
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     * @param request The object that identifies the load request
+     * @return Whether the chunk was put into memory or marked as empty
+     * @throws UncheckedIOException If the chunk could not be loaded, or
+     * other chunks had to be evicted and saved, and this caused an 
+     * IOException
+     */
+    private boolean loadChunk(CellChunkStore store, 
+        int chunkX, int chunkY, Object request)
+    {
+        Long key = key(chunkX, chunkY);
+        int values[] = null;
+        try
+        {
+            values = store.load(chunkX, chunkY, chunkSize);
+        }
+        catch (IOException e)
+        {
+            synchronized (this)
+            {
+                pendingLoads.remove(key, request);
+            }
+            throw new UncheckedIOException(e);
+        }
+        return completeLoad(key, request, values);
+    }
+    
+    /**
+     * Called when the chunk with the given key was loaded by the 
+     * {@link #loadExecutor}. If the given request is still pending,
+     * then the chunk is put into memory, or marked as being empty.
+     * 
+     * @param key The key of the chunk
+     * @param request The object that identifies the load request
+     * @param values The values that have been loaded, or 
+     * <code>null</code> if the chunk does not exist
+     * @return Whether the chunk was put into memory or marked as empty
+     */
+    private synchronized boolean completeLoad(
+        Long key, Object request, int values[])
+    {
+        if (!pendingLoads.remove(key, request))
+        {
+            return false;
+        }
+        if (values == null)
+        {
+            emptyChunks.put(key, Boolean.TRUE);
+            trimEmptyChunks();
+            return true;
+        }
+        Chunk chunk = new Chunk(values);
+        chunk.stored = true;
+        evictChunks(1);
+        chunks.put(key, chunk);
+        cacheValid = false;
+        return true;
+    }
+    
+    /**
+     * Returns whether the chunk with the given key is in the 
+     * {@link #setPinnedCellRange(Rectangle) pinned range}
+     * 
+     * @param key The key of the chunk
+     * @return Whether the chunk is pinned
+     */
+    private boolean isPinned(long key)
+    {
+        int chunkX = (int)(key >> 32);
+        int chunkY = (int)key;
+        return chunkX >= pinnedMinChunkX && chunkX < pinnedMaxChunkX &&
+            chunkY >= pinnedMinChunkY && chunkY < pinnedMaxChunkY;
+    }
+    
+    /**
+     * Returns the index of the value of the cell with the given 
+     * coordinates in the values array of its chunk
+     * 
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @return The index
+     */
+    private int localIndex(int x, int y)
+    {
+        return (x % chunkSize) + (y % chunkSize) * chunkSize;
+    }
+    
+    /**
+     * Returns the key for the chunk with the given coordinates
+     * 
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     * @return The key
+     */
+    private static long key(int chunkX, int chunkY)
+    {
+        return ((long)chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Returns the chunk with the given coordinates. If it is not in 
+     * memory, then it is loaded from the {@link #chunkStore}. If it 
+     * does not exist, then a new chunk is created if the given flag 
+     * is <code>true</code>, and <code>null</code> is returned otherwise.
+     * 
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     * @param create Whether the chunk should be created
+     * @return The chunk
+     */
+    private Chunk obtainChunk(int chunkX, int chunkY, boolean create)
+    {
+        long k = key(chunkX, chunkY);
+        if (cacheValid && cachedKey == k && (cachedChunk != null || !create))
+        {
+            return cachedChunk;
+        }
+        Chunk chunk = obtainChunkUncached(chunkX, chunkY, create);
+        cacheValid = true;
+        cachedKey = k;
+        cachedChunk = chunk;
+        return chunk;
+    }
+    
+    /**
+     * Implementation of {@link #obtainChunk(int, int, boolean)}, without
+     * considering the most recently accessed chunk
+     * 
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     * @param create Whether the chunk should be created
+     * @return The chunk
+     */
+    private Chunk obtainChunkUncached(int chunkX, int chunkY, boolean create)
+    {
+        Long key = key(chunkX, chunkY);
+        Chunk chunk = chunks.get(key);
+        if (chunk != null)
+        {
+            return chunk;
+        }
+        if (chunkStore != null && emptyChunks.get(key) == null)
+        {
+            pendingLoads.remove(key);
+            int values[] = null;
+            try
+            {
+                values = chunkStore.load(chunkX, chunkY, chunkSize);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            if (values != null)
+            {
+                chunk = new Chunk(values);
+                chunk.stored = true;
+                evictChunks(1);
+                chunks.put(key, chunk);
+                return chunk;
+            }
+            emptyChunks.put(key, Boolean.TRUE);
+            trimEmptyChunks();
+        }
+        if (!create)
+        {
+            return null;
+        }
+        chunk = new Chunk(new int[chunkSize * chunkSize]);
+        emptyChunks.remove(key);
+        pendingLoads.remove(key);
+        evictChunks(1);
+        chunks.put(key, chunk);
+        return chunk;
+    }
+    
+    /**
+     * Remove the given chunk, whose values are all 0, and delete it from
+     * the {@link #chunkStore} if it has been stored there
+     * 
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkY The y-coordinate of the chunk
+     * @param chunk The chunk
+     */
+    private void removeChunk(int chunkX, int chunkY, Chunk chunk)
+    {
+        Long key = key(chunkX, chunkY);
+        chunks.remove(key);
+        cacheValid = false;
+        if (chunkStore == null)
+        {
+            return;
+        }
+        if (chunk.stored)
+        {
+            try
+            {
+                chunkStore.save(chunkX, chunkY, chunkSize, null);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        emptyChunks.put(key, Boolean.TRUE);
+        trimEmptyChunks();
+    }
+    
+    /**
+     * Save the given chunk in the {@link #chunkStore}, if it was modified
+     * 
+     * @param key The key of the chunk
+     * @param chunk The chunk
+     * @throws IOException If the chunk could not be saved
+     */
+    private void saveChunk(long key, Chunk chunk) throws IOException
+    {
+        if (!chunk.modified)
+        {
+            return;
+        }
+        int chunkX = (int)(key >> 32);
+        int chunkY = (int)key;
+        chunkStore.save(chunkX, chunkY, chunkSize, chunk.values);
+        chunk.modified = false;
+        chunk.stored = true;
+    }
+    
+    /**
+     * If there is a {@link #chunkStore}, then evict the chunks that have
+     * been used least recently, until the given number of chunks can be
+     * added without exceeding the maximum number of chunks in memory.
+     * Chunks that are {@link #setPinnedCellRange(Rectangle) pinned} are
+     * only evicted when the maximum number is exceeded by more than the
+     * {@link #PINNED_CHUNK_FACTOR}.
+     * 
+     * @param additionalChunks The number of chunks that will be added
+     */
+    private void evictChunks(int additionalChunks)
+    {
+        if (chunkStore == null)
+        {
+            return;
+        }
+        evictChunks(additionalChunks, maxResidentChunks, false);
+        evictChunks(additionalChunks, 
+            (long)maxResidentChunks * PINNED_CHUNK_FACTOR, true);
+    }
+    
+    /**
+     * Evict the chunks that have been used least recently, until the 
+     * given number of chunks can be added without exceeding the given
+     * limit. 
+     * 
+     * @param additionalChunks The number of chunks that will be added
+     * @param limit The maximum number of chunks in memory
+     * @param evictPinned Whether pinned chunks may be evicted
+     */
+    private void evictChunks(
+        int additionalChunks, long limit, boolean evictPinned)
+    {
+        Iterator<Entry<Long, Chunk>> iterator = chunks.entrySet().iterator();
+        while (chunks.size() + additionalChunks > limit && 
+            iterator.hasNext())
+        {
+            Entry<Long, Chunk> entry = iterator.next();
+            if (!evictPinned && isPinned(entry.getKey()))
+            {
+                continue;
+            }
+            try
+            {
+                saveChunk(entry.getKey(), entry.getValue());
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            iterator.remove();
+            cacheValid = false;
+        }
+    }
+    
+    /**
+     * Remove the keys of the chunks that are known to be empty and that
+     * have been used least recently, until their number is below the
+     * limit that is given by the maximum number of chunks in memory
+     */
+    private void trimEmptyChunks()
+    {
+        long limit = (long)maxResidentChunks * EMPTY_CHUNK_CACHE_FACTOR;
+        Iterator<Long> iterator = emptyChunks.keySet().iterator();
+        while (emptyChunks.size() > limit && iterator.hasNext())
+        {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+    
+    @Override
+    public int getSizeX()
+    {
+        return cellMap.getSizeX();
+    }
+    
+    @Override
+    public int getSizeY()
+    {
+        return cellMap.getSizeY();
+    }
+    
+    @Override
+    public Cell getCell(int x, int y)
+    {
+        return cellMap.getCell(x, y);
+    }
+    
+    @Override
+    public Cell getCell(int x, int y, Cell reusedCell)
+    {
+        return cellMap.getCell(x, y, reusedCell);
+    }
+    
+    @Override
+    public Cell getCellAt(double worldX, double worldY)
+    {
+        return cellMap.getCellAt(worldX, worldY);
+    }
+    
+    @Override
+    public Rectangle computeCellRange(
+        Rectangle2D worldBounds, Rectangle result)
+    {
+        return cellMap.computeCellRange(worldBounds, result);
+    }
+    
+    @Override
+    public Rectangle2D computeBounds()
+    {
+        return cellMap.computeBounds();
+    }
+    
+}
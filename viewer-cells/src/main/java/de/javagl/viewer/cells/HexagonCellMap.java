@@ -26,8 +26,11 @@
  */
 package de.javagl.viewer.cells;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
@@ -36,7 +39,21 @@ import de.javagl.hexagon.HexagonGrid;
 import de.javagl.hexagon.Hexagons;
 
 /**
- * Implementation of a {@link CellMap} that is based on a {@link HexagonGrid}
+ * Implementation of a {@link CellMap} that is based on a {@link HexagonGrid}.
+ * <br>
+ * <br>
+ * The lookup of the cell at a certain world position is done in constant
+ * time: The position is converted into fractional cube coordinates, 
+ * which are rounded to the nearest hexagon, and converted into the 
+ * offset coordinates of the cell. The conversion between world and cube
+ * coordinates is derived from the centers of the hexagon grid. If this
+ * conversion does not yield the expected cells for the cell centers 
+ * (which may be the case for unknown grid layouts), then a 
+ * {@link CellSpatialIndex} is used instead.<br>
+ * <br>
+ * The cells are not stored, but created on demand, as 
+ * {@link ImplicitCell} instances, so that the memory requirements 
+ * do not depend on the number of cells.
  */
 class HexagonCellMap implements CellMap
 {
@@ -51,9 +68,45 @@ class HexagonCellMap implements CellMap
     private final int sizeY;
 
     /**
-     * The cells
+     * The shape of a hexagon at the world origin
      */
-    private final Cell cells[][];
+    private final Shape prototypeShape;
+    
+    /**
+     * The part of the content transform of each cell that is applied
+     * after the translation to the origin of the cell
+     */
+    private final AffineTransform contentTransformPart;
+    
+    /**
+     * The {@link HexagonGrid}
+     */
+    private final HexagonGrid hexagonGrid;
+    
+    /**
+     * The transform from world coordinates to (two of the three) cube 
+     * coordinates of the hexagon grid. This is <code>null</code> if 
+     * the {@link #spatialIndex} is used instead.
+     */
+    private final AffineTransform worldToCube;
+    
+    /**
+     * The {@link CellSpatialIndex} that is used for the lookup when the
+     * {@link #worldToCube} transform could not be determined 
+     */
+    private final CellSpatialIndex spatialIndex;
+    
+    /**
+     * The bounds of all cells, in world coordinates. This is 
+     * <code>null</code> if the map does not contain any cells.
+     */
+    private final Rectangle2D bounds;
+    
+    /**
+     * The size of the blocks of cells at the corners of the map that
+     * are used for validating the {@link #worldToCube} transform
+     */
+    private static final int VALIDATION_BLOCK_SIZE = 4;
     
     /**
      * Creates a new hexagon cell map with the specified size, based on
@@ -67,29 +120,198 @@ class HexagonCellMap implements CellMap
     {
         this.sizeX = sizeX;
         this.sizeY = sizeY;
+        this.hexagonGrid = hexagonGrid;
         
         Hexagon hexagon = hexagonGrid.getHexagon();
-        Shape prototypeShape = Hexagons.createShape(hexagon);
+        this.prototypeShape = Hexagons.createShape(hexagon);
         
         double innerSize = 1.0 / Math.sqrt(2) *
             Math.min(hexagon.getSizeX(), hexagon.getSizeY()); 
-        AffineTransform contentTransformPart =  
+        this.contentTransformPart =  
             AffineTransform.getScaleInstance(innerSize, innerSize);
         contentTransformPart.concatenate(
             AffineTransform.getTranslateInstance(-0.5, -0.5));
         
-        cells = new Cell[sizeX][sizeY];
+        this.bounds = computeBounds(
+            hexagonGrid, sizeX, sizeY, prototypeShape);
+        
+        AffineTransform transform = computeWorldToCube(hexagonGrid);
+        if (transform != null && isValid(transform))
+        {
+            this.worldToCube = transform;
+            this.spatialIndex = null;
+        }
+        else
+        {
+            this.worldToCube = null;
+            this.spatialIndex = new CellSpatialIndex(this);
+        }
+    }
+    
+    /**
+     * Compute the bounds of the cells of a hexagon cell map with the given
+     * size. All cells have the same shape, so the bounds are given by the
+     * bounds of the prototype shape, moved to the extreme cell centers. 
+     * The offset layouts of hexagon grids repeat every two rows or 
+     * columns, so the extreme centers are found among the cells that 
+     * are at most two cells away from the border of the map.
+     * 
+     * @param hexagonGrid The {@link HexagonGrid}
+     * @param sizeX The size, in number of cells, in x-direction
+     * @param sizeY The size, in number of cells, in y-direction
+     * @param prototypeShape The shape of a hexagon at the world origin
+     * @return The bounds, or <code>null</code> if the map is empty
+     */
+    private static Rectangle2D computeBounds(HexagonGrid hexagonGrid, 
+        int sizeX, int sizeY, Shape prototypeShape)
+    {
+        if (sizeX <= 0 || sizeY <= 0)
+        {
+            return null;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        Point2D center = new Point2D.Double();
         for (int x=0; x<sizeX; x++)
         {
+            boolean borderX = x < 2 || x >= sizeX - 2;
             for (int y=0; y<sizeY; y++)
             {
-                Point2D origin = hexagonGrid.getCenter(x, y, null);
-                Cell cell = new HexagonCell(
-                    x, y, prototypeShape, origin, contentTransformPart);
-                cells[x][y] = cell;
+                if (!borderX && y >= 2 && y < sizeY - 2)
+                {
+                    y = sizeY - 2;
+                }
+                hexagonGrid.getCenter(x, y, center);
+                minX = Math.min(minX, center.getX());
+                minY = Math.min(minY, center.getY());
+                maxX = Math.max(maxX, center.getX());
+                maxY = Math.max(maxY, center.getY());
             }
         }
-        
+        Rectangle2D shapeBounds = prototypeShape.getBounds2D();
+        return new Rectangle2D.Double(
+            minX + shapeBounds.getMinX(), 
+            minY + shapeBounds.getMinY(),
+            maxX - minX + shapeBounds.getWidth(), 
+            maxY - minY + shapeBounds.getHeight());
+    }
+    
+    /**
+     * Compute the transform from world coordinates to the cube coordinates
+     * of the given grid. The cube coordinates are the coordinates that are
+     * used by {@link HexagonGrid#convertCubeToOffsetCoordinates(int, int, 
+     * Point)}. Returns <code>null</code> if the transform cannot be 
+     * determined.
+     * 
+     * @param hexagonGrid The {@link HexagonGrid}
+     * @return The transform
+     */
+    private static AffineTransform computeWorldToCube(HexagonGrid hexagonGrid)
+    {
+        Point c = hexagonGrid.convertOffsetToCubeCoordinates(0, 0, null);
+        Point o1 = hexagonGrid.convertCubeToOffsetCoordinates(
+            c.x + 1, c.y, null);
+        Point o2 = hexagonGrid.convertCubeToOffsetCoordinates(
+            c.x, c.y + 1, null);
+        Point2D p0 = hexagonGrid.getCenter(0, 0, null);
+        Point2D p1 = hexagonGrid.getCenter(o1.x, o1.y, null);
+        Point2D p2 = hexagonGrid.getCenter(o2.x, o2.y, null);
+        double e1x = p1.getX() - p0.getX();
+        double e1y = p1.getY() - p0.getY();
+        double e2x = p2.getX() - p0.getX();
+        double e2y = p2.getY() - p0.getY();
+        AffineTransform cubeToWorld = new AffineTransform(
+            e1x, e1y, e2x, e2y, 
+            p0.getX() - e1x * c.x - e2x * c.y, 
+            p0.getY() - e1y * c.x - e2y * c.y);
+        try
+        {
+            return cubeToWorld.createInverse();
+        }
+        catch (NoninvertibleTransformException e)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Returns whether the given world-to-cube transform yields the 
+     * expected cell for the center of each cell. The offset layouts of
+     * hexagon grids repeat every two rows or columns, so this is only
+     * checked for the cells in a small block at each corner of the map.
+     * 
+     * @param worldToCube The world-to-cube transform
+     * @return Whether the transform is valid
+     */
+    private boolean isValid(AffineTransform worldToCube)
+    {
+        int n = VALIDATION_BLOCK_SIZE;
+        Point2D center = new Point2D.Double();
+        for (int x=0; x<sizeX; x++)
+        {
+            if (x >= n && x < sizeX - n)
+            {
+                x = sizeX - n;
+            }
+            for (int y=0; y<sizeY; y++)
+            {
+                if (y >= n && y < sizeY - n)
+                {
+                    y = sizeY - n;
+                }
+                hexagonGrid.getCenter(x, y, center);
+                Point offset = computeOffsetCoordinates(worldToCube,
+                    center.getX(), center.getY());
+                if (offset == null || offset.x != x || offset.y != y)
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Compute the offset coordinates of the hexagon that contains the 
+     * given point, using the given world-to-cube transform
+     * 
+     * @param worldToCube The world-to-cube transform
+     * @param worldX The world x-coordinate
+     * @param worldY The world y-coordinate
+     * @return The offset coordinates, or <code>null</code> if the
+     * cube coordinates are not in the range of <code>int</code> values
+     */
+    private Point computeOffsetCoordinates(
+        AffineTransform worldToCube, double worldX, double worldY)
+    {
+        Point2D cube = worldToCube.transform(
+            new Point2D.Double(worldX, worldY), null);
+        double a = cube.getX();
+        double b = cube.getY();
+        double c = -a - b;
+        double limit = Integer.MAX_VALUE / 2;
+        if (!(Math.abs(a) < limit && Math.abs(b) < limit))
+        {
+            return null;
+        }
+        double ra = Math.rint(a);
+        double rb = Math.rint(b);
+        double rc = Math.rint(c);
+        double da = Math.abs(ra - a);
+        double db = Math.abs(rb - b);
+        double dc = Math.abs(rc - c);
+        if (da > db && da > dc)
+        {
+            ra = -rb - rc;
+        }
+        else if (db > dc)
+        {
+            rb = -ra - rc;
+        }
+        return hexagonGrid.convertCubeToOffsetCoordinates(
+            (int)ra, (int)rb, null);
     }
 
     @Override
@@ -107,30 +329,102 @@ class HexagonCellMap implements CellMap
     @Override
     public Cell getCell(int x, int y)
     {
-        return cells[x][y];
+        return getCell(x, y, null);
+    }
+    
+    @Override
+    public Cell getCell(int x, int y, Cell reusedCell)
+    {
+        CellMaps.checkCellCoordinates(x, y, sizeX, sizeY);
+        ImplicitCell cell = null;
+        if (reusedCell instanceof ImplicitCell && 
+            ((ImplicitCell)reusedCell).belongsTo(this))
+        {
+            cell = (ImplicitCell)reusedCell;
+        }
+        else
+        {
+            cell = new ImplicitCell(
+                this, prototypeShape, contentTransformPart);
+        }
+        hexagonGrid.getCenter(x, y, cell.getOrigin());
+        cell.setCoordinates(x, y);
+        return cell;
     }
 
     @Override
     public Cell getCellAt(double worldX, double worldY)
     {
-        // NOTE: Inefficient for larger maps. Optimize when necessary
-        Point2D p = new Point2D.Double(worldX, worldY);
-        for (int x=0; x<sizeX; x++)
+        if (worldToCube == null)
         {
-            for (int y=0; y<sizeY; y++)
+            return spatialIndex.getCellAt(worldX, worldY);
+        }
+        Point offset = 
+            computeOffsetCoordinates(worldToCube, worldX, worldY);
+        if (offset == null)
+        {
+            return null;
+        }
+        int x = offset.x;
+        int y = offset.y;
+        if (x >= 0 && x < sizeX && y >= 0 && y < sizeY)
+        {
+            return getCell(x, y);
+        }
+        return null;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * The range is computed from the cells at the corners of the given
+     * rectangle, extended by one cell in each direction, to cover the
+     * shifted rows or columns of the hexagon grid.
+     */
+    @Override
+    public Rectangle computeCellRange(
+        Rectangle2D worldBounds, Rectangle result)
+    {
+        if (worldToCube == null)
+        {
+            return CellMap.super.computeCellRange(worldBounds, result);
+        }
+        double[] cornersX = { worldBounds.getMinX(), worldBounds.getMaxX() };
+        double[] cornersY = { worldBounds.getMinY(), worldBounds.getMaxY() };
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (double cornerX : cornersX)
+        {
+            for (double cornerY : cornersY)
             {
-                Cell cell = cells[x][y];
-                Shape shape = cell.getShape();
-                Rectangle2D bounds = shape.getBounds2D();
-                if (bounds.contains(p) && shape.contains(p))
+                Point offset = 
+                    computeOffsetCoordinates(worldToCube, cornerX, cornerY);
+                if (offset == null)
                 {
-                    return cell;
+                    return CellMap.super.computeCellRange(worldBounds, result);
                 }
+                x0 = Math.min(x0, offset.x);
+                y0 = Math.min(y0, offset.y);
+                x1 = Math.max(x1, offset.x);
+                y1 = Math.max(y1, offset.y);
             }
         }
-        return null;
+        return CellMaps.clampCellRange(
+            x0 - 1, y0 - 1, x1 + 1, y1 + 1, sizeX, sizeY, result);
     }
     
+    @Override
+    public Rectangle2D computeBounds()
+    {
+        if (bounds == null)
+        {
+            return null;
+        }
+        return new Rectangle2D.Double(bounds.getX(), bounds.getY(), 
+            bounds.getWidth(), bounds.getHeight());
+    }
     
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,329 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+import de.javagl.geom.AffineTransforms;
+
+/**
+ * Implementation of a {@link Cell} that does not store any geometry 
+ * itself. It only stores its coordinates and its origin, and computes
+ * its shape and transforms on demand, from a prototype shape and a 
+ * content transform that are shared by all cells of one 
+ * {@link CellMap}.<br>
+ * <br>
+ * Instances of this class are created on demand by the cell maps, and
+ * may be reused for iterating over many cells, via
+ * {@link CellMap#getCell(int, int, Cell)}. Two instances are equal if 
+ * they describe the same cell of the same cell map.<br>
+ * <br>
+ * Updating a cell does not allocate any objects. The shape is only 
+ * created when it is requested, and painters may use 
+ * {@link #getShapePathIterator(AffineTransform)} to avoid creating it.
+ */
+final class ImplicitCell implements Cell
+{
+    /**
+     * The {@link CellMap} that this cell belongs to
+     */
+    private final CellMap cellMap;
+    
+    /**
+     * The prototype shape, which is translated to the origin of the cell
+     */
+    private final Shape prototypeShape;
+    
+    /**
+     * The part of the content transform that is applied after the
+     * translation to the origin of the cell
+     */
+    private final AffineTransform contentTransformPart;
+    
+    /**
+     * The x-offset of the center of the cell, relative to its origin
+     */
+    private final double centerOffsetX;
+    
+    /**
+     * The y-offset of the center of the cell, relative to its origin
+     */
+    private final double centerOffsetY;
+    
+    /**
+     * The x-coordinate of the cell
+     */
+    private int x;
+    
+    /**
+     * The y-coordinate of the cell
+     */
+    private int y;
+    
+    /**
+     * The origin of the cell
+     */
+    private final Point2D.Double origin;
+    
+    /**
+     * The transform that is used for computing the 
+     * {@link #getShapePathIterator(AffineTransform) shape path iterator}
+     */
+    private final AffineTransform shapeTransform;
+    
+    /**
+     * The shape of the cell. This is created lazily, and reset when the
+     * cell is modified.
+     */
+    private Shape shape;
+    
+    /**
+     * Creates a new cell for the given {@link CellMap}. The prototype
+     * shape and the content transform will not be copied, and may not 
+     * be modified.
+     * 
+     * @param cellMap The {@link CellMap}
+     * @param prototypeShape The prototype shape
+     * @param contentTransformPart The content transform part
+     */
+    ImplicitCell(CellMap cellMap, Shape prototypeShape, 
+        AffineTransform contentTransformPart)
+    {
+        this.cellMap = cellMap;
+        this.prototypeShape = prototypeShape;
+        this.contentTransformPart = contentTransformPart;
+        Rectangle2D bounds = prototypeShape.getBounds2D();
+        this.centerOffsetX = bounds.getCenterX();
+        this.centerOffsetY = bounds.getCenterY();
+        this.origin = new Point2D.Double();
+        this.shapeTransform = new AffineTransform();
+    }
+    
+    /**
+     * Returns whether this cell belongs to the given {@link CellMap}
+     * 
+     * @param otherCellMap The {@link CellMap}
+     * @return Whether this cell belongs to the given map
+     */
+    boolean belongsTo(CellMap otherCellMap)
+    {
+        return cellMap == otherCellMap;
+    }
+    
+    /**
+     * Returns whether the shape of this cell is a rectangle
+     * 
+     * @return Whether the shape is a rectangle
+     */
+    boolean isRectangle()
+    {
+        return prototypeShape instanceof Rectangle2D;
+    }
+    
+    /**
+     * Set the coordinates and the origin of this cell
+     * 
+     * @param newX The x-coordinate of the cell
+     * @param newY The y-coordinate of the cell
+     * @param newOriginX The x-coordinate of the origin
+     * @param newOriginY The y-coordinate of the origin
+     */
+    void set(int newX, int newY, double newOriginX, double newOriginY)
+    {
+        origin.setLocation(newOriginX, newOriginY);
+        setCoordinates(newX, newY);
+    }
+    
+    /**
+     * Set the coordinates of this cell. The origin of the cell has to be
+     * set by modifying the {@link #getOrigin() origin point}.
+     * 
+     * @param newX The x-coordinate of the cell
+     * @param newY The y-coordinate of the cell
+     */
+    void setCoordinates(int newX, int newY)
+    {
+        this.x = newX;
+        this.y = newY;
+        this.shape = null;
+    }
+    
+    /**
+     * Returns the point that stores the origin of this cell. This point
+     * may be modified in order to set the origin, before calling 
+     * {@link #setCoordinates(int, int)}.
+     * 
+     * @return The origin point
+     */
+    Point2D getOrigin()
+    {
+        return origin;
+    }
+
+    @Override
+    public int getX()
+    {
+        return x;
+    }
+
+    @Override
+    public int getY()
+    {
+        return y;
+    }
+    
+    @Override
+    public Shape getShape()
+    {
+        if (shape == null)
+        {
+            AffineTransform at = 
+                AffineTransform.getTranslateInstance(origin.x, origin.y);
+            shape = AffineTransforms.createTransformedShape(
+                at, prototypeShape);
+        }
+        return shape;
+    }
+    
+    @Override
+    public PathIterator getShapePathIterator(AffineTransform at)
+    {
+        if (at == null)
+        {
+            shapeTransform.setToIdentity();
+        }
+        else
+        {
+            shapeTransform.setTransform(at);
+        }
+        shapeTransform.translate(origin.x, origin.y);
+        return prototypeShape.getPathIterator(shapeTransform);
+    }
+    
+    @Override
+    public double getOriginX()
+    {
+        return origin.x;
+    }
+
+    @Override
+    public double getOriginY()
+    {
+        return origin.y;
+    }
+
+    @Override
+    public double getCenterX()
+    {
+        return origin.x + centerOffsetX;
+    }
+
+    @Override
+    public double getCenterY()
+    {
+        return origin.y + centerOffsetY;
+    }
+    
+    @Override
+    public AffineTransform getTransform(AffineTransform at)
+    {
+        if (at == null)
+        {
+            return AffineTransform.getTranslateInstance(origin.x, origin.y);
+        }
+        at.setToTranslation(origin.x, origin.y);
+        return at;
+    }
+    
+    @Override
+    public AffineTransform concatenateWithTransform(
+        AffineTransform at, AffineTransform result)
+    {
+        if (result == null)
+        {
+            result = new AffineTransform(at);
+        }
+        else
+        {
+            result.setTransform(at);
+        }
+        result.translate(origin.x, origin.y);
+        return result;
+    }
+
+    @Override
+    public AffineTransform getContentTransform(AffineTransform at)
+    {
+        at = getTransform(at);
+        at.concatenate(contentTransformPart);
+        return at;
+    }
+    
+    @Override
+    public AffineTransform concatenateWithContentTransform(
+        AffineTransform at, AffineTransform result)
+    {
+        if (result == null)
+        {
+            result = new AffineTransform(at);
+        }
+        result = concatenateWithTransform(at, result);
+        result.concatenate(contentTransformPart);
+        return result;
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return 31 * x + y;
+    }
+    
+    @Override
+    public boolean equals(Object object)
+    {
+        if (this == object)
+        {
+            return true;
+        }
+        if (!(object instanceof ImplicitCell))
+        {
+            return false;
+        }
+        ImplicitCell other = (ImplicitCell)object;
+        return cellMap == other.cellMap && x == other.x && y == other.y;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Cell["+x+","+y+"]";
+    }
+}
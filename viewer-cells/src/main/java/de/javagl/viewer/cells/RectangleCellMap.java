@@ -26,12 +26,17 @@
  */
 package de.javagl.viewer.cells;
 
+import java.awt.Rectangle;
 import java.awt.Shape;
-import java.awt.geom.Point2D;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 
 /**
- * Implementation of a {@link CellMap} that is based on rectangles
+ * Implementation of a {@link CellMap} that is based on rectangles.<br>
+ * <br>
+ * The cells are not stored, but created on demand, as 
+ * {@link ImplicitCell} instances, so that the memory requirements 
+ * do not depend on the number of cells.
  */
 class RectangleCellMap implements CellMap
 {
@@ -56,9 +61,15 @@ class RectangleCellMap implements CellMap
     private final double cellSizeY;
     
     /**
-     * The cells
+     * The shape of the cell at the world origin
      */
-    private final Cell cells[][];
+    private final Shape prototypeShape;
+    
+    /**
+     * The part of the content transform of each cell that is applied
+     * after the translation to the origin of the cell
+     */
+    private final AffineTransform contentTransformPart;
     
     /**
      * Creates a new rectangle cell map
@@ -75,20 +86,10 @@ class RectangleCellMap implements CellMap
         this.cellSizeX = cellSizeX;
         this.cellSizeY = cellSizeY;
         
-        Shape prototypeShape = 
+        this.prototypeShape = 
             new Rectangle2D.Double(0, 0, cellSizeX, cellSizeY);
-        
-        cells = new Cell[sizeX][sizeY];
-        for (int x=0; x<sizeX; x++)
-        {
-            for (int y=0; y<sizeY; y++)
-            {
-                Point2D origin = new Point2D.Double(x*cellSizeX, y*cellSizeY);
-                Cell cell = new RectangleCell(
-                    x, y, prototypeShape, origin, cellSizeX, cellSizeY);
-                cells[x][y] = cell;
-            }
-        }
+        this.contentTransformPart = 
+            AffineTransform.getScaleInstance(cellSizeX, cellSizeY);
     }
 
     @Override
@@ -106,7 +107,26 @@ class RectangleCellMap implements CellMap
     @Override
     public Cell getCell(int x, int y)
     {
-        return cells[x][y];
+        return getCell(x, y, null);
+    }
+    
+    @Override
+    public Cell getCell(int x, int y, Cell reusedCell)
+    {
+        CellMaps.checkCellCoordinates(x, y, sizeX, sizeY);
+        ImplicitCell cell = null;
+        if (reusedCell instanceof ImplicitCell && 
+            ((ImplicitCell)reusedCell).belongsTo(this))
+        {
+            cell = (ImplicitCell)reusedCell;
+        }
+        else
+        {
+            cell = new ImplicitCell(
+                this, prototypeShape, contentTransformPart);
+        }
+        cell.set(x, y, x * cellSizeX, y * cellSizeY);
+        return cell;
     }
     
     @Override
@@ -120,10 +140,33 @@ class RectangleCellMap implements CellMap
         int y = (int)(worldY / cellSizeY);
         if (x >= 0 && x < sizeX && y >= 0 && y < sizeY)
         {
-            return cells[x][y];
+            return getCell(x, y);
         }
         return null;
     }
     
+    @Override
+    public Rectangle computeCellRange(
+        Rectangle2D worldBounds, Rectangle result)
+    {
+        double x0 = Math.floor(worldBounds.getMinX() / cellSizeX);
+        double y0 = Math.floor(worldBounds.getMinY() / cellSizeY);
+        double x1 = Math.floor(worldBounds.getMaxX() / cellSizeX);
+        double y1 = Math.floor(worldBounds.getMaxY() / cellSizeY);
+        return CellMaps.clampCellRange(
+            x0, y0, x1, y1, sizeX, sizeY, result);
+    }
+    
+    @Override
+    public Rectangle2D computeBounds()
+    {
+        if (sizeX <= 0 || sizeY <= 0)
+        {
+            return null;
+        }
+        return new Rectangle2D.Double(
+            0, 0, sizeX * cellSizeX, sizeY * cellSizeY);
+    }
+    
 
 }
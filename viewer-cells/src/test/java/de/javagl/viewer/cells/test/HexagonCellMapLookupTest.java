@@ -0,0 +1,211 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.cells.test;
+
+import java.awt.Point;
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import de.javagl.hexagon.Hexagon;
+import de.javagl.hexagon.HexagonGrid;
+import de.javagl.hexagon.HexagonGrids;
+import de.javagl.viewer.cells.Cell;
+import de.javagl.viewer.cells.CellMap;
+import de.javagl.viewer.cells.CellMaps;
+
+/**
+ * A test for the lookup of cells at world positions in hexagon cell 
+ * maps. For all layouts of hexagon grids, the result of 
+ * {@link CellMap#getCellAt(double, double)} is compared to the result
+ * of testing whether the {@link Cell#getShape() shapes} of the cells
+ * contain random points. This covers the lookup with cube coordinates,
+ * as well as the lookup with a spatial index, which is used for a 
+ * grid whose offset coordinates are not known to the cell map.
+ */
+public class HexagonCellMapLookupTest
+{
+    /**
+     * The number of random points that are tested for each grid
+     */
+    private static final int NUM_POINTS = 200000;
+    
+    /**
+     * The entry point of this test
+     *
+     * @param args Not used
+     */
+    public static void main(String[] args)
+    {
+        int sizeX = 23;
+        int sizeY = 17;
+        int mismatches = 0;
+        for (boolean horizontal : new boolean[] { false, true })
+        {
+            for (boolean odd : new boolean[] { false, true })
+            {
+                HexagonGrid hexagonGrid = 
+                    HexagonGrids.create(10.0, horizontal, odd);
+                String name = "horizontal=" + horizontal + ", odd=" + odd;
+                mismatches += test(name, 
+                    CellMaps.createHexagon(sizeX, sizeY, hexagonGrid));
+                mismatches += test(name + ", shuffled", 
+                    CellMaps.createHexagon(sizeX, sizeY, 
+                        createShuffledGrid(hexagonGrid, sizeX)));
+            }
+        }
+        if (mismatches > 0)
+        {
+            throw new AssertionError(
+                "Found " + mismatches + " mismatches in the cell lookup");
+        }
+        System.out.println("Passed");
+    }
+    
+    /**
+     * Test the lookup of cells in the given cell map, and return the 
+     * number of mismatches. <br>
+     * <br>
+     * For random points in the bounds of the map, it is checked that
+     * the cell that is returned by the lookup contains the point. For
+     * random points in the bounds of random cells, it is checked that 
+     * the lookup returns the cell if the cell contains the point.
+     * 
+     * @param name The name of the test, for the output
+     * @param cellMap The cell map
+     * @return The number of mismatches
+     */
+    private static int test(String name, CellMap cellMap)
+    {
+        Random random = new Random(0);
+        Rectangle2D bounds = cellMap.computeBounds();
+        double marginX = bounds.getWidth() * 0.1;
+        double marginY = bounds.getHeight() * 0.1;
+        int mismatches = 0;
+        for (int i = 0; i < NUM_POINTS; i++)
+        {
+            double x = bounds.getMinX() - marginX + 
+                random.nextDouble() * (bounds.getWidth() + 2 * marginX);
+            double y = bounds.getMinY() - marginY + 
+                random.nextDouble() * (bounds.getHeight() + 2 * marginY);
+            Cell cell = cellMap.getCellAt(x, y);
+            if (cell != null && !cell.getShape().contains(x, y))
+            {
+                mismatches++;
+            }
+        }
+        for (int i = 0; i < NUM_POINTS; i++)
+        {
+            int cx = random.nextInt(cellMap.getSizeX());
+            int cy = random.nextInt(cellMap.getSizeY());
+            Shape shape = cellMap.getCell(cx, cy).getShape();
+            Rectangle2D shapeBounds = shape.getBounds2D();
+            double x = shapeBounds.getMinX() + 
+                random.nextDouble() * shapeBounds.getWidth();
+            double y = shapeBounds.getMinY() + 
+                random.nextDouble() * shapeBounds.getHeight();
+            if (!shape.contains(x, y))
+            {
+                continue;
+            }
+            Cell cell = cellMap.getCellAt(x, y);
+            if (cell == null || cell.getX() != cx || cell.getY() != cy)
+            {
+                mismatches++;
+            }
+        }
+        System.out.println(name + ": " + mismatches + " mismatches");
+        return mismatches;
+    }
+    
+    /**
+     * Creates a {@link HexagonGrid} that places the hexagons at the same
+     * positions as the given grid, but with the offset x-coordinates of 
+     * each row being shifted cyclically by the row index. The coordinate
+     * conversions are passed to the given grid unmodified, so that they 
+     * do not match the centers of the hexagons.
+     * 
+     * @param hexagonGrid The {@link HexagonGrid}
+     * @param sizeX The size of the cell map in x-direction
+     * @return The shuffled {@link HexagonGrid}
+     */
+    private static HexagonGrid createShuffledGrid(
+        HexagonGrid hexagonGrid, int sizeX)
+    {
+        return new HexagonGrid()
+        {
+            @Override
+            public Hexagon getHexagon()
+            {
+                return hexagonGrid.getHexagon();
+            }
+
+            @Override
+            public Point2D getCenter(int x, int y, Point2D center)
+            {
+                return hexagonGrid.getCenter((x + y) % sizeX, y, center);
+            }
+
+            @Override
+            public Point getNeighbor(int x, int y, int index, Point neighbor)
+            {
+                return hexagonGrid.getNeighbor(x, y, index, neighbor);
+            }
+
+            @Override
+            public Point convertOffsetToCubeCoordinates(
+                int x, int y, Point cube)
+            {
+                return hexagonGrid.convertOffsetToCubeCoordinates(
+                    x, y, cube);
+            }
+
+            @Override
+            public Point convertCubeToOffsetCoordinates(
+                int x, int y, Point offset)
+            {
+                return hexagonGrid.convertCubeToOffsetCoordinates(
+                    x, y, offset);
+            }
+
+            @Override
+            public int computeStepsDistance(int x0, int y0, int x1, int y1)
+            {
+                return hexagonGrid.computeStepsDistance(x0, y0, x1, y1);
+            }
+
+            @Override
+            public double computeSquaredCentersDistance(
+                int x0, int y0, int x1, int y1)
+            {
+                return hexagonGrid.computeSquaredCentersDistance(
+                    x0, y0, x1, y1);
+            }
+        };
+    }
+}
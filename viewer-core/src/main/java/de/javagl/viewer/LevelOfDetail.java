@@ -0,0 +1,224 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+
+/**
+ * A hint about the level of detail that is required for painting. <br>
+ * <br>
+ * An instance of this class is stored as a rendering hint in the 
+ * <code>Graphics2D</code> that the {@link Viewer} passes to its 
+ * {@link Painter}s, with the key {@link #KEY}. It describes
+ * <ul>
+ *   <li>
+ *     the number of pixels per world unit, which is a measure for how 
+ *     large an object with a size of 1.0 in world coordinates appears 
+ *     on the screen, and
+ *   </li>
+ *   <li>
+ *     whether the user is currently interacting with the viewer (for 
+ *     example, by dragging or zooming), in which case painters may 
+ *     decide to reduce the level of detail, in favor of speed.
+ *   </li>
+ * </ul>
+ * Painters that modify the world-to-screen transform before passing it
+ * to a delegate (like the {@link TransformedObjectPainter}) will update
+ * the hint accordingly. Painters may obtain the hint with 
+ * {@link #get(Graphics2D, AffineTransform)}.<br>
+ * <br>
+ * Instances of this class are immutable.
+ */
+public final class LevelOfDetail
+{
+    /**
+     * The rendering hint key for {@link LevelOfDetail} instances
+     */
+    public static final RenderingHints.Key KEY = new RenderingHints.Key(0)
+    {
+        @Override
+        public boolean isCompatibleValue(Object value)
+        {
+            return value instanceof LevelOfDetail;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return "Level of detail key";
+        }
+    };
+    
+    /**
+     * The number of pixels per world unit
+     */
+    private final double pixelsPerWorldUnit;
+    
+    /**
+     * Whether the user is currently interacting with the viewer
+     */
+    private final boolean interacting;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param pixelsPerWorldUnit The number of pixels per world unit
+     * @param interacting Whether the user is currently interacting
+     */
+    public LevelOfDetail(double pixelsPerWorldUnit, boolean interacting)
+    {
+        this.pixelsPerWorldUnit = pixelsPerWorldUnit;
+        this.interacting = interacting;
+    }
+    
+    /**
+     * Returns the number of pixels per world unit. For a world-to-screen
+     * transform that scales non-uniformly, this is the geometric mean of 
+     * the scaling factors.
+     * 
+     * @return The number of pixels per world unit
+     */
+    public double getPixelsPerWorldUnit()
+    {
+        return pixelsPerWorldUnit;
+    }
+    
+    /**
+     * Returns whether the user is currently interacting with the viewer
+     * 
+     * @return Whether the user is interacting
+     */
+    public boolean isInteracting()
+    {
+        return interacting;
+    }
+    
+    /**
+     * Returns a {@link LevelOfDetail} that has the same interaction state
+     * as this one, and the number of pixels per world unit that results
+     * from the given world-to-screen transform. If this is the same 
+     * number as in this instance, then this instance is returned.
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @return The {@link LevelOfDetail}
+     */
+    public LevelOfDetail derive(AffineTransform worldToScreen)
+    {
+        double newPixelsPerWorldUnit = 
+            computePixelsPerWorldUnit(worldToScreen);
+        if (newPixelsPerWorldUnit == pixelsPerWorldUnit)
+        {
+            return this;
+        }
+        return new LevelOfDetail(newPixelsPerWorldUnit, interacting);
+    }
+    
+    /**
+     * Returns the {@link LevelOfDetail} that is stored as a rendering 
+     * hint in the given graphics context. If no such hint is stored, 
+     * then a new {@link LevelOfDetail} will be returned that is computed 
+     * from the given world-to-screen transform, and indicates that the 
+     * user is not interacting.
+     * 
+     * @param g The graphics context
+     * @param worldToScreen The world-to-screen transform
+     * @return The {@link LevelOfDetail}
+     */
+    public static LevelOfDetail get(
+        Graphics2D g, AffineTransform worldToScreen)
+    {
+        Object hint = g.getRenderingHint(KEY);
+        if (hint instanceof LevelOfDetail)
+        {
+            return (LevelOfDetail)hint;
+        }
+        return new LevelOfDetail(
+            computePixelsPerWorldUnit(worldToScreen), false);
+    }
+    
+    /**
+     * Update the {@link LevelOfDetail} rendering hint in the given graphics 
+     * context, if present, so that it matches the given world-to-screen 
+     * transform. This is intended for painters that pass a modified 
+     * world-to-screen transform to a delegate. The returned value is the
+     * previous hint, which should be passed to 
+     * {@link #restore(Graphics2D, Object)} after the delegate has painted.
+     * 
+     * @param g The graphics context
+     * @param worldToScreen The world-to-screen transform of the delegate
+     * @return The previous hint, which may be <code>null</code>
+     */
+    static Object update(Graphics2D g, AffineTransform worldToScreen)
+    {
+        Object hint = g.getRenderingHint(KEY);
+        if (hint instanceof LevelOfDetail)
+        {
+            LevelOfDetail levelOfDetail = (LevelOfDetail)hint;
+            g.setRenderingHint(KEY, levelOfDetail.derive(worldToScreen));
+        }
+        return hint;
+    }
+    
+    /**
+     * Restore the given {@link LevelOfDetail} rendering hint, as it was
+     * returned by {@link #update(Graphics2D, AffineTransform)}, in the 
+     * given graphics context. If the given hint is <code>null</code>, 
+     * then nothing is done.
+     * 
+     * @param g The graphics context
+     * @param hint The hint
+     */
+    static void restore(Graphics2D g, Object hint)
+    {
+        if (hint != null)
+        {
+            g.setRenderingHint(KEY, hint);
+        }
+    }
+    
+    /**
+     * Computes the number of pixels per world unit for the given 
+     * world-to-screen transform. This is the square root of the 
+     * absolute value of the determinant of the transform.
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @return The number of pixels per world unit
+     */
+    static double computePixelsPerWorldUnit(AffineTransform worldToScreen)
+    {
+        return Math.sqrt(Math.abs(worldToScreen.getDeterminant()));
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "LevelOfDetail[pixelsPerWorldUnit=" + pixelsPerWorldUnit 
+            + ",interacting=" + interacting + "]";
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Implementation of an {@link ObjectPainter} that delegates the painting
+ * to one of several other {@link ObjectPainter}s, depending on the 
+ * {@link LevelOfDetail}.<br>
+ * <br>
+ * Each delegate is added with a threshold, which is a number of pixels
+ * per world unit. When an object is painted, then the delegate with the
+ * largest threshold that is not larger than the current 
+ * {@link LevelOfDetail#getPixelsPerWorldUnit() pixels per world unit}
+ * will be used. If the current value is smaller than all thresholds,
+ * then nothing will be painted.<br>
+ * <br>
+ * While the user is {@link LevelOfDetail#isInteracting() interacting}
+ * with the viewer, the number of pixels per world unit will be multiplied
+ * with the {@link #setInteractionFactor(double) interaction factor} 
+ * before the delegate is selected. A factor smaller than 1.0 will 
+ * cause less detailed delegates to be used during the interaction.
+ * 
+ * @param <T> The type of the painted objects
+ */
+public final class LevelOfDetailObjectPainter<T> implements ObjectPainter<T>
+{
+    /**
+     * The thresholds, in ascending order
+     */
+    private final List<Double> thresholds;
+    
+    /**
+     * The delegate painters, corresponding to the {@link #thresholds}
+     */
+    private final List<ObjectPainter<? super T>> delegates;
+    
+    /**
+     * The factor for the pixels per world unit during interaction
+     */
+    private double interactionFactor;
+    
+    /**
+     * Creates a new, empty painter
+     */
+    public LevelOfDetailObjectPainter()
+    {
+        this.thresholds = new ArrayList<Double>();
+        this.delegates = new ArrayList<ObjectPainter<? super T>>();
+        this.interactionFactor = 1.0;
+    }
+    
+    /**
+     * Add the given delegate, which should be used when the number of 
+     * pixels per world unit is at least the given threshold (and less 
+     * than the threshold of the next delegate). If there already is a 
+     * delegate with the same threshold, then it will be replaced.
+     * 
+     * @param minPixelsPerWorldUnit The threshold
+     * @param delegate The delegate
+     * @throws NullPointerException If the delegate is <code>null</code>
+     * @throws IllegalArgumentException If the threshold is NaN
+     */
+    public void addDelegate(double minPixelsPerWorldUnit, 
+        ObjectPainter<? super T> delegate)
+    {
+        Objects.requireNonNull(delegate, "The delegate may not be null");
+        if (Double.isNaN(minPixelsPerWorldUnit))
+        {
+            throw new IllegalArgumentException("The threshold is NaN");
+        }
+        int index = 0;
+        while (index < thresholds.size() && 
+            thresholds.get(index) < minPixelsPerWorldUnit)
+        {
+            index++;
+        }
+        if (index < thresholds.size() && 
+            thresholds.get(index) == minPixelsPerWorldUnit)
+        {
+            delegates.set(index, delegate);
+        }
+        else
+        {
+            thresholds.add(index, minPixelsPerWorldUnit);
+            delegates.add(index, delegate);
+        }
+    }
+    
+    /**
+     * Remove the given delegate
+     * 
+     * @param delegate The delegate
+     */
+    public void removeDelegate(ObjectPainter<? super T> delegate)
+    {
+        int index = delegates.indexOf(delegate);
+        if (index != -1)
+        {
+            thresholds.remove(index);
+            delegates.remove(index);
+        }
+    }
+    
+    /**
+     * Set the factor that the number of pixels per world unit will be 
+     * multiplied with while the user is interacting with the viewer
+     * 
+     * @param interactionFactor The interaction factor
+     * @throws IllegalArgumentException If the factor is not positive
+     */
+    public void setInteractionFactor(double interactionFactor)
+    {
+        if (!(interactionFactor > 0))
+        {
+            throw new IllegalArgumentException(
+                "The interaction factor must be positive, "
+                + "but is " + interactionFactor);
+        }
+        this.interactionFactor = interactionFactor;
+    }
+    
+    /**
+     * Returns the factor that the number of pixels per world unit will be 
+     * multiplied with while the user is interacting with the viewer
+     * 
+     * @return The interaction factor
+     */
+    public double getInteractionFactor()
+    {
+        return interactionFactor;
+    }
+    
+    @Override
+    public void paint(Graphics2D g, AffineTransform worldToScreen, 
+        double w, double h, T object)
+    {
+        LevelOfDetail levelOfDetail = LevelOfDetail.get(g, worldToScreen);
+        double pixelsPerWorldUnit = levelOfDetail.getPixelsPerWorldUnit();
+        if (levelOfDetail.isInteracting())
+        {
+            pixelsPerWorldUnit *= interactionFactor;
+        }
+        for (int i = thresholds.size() - 1; i >= 0; i--)
+        {
+            if (thresholds.get(i) <= pixelsPerWorldUnit)
+            {
+                ObjectPainter<? super T> delegate = delegates.get(i);
+                delegate.paint(g, worldToScreen, w, h, object);
+                return;
+            }
+        }
+    }
+}
@@ -32,7 +32,10 @@ import java.util.Objects;
 
 /**
  * Implementation of an {@link ObjectPainter} that paints multiple objects
- * using a delegate
+ * using a delegate. The world-to-screen transform and the 
+ * {@link LevelOfDetail} rendering hint are reset before each object is 
+ * painted, so that modifications that are done by the delegate for one 
+ * object do not affect the other objects.
  *  
  * @param <T> The type of the painted objects 
  */
@@ -65,9 +68,11 @@ public final class MultiObjectPainter<T>
     public void paint(Graphics2D g, AffineTransform worldToScreen, 
         double w, double h, Iterable<? extends T> objects)
     {
+        Object levelOfDetail = g.getRenderingHint(LevelOfDetail.KEY);
         for (T object : objects)
         {
             delegateWorldToScreen.setTransform(worldToScreen);
+            LevelOfDetail.restore(g, levelOfDetail);
             delegate.paint(g, delegateWorldToScreen, w, h, object);
         }
     }
@@ -34,7 +34,9 @@ import java.util.function.BiConsumer;
 /**
  * Implementation of an {@link ObjectPainter} that delegates the painting
  * to another {@link ObjectPainter}, and allows setting an additional
- * transform. 
+ * transform. If the graphics context contains a {@link LevelOfDetail}
+ * rendering hint, then it will be updated to match the transform that 
+ * is passed to the delegate.
  * 
  * @param <T> The type of the painted objects
  */
@@ -114,7 +116,10 @@ public final class TransformedObjectPainter<T> implements ObjectPainter<T>
             transformUpdate.accept(object, transform);
         }
         delegateWorldToScreen.concatenate(transform);
+        Object levelOfDetail = 
+            LevelOfDetail.update(g, delegateWorldToScreen);
         delegatePainter.paint(g, delegateWorldToScreen, w, h, object);
+        LevelOfDetail.restore(g, levelOfDetail);
     }
 
 }
@@ -32,7 +32,10 @@ import java.util.Objects;
 
 /**
  * Implementation of a {@link Painter} that calls a delegate painter
- * after applying a transform to the given world-to-screen transform
+ * after applying a transform to the given world-to-screen transform.
+ * If the graphics context contains a {@link LevelOfDetail} rendering 
+ * hint, then it will be updated to match the transform that is passed 
+ * to the delegate.
  */
 public class TransformedPainter implements Painter
 {
@@ -89,7 +92,10 @@ public class TransformedPainter implements Painter
     {
         delegateWorldToScreen.setTransform(worldToScreen);
         delegateWorldToScreen.concatenate(transform);
+        Object levelOfDetail = 
+            LevelOfDetail.update(g, delegateWorldToScreen);
         delegatePainter.paint(g, delegateWorldToScreen, w, h);
+        LevelOfDetail.restore(g, levelOfDetail);
     }
     
 }
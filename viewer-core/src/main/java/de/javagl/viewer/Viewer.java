@@ -44,6 +44,7 @@ import java.util.Set;
 import java.util.TreeMap;
 
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import de.javagl.geom.AffineTransforms;
 import de.javagl.geom.Points;
@@ -79,7 +80,13 @@ import de.javagl.geom.Rectangles;
  * making sure that these methods are called with valid parameters. 
  * Particularly, they should not be called with <code>NaN</code> or 
  * infinite values, and the zooming factors should not be 0.0. The viewer
- * class itself does not perform any sanity checks on these arguments. 
+ * class itself does not perform any sanity checks on these arguments. <br>
+ * <br>
+ * When one of these methods is called, the viewer is considered to be
+ * {@link #isInteracting() interacting} until no further call happened
+ * for a short delay. The {@link Painter}s receive this information, 
+ * together with the number of pixels per world unit, as a 
+ * {@link LevelOfDetail} rendering hint. 
  */
 public class Viewer extends JPanel 
 {
@@ -168,6 +175,23 @@ public class Viewer extends JPanel
      */
     private MouseControl mouseControl;
     
+    /**
+     * The delay, in milliseconds, after the last interactive modification 
+     * of the transform, until the viewer is no longer considered to be
+     * {@link #isInteracting() interacting}
+     */
+    private static final int INTERACTION_END_DELAY_MS = 250;
+    
+    /**
+     * Whether the user is currently interacting with this viewer
+     */
+    private boolean interacting = false;
+    
+    /**
+     * The timer that resets the {@link #interacting} flag
+     */
+    private final Timer interactionEndTimer;
+    
     /**
      * Creates a new Viewer.<br>
      * <br>
@@ -187,6 +211,13 @@ public class Viewer extends JPanel
         this.transform = new AffineTransform();
         this.inverseTransform = new AffineTransform();
         this.worldArea = new Rectangle2D.Double(0,0,1,1);
+        this.interactionEndTimer = 
+            new Timer(INTERACTION_END_DELAY_MS, e -> 
+            {
+                interacting = false;
+                repaint();
+            });
+        this.interactionEndTimer.setRepeats(false);
         setMouseControl(
             MouseControls.createDefault(this, true, true));
         setBackground(Color.WHITE);
@@ -472,12 +503,16 @@ public class Viewer extends JPanel
                 RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_OFF);
         }
+        LevelOfDetail levelOfDetail = new LevelOfDetail(
+            LevelOfDetail.computePixelsPerWorldUnit(getWorldToScreen()), 
+            interacting);
         for (Entry<Integer, Set<Painter>> entry : painters.entrySet())
         {
             Set<Painter> set = entry.getValue();
             for (Painter painter : set)
             {
                 AffineTransform w = getWorldToScreen();
+                g.setRenderingHint(LevelOfDetail.KEY, levelOfDetail);
                 painter.paint(g, w, getWidth(), getHeight());
             }
         }
@@ -622,6 +657,7 @@ public class Viewer extends JPanel
         t.scale(factorX, factorY);
         t.translate(-worldCenter.getX(), -worldCenter.getY());
         transform(t);
+        markInteraction();
         repaint();
     }
     
@@ -668,6 +704,21 @@ public class Viewer extends JPanel
      * @param screenDy The movement delta in y-direction, in screen coordinates
      */
     public final void translate(double screenDx, double screenDy)
+    {
+        translateTransform(screenDx, screenDy);
+        markInteraction();
+        repaint();
+    }
+    
+    /**
+     * Translate the transform of this viewer by the given delta, in 
+     * screen coordinates, without marking this viewer as 
+     * {@link #isInteracting() interacting}
+     * 
+     * @param screenDx The movement delta in x-direction, in screen coordinates
+     * @param screenDy The movement delta in y-direction, in screen coordinates
+     */
+    private void translateTransform(double screenDx, double screenDy)
     {
         Point2D worldOld = Points.inverseTransform(
             transform, new Point2D.Double(0, 0), null);
@@ -678,7 +729,6 @@ public class Viewer extends JPanel
         AffineTransform t = new AffineTransform();
         t.translate(tdx, tdy);
         transform(t);
-        repaint();
     }
     
     /**
@@ -698,9 +748,34 @@ public class Viewer extends JPanel
             AffineTransform.getRotateInstance(
                 angleRad, screenCenterX, screenCenterY));
         inverseTransform = null;
+        markInteraction();
         repaint();
     }
     
+    /**
+     * Mark this viewer as {@link #isInteracting() interacting}, and
+     * (re)start the timer that will reset this state after a short delay
+     */
+    private void markInteraction()
+    {
+        interacting = true;
+        interactionEndTimer.restart();
+    }
+    
+    /**
+     * Returns whether the user is currently interacting with this viewer.
+     * This is the case when the {@link #translate(double, double)}, 
+     * {@link #rotate(double, double, double)} or 
+     * {@link #zoom(double, double, double, double)} method was called
+     * recently. When the interaction ends, the viewer will be repainted.
+     * 
+     * @return Whether the user is interacting
+     */
+    public final boolean isInteracting()
+    {
+        return interacting;
+    }
+    
     
     
     /**
@@ -775,7 +850,7 @@ public class Viewer extends JPanel
             getWorldToScreen(), worldArea, null);
         double newDx = -newWorldAreaInScreen.getX();
         double newDy = -newWorldAreaInScreen.getY();
-        translate(newDx, newDy);
+        translateTransform(newDx, newDy);
         
         repaint();
      }
@@ -58,44 +58,72 @@ class Axes
         {
             return "%f";
         }
-        double exponent = Math.floor(Math.log10(order));
-        int digits = (int)Math.abs(exponent);
+        int digits = computeFractionDigits(order);
+        String result = "%."+digits+"f";
+        return result;
+    }
+    
+    /**
+     * Returns the number of fraction digits that should be used for 
+     * formatting values of the given order. This is the number of
+     * digits that is used in the format string that is returned by
+     * {@link #formatStringFor(double)}, and may be passed to 
+     * {@link DecimalFormatter#format(double, int)} to obtain the 
+     * same result as with the format string.
+     * 
+     * @param order The order
+     * @return The number of fraction digits
+     */
+    static int computeFractionDigits(double order)
+    {
+        if (order < 1e-100 || !Double.isFinite(order))
+        {
+            // The default precision of the "%f" format
+            return 6;
+        }
         if (order >= 1.0)
         {
-            digits = 0;
+            return 0;
         }
-        String result = "%."+digits+"f";
-        return result;
+        double exponent = Math.floor(Math.log10(order));
+        int digits = (int)Math.abs(exponent);
+        return digits;
     }
     
     /**
-     * Computes the coordinates of ticks for an axis with the given parameters
+     * Computes the ticks for an axis with the given parameters, and stores
+     * them in the given {@link WorldTicks}. If the given result is 
+     * <code>null</code>, then a new instance will be created and returned.
+     * Otherwise, the given instance will be returned. No arrays will be
+     * allocated for this computation, so the same instance may be 
+     * reused in each painting pass.
      * 
      * @param worldMin The minimum world coordinate on the axis
      * @param worldMax The maximum world coordinate on the axis
      * @param worldTickDistance The distance that two ticks
      * should have in world coordinates
-     * @return The world coordinates for the ticks. If the given worldMax
-     * value is smaller than the worldMin, then an empty array will be
-     * returned.
+     * @param result The {@link WorldTicks} that will store the result.
+     * If the given worldMax value is smaller than the worldMin, then
+     * this will contain no ticks.
+     * @return The result
      */
-    static double[] computeWorldTicks(
-        double worldMin, double worldMax, double worldTickDistance)
+    static WorldTicks computeWorldTicks(double worldMin, double worldMax, 
+        double worldTickDistance, WorldTicks result)
     {
+        if (result == null)
+        {
+            result = new WorldTicks();
+        }
         if (worldMax < worldMin)
         {
-            return new double[0];
+            result.set(worldTickDistance, 0, 0);
+            return result;
         }
         long nMin = (long) Math.ceil(worldMin / worldTickDistance);
         long nMax = (long) Math.floor(worldMax / worldTickDistance);
-        int n = (int) (nMax - nMin + 1);
-        double worldTicks[] = new double[n];
-        for (long i = nMin; i <= nMax; i++)
-        {
-            double w = i * worldTickDistance;
-            worldTicks[(int) (i - nMin)] = w;
-        }
-        return worldTicks;
+        int n = (int) Math.max(0, nMax - nMin + 1);
+        result.set(worldTickDistance, nMin, n);
+        return result;
     }
     
     /**
@@ -230,4 +258,4 @@ class Axes
     }
 
     
-}
\ No newline at end of file
+}
\ No newline at end of file
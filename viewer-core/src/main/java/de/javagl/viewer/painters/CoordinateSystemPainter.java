@@ -38,6 +38,8 @@ import java.awt.geom.Area;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.time.Duration;
+import java.time.OffsetDateTime;
 import java.util.function.DoubleFunction;
 import java.util.function.IntSupplier;
 
@@ -124,41 +126,69 @@ public final class CoordinateSystemPainter implements Painter
     private double fixedWorldTickDistanceY = Double.NaN;
     
     /**
-     * The tick positions of the x-axis, in world coordinates
+     * The ticks of the x-axis, in world coordinates
      */
-    private double worldTicksX[];
+    private final WorldTicks worldTicksX = new WorldTicks();
 
     /**
-     * The label format for the x-axis. May be <code>null</code>
-     * if the {@link #labelFormatterX} is used.
+     * The number of fraction digits for the labels of the x-axis. This
+     * is only used if the {@link #labelFormatterX} is <code>null</code>.
      */
-    private String labelFormatX;
+    private int labelDigitsX;
     
     /**
      * The formatter that will receive values for ticks at the x-axis, and
      * return the corresponding label string. May be <code>null</code> if
-     * the default {@link #labelFormatX} should be used.
+     * the default format with {@link #labelDigitsX} should be used.
      */
     private DoubleFunction<String> labelFormatterX;
     
     /**
-     * The tick positions of the y-axis, in world coordinates
+     * The cache for the labels of the x-axis
      */
-    private double worldTicksY[];
+    private final TickLabelCache labelCacheX = new TickLabelCache();
+    
+    /**
+     * The {@link TimeAxis} for the x-axis. If this is not <code>null</code>,
+     * then the ticks of the x-axis are placed at calendar units.
+     */
+    private TimeAxis timeAxisX;
+    
+    /**
+     * The ticks of the y-axis, in world coordinates
+     */
+    private final WorldTicks worldTicksY = new WorldTicks();
 
     /**
-     * The label format for the y-axis. May be <code>null</code>
-     * if the {@link #labelFormatterY} is used.
+     * The number of fraction digits for the labels of the y-axis. This
+     * is only used if the {@link #labelFormatterY} is <code>null</code>.
      */
-    private String labelFormatY;
+    private int labelDigitsY;
 
     /**
      * The formatter that will receive values for ticks at the y-axis, and
      * return the corresponding label string. May be <code>null</code> if
-     * the default {@link #labelFormatY} should be used.
+     * the default format with {@link #labelDigitsY} should be used.
      */
     private DoubleFunction<String> labelFormatterY;
     
+    /**
+     * The cache for the labels of the y-axis
+     */
+    private final TickLabelCache labelCacheY = new TickLabelCache();
+    
+    /**
+     * The {@link TimeAxis} for the y-axis. If this is not <code>null</code>,
+     * then the ticks of the y-axis are placed at calendar units.
+     */
+    private TimeAxis timeAxisY;
+    
+    /**
+     * The batch that collects the labels of both axes, so that they
+     * can be painted at once, after the axes have been painted
+     */
+    private final LabelBatch labelBatch = new LabelBatch();
+    
     /**
      * The bounds of the currently visible area, in world coordinates
      */
@@ -309,7 +339,12 @@ public final class CoordinateSystemPainter implements Painter
      * Set the formatter that will receive x-values for ticks, and return
      * the string that should be painted at this coordinate. This formatter
      * may be null, in which case a string representation of the x-value
-     * will be painted.
+     * will be painted.<br>
+     * <br>
+     * The strings that are returned by the formatter will be cached for
+     * each tick, as long as the distance between the ticks does not 
+     * change. So the formatter should always return the same string 
+     * for the same value.
      * 
      * @param labelFormatterX The formatter
      */
@@ -333,7 +368,12 @@ public final class CoordinateSystemPainter implements Painter
      * Set the formatter that will receive y-values for ticks, and return
      * the string that should be painted at this coordinate. This formatter
      * may be null, in which case a string representation of the y-value
-     * will be painted.
+     * will be painted.<br>
+     * <br>
+     * The strings that are returned by the formatter will be cached for
+     * each tick, as long as the distance between the ticks does not 
+     * change. So the formatter should always return the same string 
+     * for the same value.
      * 
      * @param labelFormatterY The formatter
      */
@@ -342,10 +382,72 @@ public final class CoordinateSystemPainter implements Painter
         this.labelFormatterY = labelFormatterY;
     }
     
+    /**
+     * Set the zero-date and the time unit for the x-axis. If both values 
+     * are not <code>null</code>, then an x-coordinate <code>x</code> will 
+     * be interpreted as the point in time <code>zero + x * unit</code>.
+     * The ticks will then be placed at calendar units (milliseconds, 
+     * seconds, minutes, hours, days, weeks, months or years) in the 
+     * time zone offset of the zero-date. Unless a 
+     * {@link #setLabelFormatterX(DoubleFunction) label formatter} is 
+     * set, the labels will show the date and the time, with a precision
+     * that matches the distance between the ticks.<br>
+     * <br>
+     * If any of the given values is <code>null</code>, then the ticks 
+     * will be placed at decimal values.
+     * 
+     * @param zero The zero-date
+     * @param unit The time unit
+     * @throws IllegalArgumentException If the unit is not positive
+     */
+    public void setTimeAxisX(OffsetDateTime zero, Duration unit)
+    {
+        if (zero == null || unit == null)
+        {
+            this.timeAxisX = null;
+        }
+        else
+        {
+            this.timeAxisX = new TimeAxis(zero, unit);
+        }
+    }
+    
+    /**
+     * Set the zero-date and the time unit for the y-axis. If both values 
+     * are not <code>null</code>, then a y-coordinate <code>y</code> will 
+     * be interpreted as the point in time <code>zero + y * unit</code>.
+     * The ticks will then be placed at calendar units (milliseconds, 
+     * seconds, minutes, hours, days, weeks, months or years) in the 
+     * time zone offset of the zero-date. Unless a 
+     * {@link #setLabelFormatterY(DoubleFunction) label formatter} is 
+     * set, the labels will show the date and the time, with a precision
+     * that matches the distance between the ticks.<br>
+     * <br>
+     * If any of the given values is <code>null</code>, then the ticks 
+     * will be placed at decimal values.
+     * 
+     * @param zero The zero-date
+     * @param unit The time unit
+     * @throws IllegalArgumentException If the unit is not positive
+     */
+    public void setTimeAxisY(OffsetDateTime zero, Duration unit)
+    {
+        if (zero == null || unit == null)
+        {
+            this.timeAxisY = null;
+        }
+        else
+        {
+            this.timeAxisY = new TimeAxis(zero, unit);
+        }
+    }
+    
     /**
      * Set the fixed distance between ticks on the x-axis, in world coordinates.
      * If the given value is NaN, then the distance will be computed 
-     * automatically.
+     * automatically. If a {@link #setTimeAxisX(OffsetDateTime, Duration) 
+     * time axis} is set, then this is the minimum distance between 
+     * the ticks.
      * 
      * @param fixedWorldTickDistanceX The tick distance
      * @throws IllegalArgumentException If the given distance is not positive
@@ -364,7 +466,9 @@ public final class CoordinateSystemPainter implements Painter
     /**
      * Set the fixed distance between ticks on the y-axis, in world coordinates.
      * If the given value is NaN, then the distance will be computed 
-     * automatically.
+     * automatically. If a {@link #setTimeAxisY(OffsetDateTime, Duration) 
+     * time axis} is set, then this is the minimum distance between 
+     * the ticks.
      * 
      * @param fixedWorldTickDistanceY The tick distance
      * @throws IllegalArgumentException If the given distance is not positive
@@ -557,7 +661,8 @@ public final class CoordinateSystemPainter implements Painter
     
     /**
      * Update the data that is used internally for painting the x-axis, 
-     * namely the {@link #worldTicksX} and the {@link #labelFormatX}
+     * namely the {@link #worldTicksX}, the {@link #labelDigitsX} and
+     * the {@link #labelCacheX}
      * 
      * @param worldToScreen The world-to-screen transform
      * @param worldMinX The minimum x-coordinate
@@ -566,29 +671,13 @@ public final class CoordinateSystemPainter implements Painter
     private void updateX(AffineTransform worldToScreen,
         double worldMinX, double worldMaxX)
     {
-        Paint labelPaintX = labelPainterX.getPaint();
-        double worldTickDistanceX = fixedWorldTickDistanceX;
-        if (!Double.isFinite(worldTickDistanceX))
-        {   
-            worldTickDistanceX = Axes.computeWorldTickDistanceX(
-                worldToScreen, minScreenTickDistanceX);
-            labelFormatX = Axes.formatStringFor(worldTickDistanceX);
-            if (labelPaintX != null && adjustForStringLengths)
-            {
-                double adjusted = computeAdjustedWorldTickDistanceX(
-                    worldToScreen, worldMinX, worldMaxX);
-                if (adjusted > 0)
-                {
-                    worldTickDistanceX = adjusted;
-                }
-            }
+        if (timeAxisX != null)
+        {
+            updateTimeTicksX(worldToScreen, worldMinX, worldMaxX);
         }
-        
-        worldTicksX = Axes.computeWorldTicks(
-            worldMinX, worldMaxX, worldTickDistanceX);
-        if (labelPaintX != null)
+        else
         {
-            labelFormatX = Axes.formatStringFor(worldTickDistanceX);
+            updateDecimalTicksX(worldToScreen, worldMinX, worldMaxX);
         }
         
         if (adjustLabelAnchorX)
@@ -619,6 +708,100 @@ public final class CoordinateSystemPainter implements Painter
         }
     }
     
+    /**
+     * Update the {@link #worldTicksX} and the {@link #labelCacheX} for
+     * ticks that are placed at decimal values
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param worldMinX The minimum x-coordinate
+     * @param worldMaxX The maximum x-coordinate
+     */
+    private void updateDecimalTicksX(AffineTransform worldToScreen,
+        double worldMinX, double worldMaxX)
+    {
+        Paint labelPaintX = labelPainterX.getPaint();
+        double worldTickDistanceX = fixedWorldTickDistanceX;
+        if (!Double.isFinite(worldTickDistanceX))
+        {   
+            worldTickDistanceX = Axes.computeWorldTickDistanceX(
+                worldToScreen, minScreenTickDistanceX);
+            labelDigitsX = Axes.computeFractionDigits(worldTickDistanceX);
+            if (labelPaintX != null && adjustForStringLengths)
+            {
+                double adjusted = computeAdjustedWorldTickDistanceX(
+                    worldToScreen, worldMinX, worldMaxX);
+                if (adjusted > 0)
+                {
+                    worldTickDistanceX = adjusted;
+                }
+            }
+        }
+        
+        Axes.computeWorldTicks(
+            worldMinX, worldMaxX, worldTickDistanceX, worldTicksX);
+        if (labelPaintX != null)
+        {
+            labelDigitsX = Axes.computeFractionDigits(worldTickDistanceX);
+            labelCacheX.update(worldTicksX, labelDigitsX, labelFormatterX);
+        }
+    }
+    
+    /**
+     * Update the {@link #worldTicksX} and the {@link #labelCacheX} for
+     * ticks that are placed at calendar units of the {@link #timeAxisX}
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param worldMinX The minimum x-coordinate
+     * @param worldMaxX The maximum x-coordinate
+     */
+    private void updateTimeTicksX(AffineTransform worldToScreen,
+        double worldMinX, double worldMaxX)
+    {
+        Paint labelPaintX = labelPainterX.getPaint();
+        DoubleFunction<String> formatter = labelFormatterX;
+        if (formatter == null)
+        {
+            formatter = timeAxisX.getLabelFormatter();
+        }
+        double unitLengthScreenX =
+            AffineTransforms.computeDistanceX(worldToScreen, 1.0);
+        double minWorldTickDistanceX = 
+            minScreenTickDistanceX / unitLengthScreenX;
+        if (Double.isFinite(fixedWorldTickDistanceX))
+        {
+            minWorldTickDistanceX = fixedWorldTickDistanceX;
+        }
+        timeAxisX.computeTicks(
+            worldMinX, worldMaxX, minWorldTickDistanceX, worldTicksX);
+        if (labelPaintX != null && adjustForStringLengths)
+        {
+            // Make sure that the labels do not overlap, by measuring a
+            // label for the current ticks, and computing the ticks 
+            // again with the label width as the minimum distance
+            double worldX = worldMinX;
+            if (worldTicksX.getCount() > 0)
+            {
+                worldX = worldTicksX.getValue(0);
+            }
+            String labelString = " " + formatter.apply(worldX) + " ";
+            labelPainterX.setLabelLocation(0, 0);
+            Shape labelBounds = labelPainterX.computeLabelBounds(
+                worldToScreen, labelString);
+            double labelWidth = labelBounds.getBounds2D().getWidth();
+            double minWorldLabelDistanceX = labelWidth / unitLengthScreenX;
+            if (minWorldLabelDistanceX > minWorldTickDistanceX)
+            {
+                timeAxisX.computeTicks(
+                    worldMinX, worldMaxX, minWorldLabelDistanceX, worldTicksX);
+            }
+        }
+        if (labelPaintX != null)
+        {
+            labelDigitsX = 0;
+            labelCacheX.update(worldTicksX, labelDigitsX, formatter);
+        }
+    }
+    
     /**
      * Compute the distance between ticks on the x-axis, in world coordinates,
      * that is necessary so that the labels can be painted with the current
@@ -677,7 +860,8 @@ public final class CoordinateSystemPainter implements Painter
 
     /**
      * Update the data that is used internally for painting the y-axis, 
-     * namely the {@link #worldTicksY} and the {@link #labelFormatY}
+     * namely the {@link #worldTicksY}, the {@link #labelDigitsY} and
+     * the {@link #labelCacheY}
      * 
      * @param worldToScreen The world-to-screen transform
      * @param worldMinY The minimum y-coordinate
@@ -687,18 +871,45 @@ public final class CoordinateSystemPainter implements Painter
         double worldMinY, double worldMaxY)
     {
         Paint labelPaintY = labelPainterY.getPaint();
-        double worldTickDistanceY = fixedWorldTickDistanceY;
-        if (!Double.isFinite(worldTickDistanceY))
+        if (timeAxisY != null)
         {
-            worldTickDistanceY = 
-                Axes.computeWorldTickDistanceY(
-                    worldToScreen, minScreenTickDistanceY);
+            double unitLengthScreenY =
+                AffineTransforms.computeDistanceY(worldToScreen, 1.0);
+            double minWorldTickDistanceY = 
+                minScreenTickDistanceY / unitLengthScreenY;
+            if (Double.isFinite(fixedWorldTickDistanceY))
+            {
+                minWorldTickDistanceY = fixedWorldTickDistanceY;
+            }
+            timeAxisY.computeTicks(
+                worldMinY, worldMaxY, minWorldTickDistanceY, worldTicksY);
+            if (labelPaintY != null)
+            {
+                DoubleFunction<String> formatter = labelFormatterY;
+                if (formatter == null)
+                {
+                    formatter = timeAxisY.getLabelFormatter();
+                }
+                labelDigitsY = 0;
+                labelCacheY.update(worldTicksY, labelDigitsY, formatter);
+            }
         }
-        worldTicksY = Axes.computeWorldTicks(
-            worldMinY, worldMaxY, worldTickDistanceY);
-        if (labelPaintY != null)
+        else
         {
-            labelFormatY = Axes.formatStringFor(worldTickDistanceY);
+            double worldTickDistanceY = fixedWorldTickDistanceY;
+            if (!Double.isFinite(worldTickDistanceY))
+            {
+                worldTickDistanceY = 
+                    Axes.computeWorldTickDistanceY(
+                        worldToScreen, minScreenTickDistanceY);
+            }
+            Axes.computeWorldTicks(
+                worldMinY, worldMaxY, worldTickDistanceY, worldTicksY);
+            if (labelPaintY != null)
+            {
+                labelDigitsY = Axes.computeFractionDigits(worldTickDistanceY);
+                labelCacheY.update(worldTicksY, labelDigitsY, labelFormatterY);
+            }
         }
         
         if (adjustLabelAnchorY)
@@ -763,6 +974,7 @@ public final class CoordinateSystemPainter implements Painter
             g.setColor(axisColorY);
             paintAxisY(g, worldToScreen);
         }
+        labelBatch.paint(g);
     }
     
     /**
@@ -835,7 +1047,7 @@ public final class CoordinateSystemPainter implements Painter
     
     /**
      * Paint the x-axis after it has been made sure that the
-     * {@link #worldTicksX} and {@link #labelFormatX} are up to date
+     * {@link #worldTicksX} and {@link #labelCacheX} are up to date
      *  
      * @param g The graphics to paint to
      * @param worldToScreen The world-to-screen transform
@@ -850,12 +1062,13 @@ public final class CoordinateSystemPainter implements Painter
         TEMP_LINE.setLine(worldMinX,worldY,worldMaxX,worldY);
         Lines.transform(worldToScreen, TEMP_LINE, TEMP_LINE);
         g.draw(TEMP_LINE);
-        for (int i=0; i<worldTicksX.length; i++)
+        int n = worldTicksX.getCount();
+        for (int i=0; i<n; i++)
         {
-            double worldTickX = worldTicksX[i];
+            double worldTickX = worldTicksX.getValue(i);
             if (worldTickX >= worldMinX && worldTickX <= worldMaxX)
             {
-                paintTickX(g, worldToScreen, worldTickX, worldY);
+                paintTickX(g, worldToScreen, i, worldTickX, worldY);
             }
         }
     }
@@ -863,7 +1076,7 @@ public final class CoordinateSystemPainter implements Painter
     
     /**
      * Paint the y-axis after it has been made sure that the
-     * {@link #worldTicksY} and {@link #labelFormatY} are up to date
+     * {@link #worldTicksY} and {@link #labelCacheY} are up to date
      *  
      * @param g The graphics to paint to
      * @param worldToScreen The world-to-screen transform
@@ -878,12 +1091,13 @@ public final class CoordinateSystemPainter implements Painter
         TEMP_LINE.setLine(worldX,worldMinY,worldX,worldMaxY);
         Lines.transform(worldToScreen, TEMP_LINE, TEMP_LINE);
         g.draw(TEMP_LINE);
-        for (int i=0; i<worldTicksY.length; i++)
+        int n = worldTicksY.getCount();
+        for (int i=0; i<n; i++)
         {
-            double worldTickY = worldTicksY[i];
+            double worldTickY = worldTicksY.getValue(i);
             if (worldTickY >= worldMinY && worldTickY <= worldMaxY)
             {
-                paintTickY(g, worldToScreen, worldX, worldTickY);
+                paintTickY(g, worldToScreen, i, worldX, worldTickY);
             }
         }
     }
@@ -902,9 +1116,10 @@ public final class CoordinateSystemPainter implements Painter
         double worldMaxX = getValue(worldMaxAxisX, worldBounds.getMaxX());
         double worldMinY = getValue(worldMinAxisY, worldBounds.getMinY());
         double worldMaxY = getValue(worldMaxAxisY, worldBounds.getMaxY());
-        for (int i=0; i<worldTicksX.length; i++)
+        int n = worldTicksX.getCount();
+        for (int i=0; i<n; i++)
         {
-            double worldTickX = worldTicksX[i];
+            double worldTickX = worldTicksX.getValue(i);
             if (worldTickX >= worldMinX && worldTickX <= worldMaxX)
             {
                 paintGridLineX(g, worldToScreen, worldTickX, 
@@ -927,9 +1142,10 @@ public final class CoordinateSystemPainter implements Painter
         double worldMaxX = getValue(worldMaxAxisX, worldBounds.getMaxX());
         double worldMinY = getValue(worldMinAxisY, worldBounds.getMinY());
         double worldMaxY = getValue(worldMaxAxisY, worldBounds.getMaxY());
-        for (int i=0; i<worldTicksY.length; i++)
+        int n = worldTicksY.getCount();
+        for (int i=0; i<n; i++)
         {
-            double worldTickY = worldTicksY[i];
+            double worldTickY = worldTicksY.getValue(i);
             if (worldTickY >= worldMinY && worldTickY <= worldMaxY)
             {
                 paintGridLineY(g, worldToScreen, worldTickY, 
@@ -981,11 +1197,12 @@ public final class CoordinateSystemPainter implements Painter
      * 
      * @param g The graphics context
      * @param worldToScreen The world-to-screen transform
+     * @param tick The position of the tick in the {@link #worldTicksX}
      * @param worldX The x-world coordinate of the tick
      * @param worldY The y-world coordinate of the tick
      */
     private void paintTickX(Graphics2D g, AffineTransform worldToScreen, 
-        double worldX, double worldY)
+        int tick, double worldX, double worldY)
     {
         TEMP_LINE.setLine(worldX, worldY, worldX, worldY+1);
         Lines.transform(worldToScreen, TEMP_LINE, TEMP_LINE);
@@ -1002,24 +1219,26 @@ public final class CoordinateSystemPainter implements Painter
         {
             TEMP_POINT.setLocation(TEMP_LINE.getX2(), TEMP_LINE.getY2());
             Points.inverseTransform(worldToScreen, TEMP_POINT, TEMP_POINT);
-            paintLabelX(g, worldToScreen, TEMP_POINT.getX(), TEMP_POINT.getY());
+            String string = labelCacheX.getLabel(worldTicksX, tick);
+            paintLabelX(g, worldToScreen, 
+                TEMP_POINT.getX(), TEMP_POINT.getY(), string);
         }
     }
     
     /**
-     * Paints a single label of the x-axis 
+     * Adds a single label of the x-axis to the {@link #labelBatch}
      * 
      * @param g The graphics context
      * @param worldToScreen The world-to-screen transform
      * @param worldX The x-world coordinate of the label
      * @param worldY The y-world coordinate of the label
+     * @param string The label string
      */
     private void paintLabelX(Graphics2D g, AffineTransform worldToScreen, 
-        double worldX, double worldY)
+        double worldX, double worldY, String string)
     {
-        String string = createLabelStringX(worldX);
         labelPainterX.setLabelLocation(worldX, worldY);
-        labelPainterX.paint(g, worldToScreen, 0, 0, string);
+        labelPainterX.addLabel(labelBatch, worldToScreen, string);
     }
     
     /**
@@ -1030,11 +1249,7 @@ public final class CoordinateSystemPainter implements Painter
      */
     private String createLabelStringX(double worldX)
     {
-        if (labelFormatterX == null)
-        {
-            return String.format(labelFormatX, worldX);
-        }
-        return labelFormatterX.apply(worldX);
+        return labelCacheX.createLabel(worldX, labelDigitsX, labelFormatterX);
     }
     
     /**
@@ -1042,11 +1257,12 @@ public final class CoordinateSystemPainter implements Painter
      * 
      * @param g The graphics context
      * @param worldToScreen The world-to-screen transform
+     * @param tick The position of the tick in the {@link #worldTicksY}
      * @param worldX The x-world coordinate of the tick
      * @param worldY The y-world coordinate of the tick
      */
     private void paintTickY(Graphics2D g, AffineTransform worldToScreen, 
-        double worldX, double worldY)
+        int tick, double worldX, double worldY)
     {
         TEMP_LINE.setLine(worldX, worldY, worldX+1.0, worldY);
         Lines.transform(worldToScreen, TEMP_LINE, TEMP_LINE);
@@ -1063,42 +1279,28 @@ public final class CoordinateSystemPainter implements Painter
         {
             TEMP_POINT.setLocation(TEMP_LINE.getX2(), TEMP_LINE.getY2());
             Points.inverseTransform(worldToScreen, TEMP_POINT, TEMP_POINT);
-            paintLabelY(g, worldToScreen, TEMP_POINT.getX(), TEMP_POINT.getY());
+            String string = labelCacheY.getLabel(worldTicksY, tick);
+            paintLabelY(g, worldToScreen, 
+                TEMP_POINT.getX(), TEMP_POINT.getY(), string);
         }
     }
     
     /**
-     * Paints a single label of the y-axis 
+     * Adds a single label of the y-axis to the {@link #labelBatch}
      * 
      * @param g The graphics context
      * @param worldToScreen The world-to-screen transform
      * @param worldX The x-world coordinate of the label
      * @param worldY The y-world coordinate of the label
+     * @param string The label string
      */
     private void paintLabelY(Graphics2D g, AffineTransform worldToScreen, 
-        double worldX, double worldY)
+        double worldX, double worldY, String string)
     {
-        String string = createLabelStringY(worldY);
         labelPainterY.setLabelLocation(worldX, worldY);
-        labelPainterY.paint(g, worldToScreen, 0, 0, string);
+        labelPainterY.addLabel(labelBatch, worldToScreen, string);
     }
     
-    /**
-     * Create the string for a label at the y-axis at the given position
-     * 
-     * @param worldY The world coordinate
-     * @return The string
-     */
-    private String createLabelStringY(double worldY)
-    {
-        if (labelFormatterY == null)
-        {
-            return String.format(labelFormatY, worldY);
-        }
-        return labelFormatterY.apply(worldY);
-    }
-    
-    
     /**
      * Returns the given optional value if it is not <code>Double.NaN</code>,
      * and the given value otherwise
@@ -1116,4 +1318,4 @@ public final class CoordinateSystemPainter implements Painter
         return value;
     }
     
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -108,7 +108,12 @@ public class CoordinateSystemPainters
      * <code>x</code> into a date string, by computing 
      * <code>zero + x * unit</code> and formatting the resulting
      * date with the given formatter. The resulting date will
-     * be rounded to microseconds.
+     * be rounded to microseconds.<br>
+     * <br>
+     * For axes that show points in time, consider using
+     * {@link CoordinateSystemPainter#setTimeAxisX(OffsetDateTime, Duration)}
+     * instead, which places the ticks at calendar units and creates the
+     * labels more efficiently.
      *  
      * @param zero The zero-date
      * @param unit The time unit
@@ -0,0 +1,202 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.painters;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * A class for formatting <code>double</code> values with a fixed number 
+ * of fraction digits. The result of {@link #format(double, int)} is the 
+ * same as that of <code>String.format("%.Nf", value)</code> (where 
+ * <code>N</code> is the number of digits), using the default formatting
+ * locale, but it avoids the overhead of parsing the format string and
+ * creating the intermediate objects in the common case.<br>
+ * <br>
+ * For values that are too large, values that are close to a rounding
+ * boundary, or locales that do not use the standard digits, the 
+ * formatting will be delegated to <code>String.format</code>.<br>
+ * <br>
+ * This class is not thread-safe.
+ */
+final class DecimalFormatter
+{
+    /**
+     * The maximum number of fraction digits that are handled without
+     * delegating to <code>String.format</code>
+     */
+    private static final int MAX_DIGITS = 9;
+    
+    /**
+     * The powers of ten, up to {@link #MAX_DIGITS}
+     */
+    private static final long POWERS_OF_TEN[] = 
+    {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 
+        1000000L, 10000000L, 100000000L, 1000000000L 
+    };
+    
+    /**
+     * The maximum absolute scaled value that is handled without
+     * delegating to <code>String.format</code>. Up to this value, 
+     * the error of the scaling is small enough to not affect the 
+     * rounding, unless the value is close to a rounding boundary.
+     */
+    private static final double MAX_SCALED_VALUE = 1e12;
+    
+    /**
+     * The tolerance for detecting values that are close to a
+     * rounding boundary
+     */
+    private static final double ROUNDING_TOLERANCE = 1e-3;
+    
+    /**
+     * The locale that the {@link #decimalSeparator} was obtained from
+     */
+    private Locale locale;
+    
+    /**
+     * The decimal separator of the current locale
+     */
+    private char decimalSeparator;
+    
+    /**
+     * Whether the current locale uses the standard digits 
+     */
+    private boolean standardDigits;
+    
+    /**
+     * The buffer that the characters of the result are written to
+     */
+    private final char buffer[];
+    
+    /**
+     * Default constructor
+     */
+    DecimalFormatter()
+    {
+        this.buffer = new char[32];
+    }
+    
+    /**
+     * Make sure that the locale information of this formatter matches the
+     * current default formatting locale. 
+     * 
+     * @return Whether the locale information changed
+     */
+    boolean validateLocale()
+    {
+        Locale currentLocale = Locale.getDefault(Locale.Category.FORMAT);
+        if (currentLocale.equals(locale))
+        {
+            return false;
+        }
+        DecimalFormatSymbols symbols = 
+            DecimalFormatSymbols.getInstance(currentLocale);
+        locale = currentLocale;
+        decimalSeparator = symbols.getDecimalSeparator();
+        standardDigits = (symbols.getZeroDigit() == '0');
+        return true;
+    }
+    
+    /**
+     * Format the given value with the given number of fraction digits.
+     * The result will be the same as that of 
+     * <code>String.format("%.Nf", value)</code>, where <code>N</code> is
+     * the given number of digits.
+     * 
+     * @param value The value
+     * @param digits The number of fraction digits
+     * @return The formatted string
+     */
+    String format(double value, int digits)
+    {
+        validateLocale();
+        if (!standardDigits || digits < 0 || digits > MAX_DIGITS ||
+            !Double.isFinite(value))
+        {
+            return fallback(value, digits);
+        }
+        long scale = POWERS_OF_TEN[digits];
+        double scaled = Math.abs(value) * scale;
+        if (scaled >= MAX_SCALED_VALUE)
+        {
+            return fallback(value, digits);
+        }
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < ROUNDING_TOLERANCE)
+        {
+            return fallback(value, digits);
+        }
+        long units = (long)floor;
+        if (fraction > 0.5)
+        {
+            units++;
+        }
+        
+        // Write the digits from right to left
+        int position = buffer.length;
+        long integerPart = units / scale;
+        long fractionPart = units % scale;
+        if (digits > 0)
+        {
+            for (int i = 0; i < digits; i++)
+            {
+                buffer[--position] = (char)('0' + (fractionPart % 10));
+                fractionPart /= 10;
+            }
+            buffer[--position] = decimalSeparator;
+        }
+        do
+        {
+            buffer[--position] = (char)('0' + (integerPart % 10));
+            integerPart /= 10;
+        }
+        while (integerPart > 0);
+        
+        // String.format keeps the sign of negative values that are 
+        // rounded to zero, including -0.0
+        if (Double.compare(value, 0.0) < 0)
+        {
+            buffer[--position] = '-';
+        }
+        return new String(buffer, position, buffer.length - position);
+    }
+    
+    /**
+     * Format the given value using <code>String.format</code>
+     * 
+     * @param value The value
+     * @param digits The number of fraction digits
+     * @return The formatted string
+     */
+    private static String fallback(double value, int digits)
+    {
+        return String.format("%." + digits + "f", value);
+    }
+}
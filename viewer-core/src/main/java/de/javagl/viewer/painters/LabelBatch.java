@@ -0,0 +1,395 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.painters;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A class that collects labels that should be painted, and paints them 
+ * all at once, in order to reduce the number of changes of the state 
+ * of the graphics context.<br>
+ * <br>
+ * Labels may be added to a batch with 
+ * {@link LabelPainter#addLabel(LabelBatch, AffineTransform, String)}. 
+ * The labels are grouped by their font, paint, and the rotation and
+ * scaling of their transform. When the batch is 
+ * {@link #paint(Graphics2D) painted}, then the font, paint and transform
+ * are set only once for each group. Labels that are only translated 
+ * (which is the case for labels that are not transformed and not 
+ * rotated) are painted at their screen position, without modifying 
+ * the transform of the graphics context at all.<br>
+ * <br>
+ * The labels of one group are painted in the order in which they have
+ * been added. The groups are painted in the order in which their first
+ * label has been added. So when labels of different groups overlap, 
+ * then their order may differ from the order in which they have been
+ * added.<br>
+ * <br>
+ * This class is not thread-safe.
+ */
+public final class LabelBatch
+{
+    /**
+     * Temporary affine transform, used internally
+     */
+    private static final AffineTransform TEMP_AFFINE_TRANSFORM =
+        new AffineTransform();
+    
+    /**
+     * A group of labels that share the same font, paint and 
+     * linear part of their transform
+     */
+    private static final class Group
+    {
+        /**
+         * The font. May be <code>null</code>.
+         */
+        private final Font font;
+        
+        /**
+         * The paint. May be <code>null</code>.
+         */
+        private final Paint paint;
+        
+        /**
+         * The m00 component of the transform
+         */
+        private final double m00;
+        
+        /**
+         * The m10 component of the transform
+         */
+        private final double m10;
+        
+        /**
+         * The m01 component of the transform
+         */
+        private final double m01;
+        
+        /**
+         * The m11 component of the transform
+         */
+        private final double m11;
+        
+        /**
+         * Whether the transform is only a translation
+         */
+        private final boolean translationOnly;
+        
+        /**
+         * The labels
+         */
+        private String labels[];
+        
+        /**
+         * The coordinates of the labels, as (x,y) pairs. If the
+         * transform is not only a translation, then these are the 
+         * coordinates in the coordinate system that is defined by 
+         * the linear part of the transform.
+         */
+        private float coordinates[];
+        
+        /**
+         * The number of labels
+         */
+        private int count;
+        
+        /**
+         * Creates a new group
+         * 
+         * @param font The font
+         * @param paint The paint
+         * @param at The transform whose linear part should be used
+         */
+        Group(Font font, Paint paint, AffineTransform at)
+        {
+            this.font = font;
+            this.paint = paint;
+            this.m00 = at.getScaleX();
+            this.m10 = at.getShearY();
+            this.m01 = at.getShearX();
+            this.m11 = at.getScaleY();
+            this.translationOnly = isTranslation(at);
+            this.labels = new String[8];
+            this.coordinates = new float[16];
+            this.count = 0;
+        }
+        
+        /**
+         * Returns whether this group may contain a label with the given 
+         * font, paint and transform
+         * 
+         * @param font The font
+         * @param paint The paint
+         * @param at The transform
+         * @return Whether this group matches
+         */
+        boolean matches(Font font, Paint paint, AffineTransform at)
+        {
+            return m00 == at.getScaleX() 
+                && m10 == at.getShearY()
+                && m01 == at.getShearX()
+                && m11 == at.getScaleY()
+                && Objects.equals(font, this.font)
+                && Objects.equals(paint, this.paint);
+        }
+        
+        /**
+         * Add the given label
+         * 
+         * @param label The label
+         * @param x The x-coordinate
+         * @param y The y-coordinate
+         */
+        void add(String label, float x, float y)
+        {
+            if (count == labels.length)
+            {
+                labels = Arrays.copyOf(labels, count * 2);
+                coordinates = Arrays.copyOf(coordinates, count * 4);
+            }
+            labels[count] = label;
+            coordinates[count * 2 + 0] = x;
+            coordinates[count * 2 + 1] = y;
+            count++;
+        }
+        
+        /**
+         * Paint all labels of this group
+         * 
+         * @param g The graphics context
+         */
+        void paint(Graphics2D g)
+        {
+            if (font != null)
+            {
+                g.setFont(font);
+            }
+            if (paint != null)
+            {
+                g.setPaint(paint);
+            }
+            AffineTransform oldAt = null;
+            if (!translationOnly)
+            {
+                oldAt = g.getTransform();
+                TEMP_AFFINE_TRANSFORM.setTransform(m00, m10, m01, m11, 0, 0);
+                g.transform(TEMP_AFFINE_TRANSFORM);
+            }
+            for (int i = 0; i < count; i++)
+            {
+                g.drawString(labels[i], 
+                    coordinates[i * 2 + 0], coordinates[i * 2 + 1]);
+            }
+            if (oldAt != null)
+            {
+                g.setTransform(oldAt);
+            }
+        }
+        
+        /**
+         * Remove all labels from this group
+         */
+        void clear()
+        {
+            Arrays.fill(labels, 0, count, null);
+            count = 0;
+        }
+    }
+    
+    /**
+     * The groups of labels
+     */
+    private final List<Group> groups;
+    
+    /**
+     * The group that the last label was added to
+     */
+    private Group lastGroup;
+    
+    /**
+     * Creates a new, empty label batch
+     */
+    public LabelBatch()
+    {
+        this.groups = new ArrayList<Group>();
+        this.lastGroup = null;
+    }
+    
+    /**
+     * Add the given label to this batch. The label will be painted at
+     * the origin, after the given transform was applied to the graphics 
+     * context. If the transform is not invertible, then the label will
+     * not be added.
+     * 
+     * @param font The font. If this is <code>null</code>, then the current
+     * font of the graphics context will be used.
+     * @param paint The paint. If this is <code>null</code>, then the 
+     * current paint of the graphics context will be used.
+     * @param labelTransform The label transform
+     * @param label The label
+     */
+    void add(Font font, Paint paint, 
+        AffineTransform labelTransform, String label)
+    {
+        Group group = lastGroup;
+        if (group == null || !group.matches(font, paint, labelTransform))
+        {
+            group = findGroup(font, paint, labelTransform);
+            if (group == null)
+            {
+                group = new Group(font, paint, labelTransform);
+                groups.add(group);
+            }
+            lastGroup = group;
+        }
+        double tx = labelTransform.getTranslateX();
+        double ty = labelTransform.getTranslateY();
+        if (group.translationOnly)
+        {
+            group.add(label, (float)tx, (float)ty);
+            return;
+        }
+        
+        // Transform the translation into the coordinate system that
+        // is defined by the linear part of the transform
+        double det = group.m00 * group.m11 - group.m01 * group.m10;
+        if (det == 0.0 || !Double.isFinite(det))
+        {
+            return;
+        }
+        double x = ( group.m11 * tx - group.m01 * ty) / det;
+        double y = (-group.m10 * tx + group.m00 * ty) / det;
+        group.add(label, (float)x, (float)y);
+    }
+    
+    /**
+     * Returns the group that matches the given font, paint and transform,
+     * or <code>null</code> if there is no such group
+     * 
+     * @param font The font
+     * @param paint The paint
+     * @param labelTransform The transform
+     * @return The group
+     */
+    private Group findGroup(
+        Font font, Paint paint, AffineTransform labelTransform)
+    {
+        for (int i = 0; i < groups.size(); i++)
+        {
+            Group group = groups.get(i);
+            if (group.matches(font, paint, labelTransform))
+            {
+                return group;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns whether this batch does not contain any labels
+     * 
+     * @return Whether this batch is empty
+     */
+    public boolean isEmpty()
+    {
+        for (int i = 0; i < groups.size(); i++)
+        {
+            if (groups.get(i).count > 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Paint all labels of this batch to the given graphics context, and
+     * {@link #clear() clear} this batch afterwards.<br>
+     * <br>
+     * The transform of the given graphics context will be the same after
+     * this call as it was before. Its font and paint may have been changed.
+     * 
+     * @param g The graphics context
+     */
+    public void paint(Graphics2D g)
+    {
+        for (int i = 0; i < groups.size(); i++)
+        {
+            Group group = groups.get(i);
+            if (group.count > 0)
+            {
+                group.paint(g);
+            }
+        }
+        clear();
+    }
+    
+    /**
+     * Remove all labels from this batch. Groups that did not contain any
+     * labels since the previous call to this method will be discarded, 
+     * and the remaining ones will be kept for the next labels.
+     */
+    public void clear()
+    {
+        Iterator<Group> iterator = groups.iterator();
+        while (iterator.hasNext())
+        {
+            Group group = iterator.next();
+            if (group.count == 0)
+            {
+                iterator.remove();
+            }
+            else
+            {
+                group.clear();
+            }
+        }
+        lastGroup = null;
+    }
+    
+    /**
+     * Returns whether the given transform is only a translation
+     * 
+     * @param at The transform
+     * @return Whether the transform is only a translation
+     */
+    static boolean isTranslation(AffineTransform at)
+    {
+        int type = at.getType();
+        return type == AffineTransform.TYPE_IDENTITY 
+            || type == AffineTransform.TYPE_TRANSLATION;
+    }
+}
@@ -51,6 +51,14 @@ public final class LabelPainter implements ObjectPainter<String>
     private static final AffineTransform TEMP_AFFINE_TRANSFORM =
         new AffineTransform();
     
+    /**
+     * The font that is used for computing the label bounds when no font 
+     * was set and the font of the graphics context is not known. This
+     * is the same as the default font of a graphics context.
+     */
+    private static final Font DEFAULT_FONT = 
+        new Font("Dialog", Font.PLAIN, 12);
+    
     /**
      * Temporary rectangle, used internally
      */
@@ -471,30 +479,98 @@ public final class LabelPainter implements ObjectPainter<String>
         g.setFont(font);
         g.setPaint(paint);
         
-        initLabelTransform(worldToScreen, TEMP_AFFINE_TRANSFORM);
-        StringBoundsUtils.computeStringBounds(label, font, TEMP_RECTANGLE);
-        
-        TEMP_AFFINE_TRANSFORM.rotate(angleRad);
-        
-        double absoluteLabelAnchorX = 
-            computeAbsoluteX(TEMP_RECTANGLE, labelAnchor);
-        double absoluteLabelAnchorY = 
-            computeAbsoluteY(TEMP_RECTANGLE, labelAnchor);
-        TEMP_AFFINE_TRANSFORM.translate(
-            -absoluteLabelAnchorX, -absoluteLabelAnchorY);
-        
-        if (!shouldPaint(worldToScreen, 
-            TEMP_AFFINE_TRANSFORM, label, TEMP_RECTANGLE))
+        Font labelFont = font;
+        if (labelFont == null)
+        {
+            labelFont = g.getFont();
+        }
+        if (!computeLabelTransform(worldToScreen, label, labelFont, 
+            TEMP_AFFINE_TRANSFORM))
         {
             return;
         }
         
+        if (LabelBatch.isTranslation(TEMP_AFFINE_TRANSFORM))
+        {
+            g.drawString(label, 
+                (float)TEMP_AFFINE_TRANSFORM.getTranslateX(), 
+                (float)TEMP_AFFINE_TRANSFORM.getTranslateY());
+            return;
+        }
         AffineTransform oldAt = g.getTransform();
         g.transform(TEMP_AFFINE_TRANSFORM);
         g.drawString(label, 0, 0);
         g.setTransform(oldAt);
     }
     
+    /**
+     * Add the given label to the given {@link LabelBatch}, instead of
+     * painting it immediately. The label will be placed at the current
+     * {@link #setLabelLocation(double, double) label location}, with 
+     * the current settings of this painter. When the 
+     * {@link #setLabelPaintingCondition(Predicate) label painting 
+     * condition} is not fulfilled for the label, then it will not
+     * be added.<br>
+     * <br>
+     * If no {@link #setFont(Font) font} was set, then the label bounds 
+     * will be computed with a default font, and the label will be painted
+     * with this font.
+     * 
+     * @param labelBatch The {@link LabelBatch}
+     * @param worldToScreen The world-to-screen transform
+     * @param label The label. If this is <code>null</code>, then nothing
+     * will be added.
+     */
+    public void addLabel(LabelBatch labelBatch, 
+        AffineTransform worldToScreen, String label)
+    {
+        if (label == null)
+        {
+            return;
+        }
+        Font labelFont = font;
+        if (labelFont == null)
+        {
+            labelFont = DEFAULT_FONT;
+        }
+        if (!computeLabelTransform(worldToScreen, label, labelFont, 
+            TEMP_AFFINE_TRANSFORM))
+        {
+            return;
+        }
+        labelBatch.add(labelFont, paint, TEMP_AFFINE_TRANSFORM, label);
+    }
+    
+    /**
+     * Compute the transform that has to be applied to the graphics context 
+     * in order to paint the given label at the origin, and store it in
+     * the given result. 
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param label The label
+     * @param labelFont The font for the label
+     * @param result The transform that will store the result
+     * @return Whether the label should be painted, according to the
+     * {@link #labelPaintingCondition}
+     */
+    private boolean computeLabelTransform(AffineTransform worldToScreen, 
+        String label, Font labelFont, AffineTransform result)
+    {
+        initLabelTransform(worldToScreen, result);
+        StringBoundsUtils.computeStringBounds(
+            label, labelFont, TEMP_RECTANGLE);
+        
+        result.rotate(angleRad);
+        
+        double absoluteLabelAnchorX = 
+            computeAbsoluteX(TEMP_RECTANGLE, labelAnchor);
+        double absoluteLabelAnchorY = 
+            computeAbsoluteY(TEMP_RECTANGLE, labelAnchor);
+        result.translate(-absoluteLabelAnchorX, -absoluteLabelAnchorY);
+        
+        return shouldPaint(worldToScreen, result, label, TEMP_RECTANGLE);
+    }
+    
     /**
      * Compute the bounds of the label when it is painted with this painter
      *  
@@ -505,8 +581,14 @@ public final class LabelPainter implements ObjectPainter<String>
     public Shape computeLabelBounds(
         AffineTransform worldToScreen, String label)
     {
+        Font labelFont = font;
+        if (labelFont == null)
+        {
+            labelFont = DEFAULT_FONT;
+        }
         initLabelTransform(worldToScreen, TEMP_AFFINE_TRANSFORM);
-        StringBoundsUtils.computeStringBounds(label, font, TEMP_RECTANGLE);
+        StringBoundsUtils.computeStringBounds(
+            label, labelFont, TEMP_RECTANGLE);
         
         TEMP_AFFINE_TRANSFORM.rotate(angleRad);
         
@@ -0,0 +1,199 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.painters;
+
+import java.util.Arrays;
+import java.util.function.DoubleFunction;
+
+/**
+ * A cache for the label strings of the ticks on one axis.<br>
+ * <br>
+ * The labels are stored for the range of tick indices that was passed to 
+ * the last call to {@link #update(WorldTicks, int, DoubleFunction)}. As 
+ * long as the tick distance, the number of fraction digits and the 
+ * formatter remain the same, the labels of ticks that are still visible
+ * after an update will be reused. So when the view is only moved, most
+ * labels will not have to be created again.
+ */
+final class TickLabelCache
+{
+    /**
+     * The formatter for the default labels
+     */
+    private final DecimalFormatter decimalFormatter;
+    
+    /**
+     * The tick distance for which the labels are valid
+     */
+    private double worldTickDistance;
+    
+    /**
+     * The number of fraction digits for which the labels are valid
+     */
+    private int digits;
+    
+    /**
+     * The formatter for which the labels are valid
+     */
+    private DoubleFunction<String> labelFormatter;
+    
+    /**
+     * The index of the tick that the first label belongs to
+     */
+    private long firstIndex;
+    
+    /**
+     * The number of labels that are currently stored
+     */
+    private int count;
+    
+    /**
+     * The labels. Elements may be <code>null</code> for labels that
+     * have not yet been created.
+     */
+    private String labels[];
+    
+    /**
+     * The array that the labels are moved into during an update,
+     * swapped with the {@link #labels} afterwards
+     */
+    private String spareLabels[];
+    
+    /**
+     * Default constructor
+     */
+    TickLabelCache()
+    {
+        this.decimalFormatter = new DecimalFormatter();
+        this.worldTickDistance = Double.NaN;
+        this.labels = new String[0];
+        this.spareLabels = new String[0];
+    }
+    
+    /**
+     * Update this cache for the given ticks. If the tick distance, the
+     * given number of fraction digits, the formatter or the formatting 
+     * locale changed since the previous call, then all labels will be 
+     * discarded. Otherwise, the labels for all ticks that have been 
+     * visible before will be retained.
+     * 
+     * @param worldTicks The {@link WorldTicks}
+     * @param digits The number of fraction digits, for the case that 
+     * the given formatter is <code>null</code>
+     * @param labelFormatter The optional formatter for the labels
+     */
+    void update(WorldTicks worldTicks, int digits, 
+        DoubleFunction<String> labelFormatter)
+    {
+        boolean localeChanged = decimalFormatter.validateLocale();
+        double newWorldTickDistance = worldTicks.getWorldTickDistance(); 
+        if (localeChanged ||
+            Double.compare(newWorldTickDistance, worldTickDistance) != 0 ||
+            digits != this.digits || 
+            labelFormatter != this.labelFormatter)
+        {
+            Arrays.fill(labels, 0, count, null);
+            count = 0;
+            this.worldTickDistance = newWorldTickDistance;
+            this.digits = digits;
+            this.labelFormatter = labelFormatter;
+        }
+        
+        long newFirstIndex = worldTicks.getFirstIndex();
+        int newCount = worldTicks.getCount();
+        if (spareLabels.length < newCount)
+        {
+            spareLabels = new String[newCount];
+        }
+        for (int i = 0; i < newCount; i++)
+        {
+            long oldPosition = newFirstIndex + i - firstIndex;
+            if (oldPosition >= 0 && oldPosition < count)
+            {
+                spareLabels[i] = labels[(int)oldPosition];
+            }
+            else
+            {
+                spareLabels[i] = null;
+            }
+        }
+        Arrays.fill(labels, 0, count, null);
+        
+        String temp[] = labels;
+        labels = spareLabels;
+        spareLabels = temp;
+        firstIndex = newFirstIndex;
+        count = newCount;
+    }
+    
+    /**
+     * Returns the label for the tick at the given position of the 
+     * {@link WorldTicks} that have been passed to the last call
+     * to {@link #update(WorldTicks, int, DoubleFunction)}, creating 
+     * it if necessary.
+     * 
+     * @param worldTicks The {@link WorldTicks}
+     * @param i The position of the tick
+     * @return The label
+     */
+    String getLabel(WorldTicks worldTicks, int i)
+    {
+        long position = worldTicks.getIndex(i) - firstIndex;
+        if (position < 0 || position >= count)
+        {
+            return createLabel(worldTicks.getValue(i), digits, labelFormatter);
+        }
+        String label = labels[(int)position];
+        if (label == null)
+        {
+            label = createLabel(
+                worldTicks.getValue(i), digits, labelFormatter);
+            labels[(int)position] = label;
+        }
+        return label;
+    }
+    
+    /**
+     * Create the label for the given value, bypassing the cache. If the
+     * given formatter is <code>null</code>, then the value will be 
+     * formatted with the given number of fraction digits.
+     * 
+     * @param value The value
+     * @param digits The number of fraction digits
+     * @param labelFormatter The optional formatter
+     * @return The label
+     */
+    String createLabel(double value, int digits, 
+        DoubleFunction<String> labelFormatter)
+    {
+        if (labelFormatter == null)
+        {
+            return decimalFormatter.format(value, digits);
+        }
+        return labelFormatter.apply(value);
+    }
+}
@@ -0,0 +1,646 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.painters;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Objects;
+import java.util.function.DoubleFunction;
+
+/**
+ * A class for computing the ticks of an axis whose world coordinates 
+ * describe points in time, and for creating the labels of these ticks.<br>
+ * <br>
+ * The world coordinate <code>x</code> describes the point in time
+ * <code>zero + x * unit</code>. The ticks are placed at multiples of
+ * milliseconds, seconds, minutes, hours, days, weeks, months or years,
+ * in the time zone offset of the zero-date. For example, the ticks for 
+ * days are placed at midnight, and the ticks for weeks are placed at 
+ * the beginning of a monday.<br>
+ * <br>
+ * The labels are created directly from the calendar fields, with a
+ * precision that matches the current tick unit. The date part of the 
+ * last label is cached, so that it does not have to be created again 
+ * for adjacent ticks that are on the same day.<br>
+ * <br>
+ * This class is not thread-safe.
+ */
+final class TimeAxis
+{
+    /**
+     * The number of milliseconds per second
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+    
+    /**
+     * The number of milliseconds per minute
+     */
+    private static final long MILLIS_PER_MINUTE = 60L * MILLIS_PER_SECOND;
+    
+    /**
+     * The number of milliseconds per hour
+     */
+    private static final long MILLIS_PER_HOUR = 60L * MILLIS_PER_MINUTE;
+    
+    /**
+     * The number of milliseconds per day
+     */
+    private static final long MILLIS_PER_DAY = 24L * MILLIS_PER_HOUR;
+    
+    /**
+     * The number of milliseconds per week
+     */
+    private static final long MILLIS_PER_WEEK = 7L * MILLIS_PER_DAY;
+    
+    /**
+     * The nominal number of milliseconds per month. This is the average
+     * length of a month in the gregorian calendar.
+     */
+    private static final long NOMINAL_MILLIS_PER_MONTH = 2629746000L;
+    
+    /**
+     * The offset of the first monday after the epoch, 1970-01-05, 
+     * in milliseconds
+     */
+    private static final long MONDAY_ORIGIN_MILLIS = 4L * MILLIS_PER_DAY;
+    
+    /**
+     * The maximum absolute value for a point in time, in milliseconds 
+     * relative to the epoch, that will be handled. This is about 
+     * 300000 years, and avoids overflows in the computations.
+     */
+    private static final double MAX_ABSOLUTE_MILLIS = 1e16;
+    
+    /**
+     * The maximum number of years between two ticks
+     */
+    private static final double MAX_YEAR_STEP = 100000.0;
+    
+    /**
+     * The steps between ticks that have a fixed duration, in milliseconds,
+     * in ascending order
+     */
+    private static final long FIXED_STEPS[] = 
+    {
+        1, 2, 5, 10, 20, 50, 100, 200, 500,
+        MILLIS_PER_SECOND, 
+        2 * MILLIS_PER_SECOND, 
+        5 * MILLIS_PER_SECOND, 
+        10 * MILLIS_PER_SECOND, 
+        15 * MILLIS_PER_SECOND,
+        30 * MILLIS_PER_SECOND,
+        MILLIS_PER_MINUTE, 
+        2 * MILLIS_PER_MINUTE, 
+        5 * MILLIS_PER_MINUTE, 
+        10 * MILLIS_PER_MINUTE, 
+        15 * MILLIS_PER_MINUTE,
+        30 * MILLIS_PER_MINUTE,
+        MILLIS_PER_HOUR, 
+        2 * MILLIS_PER_HOUR, 
+        3 * MILLIS_PER_HOUR, 
+        6 * MILLIS_PER_HOUR, 
+        12 * MILLIS_PER_HOUR,
+        MILLIS_PER_DAY,
+        2 * MILLIS_PER_DAY,
+        MILLIS_PER_WEEK,
+        2 * MILLIS_PER_WEEK
+    };
+    
+    /**
+     * The steps between ticks that are placed at months, in ascending order
+     */
+    private static final int MONTH_STEPS[] = { 1, 2, 3, 6 };
+    
+    /**
+     * The precision of labels that show the milliseconds
+     */
+    private static final int PRECISION_MILLISECOND = 0;
+
+    /**
+     * The precision of labels that show the seconds
+     */
+    private static final int PRECISION_SECOND = 1;
+
+    /**
+     * The precision of labels that show the minutes
+     */
+    private static final int PRECISION_MINUTE = 2;
+
+    /**
+     * The precision of labels that show the day
+     */
+    private static final int PRECISION_DAY = 3;
+
+    /**
+     * The precision of labels that show the month
+     */
+    private static final int PRECISION_MONTH = 4;
+
+    /**
+     * The precision of labels that show the year
+     */
+    private static final int PRECISION_YEAR = 5;
+    
+    /**
+     * The zero-date, in milliseconds relative to the epoch, in the 
+     * local time of the zero-date offset
+     */
+    private final long zeroLocalMillis;
+    
+    /**
+     * The length of one unit in world coordinates, in milliseconds
+     */
+    private final double unitMillis;
+    
+    /**
+     * The current step between two ticks, in milliseconds, or 0 if the 
+     * ticks are placed at months 
+     */
+    private long stepMillis;
+    
+    /**
+     * The local time that the ticks with a fixed step are aligned to,
+     * in milliseconds relative to the epoch
+     */
+    private long originMillis;
+    
+    /**
+     * The current number of months between two ticks, or 0 if the
+     * ticks have a fixed step
+     */
+    private int stepMonths;
+    
+    /**
+     * The precision of the labels, one of the <code>PRECISION_*</code>
+     * constants
+     */
+    private int precision;
+    
+    /**
+     * The year that was computed with {@link #computeCivil(long)}
+     */
+    private long civilYear;
+    
+    /**
+     * The month that was computed with {@link #computeCivil(long)}, 
+     * in [1,12]
+     */
+    private int civilMonth;
+    
+    /**
+     * The day of the month that was computed with 
+     * {@link #computeCivil(long)}, in [1,31]
+     */
+    private int civilDay;
+    
+    /**
+     * The day (relative to the epoch) for which the {@link #prefix} 
+     * was created
+     */
+    private long prefixDay;
+    
+    /**
+     * The characters of the date part of the last label, in the 
+     * form <code>yyyy-MM-dd</code>
+     */
+    private final char prefix[];
+    
+    /**
+     * The number of valid characters in the {@link #prefix}
+     */
+    private int prefixLength;
+    
+    /**
+     * The buffer for creating the labels
+     */
+    private final char buffer[];
+    
+    /**
+     * The function that creates the labels
+     */
+    private final DoubleFunction<String> labelFormatter;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param zero The zero-date
+     * @param unit The time unit
+     * @throws NullPointerException If any argument is <code>null</code>
+     * @throws IllegalArgumentException If the unit is not positive
+     */
+    TimeAxis(OffsetDateTime zero, Duration unit)
+    {
+        Objects.requireNonNull(zero, "The zero-date may not be null");
+        Objects.requireNonNull(unit, "The unit may not be null");
+        if (unit.isZero() || unit.isNegative())
+        {
+            throw new IllegalArgumentException(
+                "The unit must be positive, but is " + unit);
+        }
+        long offsetMillis = 
+            zero.getOffset().getTotalSeconds() * MILLIS_PER_SECOND;
+        this.zeroLocalMillis = zero.toInstant().toEpochMilli() + offsetMillis;
+        this.unitMillis = 
+            unit.getSeconds() * 1000.0 + unit.getNano() / 1000000.0;
+        this.stepMillis = 1;
+        this.originMillis = 0;
+        this.stepMonths = 0;
+        this.precision = PRECISION_MILLISECOND;
+        this.prefixDay = Long.MIN_VALUE;
+        this.prefix = new char[16];
+        this.buffer = new char[32];
+        this.labelFormatter = this::createLabel;
+    }
+    
+    /**
+     * Returns a function that creates the labels for the ticks that 
+     * have been computed with the last call to 
+     * {@link #computeTicks(double, double, double, WorldTicks)}. This
+     * will always be the same instance.
+     * 
+     * @return The label formatter
+     */
+    DoubleFunction<String> getLabelFormatter()
+    {
+        return labelFormatter;
+    }
+    
+    /**
+     * Compute the ticks for the given range, and store them in the given
+     * {@link WorldTicks}. The distance between the ticks will be the 
+     * smallest calendar unit that is not smaller than the given 
+     * minimum distance.
+     * 
+     * @param worldMin The minimum world coordinate
+     * @param worldMax The maximum world coordinate
+     * @param minWorldTickDistance The minimum distance between two ticks, 
+     * in world coordinates
+     * @param result The {@link WorldTicks} that will store the result
+     */
+    void computeTicks(double worldMin, double worldMax, 
+        double minWorldTickDistance, WorldTicks result)
+    {
+        selectStep(minWorldTickDistance * unitMillis);
+        double nominalWorldTickDistance;
+        if (stepMonths == 0)
+        {
+            nominalWorldTickDistance = stepMillis / unitMillis;
+        }
+        else
+        {
+            nominalWorldTickDistance = 
+                stepMonths * NOMINAL_MILLIS_PER_MONTH / unitMillis;
+        }
+        
+        double localMin = clamp(zeroLocalMillis + worldMin * unitMillis);
+        double localMax = clamp(zeroLocalMillis + worldMax * unitMillis);
+        if (!(localMin <= localMax))
+        {
+            result.set(nominalWorldTickDistance, 0, 0);
+            return;
+        }
+        if (stepMonths == 0)
+        {
+            computeFixedTicks(
+                localMin, localMax, nominalWorldTickDistance, result);
+        }
+        else
+        {
+            computeMonthTicks(
+                localMin, localMax, nominalWorldTickDistance, result);
+        }
+    }
+    
+    /**
+     * Select the smallest step between two ticks that is not smaller
+     * than the given duration, and the precision for the labels.
+     * 
+     * @param minStepMillis The minimum step, in milliseconds
+     */
+    private void selectStep(double minStepMillis)
+    {
+        for (int i = 0; i < FIXED_STEPS.length; i++)
+        {
+            long step = FIXED_STEPS[i];
+            if (step >= minStepMillis)
+            {
+                stepMillis = step;
+                stepMonths = 0;
+                if (step >= MILLIS_PER_WEEK)
+                {
+                    originMillis = MONDAY_ORIGIN_MILLIS;
+                }
+                else
+                {
+                    originMillis = 0;
+                }
+                if (step < MILLIS_PER_SECOND)
+                {
+                    precision = PRECISION_MILLISECOND;
+                }
+                else if (step < MILLIS_PER_MINUTE)
+                {
+                    precision = PRECISION_SECOND;
+                }
+                else if (step < MILLIS_PER_DAY)
+                {
+                    precision = PRECISION_MINUTE;
+                }
+                else
+                {
+                    precision = PRECISION_DAY;
+                }
+                return;
+            }
+        }
+        stepMillis = 0;
+        originMillis = 0;
+        for (int i = 0; i < MONTH_STEPS.length; i++)
+        {
+            int step = MONTH_STEPS[i];
+            if (step * NOMINAL_MILLIS_PER_MONTH >= minStepMillis)
+            {
+                stepMonths = step;
+                precision = PRECISION_MONTH;
+                return;
+            }
+        }
+        double minYears = minStepMillis / (12 * NOMINAL_MILLIS_PER_MONTH);
+        double years = Axes.computeSnappedUpValue(Math.max(1.0, minYears));
+        if (!(years <= MAX_YEAR_STEP))
+        {
+            years = MAX_YEAR_STEP;
+        }
+        stepMonths = 12 * (int)Math.round(years);
+        precision = PRECISION_YEAR;
+    }
+    
+    /**
+     * Compute the ticks for the current fixed step
+     * 
+     * @param localMin The minimum local time, in milliseconds
+     * @param localMax The maximum local time, in milliseconds
+     * @param nominalWorldTickDistance The nominal tick distance
+     * @param result The result
+     */
+    private void computeFixedTicks(double localMin, double localMax,
+        double nominalWorldTickDistance, WorldTicks result)
+    {
+        long firstIndex = 
+            (long)Math.ceil((localMin - originMillis) / stepMillis);
+        long lastIndex = 
+            (long)Math.floor((localMax - originMillis) / stepMillis);
+        int count = (int)Math.max(0, lastIndex - firstIndex + 1);
+        double values[] = result.obtainValues(count);
+        for (int i = 0; i < count; i++)
+        {
+            long tickMillis = originMillis + (firstIndex + i) * stepMillis;
+            values[i] = (tickMillis - zeroLocalMillis) / unitMillis;
+        }
+        result.setExplicit(nominalWorldTickDistance, firstIndex, count);
+    }
+    
+    /**
+     * Compute the ticks for the current number of months
+     * 
+     * @param localMin The minimum local time, in milliseconds
+     * @param localMax The maximum local time, in milliseconds
+     * @param nominalWorldTickDistance The nominal tick distance
+     * @param result The result
+     */
+    private void computeMonthTicks(double localMin, double localMax,
+        double nominalWorldTickDistance, WorldTicks result)
+    {
+        long minDay = Math.floorDiv(
+            (long)Math.floor(localMin), MILLIS_PER_DAY);
+        computeCivil(minDay);
+        long minMonth = civilYear * 12 + civilMonth - 1;
+        if (computeMonthStartMillis(minMonth) < localMin)
+        {
+            minMonth++;
+        }
+        long maxDay = Math.floorDiv(
+            (long)Math.floor(localMax), MILLIS_PER_DAY);
+        computeCivil(maxDay);
+        long maxMonth = civilYear * 12 + civilMonth - 1;
+        
+        long firstIndex = -Math.floorDiv(-minMonth, stepMonths);
+        long lastIndex = Math.floorDiv(maxMonth, stepMonths);
+        int count = (int)Math.max(0, lastIndex - firstIndex + 1);
+        double values[] = result.obtainValues(count);
+        for (int i = 0; i < count; i++)
+        {
+            long month = (firstIndex + i) * stepMonths;
+            long tickMillis = computeMonthStartMillis(month);
+            values[i] = (tickMillis - zeroLocalMillis) / unitMillis;
+        }
+        result.setExplicit(nominalWorldTickDistance, firstIndex, count);
+    }
+    
+    /**
+     * Computes the local time of the start of the given month, 
+     * in milliseconds
+     * 
+     * @param month The month, as <code>year * 12 + (month - 1)</code>
+     * @return The local time
+     */
+    private static long computeMonthStartMillis(long month)
+    {
+        long year = Math.floorDiv(month, 12);
+        int monthOfYear = (int)Math.floorMod(month, 12) + 1;
+        return computeDays(year, monthOfYear, 1) * MILLIS_PER_DAY;
+    }
+    
+    /**
+     * Create the label for the given world coordinate
+     * 
+     * @param worldValue The world coordinate
+     * @return The label
+     */
+    private String createLabel(double worldValue)
+    {
+        double localMillisValue = zeroLocalMillis + worldValue * unitMillis;
+        if (!(Math.abs(localMillisValue) <= MAX_ABSOLUTE_MILLIS))
+        {
+            return String.valueOf(worldValue);
+        }
+        long localMillis = Math.round(localMillisValue);
+        long day = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        if (day != prefixDay)
+        {
+            computeCivil(day);
+            prefixLength = writeDate(prefix, 0);
+            prefixDay = day;
+        }
+        if (precision == PRECISION_YEAR)
+        {
+            return new String(prefix, 0, prefixLength - 6);
+        }
+        if (precision == PRECISION_MONTH)
+        {
+            return new String(prefix, 0, prefixLength - 3);
+        }
+        if (precision == PRECISION_DAY)
+        {
+            return new String(prefix, 0, prefixLength);
+        }
+        
+        System.arraycopy(prefix, 0, buffer, 0, prefixLength);
+        int n = prefixLength;
+        buffer[n++] = ' ';
+        long millisOfDay = Math.floorMod(localMillis, MILLIS_PER_DAY);
+        int hours = (int)(millisOfDay / MILLIS_PER_HOUR);
+        int minutes = (int)((millisOfDay / MILLIS_PER_MINUTE) % 60);
+        n = writeDigits(buffer, n, hours, 2);
+        buffer[n++] = ':';
+        n = writeDigits(buffer, n, minutes, 2);
+        if (precision <= PRECISION_SECOND)
+        {
+            int seconds = (int)((millisOfDay / MILLIS_PER_SECOND) % 60);
+            buffer[n++] = ':';
+            n = writeDigits(buffer, n, seconds, 2);
+        }
+        if (precision <= PRECISION_MILLISECOND)
+        {
+            int millis = (int)(millisOfDay % MILLIS_PER_SECOND);
+            buffer[n++] = '.';
+            n = writeDigits(buffer, n, millis, 3);
+        }
+        return new String(buffer, 0, n);
+    }
+    
+    /**
+     * Write the date that was computed with {@link #computeCivil(long)} 
+     * into the given array, in the form <code>yyyy-MM-dd</code>
+     * 
+     * @param target The target array
+     * @param offset The offset in the target array
+     * @return The offset after the last character that was written
+     */
+    private int writeDate(char target[], int offset)
+    {
+        int n = offset;
+        long year = civilYear;
+        if (year < 0)
+        {
+            target[n++] = '-';
+            year = -year;
+        }
+        n = writeDigits(target, n, year, 4);
+        target[n++] = '-';
+        n = writeDigits(target, n, civilMonth, 2);
+        target[n++] = '-';
+        n = writeDigits(target, n, civilDay, 2);
+        return n;
+    }
+    
+    /**
+     * Write the decimal digits of the given non-negative value into the 
+     * given array, padded with zeros to the given minimum number of digits
+     * 
+     * @param target The target array
+     * @param offset The offset in the target array
+     * @param value The value
+     * @param minDigits The minimum number of digits
+     * @return The offset after the last character that was written
+     */
+    private static int writeDigits(
+        char target[], int offset, long value, int minDigits)
+    {
+        int digits = 1;
+        long limit = 10;
+        while (value >= limit && digits < 18)
+        {
+            digits++;
+            limit *= 10;
+        }
+        digits = Math.max(digits, minDigits);
+        long remaining = value;
+        for (int i = digits - 1; i >= 0; i--)
+        {
+            target[offset + i] = (char)('0' + (remaining % 10));
+            remaining /= 10;
+        }
+        return offset + digits;
+    }
+    
+    /**
+     * Computes the year, month and day of the given day (relative to 
+     * the epoch) in the proleptic gregorian calendar, and stores them in 
+     * the {@link #civilYear}, {@link #civilMonth} and {@link #civilDay}
+     * 
+     * @param epochDay The day
+     */
+    private void computeCivil(long epochDay)
+    {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 
+            + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra 
+            - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        civilDay = (int)(dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        civilMonth = (int)(shiftedMonth < 10 ? 
+            shiftedMonth + 3 : shiftedMonth - 9);
+        civilYear = yearOfEra + era * 400 + (civilMonth <= 2 ? 1 : 0);
+    }
+    
+    /**
+     * Computes the day (relative to the epoch) of the given date in the
+     * proleptic gregorian calendar
+     * 
+     * @param year The year
+     * @param month The month, in [1,12]
+     * @param day The day of the month, in [1,31]
+     * @return The day relative to the epoch
+     */
+    private static long computeDays(long year, int month, int day)
+    {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 
+            + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 
+            - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+    
+    /**
+     * Clamp the given time to the range that can be handled
+     * 
+     * @param millis The time, in milliseconds
+     * @return The clamped time
+     */
+    private static double clamp(double millis)
+    {
+        return Math.max(-MAX_ABSOLUTE_MILLIS, 
+            Math.min(MAX_ABSOLUTE_MILLIS, millis));
+    }
+}
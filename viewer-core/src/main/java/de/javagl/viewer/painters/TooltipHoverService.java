@@ -0,0 +1,335 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.painters;
+
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+import de.javagl.viewer.Viewer;
+
+/**
+ * A class that updates a {@link TooltipPainter} based on the position of
+ * the mouse in a {@link Viewer}.<br>
+ * <br>
+ * When the mouse is moved in the viewer, then the text of the tooltip is
+ * computed by a {@link TooltipPicker}. This computation is performed on
+ * a background thread, so that lengthy computations (for example, 
+ * searching the closest element in a large data set) do not block the 
+ * event dispatch thread. Only the query for the latest mouse position 
+ * is relevant: When the mouse is moved while a query is pending or 
+ * running, then this query is cancelled, and the thread that is 
+ * executing it is interrupted.<br>
+ * <br>
+ * When the result of a query is available, then the 
+ * {@link TooltipPainter#set(double, double, String)} method is called 
+ * on the event dispatch thread, and only the area of the viewer that 
+ * was covered by the old tooltip and is covered by the new tooltip
+ * is repainted.<br>
+ * <br>
+ * The {@link TooltipPainter} still has to be added to the viewer. 
+ * Exceptions that are thrown by the {@link TooltipPicker} will be 
+ * re-thrown on the event dispatch thread.<br>
+ * <br>
+ * Unless otherwise noted, the methods of this class should only be 
+ * called on the event dispatch thread.
+ */
+public final class TooltipHoverService
+{
+    /**
+     * The {@link Viewer}
+     */
+    private final Viewer viewer;
+    
+    /**
+     * The {@link TooltipPainter} that is updated
+     */
+    private final TooltipPainter tooltipPainter;
+    
+    /**
+     * The {@link TooltipPicker} that computes the tooltips
+     */
+    private final TooltipPicker tooltipPicker;
+    
+    /**
+     * The executor service that executes the queries
+     */
+    private final ExecutorService executorService;
+    
+    /**
+     * Whether the {@link #executorService} was created by this instance,
+     * and thus, has to be shut down in {@link #dispose()}
+     */
+    private final boolean ownExecutorService;
+    
+    /**
+     * The listener that is attached to the viewer
+     */
+    private final MouseAdapter mouseListener;
+    
+    /**
+     * A counter for the queries. Only the result of the query that has
+     * the current value will be applied.
+     */
+    private final AtomicLong currentQuery;
+    
+    /**
+     * The future of the latest query
+     */
+    private Future<?> currentFuture;
+    
+    /**
+     * The rectangle that stores the old screen bounds of the tooltip
+     */
+    private final Rectangle2D oldScreenBounds;
+
+    /**
+     * The rectangle that stores the new screen bounds of the tooltip
+     */
+    private final Rectangle2D newScreenBounds;
+    
+    /**
+     * Creates a new instance that is connected to the given {@link Viewer},
+     * and uses a single background thread for the queries.
+     * 
+     * @param viewer The {@link Viewer}
+     * @param tooltipPainter The {@link TooltipPainter}
+     * @param tooltipPicker The {@link TooltipPicker}
+     * @throws NullPointerException If any argument is <code>null</code>
+     */
+    public TooltipHoverService(Viewer viewer, 
+        TooltipPainter tooltipPainter, TooltipPicker tooltipPicker)
+    {
+        this(viewer, tooltipPainter, tooltipPicker, null);
+    }
+    
+    /**
+     * Creates a new instance that is connected to the given {@link Viewer},
+     * and uses the given executor service for the queries. If the given
+     * executor service is <code>null</code>, then a single background 
+     * thread will be used.
+     * 
+     * @param viewer The {@link Viewer}
+     * @param tooltipPainter The {@link TooltipPainter}
+     * @param tooltipPicker The {@link TooltipPicker}
+     * @param executorService The optional executor service
+     * @throws NullPointerException If the viewer, tooltip painter or
+     * tooltip picker is <code>null</code>
+     */
+    public TooltipHoverService(Viewer viewer, 
+        TooltipPainter tooltipPainter, TooltipPicker tooltipPicker,
+        ExecutorService executorService)
+    {
+        this.viewer = Objects.requireNonNull(
+            viewer, "The viewer may not be null");
+        this.tooltipPainter = Objects.requireNonNull(
+            tooltipPainter, "The tooltipPainter may not be null");
+        this.tooltipPicker = Objects.requireNonNull(
+            tooltipPicker, "The tooltipPicker may not be null");
+        if (executorService == null)
+        {
+            this.executorService = Executors.newSingleThreadExecutor(r -> 
+            {
+                Thread thread = new Thread(r, "TooltipHoverService");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.ownExecutorService = true;
+        }
+        else
+        {
+            this.executorService = executorService;
+            this.ownExecutorService = false;
+        }
+        this.currentQuery = new AtomicLong();
+        this.oldScreenBounds = new Rectangle2D.Double();
+        this.newScreenBounds = new Rectangle2D.Double();
+        
+        this.mouseListener = new MouseAdapter()
+        {
+            @Override
+            public void mouseMoved(MouseEvent e)
+            {
+                query(e.getX(), e.getY());
+            }
+            
+            @Override
+            public void mouseExited(MouseEvent e)
+            {
+                hide();
+            }
+        };
+        viewer.addMouseListener(mouseListener);
+        viewer.addMouseMotionListener(mouseListener);
+    }
+    
+    /**
+     * Start a query for the tooltip at the given screen position. Any
+     * query that is still pending or running will be cancelled. 
+     * 
+     * @param screenX The x-coordinate on the screen
+     * @param screenY The y-coordinate on the screen
+     */
+    public void query(double screenX, double screenY)
+    {
+        long query = cancelCurrentQuery();
+        AffineTransform worldToScreen = viewer.getWorldToScreen();
+        Point2D worldPoint = new Point2D.Double(screenX, screenY);
+        viewer.getScreenToWorld().transform(worldPoint, worldPoint);
+        double worldX = worldPoint.getX();
+        double worldY = worldPoint.getY();
+        currentFuture = executorService.submit(() -> 
+        {
+            Point2D worldPosition = new Point2D.Double(worldX, worldY);
+            String text = null;
+            try
+            {
+                text = tooltipPicker.pick(
+                    worldX, worldY, worldToScreen, worldPosition);
+            }
+            catch (RuntimeException e)
+            {
+                SwingUtilities.invokeLater(() -> 
+                {
+                    throw e;
+                });
+                return;
+            }
+            if (Thread.currentThread().isInterrupted() ||
+                currentQuery.get() != query)
+            {
+                return;
+            }
+            String result = text;
+            SwingUtilities.invokeLater(() -> 
+                apply(query, worldPosition, result));
+        });
+    }
+    
+    /**
+     * Cancel any query that is still pending or running, and hide
+     * the tooltip
+     */
+    public void hide()
+    {
+        long query = cancelCurrentQuery();
+        apply(query, null, null);
+    }
+    
+    /**
+     * Cancel any pending query, disconnect this instance from the viewer,
+     * and shut down the executor service if it was created by this 
+     * instance. The tooltip will not be modified any more afterwards.
+     */
+    public void dispose()
+    {
+        cancelCurrentQuery();
+        viewer.removeMouseListener(mouseListener);
+        viewer.removeMouseMotionListener(mouseListener);
+        if (ownExecutorService)
+        {
+            executorService.shutdownNow();
+        }
+    }
+    
+    /**
+     * Cancel the current query, and return the identifier for the 
+     * next query
+     * 
+     * @return The identifier for the next query
+     */
+    private long cancelCurrentQuery()
+    {
+        long query = currentQuery.incrementAndGet();
+        if (currentFuture != null)
+        {
+            currentFuture.cancel(true);
+            currentFuture = null;
+        }
+        return query;
+    }
+    
+    /**
+     * Apply the result of the given query to the {@link TooltipPainter}, 
+     * if it is still the current query, and repaint the area of the 
+     * viewer that is affected by the tooltip. This is called on the 
+     * event dispatch thread.
+     * 
+     * @param query The query
+     * @param worldPosition The tooltip position. May be <code>null</code> 
+     * if the text is <code>null</code>.
+     * @param text The tooltip text
+     */
+    private void apply(long query, Point2D worldPosition, String text)
+    {
+        if (currentQuery.get() != query)
+        {
+            return;
+        }
+        AffineTransform worldToScreen = viewer.getWorldToScreen();
+        tooltipPainter.computeScreenBounds(
+            worldToScreen, viewer.getFont(), oldScreenBounds);
+        if (text == null)
+        {
+            tooltipPainter.set(0.0, 0.0, null);
+        }
+        else
+        {
+            tooltipPainter.set(
+                worldPosition.getX(), worldPosition.getY(), text);
+        }
+        tooltipPainter.computeScreenBounds(
+            worldToScreen, viewer.getFont(), newScreenBounds);
+        repaint(oldScreenBounds);
+        repaint(newScreenBounds);
+    }
+    
+    /**
+     * Repaint the given area of the viewer, if it is not empty
+     * 
+     * @param screenBounds The area, in screen coordinates
+     */
+    private void repaint(Rectangle2D screenBounds)
+    {
+        if (screenBounds.isEmpty())
+        {
+            return;
+        }
+        Rectangle r = screenBounds.getBounds();
+        viewer.repaint(r.x, r.y, r.width, r.height);
+    }
+}
@@ -27,6 +27,7 @@
 package de.javagl.viewer.painters;
 
 import java.awt.Color;
+import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.geom.AffineTransform;
@@ -137,9 +138,7 @@ public class TooltipPainter implements Painter
         }
         AffineTransform oldAt = g.getTransform();
         
-        Rectangle2D bounds = 
-            StringBoundsUtils.computeStringBounds(text, g.getFont());
-        Rectangles.scale(bounds, 1.1, bounds);
+        Rectangle2D bounds = computeTextBounds(text, g.getFont());
         
         double textX = -bounds.getMinX();
         double textY = -bounds.getMinY();
@@ -181,4 +180,66 @@ public class TooltipPainter implements Painter
         
     }
     
+    /**
+     * Computes the bounds of the area on the screen that will be covered 
+     * by the tooltip, when it is painted with the given transform and 
+     * font. This includes the line and the dot that may be painted for 
+     * the anchor point, as well as a small margin. If no text is set, 
+     * then the result will be an empty rectangle.<br>
+     * <br>
+     * The result will be stored in the given rectangle, which is then
+     * returned. If the given result rectangle is <code>null</code>,
+     * then a new rectangle will be created and returned. 
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param font The font that the tooltip will be painted with
+     * @param result The rectangle that will store the result
+     * @return The screen bounds
+     */
+    public Rectangle2D computeScreenBounds(
+        AffineTransform worldToScreen, Font font, Rectangle2D result)
+    {
+        if (result == null)
+        {
+            result = new Rectangle2D.Double();
+        }
+        if (text == null)
+        {
+            result.setRect(0, 0, 0, 0);
+            return result;
+        }
+        Rectangle2D bounds = computeTextBounds(text, font);
+        double dx = bounds.getWidth() * anchor.getX();
+        double dy = bounds.getHeight() * anchor.getY();
+        worldToScreen.transform(worldPosition, screenPosition);
+        double x = screenPosition.getX();
+        double y = screenPosition.getY();
+        result.setRect(x - dx, y - dy, bounds.getWidth(), bounds.getHeight());
+        result.add(x, y);
+        
+        // Add a margin for the dot, the border and antialiasing
+        final double margin = 4.0;
+        result.setRect(
+            result.getX() - margin, result.getY() - margin, 
+            result.getWidth() + margin + margin, 
+            result.getHeight() + margin + margin);
+        return result;
+    }
+    
+    /**
+     * Computes the bounds of the box that contains the given text, when
+     * it is painted with the given font
+     * 
+     * @param text The text
+     * @param font The font
+     * @return The bounds
+     */
+    private static Rectangle2D computeTextBounds(String text, Font font)
+    {
+        Rectangle2D bounds = 
+            StringBoundsUtils.computeStringBounds(text, font);
+        Rectangles.scale(bounds, 1.1, bounds);
+        return bounds;
+    }
+    
 }
@@ -0,0 +1,69 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.painters;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+
+/**
+ * Interface for classes that can compute the text of a tooltip for a 
+ * certain position. Instances of this class may be passed to a
+ * {@link TooltipHoverService}, which will call the 
+ * {@link #pick(double, double, AffineTransform, Point2D) pick} method 
+ * on a background thread.
+ */
+@FunctionalInterface
+public interface TooltipPicker
+{
+    /**
+     * Compute the text of the tooltip for the given position.<br>
+     * <br>
+     * This method may be called on a background thread. When the query
+     * becomes obsolete while this method is executed (for example, 
+     * because the mouse was moved), then the calling thread will be 
+     * interrupted. Implementations that perform lengthy computations 
+     * may check <code>Thread.currentThread().isInterrupted()</code>,
+     * and return <code>null</code> in this case.
+     * 
+     * @param worldX The x-coordinate of the query position, in world 
+     * coordinates
+     * @param worldY The y-coordinate of the query position, in world 
+     * coordinates
+     * @param worldToScreen The world-to-screen transform at the time of
+     * the query. This may, for example, be used to convert a picking 
+     * radius from screen coordinates to world coordinates. It may not
+     * be modified.
+     * @param worldPosition The point that will store the position of 
+     * the tooltip, in world coordinates. Initially, this is the query 
+     * position. It may be changed, for example, to the position of the 
+     * object that was found.
+     * @return The text of the tooltip, or <code>null</code> if no tooltip
+     * should be shown
+     */
+    String pick(double worldX, double worldY, 
+        AffineTransform worldToScreen, Point2D worldPosition);
+}
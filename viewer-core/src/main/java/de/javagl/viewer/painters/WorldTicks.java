@@ -0,0 +1,197 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.painters;
+
+/**
+ * A reusable description of the ticks on an axis. The ticks are
+ * the multiples of a tick distance, in world coordinates, that are
+ * in a certain range. Instances of this class are filled by 
+ * {@link Axes#computeWorldTicks(double, double, double, WorldTicks)}.
+ * They store only the index of the first tick and the number of ticks, 
+ * so that the same instance can be reused in each painting pass, 
+ * without allocating any arrays.<br>
+ * <br>
+ * The <i>index</i> of a tick is the value <code>n</code> for which the 
+ * tick value is <code>n * worldTickDistance</code>. This index remains 
+ * the same for a certain tick as long as the tick distance does not
+ * change, and can therefore be used as a key for caching information
+ * about the tick, for example, its label.<br>
+ * <br>
+ * For ticks that are not evenly spaced (for example, ticks at the 
+ * beginning of each month), the values may be given explicitly. In 
+ * this case, the tick distance is only a nominal distance that 
+ * identifies the spacing, and the index is only a key for the tick.
+ */
+final class WorldTicks
+{
+    /**
+     * The distance between two ticks, in world coordinates
+     */
+    private double worldTickDistance;
+    
+    /**
+     * The index of the first tick
+     */
+    private long firstIndex;
+    
+    /**
+     * The number of ticks
+     */
+    private int count;
+    
+    /**
+     * The explicit values of the ticks, if they have been set with
+     * {@link #setExplicit(double, long, int)}. The array may be
+     * larger than the number of ticks.
+     */
+    private double values[];
+    
+    /**
+     * Whether the {@link #values} are used
+     */
+    private boolean explicit;
+    
+    /**
+     * Creates a new, empty instance
+     */
+    WorldTicks()
+    {
+        this.worldTickDistance = Double.NaN;
+        this.firstIndex = 0;
+        this.count = 0;
+        this.values = new double[0];
+        this.explicit = false;
+    }
+    
+    /**
+     * Set the state of this instance
+     * 
+     * @param worldTickDistance The distance between two ticks
+     * @param firstIndex The index of the first tick
+     * @param count The number of ticks
+     */
+    void set(double worldTickDistance, long firstIndex, int count)
+    {
+        this.worldTickDistance = worldTickDistance;
+        this.firstIndex = firstIndex;
+        this.count = count;
+        this.explicit = false;
+    }
+    
+    /**
+     * Returns an array with at least the given length, that may be filled
+     * with the values of the ticks before calling 
+     * {@link #setExplicit(double, long, int)}
+     * 
+     * @param capacity The minimum length of the array
+     * @return The array
+     */
+    double[] obtainValues(int capacity)
+    {
+        if (values.length < capacity)
+        {
+            values = new double[Math.max(capacity, values.length * 2)];
+        }
+        return values;
+    }
+    
+    /**
+     * Set the state of this instance, for ticks whose values have been 
+     * written into the array that was returned by 
+     * {@link #obtainValues(int)}
+     * 
+     * @param nominalWorldTickDistance The nominal distance between 
+     * two ticks
+     * @param firstIndex The index of the first tick
+     * @param count The number of ticks
+     */
+    void setExplicit(
+        double nominalWorldTickDistance, long firstIndex, int count)
+    {
+        this.worldTickDistance = nominalWorldTickDistance;
+        this.firstIndex = firstIndex;
+        this.count = count;
+        this.explicit = true;
+    }
+    
+    /**
+     * Returns the distance between two ticks, in world coordinates
+     * 
+     * @return The tick distance
+     */
+    double getWorldTickDistance()
+    {
+        return worldTickDistance;
+    }
+    
+    /**
+     * Returns the number of ticks
+     * 
+     * @return The number of ticks
+     */
+    int getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * Returns the index of the first tick
+     * 
+     * @return The index of the first tick
+     */
+    long getFirstIndex()
+    {
+        return firstIndex;
+    }
+    
+    /**
+     * Returns the index of the tick with the given position.
+     * 
+     * @param i The position of the tick, in [0, {@link #getCount()})
+     * @return The index of the tick
+     */
+    long getIndex(int i)
+    {
+        return firstIndex + i;
+    }
+    
+    /**
+     * Returns the value of the tick with the given position, in world 
+     * coordinates
+     * 
+     * @param i The position of the tick, in [0, {@link #getCount()})
+     * @return The value of the tick
+     */
+    double getValue(int i)
+    {
+        if (explicit)
+        {
+            return values[i];
+        }
+        return (firstIndex + i) * worldTickDistance;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ */
+package de.javagl.viewer.painters;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.function.DoubleFunction;
+
+/**
+ * A simple (non-unit) test for the {@link TimeAxis} class
+ */
+@SuppressWarnings("javadoc")
+public class TimeAxisTest
+{
+    public static void main(String[] args)
+    {
+        OffsetDateTime zero = 
+            OffsetDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.ofHours(2));
+        TimeAxis timeAxis = new TimeAxis(zero, Duration.ofMinutes(1));
+        
+        // Ranges of one second, one hour, one day, one month and 
+        // ten years, each with (at most) ten ticks
+        double minute = 1.0;
+        testTicks(timeAxis, 12.34, 12.34 + minute / 60.0);
+        testTicks(timeAxis, 70.0, 70.0 + 60 * minute);
+        testTicks(timeAxis, -500.0, -500 + 24 * 60 * minute);
+        testTicks(timeAxis, 10000.0, 10000 + 31 * 24 * 60 * minute);
+        testTicks(timeAxis, 0.0, 10 * 365 * 24 * 60 * minute);
+    }
+    
+    private static void testTicks(
+        TimeAxis timeAxis, double worldMin, double worldMax)
+    {
+        WorldTicks worldTicks = new WorldTicks();
+        double minWorldTickDistance = (worldMax - worldMin) / 10;
+        timeAxis.computeTicks(
+            worldMin, worldMax, minWorldTickDistance, worldTicks);
+        DoubleFunction<String> formatter = timeAxis.getLabelFormatter();
+        System.out.println("Ticks for " + formatter.apply(worldMin) 
+            + " to " + formatter.apply(worldMax) + ":");
+        for (int i = 0; i < worldTicks.getCount(); i++)
+        {
+            double value = worldTicks.getValue(i);
+            System.out.println("    " + value + " is " 
+                + formatter.apply(value));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package de.javagl.viewer.painters.test;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+import de.javagl.viewer.MouseControls;
+import de.javagl.viewer.Painter;
+import de.javagl.viewer.Viewer;
+import de.javagl.viewer.painters.TooltipHoverService;
+import de.javagl.viewer.painters.TooltipPainter;
+import de.javagl.viewer.painters.TooltipPicker;
+
+/**
+ * Integration test for the {@link TooltipHoverService} class
+ */
+@SuppressWarnings("javadoc")
+public class TooltipHoverServiceTest
+{
+    /**
+     * The entry point of this test
+     *
+     * @param args Not used
+     */
+    public static void main(String[] args)
+    {
+        SwingUtilities.invokeLater(() -> createAndShowGUI());
+    }
+   
+    /**
+     * Create and show the GUI, to be called on the EDT
+     */
+    private static void createAndShowGUI()
+    {
+        JFrame f = new JFrame("Viewer");
+        f.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        f.getContentPane().setLayout(new BorderLayout());
+        
+        f.getContentPane().add(
+            new JLabel("<html>"
+                + "Move the mouse to show the closest of 1000000 points<br>"
+                + "</html>"),
+            BorderLayout.NORTH);
+       
+        int n = 1000000;
+        Random random = new Random(0);
+        double xs[] = new double[n];
+        double ys[] = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            xs[i] = random.nextDouble() * 10.0;
+            ys[i] = random.nextDouble() * 10.0;
+        }
+        
+        Viewer viewer = new Viewer();
+        viewer.setMouseControl(MouseControls.createDefault(viewer));
+        
+        Painter pointsPainter = new Painter()
+        {
+            @Override
+            public void paint(Graphics2D g, AffineTransform worldToScreen, 
+                double w, double h)
+            {
+                g.setColor(Color.GRAY);
+                Point2D p = new Point2D.Double();
+                for (int i = 0; i < n; i += 100)
+                {
+                    p.setLocation(xs[i], ys[i]);
+                    worldToScreen.transform(p, p);
+                    g.fillRect((int)p.getX(), (int)p.getY(), 2, 2);
+                }
+            }
+        };
+        viewer.addPainter(pointsPainter);
+        
+        TooltipPainter tooltipPainter = new TooltipPainter();
+        tooltipPainter.setAnchor(-0.1, -0.1);
+        viewer.addPainter(tooltipPainter);
+        
+        // A linear search for the closest point
+        TooltipPicker tooltipPicker = 
+            (worldX, worldY, worldToScreen, worldPosition) -> 
+        {
+            int closestIndex = -1;
+            double closestDistanceSquared = Double.MAX_VALUE;
+            for (int i = 0; i < n; i++)
+            {
+                if ((i & 0xFFFF) == 0 && 
+                    Thread.currentThread().isInterrupted())
+                {
+                    return null;
+                }
+                double dx = xs[i] - worldX;
+                double dy = ys[i] - worldY;
+                double distanceSquared = dx * dx + dy * dy;
+                if (distanceSquared < closestDistanceSquared)
+                {
+                    closestDistanceSquared = distanceSquared;
+                    closestIndex = i;
+                }
+            }
+            worldPosition.setLocation(xs[closestIndex], ys[closestIndex]);
+            return String.format(Locale.ENGLISH, "Point %d at %.3f, %.3f", 
+                closestIndex, xs[closestIndex], ys[closestIndex]);
+        };
+        new TooltipHoverService(viewer, tooltipPainter, tooltipPicker);
+        
+        f.getContentPane().add(viewer, BorderLayout.CENTER);
+        viewer.setPreferredSize(new Dimension(600,600));
+        viewer.setDisplayedWorldArea(-1,-1,12,12);
+        f.pack();
+        viewer.setPreferredSize(null);
+        f.setLocationRelativeTo(null);
+        f.setVisible(true);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+/**
+ * Interface for functions that compute the function values for a whole
+ * array of arguments at once. <br>
+ * <br>
+ * This is the form in which the {@link FunctionPanel} evaluates all 
+ * functions internally, so that no boxing and no allocations are 
+ * required for painting. Function values that are not defined for 
+ * a certain argument are represented by <code>NaN</code>.<br>
+ * <br>
+ * Instances for <code>DoubleFunction</code> and 
+ * <code>DoubleUnaryOperator</code> objects may be created with the
+ * {@link BatchFunctions} class.
+ */
+public interface BatchFunction
+{
+    /**
+     * Evaluate this function for the first <code>count</code> elements of 
+     * the given arguments, and write the function values into the first 
+     * <code>count</code> elements of the given result array
+     * 
+     * @param xs The arguments
+     * @param ys The array that will store the function values
+     * @param count The number of elements to evaluate
+     * @throws IndexOutOfBoundsException If either array has a length 
+     * that is smaller than the given count
+     */
+    void evaluate(double[] xs, double[] ys, int count);
+    
+    /**
+     * Evaluate this function for all of the given arguments, and write
+     * the function values into the given result array
+     * 
+     * @param xs The arguments
+     * @param ys The array that will store the function values
+     * @throws IndexOutOfBoundsException If the result array is shorter
+     * than the array of arguments
+     */
+    default void evaluate(double[] xs, double[] ys)
+    {
+        evaluate(xs, ys, xs.length);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.util.Objects;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Methods to create {@link BatchFunction} instances
+ */
+public class BatchFunctions
+{
+    /**
+     * Creates a {@link BatchFunction} that evaluates the given operator
+     * 
+     * @param operator The operator
+     * @return The {@link BatchFunction}
+     * @throws NullPointerException If the operator is <code>null</code>
+     */
+    public static BatchFunction fromOperator(
+        final DoubleUnaryOperator operator)
+    {
+        Objects.requireNonNull(operator, "The operator may not be null");
+        return new BatchFunction()
+        {
+            @Override
+            public void evaluate(double[] xs, double[] ys, int count)
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    ys[i] = operator.applyAsDouble(xs[i]);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Creates a {@link BatchFunction} that evaluates the given function.
+     * If the function returns <code>null</code>, then the resulting
+     * value will be <code>NaN</code>.
+     * 
+     * @param function The function
+     * @return The {@link BatchFunction}
+     * @throws NullPointerException If the function is <code>null</code>
+     */
+    public static BatchFunction fromFunction(
+        final DoubleFunction<? extends Number> function)
+    {
+        Objects.requireNonNull(function, "The function may not be null");
+        return new BatchFunction()
+        {
+            @Override
+            public void evaluate(double[] xs, double[] ys, int count)
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    Number y = function.apply(xs[i]);
+                    ys[i] = y == null ? Double.NaN : y.doubleValue();
+                }
+            }
+        };
+    }
+    
+    /**
+     * Creates a <code>DoubleFunction</code> that evaluates the given 
+     * {@link BatchFunction} for single arguments. If the function value 
+     * is <code>NaN</code>, then the resulting function will return 
+     * <code>null</code>.<br>
+     * <br>
+     * This is only intended for single evaluations, for example, for
+     * a {@link LegendProvider}. Each evaluation will allocate small 
+     * arrays. 
+     * 
+     * @param batchFunction The {@link BatchFunction}
+     * @return The function
+     * @throws NullPointerException If the given function is 
+     * <code>null</code>
+     */
+    public static DoubleFunction<Double> asFunction(
+        final BatchFunction batchFunction)
+    {
+        Objects.requireNonNull(batchFunction, 
+            "The batchFunction may not be null");
+        return new DoubleFunction<Double>()
+        {
+            @Override
+            public Double apply(double x)
+            {
+                double[] y = new double[1];
+                batchFunction.evaluate(new double[] { x }, y, 1);
+                if (Double.isNaN(y[0]))
+                {
+                    return null;
+                }
+                return y[0];
+            }
+        };
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private BatchFunctions()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
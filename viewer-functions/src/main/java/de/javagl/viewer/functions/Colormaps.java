@@ -0,0 +1,133 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.awt.Color;
+import java.util.Objects;
+import java.util.function.DoubleToIntFunction;
+
+/**
+ * Methods to create colormaps, which map values to ARGB colors, for
+ * example, for a {@link HeatmapPainter}
+ */
+public class Colormaps
+{
+    /**
+     * The size of the lookup table of the colormaps
+     */
+    private static final int LOOKUP_TABLE_SIZE = 256;
+    
+    /**
+     * Creates a colormap that maps the given range of values linearly
+     * to the given colors. The colors are placed at equal distances in
+     * the given range, and are interpolated linearly. Values outside of
+     * the range are mapped to the color of the nearest end of the range.
+     * <code>NaN</code> values are mapped to a fully transparent color. 
+     * The colors are stored in a lookup table with 256 entries.
+     * 
+     * @param min The minimum value
+     * @param max The maximum value
+     * @param colors The colors
+     * @return The colormap
+     * @throws NullPointerException If the colors or any of its elements 
+     * are <code>null</code>
+     * @throws IllegalArgumentException If no colors are given, or the
+     * minimum value is not smaller than the maximum value
+     */
+    public static DoubleToIntFunction create(
+        final double min, final double max, Color ... colors)
+    {
+        Objects.requireNonNull(colors, "The colors may not be null");
+        if (colors.length == 0)
+        {
+            throw new IllegalArgumentException("No colors are given");
+        }
+        if (!(min < max))
+        {
+            throw new IllegalArgumentException(
+                "The minimum must be smaller than the maximum, but the " +
+                "minimum is " + min + " and the maximum is " + max);
+        }
+        final int[] lookupTable = new int[LOOKUP_TABLE_SIZE];
+        for (int i = 0; i < LOOKUP_TABLE_SIZE; i++)
+        {
+            double alpha = (double)i / (LOOKUP_TABLE_SIZE - 1);
+            double position = alpha * (colors.length - 1);
+            int index0 = Math.min((int)position, colors.length - 1);
+            int index1 = Math.min(index0 + 1, colors.length - 1);
+            double beta = position - index0;
+            Color c0 = Objects.requireNonNull(
+                colors[index0], "The colors may not contain null elements");
+            Color c1 = Objects.requireNonNull(
+                colors[index1], "The colors may not contain null elements");
+            int a = interpolate(c0.getAlpha(), c1.getAlpha(), beta);
+            int r = interpolate(c0.getRed(), c1.getRed(), beta);
+            int g = interpolate(c0.getGreen(), c1.getGreen(), beta);
+            int b = interpolate(c0.getBlue(), c1.getBlue(), beta);
+            lookupTable[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+        final double scale = (LOOKUP_TABLE_SIZE - 1) / (max - min);
+        return value ->
+        {
+            if (Double.isNaN(value))
+            {
+                return 0;
+            }
+            double position = (value - min) * scale + 0.5;
+            if (position <= 0)
+            {
+                return lookupTable[0];
+            }
+            if (position >= LOOKUP_TABLE_SIZE - 1)
+            {
+                return lookupTable[LOOKUP_TABLE_SIZE - 1];
+            }
+            return lookupTable[(int)position];
+        };
+    }
+    
+    /**
+     * Interpolate linearly between the given color components
+     * 
+     * @param c0 The first component
+     * @param c1 The second component
+     * @param alpha The interpolation value
+     * @return The interpolated component
+     */
+    private static int interpolate(int c0, int c1, double alpha)
+    {
+        return (int)Math.round(c0 + alpha * (c1 - c0));
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private Colormaps()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
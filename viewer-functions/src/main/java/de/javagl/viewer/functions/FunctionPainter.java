@@ -1,5 +1,5 @@
 /*
- * www.javagl.de - Viewer - Functions
+ * www.javagl.de - Viewer
  *
  * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
  * 
@@ -30,31 +30,50 @@ import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Path2D;
-import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
-import java.util.function.DoubleFunction;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.swing.SwingUtilities;
 
-import de.javagl.geom.AffineTransforms;
-import de.javagl.geom.Rectangles;
 import de.javagl.viewer.Painter;
 
 /**
- * Implementation of the {@link Painter} interface that paints a function
+ * Implementation of the {@link Painter} interface that paints a function.
+ * <br>
+ * <br>
+ * The path for the function is computed with a {@link FunctionSampler}. 
+ * See the documentation of this class for details about the sampling.
+ * <br>
+ * <br>
+ * By default, the function is sampled in the painting thread. When an
+ * {@link #setEvaluationPool(ForkJoinPool, Runnable) evaluation pool} 
+ * is set, then the function is sampled asynchronously, in parallel: 
+ * Whenever the world-to-screen transform or the size of the painting 
+ * area changes, the sampling that is currently running is cancelled, 
+ * and a new sampling is started in the pool. The painter will then 
+ * paint the most recent (intermediate) result of the sampling, and 
+ * trigger a repaint whenever a new intermediate result is available.
  */
 class FunctionPainter implements Painter
 {
     /**
-     * A transform, used internally for painting
+     * The default {@link #setSamplingTolerance(double) sampling tolerance}
+     */
+    static final double DEFAULT_SAMPLING_TOLERANCE = 0.5;
+    
+    /**
+     * The default {@link #setMaxSamples(int) maximum number of samples}
      */
-    private final AffineTransform TEMP_TRANSFORM = new AffineTransform();
+    static final int DEFAULT_MAX_SAMPLES = 10000;
     
     /**
-     * The functions to be painted
+     * The function to be painted
      */
-    private final DoubleFunction<? extends Number> function;
+    private final BatchFunction function;
     
     /**
      * The paint (color) in which the function should be painted
@@ -66,6 +85,76 @@ class FunctionPainter implements Painter
      */
     private final Stroke stroke;
     
+    /**
+     * The maximum deviation, in pixels, of the function from the painted 
+     * line segments, before an interval is subdivided
+     */
+    private double samplingTolerance;
+    
+    /**
+     * The maximum number of samples
+     */
+    private int maxSamples;
+    
+    /**
+     * The number of samples per pixel column for the envelope mode. If 
+     * this is 0, then the function is sampled adaptively.
+     */
+    private int envelopeSamplesPerPixel;
+    
+    /**
+     * The {@link SampleCache}
+     */
+    private final SampleCache sampleCache;
+    
+    /**
+     * The {@link FunctionSampler} that is used for sampling the function
+     * in the painting thread
+     */
+    private final FunctionSampler sampler;
+    
+    /**
+     * The pool for the asynchronous evaluation. If this is 
+     * <code>null</code>, then the function is sampled in the painting
+     * thread.
+     */
+    private ForkJoinPool evaluationPool;
+    
+    /**
+     * The callback that triggers a repaint when a new result of the
+     * asynchronous evaluation is available
+     */
+    private Runnable repaintCallback;
+    
+    /**
+     * The {@link FunctionSampler} for the asynchronous evaluation that 
+     * was started most recently
+     */
+    private FunctionSampler pendingSampler;
+    
+    /**
+     * The world-to-screen transform for which the 
+     * {@link #pendingSampler} was started
+     */
+    private final AffineTransform pendingWorldToScreen;
+    
+    /**
+     * The width of the area for which the {@link #pendingSampler} was 
+     * started
+     */
+    private double pendingW;
+    
+    /**
+     * The height of the area for which the {@link #pendingSampler} was 
+     * started
+     */
+    private double pendingH;
+    
+    /**
+     * The most recent result of the asynchronous evaluation
+     */
+    private volatile SamplingResult latestResult;
+    
     /**
      * Creates a new painter for the given function, with the given paint
      * (color) and a default stroke 
@@ -73,8 +162,7 @@ class FunctionPainter implements Painter
      * @param function The function 
      * @param paint The paint (color)
      */
-    FunctionPainter(
-        DoubleFunction<? extends Number> function, Paint paint)
+    FunctionPainter(BatchFunction function, Paint paint)
     {
         this(function, paint, 2.0f);
     }
@@ -87,8 +175,7 @@ class FunctionPainter implements Painter
      * @param paint The paint (color)
      * @param lineWidth The line width
      */
-    FunctionPainter(
-        DoubleFunction<? extends Number> function, Paint paint, float lineWidth)
+    FunctionPainter(BatchFunction function, Paint paint, float lineWidth)
     {
         this(function, paint, new BasicStroke(lineWidth));
     }
@@ -100,12 +187,17 @@ class FunctionPainter implements Painter
      * @param paint The paint (color)
      * @param stroke The stroke
      */
-    FunctionPainter(
-        DoubleFunction<? extends Number> function, Paint paint, Stroke stroke)
+    FunctionPainter(BatchFunction function, Paint paint, Stroke stroke)
     {
         this.function = function;
         this.paint = paint;
         this.stroke = stroke;
+        this.samplingTolerance = DEFAULT_SAMPLING_TOLERANCE;
+        this.maxSamples = DEFAULT_MAX_SAMPLES;
+        this.envelopeSamplesPerPixel = 0;
+        this.sampleCache = new SampleCache();
+        this.sampler = new FunctionSampler(function, sampleCache);
+        this.pendingWorldToScreen = new AffineTransform();
     }
     
     /**
@@ -113,7 +205,7 @@ class FunctionPainter implements Painter
      * 
      * @return The function
      */
-    DoubleFunction<? extends Number> getFunction()
+    BatchFunction getFunction()
     {
         return function;
     }
@@ -138,64 +230,303 @@ class FunctionPainter implements Painter
         return stroke;
     }
     
+    /**
+     * Set the maximum deviation, in pixels, between the function and
+     * the painted line segments, before an interval is subdivided
+     * 
+     * @param samplingTolerance The sampling tolerance
+     * @throws IllegalArgumentException If the tolerance is not positive
+     */
+    void setSamplingTolerance(double samplingTolerance)
+    {
+        if (!(samplingTolerance > 0))
+        {
+            throw new IllegalArgumentException(
+                "Sampling tolerance must be positive, but is "
+                + samplingTolerance);
+        }
+        this.samplingTolerance = samplingTolerance;
+        invalidate();
+    }
+    
+    /**
+     * Set the maximum number of samples at which the function will be
+     * evaluated. The initial, regular samples will always be evaluated, 
+     * but no further subdivision will take place when it would exceed
+     * this number.
+     * 
+     * @param maxSamples The maximum number of samples
+     * @throws IllegalArgumentException If the number is smaller than 2
+     */
+    void setMaxSamples(int maxSamples)
+    {
+        if (maxSamples < 2)
+        {
+            throw new IllegalArgumentException(
+                "Maximum number of samples must be at least 2, but is "
+                + maxSamples);
+        }
+        this.maxSamples = maxSamples;
+        invalidate();
+    }
+    
+    /**
+     * Set the number of samples per pixel column that should be used for
+     * painting the function as an envelope. If this is 0, then the 
+     * function will be sampled adaptively.
+     * 
+     * @param envelopeSamplesPerPixel The number of samples per pixel
+     * @throws IllegalArgumentException If the number is negative
+     */
+    void setEnvelopeSamplesPerPixel(int envelopeSamplesPerPixel)
+    {
+        if (envelopeSamplesPerPixel < 0)
+        {
+            throw new IllegalArgumentException(
+                "Envelope samples per pixel may not be negative, but is "
+                + envelopeSamplesPerPixel);
+        }
+        this.envelopeSamplesPerPixel = envelopeSamplesPerPixel;
+        invalidate();
+    }
+    
+    /**
+     * Set the maximum number of function values that should be cached.
+     * If this is 0, then the cache is disabled, and all cached values
+     * are discarded.
+     * 
+     * @param capacity The capacity
+     * @throws IllegalArgumentException If the capacity is negative
+     */
+    void setSampleCacheCapacity(int capacity)
+    {
+        synchronized (sampleCache)
+        {
+            sampleCache.setCapacity(capacity);
+        }
+    }
+    
+    /**
+     * Discard all cached function values
+     */
+    void clearSampleCache()
+    {
+        synchronized (sampleCache)
+        {
+            sampleCache.clear();
+        }
+        invalidate();
+    }
+    
+    /**
+     * Set the pool that should be used for evaluating the function 
+     * asynchronously, in parallel. If this is <code>null</code>, then 
+     * the function will be evaluated in the painting thread.
+     * 
+     * @param evaluationPool The evaluation pool
+     * @param repaintCallback The callback that will be called, on an
+     * arbitrary thread, when a new result of the asynchronous evaluation 
+     * is available and should be painted
+     */
+    void setEvaluationPool(
+        ForkJoinPool evaluationPool, Runnable repaintCallback)
+    {
+        invalidate();
+        this.evaluationPool = evaluationPool;
+        this.repaintCallback = repaintCallback;
+        this.latestResult = null;
+    }
+    
+    /**
+     * Cancel the pending asynchronous evaluation, if there is one, so
+     * that a new evaluation will be started during the next call to
+     * {@link #paint(Graphics2D, AffineTransform, double, double)}
+     */
+    private void invalidate()
+    {
+        if (pendingSampler != null)
+        {
+            pendingSampler.cancel();
+            pendingSampler = null;
+        }
+    }
+    
+    /**
+     * Apply the current settings to the given {@link FunctionSampler}
+     * 
+     * @param functionSampler The {@link FunctionSampler}
+     */
+    private void configure(FunctionSampler functionSampler)
+    {
+        functionSampler.setSamplingTolerance(samplingTolerance);
+        functionSampler.setMaxSamples(maxSamples);
+        functionSampler.setEnvelopeSamplesPerPixel(envelopeSamplesPerPixel);
+    }
+    
     @Override
     public void paint(Graphics2D g, AffineTransform worldToScreen, 
         double w, double h)
     {
-        Object oldAntialiasingHint = 
-            g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
-        g.setRenderingHint(
-            RenderingHints.KEY_ANTIALIASING, 
-            RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        TEMP_TRANSFORM.setTransform(worldToScreen);
-        //TEMP_TRANSFORM.scale(1.0, -1.0);
-        
-        Rectangle2D boundsWorld = Rectangles.computeBounds(
-            AffineTransforms.invert(TEMP_TRANSFORM, null), 
-            new Rectangle2D.Double(0,0,w,h), null);
-        double w0 = boundsWorld.getMinX();
-        double w1 = boundsWorld.getMaxX();
-
-        Path2D path = new Path2D.Double();
-        int steps = (int)w;
-        double wStep = (w1-w0)/steps;
-        Point2D previousScreenPoint = null;
-        for (int x=0; x<=steps; x++)
-        {
-            double wx = w0 + wStep * x;
-            Number wy = function.apply(wx);
-            Point2D screenPoint = null;
-            if (wy != null && Double.isFinite(wy.doubleValue()))
-            {
-                screenPoint = TEMP_TRANSFORM.transform(
-                    new Point2D.Double(wx, wy.doubleValue()), null);
-            }
-            else
+        if (evaluationPool == null)
+        {
+            configure(sampler);
+            Path2D path = sampler.sample(worldToScreen, w, h);
+            if (path != null)
             {
-                previousScreenPoint = null;
+                paintPath(g, path);
             }
-            if (screenPoint != null)
+            return;
+        }
+        
+        if (pendingSampler == null || 
+            !pendingWorldToScreen.equals(worldToScreen) || 
+            pendingW != w || pendingH != h)
+        {
+            startSampling(worldToScreen, w, h);
+        }
+        SamplingResult result = latestResult;
+        if (result == null)
+        {
+            return;
+        }
+        if (result.worldToScreen.equals(worldToScreen))
+        {
+            paintPath(g, result.path);
+            return;
+        }
+        AffineTransform delta = new AffineTransform(worldToScreen);
+        try
+        {
+            delta.concatenate(result.worldToScreen.createInverse());
+        }
+        catch (NoninvertibleTransformException e)
+        {
+            return;
+        }
+        paintPath(g, delta.createTransformedShape(result.path));
+    }
+    
+    /**
+     * Cancel the pending asynchronous evaluation, and start a new one
+     * for the given world-to-screen transform and area size
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param w The width of the painting area
+     * @param h The height of the painting area
+     */
+    private void startSampling(
+        AffineTransform worldToScreen, double w, double h)
+    {
+        invalidate();
+        pendingWorldToScreen.setTransform(worldToScreen);
+        pendingW = w;
+        pendingH = h;
+        
+        FunctionSampler functionSampler = 
+            new FunctionSampler(function, sampleCache);
+        configure(functionSampler);
+        functionSampler.setEvaluationPool(evaluationPool);
+        AffineTransform samplingWorldToScreen = 
+            new AffineTransform(worldToScreen);
+        functionSampler.setProgressListener(path -> 
+            publish(functionSampler, samplingWorldToScreen, path));
+        pendingSampler = functionSampler;
+        
+        evaluationPool.execute(() -> 
+        {
+            try
             {
-                if (previousScreenPoint == null)
+                Path2D path = functionSampler.sample(
+                    samplingWorldToScreen, w, h);
+                if (path != null)
                 {
-                    path.moveTo(screenPoint.getX(), screenPoint.getY());
+                    publish(functionSampler, samplingWorldToScreen, path);
                 }
-                else
+            }
+            catch (RuntimeException e)
+            {
+                if (!functionSampler.isCancelled())
                 {
-                    path.lineTo(screenPoint.getX(), screenPoint.getY());
+                    SwingUtilities.invokeLater(() -> 
+                    {
+                        throw e;
+                    });
                 }
             }
-            previousScreenPoint = screenPoint;
+        });
+    }
+    
+    /**
+     * Store the given path as the {@link #latestResult}, and trigger a
+     * repaint, unless the given sampler was cancelled
+     * 
+     * @param functionSampler The {@link FunctionSampler}
+     * @param worldToScreen The world-to-screen transform for which the
+     * path was computed
+     * @param path The path, in screen coordinates
+     */
+    private void publish(FunctionSampler functionSampler, 
+        AffineTransform worldToScreen, Path2D path)
+    {
+        if (functionSampler.isCancelled())
+        {
+            return;
         }
+        latestResult = new SamplingResult(worldToScreen, path);
+        Runnable callback = repaintCallback;
+        if (callback != null)
+        {
+            callback.run();
+        }
+    }
+    
+    /**
+     * Paint the given shape with the {@link #paint} and {@link #stroke}
+     * of this painter
+     * 
+     * @param g The graphics context
+     * @param shape The shape
+     */
+    private void paintPath(Graphics2D g, Shape shape)
+    {
+        Object oldAntialiasingHint = 
+            g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        g.setRenderingHint(
+            RenderingHints.KEY_ANTIALIASING, 
+            RenderingHints.VALUE_ANTIALIAS_ON);
         g.setStroke(stroke);
         g.setPaint(paint);
-        g.draw(path);
-        
+        g.draw(shape);
         g.setRenderingHint(
             RenderingHints.KEY_ANTIALIASING, 
             oldAntialiasingHint);
     }
     
+    /**
+     * A result of the asynchronous evaluation
+     */
+    private static final class SamplingResult
+    {
+        /**
+         * The world-to-screen transform for which the path was computed
+         */
+        final AffineTransform worldToScreen;
+        
+        /**
+         * The path, in screen coordinates
+         */
+        final Path2D path;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param worldToScreen The world-to-screen transform
+         * @param path The path
+         */
+        SamplingResult(AffineTransform worldToScreen, Path2D path)
+        {
+            this.worldToScreen = worldToScreen;
+            this.path = path;
+        }
+    }
 }
-
@@ -26,15 +26,29 @@
  */
 package de.javagl.viewer.functions;
 
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import de.javagl.geom.Points;
 import de.javagl.viewer.MouseControls;
@@ -42,7 +56,19 @@ import de.javagl.viewer.Viewer;
 import de.javagl.viewer.painters.CoordinateSystemPainter;
 
 /**
- * A panel that paints functions
+ * A panel that paints functions.<br>
+ * <br>
+ * Functions may be given as <code>DoubleFunction&lt;? extends Number&gt;</code>,
+ * as <code>DoubleUnaryOperator</code>, or as {@link BatchFunction}. 
+ * Internally, all functions are evaluated as {@link BatchFunction}s, so 
+ * that painting does not require boxing. For functions that are evaluated
+ * very frequently, using a <code>DoubleUnaryOperator</code> or a 
+ * {@link BatchFunction} avoids the boxing in the function itself. 
+ * <br>
+ * <br>
+ * Recorded data may be added as a {@link SampledFunction}, which is a
+ * {@link BatchFunction} that is painted directly from its samples,
+ * and may be backed by a memory-mapped file. See {@link SampledFunctions}.
  */
 public class FunctionPanel extends Viewer
 {
@@ -50,11 +76,44 @@ public class FunctionPanel extends Viewer
      * Serial UID
      */
     private static final long serialVersionUID = -7414790459688389145L;
+    
+    /**
+     * The maximum number of samples on the regular grid that are used
+     * for estimating the range of each function in 
+     * {@link #fit(double, double, double, double, boolean)}
+     */
+    private static final int FIT_SAMPLES = 4097;
+    
+    /**
+     * The default {@link #setFitTimeBudget(long) time budget for fitting}
+     */
+    private static final long DEFAULT_FIT_TIME_BUDGET_MS = 250;
+    
+    /**
+     * The delay, in milliseconds, between a mouse movement and the 
+     * update of the legend. All mouse movements within this delay are
+     * coalesced into a single update, so that the legend is updated 
+     * at most about once per frame.
+     */
+    private static final int LEGEND_UPDATE_DELAY_MS = 16;
+    
+    /**
+     * The delay, in milliseconds, between two steps of the 
+     * {@link #setAutoScrollWidth(double) auto-scrolling}
+     */
+    private static final int AUTO_SCROLL_DELAY_MS = 16;
 
     /**
-     * The functions that are currently painted
+     * The functions that are currently painted, as they have been
+     * given by the user. These may be <code>DoubleFunction</code>, 
+     * <code>DoubleUnaryOperator</code> or {@link BatchFunction} objects.
+     */
+    private final List<Object> functions;
+    
+    /**
+     * The functions that are passed to the {@link LegendProvider}s 
      */
-    private final List<DoubleFunction<? extends Number>> functions;
+    private final List<DoubleFunction<? extends Number>> legendFunctions;
     
     /**
      * The {@link FunctionPainter}s for the functions
@@ -72,6 +131,98 @@ public class FunctionPanel extends Viewer
      */
     private final LegendPainter legendPainter;
     
+    /**
+     * The {@link #setSamplingTolerance(double) sampling tolerance}
+     */
+    private double samplingTolerance;
+    
+    /**
+     * The {@link #setMaxSamples(int) maximum number of samples}
+     */
+    private int maxSamples;
+    
+    /**
+     * The {@link #setEnvelopeSamplesPerPixel(int) envelope samples per 
+     * pixel}
+     */
+    private int envelopeSamplesPerPixel;
+    
+    /**
+     * The {@link #setSampleCacheCapacity(int) sample cache capacity}
+     */
+    private int sampleCacheCapacity;
+    
+    /**
+     * The {@link #setEvaluationPool(ForkJoinPool) evaluation pool}
+     */
+    private ForkJoinPool evaluationPool;
+    
+    /**
+     * The {@link #setFitTimeBudget(long) time budget for fitting}
+     */
+    private long fitTimeBudgetMs;
+    
+    /**
+     * The timer that triggers the coalesced legend updates
+     */
+    private final Timer legendUpdateTimer;
+    
+    /**
+     * The screen x-coordinate for which the legend is shown
+     */
+    private int legendX;
+    
+    /**
+     * The screen y-coordinate for which the legend is shown
+     */
+    private int legendY;
+    
+    /**
+     * Whether the legend is currently computed in the evaluation pool
+     */
+    private boolean legendUpdateRunning;
+    
+    /**
+     * Whether another legend update was requested while the legend
+     * was computed in the evaluation pool
+     */
+    private boolean legendUpdatePending;
+    
+    /**
+     * A counter for modifications of the set of functions. This is used 
+     * for detecting legends that have been computed in the evaluation 
+     * pool for a set of functions that is no longer current.
+     */
+    private int functionsModificationCounter;
+    
+    /**
+     * The image containing all painted layers except for the legend
+     */
+    private BufferedImage layerImage;
+    
+    /**
+     * Whether the {@link #layerImage} still reflects the current state. 
+     * This is reset with any repaint request that was not caused by
+     * an update of the legend, possibly from other threads.
+     */
+    private volatile boolean layerImageValid;
+    
+    /**
+     * Whether a repaint is currently requested for the legend area only
+     */
+    private boolean repaintingLegend;
+    
+    /**
+     * The timer that triggers the {@link #setAutoScrollWidth(double) 
+     * auto-scrolling}
+     */
+    private final Timer autoScrollTimer;
+    
+    /**
+     * The {@link #setAutoScrollWidth(double) auto-scroll width}
+     */
+    private double autoScrollWidth;
+    
     /**
      * Default constructor. This will create a function panel with
      * {@link MouseControls#createDefault(Viewer, boolean, boolean)
@@ -91,20 +242,35 @@ public class FunctionPanel extends Viewer
             new CoordinateSystemPainter();
         addPainter(coordinateSystemPainter);
         
-        this.functions = new ArrayList<DoubleFunction<? extends Number>>();
+        this.functions = new ArrayList<Object>();
+        this.legendFunctions = 
+            new ArrayList<DoubleFunction<? extends Number>>();
         this.functionPainters = new ArrayList<FunctionPainter>();
         this.legendProviders = new ArrayList<LegendProvider>();
+        this.samplingTolerance = FunctionPainter.DEFAULT_SAMPLING_TOLERANCE;
+        this.maxSamples = FunctionPainter.DEFAULT_MAX_SAMPLES;
+        this.fitTimeBudgetMs = DEFAULT_FIT_TIME_BUDGET_MS;
 
         this.legendPainter = new LegendPainter();
-        addPainter(legendPainter, 1);
         
+        this.legendUpdateTimer = 
+            new Timer(LEGEND_UPDATE_DELAY_MS, e -> updateLegend());
+        this.legendUpdateTimer.setRepeats(false);
+        
+        this.autoScrollTimer = 
+            new Timer(AUTO_SCROLL_DELAY_MS, e -> autoScroll());
         
         addMouseMotionListener(new MouseAdapter()
         {
             @Override
             public void mouseMoved(MouseEvent e)
             {
-                updateLegend(e.getX(), e.getY());
+                legendX = e.getX();
+                legendY = e.getY();
+                if (!legendUpdateTimer.isRunning())
+                {
+                    legendUpdateTimer.start();
+                }
             }
         });
     }
@@ -179,17 +345,157 @@ public class FunctionPanel extends Viewer
         {
             throw new NullPointerException("The function is null");
         }
+        addFunctionObject(function, BatchFunctions.fromFunction(function),
+            function, paint, legendProvider);
+    }
+    
+    /**
+     * Add the given operator
+     * 
+     * @param operator The operator that should be painted
+     * @param paint The paint (color)
+     * @throws NullPointerException If the operator or the paint is 
+     * <code>null</code>
+     */
+    public final void addOperator(
+        DoubleUnaryOperator operator, Paint paint)
+    {
+        addOperator(operator, paint, (LegendProvider)null);
+    }
+    
+    /**
+     * Add the given operator
+     * 
+     * @param operator The operator that should be painted
+     * @param paint The paint (color)
+     * @param name The name of the operator to appear in the legend
+     * @throws NullPointerException If the operator or the paint is 
+     * <code>null</code>
+     */
+    public final void addOperator(
+        DoubleUnaryOperator operator, Paint paint, String name)
+    {
+        addOperator(operator, paint, LegendProviders.createDefault(name));
+    }
+    
+    /**
+     * Add the given operator, with a 
+     * {@link LegendProviders#createFunctionValuesLegendProvider(String)
+     * legend provider} that provides the function values for the mouse
+     * position.
+     * 
+     * @param operator The operator that should be painted
+     * @param paint The paint (color)
+     * @param name The name of the operator to appear in the legend
+     * @throws NullPointerException If the operator or the paint is 
+     * <code>null</code>
+     */
+    public final void addOperatorWithValueLegend(
+        DoubleUnaryOperator operator, Paint paint, String name)
+    {
+        addOperator(operator, paint, 
+            LegendProviders.createFunctionValuesLegendProvider(name));
+    }
+    
+    /**
+     * Add the given operator. The function that is passed to the
+     * given {@link LegendProvider} will return <code>null</code> 
+     * when the operator returns <code>NaN</code>.
+     * 
+     * @param operator The operator that should be painted
+     * @param paint The paint (color)
+     * @param legendProvider The {@link LegendProvider}. This may be 
+     * <code>null</code> if no legend should be painted for the given
+     * operator
+     * @throws NullPointerException If the operator or the paint is 
+     * <code>null</code>
+     */
+    public final void addOperator(
+        DoubleUnaryOperator operator, Paint paint,
+        LegendProvider legendProvider)
+    {
+        if (operator == null)
+        {
+            throw new NullPointerException("The operator is null");
+        }
+        BatchFunction batchFunction = BatchFunctions.fromOperator(operator);
+        addFunctionObject(operator, batchFunction, 
+            BatchFunctions.asFunction(batchFunction), paint, legendProvider);
+    }
+    
+    /**
+     * Add the given {@link BatchFunction} 
+     * 
+     * @param batchFunction The function that should be painted
+     * @param paint The paint (color)
+     * @throws NullPointerException If the function or the paint is 
+     * <code>null</code>
+     */
+    public final void addBatchFunction(
+        BatchFunction batchFunction, Paint paint)
+    {
+        addBatchFunction(batchFunction, paint, null);
+    }
+    
+    /**
+     * Add the given {@link BatchFunction}. The function that is passed 
+     * to the given {@link LegendProvider} will return <code>null</code> 
+     * when the batch function returns <code>NaN</code>.
+     * 
+     * @param batchFunction The function that should be painted
+     * @param paint The paint (color)
+     * @param legendProvider The {@link LegendProvider}. This may be 
+     * <code>null</code> if no legend should be painted for the given
+     * function
+     * @throws NullPointerException If the function or the paint is 
+     * <code>null</code>
+     */
+    public final void addBatchFunction(
+        BatchFunction batchFunction, Paint paint,
+        LegendProvider legendProvider)
+    {
+        if (batchFunction == null)
+        {
+            throw new NullPointerException("The function is null");
+        }
+        addFunctionObject(batchFunction, batchFunction, 
+            BatchFunctions.asFunction(batchFunction), paint, legendProvider);
+    }
+    
+    /**
+     * Add the given function object
+     * 
+     * @param function The function object, as given by the user
+     * @param batchFunction The {@link BatchFunction} that will be painted
+     * @param legendFunction The function that will be passed to the 
+     * {@link LegendProvider}
+     * @param paint The paint (color)
+     * @param legendProvider The optional {@link LegendProvider}
+     * @throws NullPointerException If the paint is <code>null</code>
+     */
+    private void addFunctionObject(Object function, 
+        BatchFunction batchFunction, 
+        DoubleFunction<? extends Number> legendFunction,
+        Paint paint, LegendProvider legendProvider)
+    {
         if (paint == null)
         {
             throw new NullPointerException("The paint is null");
         }
         functions.add(function);
+        legendFunctions.add(legendFunction);
         FunctionPainter functionPainter = 
-            new FunctionPainter(function, paint);
+            new FunctionPainter(batchFunction, paint);
+        functionPainter.setSamplingTolerance(samplingTolerance);
+        functionPainter.setMaxSamples(maxSamples);
+        functionPainter.setEnvelopeSamplesPerPixel(envelopeSamplesPerPixel);
+        functionPainter.setSampleCacheCapacity(sampleCacheCapacity);
+        functionPainter.setEvaluationPool(evaluationPool, this::repaint);
         addPainter(functionPainter);
         functionPainters.add(functionPainter);
         legendProviders.add(legendProvider);
-        updateLegend(0,0);
+        functionsModificationCounter++;
+        updateLegend();
         repaint();
     }
     
@@ -201,6 +507,39 @@ public class FunctionPanel extends Viewer
      */
     public final boolean removeFunction(
         DoubleFunction<? extends Number> function)
+    {
+        return removeFunctionObject(function);
+    }
+    
+    /**
+     * Remove the given operator 
+     * 
+     * @param operator The operator
+     * @return Whether the operator was contained in this panel
+     */
+    public final boolean removeOperator(DoubleUnaryOperator operator)
+    {
+        return removeFunctionObject(operator);
+    }
+    
+    /**
+     * Remove the given {@link BatchFunction} 
+     * 
+     * @param batchFunction The function
+     * @return Whether the function was contained in this panel
+     */
+    public final boolean removeBatchFunction(BatchFunction batchFunction)
+    {
+        return removeFunctionObject(batchFunction);
+    }
+    
+    /**
+     * Remove the given function object
+     * 
+     * @param function The function object, as given by the user
+     * @return Whether the function was contained in this panel
+     */
+    private boolean removeFunctionObject(Object function)
     {
         int index = functions.indexOf(function);
         if (index == -1)
@@ -208,11 +547,13 @@ public class FunctionPanel extends Viewer
             return false;
         }
         functions.remove(index);
+        legendFunctions.remove(index);
         FunctionPainter functionPainter = functionPainters.get(index);
         removePainter(functionPainter);
         functionPainters.remove(index);
         legendProviders.remove(index);
-        updateLegend(0,0);
+        functionsModificationCounter++;
+        updateLegend();
         repaint();
         return true;
     }
@@ -223,51 +564,530 @@ public class FunctionPanel extends Viewer
     public final void clearFunctions()
     {
         functions.clear();
+        legendFunctions.clear();
         for (FunctionPainter functionPainter : functionPainters)
         {
             removePainter(functionPainter);
         }
         functionPainters.clear();
         legendProviders.clear();
-        updateLegend(0,0);
+        functionsModificationCounter++;
+        updateLegend();
         repaint();
     }
     
     
     
     /**
-     * Update the legend for the given (mouse) coordinates 
+     * Update the legend for the current {@link #legendX} and 
+     * {@link #legendY} coordinates. If an evaluation pool was set, 
+     * then the legend strings will be computed in this pool, and 
+     * only be applied to the {@link LegendPainter} on the event 
+     * dispatch thread. At most one such computation is running at 
+     * any time. Requests that arrive in the meantime are coalesced 
+     * into one update that is started when the running one finished.
+     */
+    private void updateLegend()
+    {
+        int sx = legendX;
+        int sy = legendY;
+        AffineTransform worldToScreen = getWorldToScreen();
+        List<DoubleFunction<? extends Number>> currentFunctions = 
+            new ArrayList<DoubleFunction<? extends Number>>(legendFunctions);
+        List<LegendProvider> currentLegendProviders = 
+            new ArrayList<LegendProvider>(legendProviders);
+        List<Paint> currentPaints = new ArrayList<Paint>();
+        for (FunctionPainter functionPainter : functionPainters)
+        {
+            currentPaints.add(functionPainter.getPaint());
+        }
+        List<String> strings = new ArrayList<String>();
+        List<Paint> paints = new ArrayList<Paint>();
+        
+        ForkJoinPool pool = evaluationPool;
+        if (pool == null)
+        {
+            computeLegend(sx, sy, worldToScreen, currentFunctions, 
+                currentLegendProviders, currentPaints, strings, paints);
+            applyLegend(strings, paints);
+            return;
+        }
+        if (legendUpdateRunning)
+        {
+            legendUpdatePending = true;
+            return;
+        }
+        legendUpdateRunning = true;
+        int modificationCounter = functionsModificationCounter;
+        pool.execute(() -> 
+        {
+            RuntimeException exception = null;
+            try
+            {
+                computeLegend(sx, sy, worldToScreen, currentFunctions, 
+                    currentLegendProviders, currentPaints, strings, paints);
+            }
+            catch (RuntimeException e)
+            {
+                exception = e;
+            }
+            RuntimeException finalException = exception;
+            SwingUtilities.invokeLater(() -> 
+            {
+                legendUpdateRunning = false;
+                if (finalException == null && 
+                    modificationCounter == functionsModificationCounter)
+                {
+                    applyLegend(strings, paints);
+                }
+                if (legendUpdatePending || 
+                    modificationCounter != functionsModificationCounter)
+                {
+                    legendUpdatePending = false;
+                    updateLegend();
+                }
+                if (finalException != null)
+                {
+                    throw finalException;
+                }
+            });
+        });
+    }
+    
+    /**
+     * Compute the legend strings for the given (mouse) coordinates.
+     * This may be called on any thread, and thus only operates on the
+     * given lists.
      * 
      * @param sx The x-coordinate on the screen
      * @param sy The y-coordinate on the screen
+     * @param worldToScreen The world-to-screen transform
+     * @param functions The functions
+     * @param legendProviders The {@link LegendProvider}s, which may
+     * contain <code>null</code> elements
+     * @param functionPaints The paints of the functions
+     * @param strings The list that will receive the strings
+     * @param paints The list that will receive the paints for the strings
      */
-    private void updateLegend(int sx, int sy)
+    private static void computeLegend(int sx, int sy, 
+        AffineTransform worldToScreen,
+        List<DoubleFunction<? extends Number>> functions, 
+        List<LegendProvider> legendProviders, List<Paint> functionPaints,
+        List<String> strings, List<Paint> paints)
     {
         Point2D worldPoint = Points.inverseTransform(
-            getWorldToScreen(), new Point(sx,sy), null);
-
-        legendPainter.clearStrings();
+            worldToScreen, new Point(sx,sy), null);
+        double wx = worldPoint.getX();
+        double wy = worldPoint.getY();
         for (int i=0; i<functions.size(); i++)
         {
             DoubleFunction<? extends Number> function = functions.get(i);
-            FunctionPainter functionPainter = functionPainters.get(i);
             LegendProvider legendProvider = legendProviders.get(i);
             if (legendProvider != null)
             {
-                double wx = worldPoint.getX();
-                double wy = worldPoint.getY();
-                List<String> strings = 
+                List<String> functionStrings = 
                     legendProvider.getLegend(function, sx, sy, wx, wy);
-                if (strings != null)
+                if (functionStrings != null)
                 {
-                    Paint paint = functionPainter.getPaint();
-                    for (String string : strings)
+                    Paint paint = functionPaints.get(i);
+                    for (String string : functionStrings)
                     {
-                        legendPainter.addString(string, paint);
+                        strings.add(string);
+                        paints.add(paint);
                     }
                 }
             }
         }
+    }
+    
+    /**
+     * Pass the given strings to the {@link LegendPainter}, and trigger
+     * a repaint of the area that is covered by the old and the new legend
+     * 
+     * @param strings The strings
+     * @param paints The paints for the strings
+     */
+    private void applyLegend(List<String> strings, List<Paint> paints)
+    {
+        legendPainter.setStrings(strings, paints);
+        FontMetrics fontMetrics = getFontMetrics(legendPainter.getFont());
+        Rectangle2D newBounds = 
+            legendPainter.computeBounds(fontMetrics, null, getWidth());
+        Rectangle2D dirtyBounds = legendPainter.getPaintedBounds();
+        if (dirtyBounds.isEmpty())
+        {
+            dirtyBounds = newBounds;
+        }
+        else if (!newBounds.isEmpty())
+        {
+            dirtyBounds.add(newBounds);
+        }
+        if (dirtyBounds.isEmpty())
+        {
+            return;
+        }
+        
+        // The bounds that have been computed without the actual
+        // graphics may deviate slightly from the painted ones,
+        // so add a small margin (including the border stroke)
+        Rectangle repaintBounds = dirtyBounds.getBounds();
+        repaintBounds.grow(3, 3);
+        repaintingLegend = true;
+        repaint(repaintBounds);
+        repaintingLegend = false;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * Any repaint request that is not caused by an update of the legend
+     * invalidates the cached image of the layers below the legend.
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height)
+    {
+        if (!repaintingLegend)
+        {
+            layerImageValid = false;
+        }
+        super.repaint(tm, x, y, width, height);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * The painters of this panel are painted into an image, which is 
+     * re-used as long as only the legend changes, so that moving the 
+     * mouse does not cause the functions to be painted again.
+     */
+    @Override
+    protected void paintComponent(Graphics gr)
+    {
+        Graphics2D g = (Graphics2D)gr;
+        int w = getWidth();
+        int h = getHeight();
+        if (w <= 0 || h <= 0)
+        {
+            return;
+        }
+        
+        // Take the device scaling into account, to not paint
+        // blurry functions on high-resolution screens
+        AffineTransform deviceTransform = g.getTransform();
+        double scaleX = Math.max(1.0, Math.abs(deviceTransform.getScaleX()));
+        double scaleY = Math.max(1.0, Math.abs(deviceTransform.getScaleY()));
+        int iw = (int)Math.ceil(w * scaleX);
+        int ih = (int)Math.ceil(h * scaleY);
+        if (layerImage == null || 
+            layerImage.getWidth() != iw || layerImage.getHeight() != ih)
+        {
+            layerImage = new BufferedImage(
+                iw, ih, BufferedImage.TYPE_INT_ARGB);
+            layerImageValid = false;
+        }
+        if (!layerImageValid)
+        {
+            // Set the image to be valid before painting, so that
+            // repaint requests that are issued by other threads
+            // during the painting invalidate it again
+            layerImageValid = true;
+            Graphics2D ig = layerImage.createGraphics();
+            Composite composite = ig.getComposite();
+            ig.setComposite(AlphaComposite.Clear);
+            ig.fillRect(0, 0, iw, ih);
+            ig.setComposite(composite);
+            ig.scale((double)iw / w, (double)ih / h);
+            super.paintComponent(ig);
+            ig.dispose();
+        }
+        g.drawImage(layerImage, 0, 0, w, h, null);
+        
+        if (isAntialiasing())
+        {
+            g.setRenderingHint(
+                RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+        legendPainter.paint(g, getWorldToScreen(), w, h);
+    }
+    
+    /**
+     * Set the tolerance for the adaptive sampling of the functions. 
+     * The functions are sampled on a coarse grid, and intervals of this
+     * grid are subdivided as long as the function deviates from the 
+     * painted line segments by more than the given number of pixels.
+     * Smaller values result in more precise curves, at the cost of 
+     * more function evaluations. The default value is 0.5.
+     * 
+     * @param samplingTolerance The sampling tolerance, in pixels
+     * @throws IllegalArgumentException If the tolerance is not positive
+     */
+    public final void setSamplingTolerance(double samplingTolerance)
+    {
+        if (!(samplingTolerance > 0))
+        {
+            throw new IllegalArgumentException(
+                "Sampling tolerance must be positive, but is "
+                + samplingTolerance);
+        }
+        this.samplingTolerance = samplingTolerance;
+        for (FunctionPainter functionPainter : functionPainters)
+        {
+            functionPainter.setSamplingTolerance(samplingTolerance);
+        }
+        repaint();
+    }
+    
+    /**
+     * Set the maximum number of samples at which each function will be
+     * evaluated when it is painted. The initial, regular grid of samples 
+     * will always be evaluated, but no further refinement will take place 
+     * when it would exceed this number. The default value is 10000.
+     * 
+     * @param maxSamples The maximum number of samples
+     * @throws IllegalArgumentException If the number is smaller than 2
+     */
+    public final void setMaxSamples(int maxSamples)
+    {
+        if (maxSamples < 2)
+        {
+            throw new IllegalArgumentException(
+                "Maximum number of samples must be at least 2, but is "
+                + maxSamples);
+        }
+        this.maxSamples = maxSamples;
+        for (FunctionPainter functionPainter : functionPainters)
+        {
+            functionPainter.setMaxSamples(maxSamples);
+        }
+        repaint();
+    }
+    
+    /**
+     * Set the number of samples per pixel column that should be used for
+     * painting the functions as envelopes. <br>
+     * <br>
+     * If this is a positive value, then each function is evaluated at
+     * the given number of samples in each pixel column, and the first, 
+     * last, minimum and maximum value of each column are connected
+     * (M4 aggregation). This shows the full vertical extent of functions 
+     * that oscillate many times per pixel, like signals or noise, instead
+     * of an aliased line. Note that the number of function evaluations
+     * is the given number times the width of the panel, regardless of
+     * the {@link #setMaxSamples(int) maximum number of samples}.<br>
+     * <br>
+     * If this is 0, then the functions are sampled adaptively, based on
+     * the {@link #setSamplingTolerance(double) sampling tolerance}. This
+     * is the default.
+     * 
+     * @param envelopeSamplesPerPixel The number of samples per pixel
+     * @throws IllegalArgumentException If the number is negative
+     */
+    public final void setEnvelopeSamplesPerPixel(int envelopeSamplesPerPixel)
+    {
+        if (envelopeSamplesPerPixel < 0)
+        {
+            throw new IllegalArgumentException(
+                "Envelope samples per pixel may not be negative, but is "
+                + envelopeSamplesPerPixel);
+        }
+        this.envelopeSamplesPerPixel = envelopeSamplesPerPixel;
+        for (FunctionPainter functionPainter : functionPainters)
+        {
+            functionPainter.setEnvelopeSamplesPerPixel(
+                envelopeSamplesPerPixel);
+        }
+        repaint();
+    }
+    
+    /**
+     * Set the maximum number of function values that should be cached 
+     * for each function. <br>
+     * <br>
+     * When this is a positive value, then the function values that are 
+     * computed for painting will be cached, separately for each zoom 
+     * level. When the view is translated, only the function values for 
+     * the newly exposed parts have to be computed. When the number of 
+     * cached values exceeds the given capacity, the values of the least 
+     * recently used zoom levels will be discarded. This is useful for 
+     * functions that are expensive to evaluate. <br>
+     * <br>
+     * The cache assumes that the functions always return the same value
+     * for the same argument. When a function changes, then 
+     * {@link #clearSampleCaches()} has to be called. <br>
+     * <br>
+     * If the capacity is 0, then no values will be cached. This is the
+     * default. (The envelope mode that is enabled with 
+     * {@link #setEnvelopeSamplesPerPixel(int)} does not use the cache).
+     * 
+     * @param sampleCacheCapacity The capacity
+     * @throws IllegalArgumentException If the capacity is negative
+     */
+    public final void setSampleCacheCapacity(int sampleCacheCapacity)
+    {
+        if (sampleCacheCapacity < 0)
+        {
+            throw new IllegalArgumentException(
+                "Sample cache capacity may not be negative, but is "
+                + sampleCacheCapacity);
+        }
+        this.sampleCacheCapacity = sampleCacheCapacity;
+        for (FunctionPainter functionPainter : functionPainters)
+        {
+            functionPainter.setSampleCacheCapacity(sampleCacheCapacity);
+        }
+    }
+    
+    /**
+     * Discard all function values that have been cached for the functions,
+     * and repaint this panel. This has to be called when the 
+     * {@link #setSampleCacheCapacity(int) sample cache} is enabled and 
+     * one of the functions changed.
+     */
+    public final void clearSampleCaches()
+    {
+        for (FunctionPainter functionPainter : functionPainters)
+        {
+            functionPainter.clearSampleCache();
+        }
+        repaint();
+    }
+    
+    /**
+     * Set the pool that should be used for evaluating the functions
+     * asynchronously. <br>
+     * <br>
+     * By default, this is <code>null</code>, and the functions are 
+     * evaluated on the event dispatch thread, while this panel is 
+     * painted. When a pool is set, then the functions will be evaluated
+     * in this pool, in parallel, and the curves will be painted 
+     * progressively: First the coarse approximation, and then the 
+     * refined ones, as they become available. When the view changes 
+     * while an evaluation is still running, then this evaluation is 
+     * cancelled, and the previous curves are painted with the new
+     * transform until the new evaluation provides its first result.
+     * <br>
+     * <br>
+     * This is intended for functions that are expensive to evaluate.
+     * Note that the functions then have to be thread-safe.
+     * 
+     * @param evaluationPool The evaluation pool, for example, the
+     * <code>ForkJoinPool.commonPool()</code>. May be <code>null</code>.
+     */
+    public final void setEvaluationPool(ForkJoinPool evaluationPool)
+    {
+        this.evaluationPool = evaluationPool;
+        for (FunctionPainter functionPainter : functionPainters)
+        {
+            functionPainter.setEvaluationPool(evaluationPool, this::repaint);
+        }
+        repaint();
+    }
+    
+    /**
+     * Set the time budget for estimating the range of the functions in
+     * {@link #fit(double, double, double, double, boolean)}. When the
+     * given time has passed, then no further refinement of the samples
+     * will be started, and the range will be estimated from the samples
+     * that have been computed until then. If the given value is not
+     * positive, then the functions will always be sampled completely.
+     * The default value is 250 milliseconds.
+     * 
+     * @param fitTimeBudgetMs The time budget, in milliseconds
+     */
+    public final void setFitTimeBudget(long fitTimeBudgetMs)
+    {
+        this.fitTimeBudgetMs = fitTimeBudgetMs;
+    }
+    
+    /**
+     * Set the width of the range of x-coordinates that should be shown
+     * when the panel is scrolling automatically. If the given value is
+     * positive, then the view will be scrolled at the frame rate, so 
+     * that the right border of the panel shows the most recent sample
+     * of all {@link StreamingFunction}s, and the visible x-range has 
+     * the given width. The visible y-range is not changed. If the given
+     * value is not positive, then the auto-scrolling is disabled.<br>
+     * <br>
+     * Auto-scrolling does not mark the panel as 
+     * {@link #isInteracting() interacting}, and it is suspended while 
+     * the panel is not displayable.
+     * 
+     * @param autoScrollWidth The width of the visible x-range
+     */
+    public final void setAutoScrollWidth(double autoScrollWidth)
+    {
+        this.autoScrollWidth = autoScrollWidth;
+        if (autoScrollWidth > 0 && isDisplayable())
+        {
+            autoScrollTimer.start();
+        }
+        else
+        {
+            autoScrollTimer.stop();
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * The {@link #setAutoScrollWidth(double) auto-scrolling} is only
+     * performed while this panel is displayable.
+     */
+    @Override
+    public void addNotify()
+    {
+        super.addNotify();
+        if (autoScrollWidth > 0)
+        {
+            autoScrollTimer.start();
+        }
+    }
+    
+    @Override
+    public void removeNotify()
+    {
+        autoScrollTimer.stop();
+        super.removeNotify();
+    }
+    
+    /**
+     * Perform one step of the {@link #setAutoScrollWidth(double) 
+     * auto-scrolling}. This is called by the auto-scrolling timer, and
+     * is package-private for tests.
+     */
+    void autoScroll()
+    {
+        double latestX = Double.NaN;
+        for (FunctionPainter functionPainter : functionPainters)
+        {
+            BatchFunction function = functionPainter.getFunction();
+            if (function instanceof StreamingFunction)
+            {
+                StreamingFunction streamingFunction = 
+                    (StreamingFunction)function;
+                latestX = FunctionUtils.max(
+                    latestX, streamingFunction.getLatestX());
+            }
+        }
+        if (Double.isNaN(latestX) || getHeight() <= 0)
+        {
+            return;
+        }
+        AffineTransform screenToWorld = getScreenToWorld();
+        Point2D p0 = screenToWorld.transform(new Point(0, 0), null);
+        Point2D p1 = screenToWorld.transform(new Point(0, getHeight()), null);
+        double yMin = Math.min(p0.getY(), p1.getY());
+        double yMax = Math.max(p0.getY(), p1.getY());
+        Rectangle2D worldArea = new Rectangle2D.Double(
+            latestX - autoScrollWidth, yMin, autoScrollWidth, yMax - yMin);
+        boolean oldMaintainAspectRatioState = isMaintainAspectRatio();
+        setMaintainAspectRatio(false);
+        setDisplayedWorldArea(worldArea);
+        setMaintainAspectRatio(oldMaintainAspectRatioState);
         repaint();
     }
     
@@ -299,9 +1119,14 @@ public class FunctionPanel extends Viewer
      * Auto-fit to show the functions in the given interval. <br>
      * <br>
      * This will compute an <b>estimate</b> of the minimum and maximum 
-     * y-values that all functions have in the given interval. Note
-     * that this <b>estimate</b> may not be precise if the functions
-     * contain singularities.<br>
+     * y-values that all functions have in the given interval. The 
+     * functions are sampled densely, and the samples are refined locally
+     * around the extrema. The computation will stop refining when the
+     * {@link #setFitTimeBudget(long) time budget} is exceeded. When an 
+     * {@link #setEvaluationPool(ForkJoinPool) evaluation pool} is set, 
+     * then the functions are evaluated in parallel. Note that the 
+     * <b>estimate</b> may not be precise if the functions contain 
+     * singularities or extremely narrow peaks.<br>
      * <br> 
      * If functions return <code>null</code>, NaN or an infinite value, 
      * these will be ignored. If all values returned by all functions 
@@ -324,34 +1149,30 @@ public class FunctionPanel extends Viewer
         double marginX, double marginY, boolean maintainAspectRatio) 
     {
         final double epsilon = 1e-6; 
-        Number yMin = null;
-        Number yMax = null;
-        for (DoubleFunction<? extends Number> function : functions)
+        List<BatchFunction> batchFunctions = new ArrayList<BatchFunction>();
+        for (FunctionPainter functionPainter : functionPainters)
         {
-            Number min = FunctionUtils.estimateMinValue(function, xMin, xMax);
-            Number max = FunctionUtils.estimateMaxValue(function, xMin, xMax);
-            if (min != null && Double.isFinite(min.doubleValue()))
-            {
-                yMin = FunctionUtils.min(yMin, min);
-            }
-            if (max != null && Double.isFinite(max.doubleValue()))
-            {
-                yMax = FunctionUtils.max(yMax, max);
-            }
+            batchFunctions.add(functionPainter.getFunction());
         }
-        if (yMin == null || !Double.isFinite(yMin.doubleValue()))
+        RangeEstimator rangeEstimator = new RangeEstimator(
+            evaluationPool, FIT_SAMPLES, fitTimeBudgetMs);
+        double[] range = 
+            rangeEstimator.estimate(batchFunctions, xMin, xMax);
+        double yMin = range[0];
+        double yMax = range[1];
+        if (Double.isNaN(yMin))
         {
             yMin = 0.0;
         }
-        if (yMax == null || !Double.isFinite(yMax.doubleValue()))
+        if (Double.isNaN(yMax))
         {
             yMax = 1.0;
         }
         double dx = xMax - xMin;
-        double dy = yMax.doubleValue() - yMin.doubleValue();
+        double dy = yMax - yMin;
 
         double x = xMin - marginX * dx;
-        double y = yMin.doubleValue() - marginY * dy;
+        double y = yMin - marginY * dy;
         double w = dx + marginX * dx * 2.0;
         double h = dy + marginY * dy * 2.0;
         h = Math.max(h, epsilon);
@@ -364,4 +1185,4 @@ public class FunctionPanel extends Viewer
     }
     
     
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,1108 @@
+/*
+ * www.javagl.de - Viewer - Functions
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * A class that computes the path for painting a function, in screen 
+ * coordinates. <br>
+ * <br>
+ * The function is sampled adaptively: It is first evaluated on a coarse,
+ * regular grid. Then, intervals are subdivided repeatedly, as long as 
+ * the function value at the midpoint of the interval deviates from the
+ * chord between the interval end points by more than the 
+ * {@link #setSamplingTolerance(double) sampling tolerance} in screen 
+ * space. The refinement stops at a maximum subdivision depth, or when the 
+ * {@link #setMaxSamples(int) maximum number of samples} would be exceeded.
+ * Intervals where the function is not defined (<code>NaN</code> or 
+ * infinite), and intervals that still contain a large jump at the 
+ * maximum subdivision depth, are treated as discontinuities and are not 
+ * connected in the resulting path.<br>
+ * <br>
+ * The samples are placed on a grid that is aligned to multiples of the
+ * initial world-x step, so that the same positions are sampled when the
+ * view is translated. When the {@link SampleCache} is enabled, the 
+ * function values are cached for each step, and only the samples of 
+ * newly exposed intervals have to be evaluated when the view is 
+ * translated.<br>
+ * <br>
+ * Alternatively, the function may be sampled as an envelope, by setting
+ * the {@link #setEnvelopeSamplesPerPixel(int) number of envelope samples
+ * per pixel} to a positive value. Then, the function is evaluated at 
+ * this number of samples in each pixel column, and only the first, last,
+ * minimum and maximum value of each column are used for the path (M4 
+ * aggregation). This shows the full vertical extent of functions that
+ * oscillate many times per pixel, with at most four path vertices per
+ * column.<br>
+ * <br>
+ * If the function is a {@link SampledFunction}, then it is not sampled
+ * adaptively, and the path is computed from its samples by a 
+ * {@link SampledFunctionSampler}.<br>
+ * <br>
+ * The function is evaluated as a {@link BatchFunction}, one batch per
+ * subdivision level or per chunk of envelope samples, and the buffers 
+ * for the arguments, function values and screen coordinates are reused 
+ * between calls, so that sampling does not cause any allocations once 
+ * the buffers have reached their maximum size.<br>
+ * <br>
+ * When an {@link #setEvaluationPool(ForkJoinPool) evaluation pool} is 
+ * set, then each batch is split into chunks that are evaluated in 
+ * parallel. Then, the function has to be thread-safe. <br>
+ * <br>
+ * The {@link #setProgressListener(Consumer) progress listener} may 
+ * receive intermediate results, and the sampling may be 
+ * {@link #cancel() cancelled} from another thread. Apart from that, 
+ * instances of this class are not thread-safe. The {@link SampleCache} 
+ * may be shared between multiple instances, and is only accessed while
+ * holding its monitor.
+ */
+final class FunctionSampler
+{
+    /**
+     * The spacing of the initial samples, in pixels
+     */
+    private static final double INITIAL_SAMPLE_SPACING = 4.0;
+    
+    /**
+     * The maximum number of times that an initial interval may be 
+     * subdivided
+     */
+    private static final int MAX_DEPTH = 10;
+    
+    /**
+     * The maximum absolute index of an initial sample on the grid that 
+     * is aligned to the world origin. If the visible range is further 
+     * away from the origin, then the grid will be aligned to the visible
+     * range, and the cache will not be used.
+     */
+    private static final double MAX_GRID_INDEX = 1L << 40;
+    
+    /**
+     * The maximum number of samples that are evaluated in one batch in
+     * the envelope mode
+     */
+    private static final int ENVELOPE_CHUNK_SIZE = 1 << 16;
+    
+    /**
+     * The minimum number of function evaluations in one chunk that is
+     * submitted to the {@link #evaluationPool}
+     */
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 16;
+    
+    /**
+     * The state of an interval that does not have to be refined further
+     */
+    private static final byte DONE = 0;
+    
+    /**
+     * The state of an interval that should be refined further
+     */
+    private static final byte ACTIVE = 1;
+    
+    /**
+     * The state of an interval that contains a discontinuity
+     */
+    private static final byte BROKEN = 2;
+    
+    /**
+     * A transform, used internally for sampling
+     */
+    private final AffineTransform TEMP_TRANSFORM = new AffineTransform();
+    
+    /**
+     * The corners of the screen, used internally for sampling
+     */
+    private final double[] TEMP_CORNERS = new double[8];
+    
+    /**
+     * The function to be sampled
+     */
+    private final BatchFunction function;
+    
+    /**
+     * The path that is built from the samples
+     */
+    private final Path2D path;
+    
+    /**
+     * The maximum deviation, in pixels, of the function from the painted 
+     * line segments, before an interval is subdivided
+     */
+    private double samplingTolerance;
+    
+    /**
+     * The maximum number of samples
+     */
+    private int maxSamples;
+    
+    /**
+     * The current {@link Samples}
+     */
+    private Samples samples;
+    
+    /**
+     * The {@link Samples} that are filled during a refinement step
+     */
+    private Samples nextSamples;
+    
+    /**
+     * The {@link Samples} that store the midpoints of the active intervals
+     * during a refinement step
+     */
+    private Samples midpoints;
+    
+    /**
+     * The x-coordinate of the origin of the current sampling grid
+     */
+    private double gridOrigin;
+    
+    /**
+     * The distance between two grid positions with adjacent keys: The 
+     * x-coordinate of a sample with key <code>k</code> is 
+     * <code>gridOrigin + k * gridUnit</code>
+     */
+    private double gridUnit;
+    
+    /**
+     * The {@link SampleCache}, which may be shared with other instances
+     */
+    private final SampleCache sampleCache;
+    
+    /**
+     * The cache level for the current sampling grid. This is 
+     * <code>null</code> if the cache is not used.
+     */
+    private SampleCache.Level cacheLevel;
+    
+    /**
+     * The indices of the samples that could not be found in the cache
+     */
+    private int[] missIndices;
+    
+    /**
+     * The x-coordinates of the samples that could not be found in the 
+     * cache
+     */
+    private double[] missXs;
+    
+    /**
+     * The function values of the samples that could not be found in the 
+     * cache
+     */
+    private double[] missYs;
+    
+    /**
+     * The number of samples per pixel column for the envelope mode. If 
+     * this is 0, then the function is sampled adaptively.
+     */
+    private int envelopeSamplesPerPixel;
+    
+    /**
+     * The x-coordinates of one chunk of samples in the envelope mode,
+     * in world coordinates
+     */
+    private double[] envelopeXs;
+    
+    /**
+     * The y-coordinates of one chunk of samples in the envelope mode,
+     * in world coordinates
+     */
+    private double[] envelopeYs;
+    
+    /**
+     * The interleaved (x,y) coordinates of the first, the minimum, the 
+     * maximum and the last sample of each pixel column in the envelope 
+     * mode, where the minimum and maximum are stored in the order in
+     * which they appear in the column. These are first stored in world
+     * coordinates, and then transformed to screen coordinates.
+     */
+    private double[] envelopeCoordinates;
+    
+    /**
+     * Whether the function is defined for any sample of each pixel column
+     * in the envelope mode
+     */
+    private boolean[] envelopeDefined;
+    
+    /**
+     * The pool for the parallel evaluation of the function. If this is
+     * <code>null</code>, then the function is evaluated in the calling 
+     * thread.
+     */
+    private ForkJoinPool evaluationPool;
+    
+    /**
+     * The optional listener that receives intermediate results
+     */
+    private Consumer<? super Path2D> progressListener;
+    
+    /**
+     * Whether the sampling was cancelled
+     */
+    private volatile boolean cancelled;
+    
+    /**
+     * The sampler that is used if the function is a 
+     * {@link SampledFunction}, or <code>null</code> otherwise
+     */
+    private final SampledFunctionSampler sampledFunctionSampler;
+    
+    /**
+     * Creates a new sampler for the given function
+     * 
+     * @param function The function 
+     * @param sampleCache The {@link SampleCache}
+     */
+    FunctionSampler(BatchFunction function, SampleCache sampleCache)
+    {
+        this.function = function;
+        this.path = new Path2D.Double();
+        this.samples = new Samples();
+        this.nextSamples = new Samples();
+        this.midpoints = new Samples();
+        this.sampleCache = sampleCache;
+        this.missIndices = new int[0];
+        this.missXs = new double[0];
+        this.missYs = new double[0];
+        this.envelopeSamplesPerPixel = 0;
+        this.envelopeXs = new double[0];
+        this.envelopeYs = new double[0];
+        this.envelopeCoordinates = new double[0];
+        this.envelopeDefined = new boolean[0];
+        if (function instanceof SampledFunction)
+        {
+            this.sampledFunctionSampler = 
+                new SampledFunctionSampler((SampledFunction)function);
+        }
+        else
+        {
+            this.sampledFunctionSampler = null;
+        }
+    }
+    
+    /**
+     * Set the maximum deviation, in pixels, between the function and
+     * the painted line segments, before an interval is subdivided
+     * 
+     * @param samplingTolerance The sampling tolerance
+     */
+    void setSamplingTolerance(double samplingTolerance)
+    {
+        this.samplingTolerance = samplingTolerance;
+    }
+    
+    /**
+     * Set the maximum number of samples at which the function will be
+     * evaluated. The initial, regular samples will always be evaluated, 
+     * but no further subdivision will take place when it would exceed
+     * this number.
+     * 
+     * @param maxSamples The maximum number of samples
+     */
+    void setMaxSamples(int maxSamples)
+    {
+        this.maxSamples = maxSamples;
+    }
+    
+    /**
+     * Set the number of samples per pixel column that should be used for
+     * sampling the function as an envelope. If this is 0, then the 
+     * function will be sampled adaptively.
+     * 
+     * @param envelopeSamplesPerPixel The number of samples per pixel
+     */
+    void setEnvelopeSamplesPerPixel(int envelopeSamplesPerPixel)
+    {
+        this.envelopeSamplesPerPixel = envelopeSamplesPerPixel;
+    }
+    
+    /**
+     * Set the pool that should be used for evaluating the function in
+     * parallel. If this is <code>null</code>, then the function will
+     * be evaluated in the calling thread.
+     * 
+     * @param evaluationPool The evaluation pool
+     */
+    void setEvaluationPool(ForkJoinPool evaluationPool)
+    {
+        this.evaluationPool = evaluationPool;
+    }
+    
+    /**
+     * Set the listener that will be informed about intermediate results
+     * of the adaptive sampling: After the initial samples and after each
+     * refinement step, it will receive a new path that contains the 
+     * current approximation of the function, in screen coordinates.
+     * 
+     * @param progressListener The progress listener
+     */
+    void setProgressListener(Consumer<? super Path2D> progressListener)
+    {
+        this.progressListener = progressListener;
+    }
+    
+    /**
+     * Cancel the sampling. This may be called from any thread. A call
+     * to {@link #sample(AffineTransform, double, double)} that is 
+     * currently running (or called afterwards) will return 
+     * <code>null</code> as soon as possible, and the progress listener 
+     * will no longer be informed.
+     */
+    void cancel()
+    {
+        cancelled = true;
+    }
+    
+    /**
+     * Returns whether this sampler was {@link #cancel() cancelled}
+     * 
+     * @return Whether this sampler was cancelled
+     */
+    boolean isCancelled()
+    {
+        return cancelled;
+    }
+    
+    /**
+     * Sample the function for the area of the given size on the screen,
+     * and return the path, in screen coordinates. The returned path
+     * will be reused by subsequent calls. 
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param w The width of the area
+     * @param h The height of the area
+     * @return The path, or <code>null</code> if the world-to-screen 
+     * transform is not invertible, or the sampling was cancelled
+     */
+    Path2D sample(AffineTransform worldToScreen, double w, double h)
+    {
+        TEMP_TRANSFORM.setTransform(worldToScreen);
+        try
+        {
+            TEMP_TRANSFORM.invert();
+        }
+        catch (NoninvertibleTransformException e)
+        {
+            return null;
+        }
+        TEMP_CORNERS[0] = 0;
+        TEMP_CORNERS[1] = 0;
+        TEMP_CORNERS[2] = w;
+        TEMP_CORNERS[3] = 0;
+        TEMP_CORNERS[4] = w;
+        TEMP_CORNERS[5] = h;
+        TEMP_CORNERS[6] = 0;
+        TEMP_CORNERS[7] = h;
+        TEMP_TRANSFORM.transform(TEMP_CORNERS, 0, TEMP_CORNERS, 0, 4);
+        double w0 = Double.POSITIVE_INFINITY;
+        double w1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4; i++)
+        {
+            w0 = Math.min(w0, TEMP_CORNERS[i * 2]);
+            w1 = Math.max(w1, TEMP_CORNERS[i * 2]);
+        }
+        
+        if (sampledFunctionSampler != null)
+        {
+            int columns = Math.max(1, (int)Math.ceil(w));
+            if (!sampledFunctionSampler.sample(worldToScreen, w0, w1, 
+                columns, evaluationPool, this::isCancelled, path))
+            {
+                return null;
+            }
+            return path;
+        }
+        if (envelopeSamplesPerPixel > 0)
+        {
+            int columns = Math.max(1, (int)Math.ceil(w));
+            computeEnvelope(worldToScreen, w0, w1, columns);
+            if (cancelled)
+            {
+                return null;
+            }
+            buildEnvelopePath(columns);
+            return path;
+        }
+        computeInitialSamples(worldToScreen, w0, w1);
+        reportProgress();
+        while (!cancelled && refine(worldToScreen))
+        {
+            reportProgress();
+        }
+        if (cancelled)
+        {
+            return null;
+        }
+        if (cacheLevel != null)
+        {
+            synchronized (sampleCache)
+            {
+                sampleCache.trim(cacheLevel, 
+                    samples.keys[0], samples.keys[samples.count - 1]);
+            }
+        }
+        buildPath();
+        return path;
+    }
+    
+    /**
+     * If there is a {@link #progressListener} and the sampling was not
+     * cancelled, then pass a copy of the path for the current samples 
+     * to the listener
+     */
+    private void reportProgress()
+    {
+        if (progressListener != null && !cancelled)
+        {
+            buildPath();
+            progressListener.accept(new Path2D.Double(path));
+        }
+    }
+    
+    /**
+     * Evaluate the function for the given arguments. If there is an 
+     * {@link #evaluationPool}, then the arguments will be split into 
+     * chunks that are evaluated in parallel. 
+     * 
+     * @param xs The arguments
+     * @param ys The array that will store the function values
+     * @param count The number of arguments
+     * @return Whether the evaluation was completed, meaning that it was 
+     * not {@link #cancel() cancelled}
+     */
+    private boolean evaluateBatch(double[] xs, double[] ys, int count)
+    {
+        if (cancelled)
+        {
+            return false;
+        }
+        ForkJoinPool pool = evaluationPool;
+        if (pool == null || count < MIN_PARALLEL_CHUNK_SIZE * 2)
+        {
+            function.evaluate(xs, ys, count);
+            return true;
+        }
+        int chunks = Math.min(pool.getParallelism() * 4, 
+            count / MIN_PARALLEL_CHUNK_SIZE);
+        int chunkSize = (count + chunks - 1) / chunks;
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int start = 0; start < count; start += chunkSize)
+        {
+            int chunkStart = start;
+            int chunkCount = Math.min(chunkSize, count - start);
+            tasks.add(pool.submit(() -> 
+            {
+                if (cancelled)
+                {
+                    return;
+                }
+                double[] chunkXs = new double[chunkCount];
+                double[] chunkYs = new double[chunkCount];
+                System.arraycopy(xs, chunkStart, chunkXs, 0, chunkCount);
+                function.evaluate(chunkXs, chunkYs, chunkCount);
+                System.arraycopy(chunkYs, 0, ys, chunkStart, chunkCount);
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks)
+        {
+            task.join();
+        }
+        return !cancelled;
+    }
+    
+    /**
+     * Set up the sampling grid for the given world-to-screen transform,
+     * evaluate the function at the initial grid positions that cover
+     * the given interval, and store the results in the current 
+     * {@link #samples}. All intervals will initially be {@link #ACTIVE}.
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param w0 The minimum x-coordinate, in world coordinates
+     * @param w1 The maximum x-coordinate, in world coordinates
+     */
+    private void computeInitialSamples(
+        AffineTransform worldToScreen, double w0, double w1)
+    {
+        double pixelsPerWorldX = Math.hypot(
+            worldToScreen.getScaleX(), worldToScreen.getShearY());
+        double step = INITIAL_SAMPLE_SPACING / pixelsPerWorldX;
+        double i0 = Math.floor(w0 / step);
+        double i1 = Math.ceil(w1 / step);
+        if (Math.abs(i0) < MAX_GRID_INDEX && Math.abs(i1) < MAX_GRID_INDEX)
+        {
+            gridOrigin = 0.0;
+            cacheLevel = null;
+            synchronized (sampleCache)
+            {
+                if (sampleCache.isEnabled())
+                {
+                    cacheLevel = sampleCache.obtainLevel(step);
+                }
+            }
+        }
+        else
+        {
+            gridOrigin = i0 * step;
+            i1 -= i0;
+            i0 = 0;
+            cacheLevel = null;
+        }
+        gridUnit = step / (1 << MAX_DEPTH);
+        
+        int count = Math.max(2, (int)(i1 - i0) + 1);
+        samples.ensureCapacity(count);
+        long firstIndex = (long)i0;
+        for (int i = 0; i < count; i++)
+        {
+            samples.keys[i] = (firstIndex + i) << MAX_DEPTH;
+            samples.states[i] = ACTIVE;
+            samples.depths[i] = 0;
+        }
+        samples.states[count - 1] = DONE;
+        samples.count = count;
+        evaluate(samples, worldToScreen);
+    }
+    
+    /**
+     * Compute the x-coordinates for the keys of the given samples, and 
+     * obtain the function values, either from the cache, or by evaluating
+     * the function. Then compute the screen coordinates of the samples.
+     * 
+     * @param s The samples
+     * @param worldToScreen The world-to-screen transform
+     */
+    private void evaluate(Samples s, AffineTransform worldToScreen)
+    {
+        int count = s.count;
+        for (int i = 0; i < count; i++)
+        {
+            s.xs[i] = gridOrigin + s.keys[i] * gridUnit;
+        }
+        if (cacheLevel == null)
+        {
+            evaluateBatch(s.xs, s.ys, count);
+        }
+        else
+        {
+            if (missIndices.length < count)
+            {
+                missIndices = new int[count];
+                missXs = new double[count];
+                missYs = new double[count];
+            }
+            int misses = 0;
+            synchronized (sampleCache)
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    int slot = cacheLevel.indexOf(s.keys[i]);
+                    if (slot != -1)
+                    {
+                        s.ys[i] = cacheLevel.valueAt(slot);
+                    }
+                    else
+                    {
+                        missIndices[misses] = i;
+                        missXs[misses] = s.xs[i];
+                        misses++;
+                    }
+                }
+            }
+            if (misses > 0 && evaluateBatch(missXs, missYs, misses))
+            {
+                synchronized (sampleCache)
+                {
+                    for (int j = 0; j < misses; j++)
+                    {
+                        int i = missIndices[j];
+                        s.ys[i] = missYs[j];
+                        cacheLevel.put(s.keys[i], missYs[j]);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < count; i++)
+        {
+            s.coordinates[i * 2 + 0] = s.xs[i];
+            s.coordinates[i * 2 + 1] = s.ys[i];
+        }
+        worldToScreen.transform(s.coordinates, 0, s.coordinates, 0, count);
+    }
+    
+    /**
+     * Perform one refinement step: The function is evaluated at the 
+     * midpoints of all {@link #ACTIVE} intervals of the current 
+     * {@link #samples}, and the resulting samples are merged into 
+     * the {@link #nextSamples}, which then become the current samples.
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @return Whether a refinement step was performed
+     */
+    private boolean refine(AffineTransform worldToScreen)
+    {
+        int n = samples.count;
+        midpoints.ensureCapacity(n);
+        int m = 0;
+        for (int i = 0; i < n - 1; i++)
+        {
+            if (samples.states[i] == ACTIVE)
+            {
+                midpoints.keys[m] = 
+                    (samples.keys[i] + samples.keys[i + 1]) >> 1;
+                m++;
+            }
+        }
+        if (m == 0 || n + m > maxSamples)
+        {
+            return false;
+        }
+        midpoints.count = m;
+        evaluate(midpoints, worldToScreen);
+
+        nextSamples.ensureCapacity(n + m);
+        int j = 0;
+        int k = 0;
+        for (int i = 0; i < n; i++)
+        {
+            nextSamples.copy(j, samples, i);
+            if (samples.states[i] == ACTIVE)
+            {
+                int depth = samples.depths[i] + 1;
+                nextSamples.copy(j + 1, midpoints, k);
+                nextSamples.depths[j] = depth;
+                nextSamples.depths[j + 1] = depth;
+                boolean deviating = isDeviating(
+                    samples, i, midpoints, k, samples, i + 1);
+                nextSamples.states[j] = computeState(
+                    samples, i, midpoints, k, deviating, depth);
+                nextSamples.states[j + 1] = computeState(
+                    midpoints, k, samples, i + 1, deviating, depth);
+                j += 2;
+                k++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+        nextSamples.count = j;
+        
+        Samples temp = samples;
+        samples = nextSamples;
+        nextSamples = temp;
+        return true;
+    }
+    
+    /**
+     * Returns whether the screen position of the midpoint deviates from 
+     * the center of the chord between the given end points by more than 
+     * the {@link #samplingTolerance}, or whether the function is defined
+     * at some, but not all of these points.
+     * 
+     * @param s0 The samples containing the start point
+     * @param i0 The index of the start point
+     * @param sm The samples containing the midpoint
+     * @param im The index of the midpoint
+     * @param s1 The samples containing the end point
+     * @param i1 The index of the end point
+     * @return Whether the midpoint deviates
+     */
+    private boolean isDeviating(Samples s0, int i0, 
+        Samples sm, int im, Samples s1, int i1)
+    {
+        boolean defined0 = Double.isFinite(s0.ys[i0]);
+        boolean definedm = Double.isFinite(sm.ys[im]);
+        boolean defined1 = Double.isFinite(s1.ys[i1]);
+        if (!defined0 || !definedm || !defined1)
+        {
+            return defined0 || definedm || defined1;
+        }
+        double cx = (s0.screenX(i0) + s1.screenX(i1)) * 0.5;
+        double cy = (s0.screenY(i0) + s1.screenY(i1)) * 0.5;
+        double dx = sm.screenX(im) - cx;
+        double dy = sm.screenY(im) - cy;
+        return dx * dx + dy * dy > samplingTolerance * samplingTolerance;
+    }
+    
+    /**
+     * Compute the state of one half of an interval that was subdivided.
+     * <br>
+     * <br>
+     * If the whole interval was not deviating, or the function is 
+     * undefined at both end points of the half, then the half is 
+     * {@link #DONE}. Otherwise, it is {@link #ACTIVE} if the given
+     * depth is smaller than the maximum depth. At the maximum depth, 
+     * the half is {@link #BROKEN} if the function is defined at both 
+     * end points, and their distance on the screen is larger than 
+     * four times the {@link #samplingTolerance}: A continuous function 
+     * would not deviate from the chord on such a small interval, so 
+     * this is considered to be a jump.
+     * 
+     * @param s0 The samples containing the start point
+     * @param i0 The index of the start point
+     * @param s1 The samples containing the end point
+     * @param i1 The index of the end point
+     * @param deviating Whether the whole interval was deviating
+     * @param depth The subdivision depth of the half
+     * @return The state
+     */
+    private byte computeState(Samples s0, int i0, Samples s1, int i1, 
+        boolean deviating, int depth)
+    {
+        if (!deviating)
+        {
+            return DONE;
+        }
+        boolean defined0 = Double.isFinite(s0.ys[i0]);
+        boolean defined1 = Double.isFinite(s1.ys[i1]);
+        if (!defined0 && !defined1)
+        {
+            return DONE;
+        }
+        if (depth < MAX_DEPTH)
+        {
+            return ACTIVE;
+        }
+        if (!defined0 || !defined1)
+        {
+            return DONE;
+        }
+        double dx = s1.screenX(i1) - s0.screenX(i0);
+        double dy = s1.screenY(i1) - s0.screenY(i0);
+        double jumpThreshold = samplingTolerance * 4;
+        if (dx * dx + dy * dy > jumpThreshold * jumpThreshold)
+        {
+            return BROKEN;
+        }
+        return DONE;
+    }
+    
+    /**
+     * Build the {@link #path} from the current {@link #samples}, omitting
+     * the line segments for undefined function values and 
+     * {@link #BROKEN} intervals.
+     */
+    private void buildPath()
+    {
+        path.reset();
+        boolean connected = false;
+        for (int i = 0; i < samples.count; i++)
+        {
+            if (!Double.isFinite(samples.ys[i]))
+            {
+                connected = false;
+                continue;
+            }
+            double sx = samples.screenX(i);
+            double sy = samples.screenY(i);
+            if (connected)
+            {
+                path.lineTo(sx, sy);
+            }
+            else
+            {
+                path.moveTo(sx, sy);
+            }
+            connected = samples.states[i] != BROKEN;
+        }
+    }
+    
+    /**
+     * Compute the {@link #envelopeCoordinates} for the given number of 
+     * pixel columns in the given interval. The function is evaluated at
+     * {@link #envelopeSamplesPerPixel} samples in each column, in chunks
+     * of at most {@link #ENVELOPE_CHUNK_SIZE} samples (or one column,
+     * if this is larger).
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param w0 The minimum x-coordinate, in world coordinates
+     * @param w1 The maximum x-coordinate, in world coordinates
+     * @param columns The number of columns
+     */
+    private void computeEnvelope(AffineTransform worldToScreen, 
+        double w0, double w1, int columns)
+    {
+        int k = envelopeSamplesPerPixel;
+        int columnsPerChunk = Math.max(1, ENVELOPE_CHUNK_SIZE / k);
+        int chunkSize = Math.min(columnsPerChunk, columns) * k;
+        if (envelopeXs.length < chunkSize)
+        {
+            envelopeXs = new double[chunkSize];
+            envelopeYs = new double[chunkSize];
+        }
+        if (envelopeDefined.length < columns)
+        {
+            envelopeCoordinates = new double[columns * 8];
+            envelopeDefined = new boolean[columns];
+        }
+        double columnWidth = (w1 - w0) / columns;
+        double sampleWidth = columnWidth / k;
+        for (int c0 = 0; c0 < columns; c0 += columnsPerChunk)
+        {
+            int c1 = Math.min(columns, c0 + columnsPerChunk);
+            int count = (c1 - c0) * k;
+            for (int c = c0; c < c1; c++)
+            {
+                double columnStart = w0 + c * columnWidth;
+                int offset = (c - c0) * k;
+                for (int j = 0; j < k; j++)
+                {
+                    envelopeXs[offset + j] = 
+                        columnStart + (j + 0.5) * sampleWidth;
+                }
+            }
+            if (!evaluateBatch(envelopeXs, envelopeYs, count))
+            {
+                return;
+            }
+            for (int c = c0; c < c1; c++)
+            {
+                aggregateColumn(c, (c - c0) * k, k);
+            }
+        }
+        worldToScreen.transform(
+            envelopeCoordinates, 0, envelopeCoordinates, 0, columns * 4);
+    }
+    
+    /**
+     * Store the first, minimum, maximum and last of the given range of 
+     * the {@link #envelopeYs} in the {@link #envelopeCoordinates} for 
+     * the given column, ignoring values that are not finite.
+     * 
+     * @param column The column
+     * @param offset The offset of the first sample of the column
+     * @param k The number of samples in the column
+     */
+    private void aggregateColumn(int column, int offset, int k)
+    {
+        int first = -1;
+        int last = -1;
+        int min = -1;
+        int max = -1;
+        for (int j = offset; j < offset + k; j++)
+        {
+            double y = envelopeYs[j];
+            if (!Double.isFinite(y))
+            {
+                continue;
+            }
+            if (first == -1)
+            {
+                first = j;
+                min = j;
+                max = j;
+            }
+            last = j;
+            if (y < envelopeYs[min])
+            {
+                min = j;
+            }
+            if (y > envelopeYs[max])
+            {
+                max = j;
+            }
+        }
+        envelopeDefined[column] = first != -1;
+        if (first == -1)
+        {
+            return;
+        }
+        int base = column * 8;
+        setEnvelopeCoordinates(base + 0, first);
+        setEnvelopeCoordinates(base + 2, Math.min(min, max));
+        setEnvelopeCoordinates(base + 4, Math.max(min, max));
+        setEnvelopeCoordinates(base + 6, last);
+    }
+    
+    /**
+     * Store the world coordinates of the envelope sample with the given 
+     * index at the given position of the {@link #envelopeCoordinates}
+     * 
+     * @param position The position
+     * @param index The index of the sample
+     */
+    private void setEnvelopeCoordinates(int position, int index)
+    {
+        envelopeCoordinates[position + 0] = envelopeXs[index];
+        envelopeCoordinates[position + 1] = envelopeYs[index];
+    }
+    
+    /**
+     * Build the {@link #path} from the {@link #envelopeCoordinates} for
+     * the given number of columns, omitting columns where the function 
+     * is not defined
+     * 
+     * @param columns The number of columns
+     */
+    private void buildEnvelopePath(int columns)
+    {
+        path.reset();
+        boolean connected = false;
+        for (int c = 0; c < columns; c++)
+        {
+            if (!envelopeDefined[c])
+            {
+                connected = false;
+                continue;
+            }
+            int base = c * 8;
+            if (connected)
+            {
+                path.lineTo(
+                    envelopeCoordinates[base], envelopeCoordinates[base + 1]);
+            }
+            else
+            {
+                path.moveTo(
+                    envelopeCoordinates[base], envelopeCoordinates[base + 1]);
+            }
+            for (int i = 2; i < 8; i += 2)
+            {
+                path.lineTo(envelopeCoordinates[base + i], 
+                    envelopeCoordinates[base + i + 1]);
+            }
+            connected = true;
+        }
+    }
+    
+    /**
+     * A set of samples of the function. The state and depth at each index
+     * refer to the interval between the sample at this index and the
+     * next sample.
+     */
+    private static final class Samples
+    {
+        /**
+         * The keys of the samples, describing their positions on the
+         * sampling grid
+         */
+        long[] keys = new long[0];
+        
+        /**
+         * The x-coordinates of the samples, in world coordinates
+         */
+        double[] xs = new double[0];
+        
+        /**
+         * The y-coordinates of the samples, in world coordinates
+         */
+        double[] ys = new double[0];
+        
+        /**
+         * The interleaved (x,y) coordinates of the samples, in screen 
+         * coordinates
+         */
+        double[] coordinates = new double[0];
+        
+        /**
+         * The states of the intervals
+         */
+        byte[] states = new byte[0];
+        
+        /**
+         * The subdivision depths of the intervals
+         */
+        int[] depths = new int[0];
+        
+        /**
+         * The number of samples
+         */
+        int count;
+        
+        /**
+         * Make sure that this instance can store the given number of
+         * samples. The contents of the arrays are not preserved when
+         * they have to be enlarged.
+         * 
+         * @param capacity The capacity
+         */
+        void ensureCapacity(int capacity)
+        {
+            if (xs.length < capacity)
+            {
+                keys = new long[capacity];
+                xs = new double[capacity];
+                ys = new double[capacity];
+                coordinates = new double[capacity * 2];
+                states = new byte[capacity];
+                depths = new int[capacity];
+            }
+        }
+        
+        /**
+         * Copy the sample with the given index from the given source 
+         * to the given index in this instance
+         * 
+         * @param index The target index
+         * @param source The source
+         * @param sourceIndex The source index
+         */
+        void copy(int index, Samples source, int sourceIndex)
+        {
+            keys[index] = source.keys[sourceIndex];
+            xs[index] = source.xs[sourceIndex];
+            ys[index] = source.ys[sourceIndex];
+            coordinates[index * 2 + 0] = source.screenX(sourceIndex);
+            coordinates[index * 2 + 1] = source.screenY(sourceIndex);
+            states[index] = source.states[sourceIndex];
+            depths[index] = source.depths[sourceIndex];
+        }
+        
+        /**
+         * Returns the x-coordinate of the sample with the given index,
+         * in screen coordinates
+         * 
+         * @param index The index
+         * @return The coordinate
+         */
+        double screenX(int index)
+        {
+            return coordinates[index * 2 + 0];
+        }
+        
+        /**
+         * Returns the y-coordinate of the sample with the given index,
+         * in screen coordinates
+         * 
+         * @param index The index
+         * @return The coordinate
+         */
+        double screenY(int index)
+        {
+            return coordinates[index * 2 + 1];
+        }
+    }
+    
+}
@@ -0,0 +1,663 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleToIntFunction;
+
+import javax.swing.SwingUtilities;
+
+import de.javagl.viewer.Painter;
+
+/**
+ * A {@link Painter} that paints a function z = f(x,y) as a heatmap.<br>
+ * <br>
+ * The function is evaluated on a regular grid of the world area. The 
+ * values are mapped to colors with a colormap (for example, one that
+ * was created with {@link Colormaps}). The grid is divided into tiles 
+ * of 256x256 pixels, which are aligned to the world origin. The 
+ * resolution of the tiles is chosen from powers of two, separately
+ * for the x- and y-direction, so that there is at least one tile pixel
+ * per screen pixel. The color of each tile pixel is the average of the
+ * colors of the given {@link #setSamplesPerPixel(int) number of samples
+ * per pixel}, and the tiles are painted with bilinear interpolation.<br>
+ * <br>
+ * The tiles are cached, so that only the tiles of newly exposed areas
+ * have to be computed when the view is translated. When the 
+ * {@link #setTileCacheCapacity(int) capacity} of the cache is exceeded,
+ * then the least recently used tiles are removed.<br>
+ * <br>
+ * By default, the tiles are computed in the painting thread. When an
+ * {@link #setEvaluationPool(ForkJoinPool, Runnable) evaluation pool} 
+ * is set, then the tiles are computed in this pool, in parallel, and 
+ * are refined progressively: First, the function is evaluated for 
+ * blocks of 16x16 pixels, then for blocks of 4x4 pixels, and finally 
+ * for each pixel. After each step, the tile is painted again. Tiles 
+ * that are no longer visible are not computed any further.<br>
+ * <br>
+ * When this painter is added to a {@link FunctionPanel}, it should be
+ * added to a negative layer, so that it is painted below the 
+ * coordinate system and the functions.
+ */
+public final class HeatmapPainter implements Painter
+{
+    /**
+     * The size of the tiles, in pixels
+     */
+    private static final int TILE_SIZE = 256;
+    
+    /**
+     * The size of the blocks for the first step of the progressive
+     * refinement. The block size is divided by 4 in each step.
+     */
+    private static final int INITIAL_BLOCK_SIZE = 16;
+    
+    /**
+     * The default {@link #setTileCacheCapacity(int) tile cache capacity}
+     */
+    private static final int DEFAULT_TILE_CACHE_CAPACITY = 256;
+    
+    /**
+     * The function
+     */
+    private final DoubleBinaryOperator function;
+    
+    /**
+     * The colormap
+     */
+    private final DoubleToIntFunction colormap;
+    
+    /**
+     * The {@link #setSamplesPerPixel(int) number of samples per pixel}
+     */
+    private int samplesPerPixel;
+    
+    /**
+     * The {@link #setTileCacheCapacity(int) tile cache capacity}
+     */
+    private int tileCacheCapacity;
+    
+    /**
+     * The number of tiles that have been visible in the last call to
+     * {@link #paint(Graphics2D, AffineTransform, double, double)}. The
+     * cache will always retain at least this number of tiles.
+     */
+    private int visibleTiles;
+    
+    /**
+     * The tiles, in access order
+     */
+    private final Map<TileKey, Tile> tiles;
+    
+    /**
+     * The {@link #setEvaluationPool(ForkJoinPool, Runnable) evaluation pool}
+     */
+    private ForkJoinPool evaluationPool;
+    
+    /**
+     * The callback that is called when a tile was refined
+     */
+    private Runnable repaintCallback;
+    
+    /**
+     * A counter for the calls to the paint method, to detect tiles
+     * that are no longer visible
+     */
+    private long paintCounter;
+    
+    /**
+     * Creates a new heatmap painter
+     * 
+     * @param function The function
+     * @param colormap The colormap, which receives the function values,
+     * and returns the ARGB colors
+     * @throws NullPointerException If any argument is <code>null</code>
+     */
+    public HeatmapPainter(
+        DoubleBinaryOperator function, DoubleToIntFunction colormap)
+    {
+        this.function = 
+            Objects.requireNonNull(function, "The function may not be null");
+        this.colormap = 
+            Objects.requireNonNull(colormap, "The colormap may not be null");
+        this.samplesPerPixel = 1;
+        this.tileCacheCapacity = DEFAULT_TILE_CACHE_CAPACITY;
+        this.tiles = new LinkedHashMap<TileKey, Tile>(16, 0.75f, true);
+    }
+    
+    /**
+     * Set the minimum number of samples per pixel, in each direction. 
+     * A value of 1 evaluates the function for each pixel, and larger
+     * values evaluate it on a sub-pixel grid, and average the resulting
+     * colors. The default value is 1.
+     * 
+     * @param samplesPerPixel The number of samples per pixel
+     * @throws IllegalArgumentException If the number is not positive
+     */
+    public void setSamplesPerPixel(int samplesPerPixel)
+    {
+        if (samplesPerPixel <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The samples per pixel must be positive, but is " + 
+                samplesPerPixel);
+        }
+        this.samplesPerPixel = samplesPerPixel;
+        clearTileCache();
+    }
+    
+    /**
+     * Set the maximum number of tiles that are cached. Each tile 
+     * requires 256KB of memory. The cache will always retain at least
+     * the tiles that are currently visible. The default value is 256.
+     * 
+     * @param tileCacheCapacity The capacity
+     * @throws IllegalArgumentException If the capacity is negative
+     */
+    public void setTileCacheCapacity(int tileCacheCapacity)
+    {
+        if (tileCacheCapacity < 0)
+        {
+            throw new IllegalArgumentException(
+                "The capacity may not be negative, but is " + 
+                tileCacheCapacity);
+        }
+        this.tileCacheCapacity = tileCacheCapacity;
+    }
+    
+    /**
+     * Remove all tiles from the cache. This has to be called when the 
+     * function or the colormap changed.
+     */
+    public void clearTileCache()
+    {
+        for (Tile tile : tiles.values())
+        {
+            tile.cancelled = true;
+        }
+        tiles.clear();
+    }
+    
+    /**
+     * Set the pool that should be used for computing the tiles 
+     * asynchronously, in parallel. If this is <code>null</code>, then 
+     * the tiles will be computed in the painting thread. Otherwise, the
+     * function and the colormap have to be thread-safe.
+     * 
+     * @param evaluationPool The evaluation pool
+     * @param repaintCallback The callback that will be called, on an
+     * arbitrary thread, when a tile was refined and should be painted.
+     * This will usually call <code>repaint()</code> on the component
+     * that this painter is painted in.
+     */
+    public void setEvaluationPool(
+        ForkJoinPool evaluationPool, Runnable repaintCallback)
+    {
+        clearTileCache();
+        this.evaluationPool = evaluationPool;
+        this.repaintCallback = repaintCallback;
+    }
+    
+    @Override
+    public void paint(Graphics2D g, AffineTransform worldToScreen,
+        double w, double h)
+    {
+        double scaleX = Math.hypot(
+            worldToScreen.getScaleX(), worldToScreen.getShearY());
+        double scaleY = Math.hypot(
+            worldToScreen.getShearX(), worldToScreen.getScaleY());
+        if (scaleX == 0 || scaleY == 0 || w <= 0 || h <= 0)
+        {
+            return;
+        }
+        Rectangle2D worldBounds = computeWorldBounds(worldToScreen, w, h);
+        if (worldBounds == null)
+        {
+            return;
+        }
+        int levelX = computeLevel(scaleX);
+        int levelY = computeLevel(scaleY);
+        double tileW = Math.scalb((double)TILE_SIZE, -levelX);
+        double tileH = Math.scalb((double)TILE_SIZE, -levelY);
+        long tx0 = (long)Math.floor(worldBounds.getMinX() / tileW);
+        long tx1 = (long)Math.floor(worldBounds.getMaxX() / tileW);
+        long ty0 = (long)Math.floor(worldBounds.getMinY() / tileH);
+        long ty1 = (long)Math.floor(worldBounds.getMaxY() / tileH);
+        
+        paintCounter++;
+        visibleTiles = (int)Math.min(Integer.MAX_VALUE, 
+            (tx1 - tx0 + 1) * (ty1 - ty0 + 1));
+        AffineTransform tileTransform = new AffineTransform();
+        Object oldInterpolation = 
+            g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, 
+            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        for (long ty = ty0; ty <= ty1; ty++)
+        {
+            for (long tx = tx0; tx <= tx1; tx++)
+            {
+                TileKey key = new TileKey(levelX, levelY, tx, ty);
+                Tile tile = tiles.get(key);
+                if (tile == null)
+                {
+                    tile = new Tile(tx * tileW, ty * tileH, 
+                        tileW / TILE_SIZE, tileH / TILE_SIZE, 
+                        samplesPerPixel);
+                    tiles.put(key, tile);
+                    startComputation(tile);
+                }
+                tile.paintCounter = paintCounter;
+                if (tile.blockSize != 0)
+                {
+                    tileTransform.setTransform(worldToScreen);
+                    tileTransform.translate(tile.x0, tile.y0);
+                    tileTransform.scale(tile.pixelW, tile.pixelH);
+                    g.drawImage(tile.image, tileTransform, null);
+                }
+            }
+        }
+        if (oldInterpolation != null)
+        {
+            g.setRenderingHint(
+                RenderingHints.KEY_INTERPOLATION, oldInterpolation);
+        }
+        removeHiddenIncompleteTiles();
+        removeEldestTiles();
+    }
+    
+    /**
+     * Compute the bounds of the visible world area
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param w The width of the screen area
+     * @param h The height of the screen area
+     * @return The world bounds, or <code>null</code> if the transform
+     * is not invertible
+     */
+    private static Rectangle2D computeWorldBounds(
+        AffineTransform worldToScreen, double w, double h)
+    {
+        try
+        {
+            return worldToScreen.createInverse().createTransformedShape(
+                new Rectangle2D.Double(0, 0, w, h)).getBounds2D();
+        }
+        catch (NoninvertibleTransformException e)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Compute the level of the tiles for the given scaling factor. This
+     * is the smallest value so that 2^level is not smaller than the
+     * scaling factor.
+     * 
+     * @param scale The scaling factor
+     * @return The level
+     */
+    private static int computeLevel(double scale)
+    {
+        return (int)Math.ceil(Math.log(scale) / Math.log(2));
+    }
+    
+    /**
+     * Remove the least recently used tiles, until the number of tiles
+     * does not exceed the capacity, or the number of visible tiles.
+     * This is done after all visible tiles have been painted, so that
+     * no visible tile is removed before it was painted.
+     */
+    private void removeEldestTiles()
+    {
+        int capacity = Math.max(tileCacheCapacity, visibleTiles);
+        Iterator<Tile> iterator = tiles.values().iterator();
+        while (tiles.size() > capacity && iterator.hasNext())
+        {
+            Tile tile = iterator.next();
+            tile.cancelled = true;
+            iterator.remove();
+        }
+    }
+    
+    /**
+     * Remove all tiles that have not been visible in the last call to
+     * the paint method, and whose computation is not complete
+     */
+    private void removeHiddenIncompleteTiles()
+    {
+        Iterator<Tile> iterator = tiles.values().iterator();
+        while (iterator.hasNext())
+        {
+            Tile tile = iterator.next();
+            if (tile.paintCounter != paintCounter && tile.blockSize != 1)
+            {
+                tile.cancelled = true;
+                iterator.remove();
+            }
+        }
+    }
+    
+    /**
+     * Start the computation of the given tile. If no evaluation pool is
+     * set, then the tile is computed completely in the calling thread. 
+     * Otherwise, it is computed progressively, in the evaluation pool.
+     * 
+     * @param tile The tile
+     */
+    private void startComputation(Tile tile)
+    {
+        ForkJoinPool pool = evaluationPool;
+        if (pool == null)
+        {
+            computeTile(tile, 1, null);
+            return;
+        }
+        Runnable callback = repaintCallback;
+        pool.execute(() -> 
+        {
+            try
+            {
+                computeTile(tile, INITIAL_BLOCK_SIZE, callback);
+            }
+            catch (RuntimeException e)
+            {
+                SwingUtilities.invokeLater(() -> 
+                {
+                    throw e;
+                });
+            }
+        });
+    }
+    
+    /**
+     * Compute the given tile, starting with the given block size, and
+     * dividing the block size by 4 until it is 1. For block sizes that
+     * are larger than 1, the function is only evaluated at the center
+     * of the first pixel of each block.
+     * 
+     * @param tile The tile
+     * @param initialBlockSize The initial block size
+     * @param callback The optional callback to call after each step
+     */
+    private void computeTile(Tile tile, int initialBlockSize, 
+        Runnable callback)
+    {
+        int[] data = tile.data;
+        int previousBlockSize = 0;
+        for (int b = initialBlockSize; b >= 1; b /= 4)
+        {
+            // The pixels that have already been computed in the previous
+            // step are skipped, unless the final pixels are averaged
+            // from multiple samples
+            boolean skipPrevious = previousBlockSize != 0 &&
+                (b > 1 || tile.samplesPerPixel <= 1);
+            for (int j = 0; j < TILE_SIZE; j += b)
+            {
+                if (tile.cancelled)
+                {
+                    return;
+                }
+                double y = tile.y0 + (j + 0.5) * tile.pixelH;
+                int maxBj = Math.min(b, TILE_SIZE - j);
+                for (int i = 0; i < TILE_SIZE; i += b)
+                {
+                    if (skipPrevious && 
+                        i % previousBlockSize == 0 && 
+                        j % previousBlockSize == 0)
+                    {
+                        continue;
+                    }
+                    int argb;
+                    if (b == 1 && tile.samplesPerPixel > 1)
+                    {
+                        argb = computeAverage(tile, i, j);
+                    }
+                    else
+                    {
+                        double x = tile.x0 + (i + 0.5) * tile.pixelW;
+                        argb = colormap.applyAsInt(
+                            function.applyAsDouble(x, y));
+                    }
+                    int maxBi = Math.min(b, TILE_SIZE - i);
+                    for (int bj = 0; bj < maxBj; bj++)
+                    {
+                        int offset = (j + bj) * TILE_SIZE + i;
+                        for (int bi = 0; bi < maxBi; bi++)
+                        {
+                            data[offset + bi] = argb;
+                        }
+                    }
+                }
+            }
+            tile.blockSize = b;
+            if (callback != null)
+            {
+                callback.run();
+            }
+            previousBlockSize = b;
+        }
+    }
+    
+    /**
+     * Compute the average of the colors of the samples of the specified
+     * pixel of the given tile. The function is evaluated on a regular 
+     * grid of n x n samples in the pixel, where n is the number of 
+     * samples per pixel of the tile.
+     * 
+     * @param tile The tile
+     * @param i The x-index of the pixel
+     * @param j The y-index of the pixel
+     * @return The average ARGB color
+     */
+    private int computeAverage(Tile tile, int i, int j)
+    {
+        int n = tile.samplesPerPixel;
+        long a = 0;
+        long r = 0;
+        long g = 0;
+        long b = 0;
+        for (int sj = 0; sj < n; sj++)
+        {
+            double y = tile.y0 + (j + (sj + 0.5) / n) * tile.pixelH;
+            for (int si = 0; si < n; si++)
+            {
+                double x = tile.x0 + (i + (si + 0.5) / n) * tile.pixelW;
+                int argb = colormap.applyAsInt(function.applyAsDouble(x, y));
+                a += (argb >>> 24) & 0xFF;
+                r += (argb >> 16) & 0xFF;
+                g += (argb >> 8) & 0xFF;
+                b += argb & 0xFF;
+            }
+        }
+        int count = n * n;
+        return (int)(((a / count) << 24) | ((r / count) << 16) | 
+            ((g / count) << 8) | (b / count));
+    }
+    
+    /**
+     * The key of a tile in the cache
+     */
+    private static final class TileKey
+    {
+        /**
+         * The level in x-direction
+         */
+        private final int levelX;
+        
+        /**
+         * The level in y-direction
+         */
+        private final int levelY;
+        
+        /**
+         * The tile index in x-direction
+         */
+        private final long tx;
+        
+        /**
+         * The tile index in y-direction
+         */
+        private final long ty;
+        
+        /**
+         * Creates a new tile key
+         * 
+         * @param levelX The level in x-direction
+         * @param levelY The level in y-direction
+         * @param tx The tile index in x-direction
+         * @param ty The tile index in y-direction
+         */
+        TileKey(int levelX, int levelY, long tx, long ty)
+        {
+            this.levelX = levelX;
+            this.levelY = levelY;
+            this.tx = tx;
+            this.ty = ty;
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            int result = 31 + levelX;
+            result = 31 * result + levelY;
+            result = 31 * result + Long.hashCode(tx);
+            result = 31 * result + Long.hashCode(ty);
+            return result;
+        }
+        
+        @Override
+        public boolean equals(Object object)
+        {
+            if (this == object)
+            {
+                return true;
+            }
+            if (!(object instanceof TileKey))
+            {
+                return false;
+            }
+            TileKey other = (TileKey)object;
+            return levelX == other.levelX && levelY == other.levelY &&
+                tx == other.tx && ty == other.ty;
+        }
+    }
+    
+    /**
+     * A single tile
+     */
+    private static final class Tile
+    {
+        /**
+         * The image of the tile, where the row index corresponds to
+         * the world y-coordinate
+         */
+        private final BufferedImage image;
+        
+        /**
+         * The data of the {@link #image}
+         */
+        private final int[] data;
+        
+        /**
+         * The minimum world x-coordinate of the tile
+         */
+        private final double x0;
+        
+        /**
+         * The minimum world y-coordinate of the tile
+         */
+        private final double y0;
+        
+        /**
+         * The width of one pixel, in world coordinates
+         */
+        private final double pixelW;
+        
+        /**
+         * The height of one pixel, in world coordinates
+         */
+        private final double pixelH;
+        
+        /**
+         * The number of samples per pixel, in each direction
+         */
+        private final int samplesPerPixel;
+        
+        /**
+         * The block size of the last step of the computation that was
+         * completed, or 0 if no step was completed yet. This is written
+         * after the data of the step has been written, and read before 
+         * the image is painted.
+         */
+        private volatile int blockSize;
+        
+        /**
+         * Whether the computation of this tile was cancelled
+         */
+        private volatile boolean cancelled;
+        
+        /**
+         * The value of the paint counter when this tile was last visible
+         */
+        private long paintCounter;
+        
+        /**
+         * Creates a new tile
+         * 
+         * @param x0 The minimum world x-coordinate
+         * @param y0 The minimum world y-coordinate
+         * @param pixelW The width of one pixel, in world coordinates
+         * @param pixelH The height of one pixel, in world coordinates
+         * @param samplesPerPixel The number of samples per pixel
+         */
+        Tile(double x0, double y0, double pixelW, double pixelH, 
+            int samplesPerPixel)
+        {
+            this.image = new BufferedImage(
+                TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            this.data = 
+                ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+            this.x0 = x0;
+            this.y0 = y0;
+            this.pixelW = pixelW;
+            this.pixelH = pixelH;
+            this.samplesPerPixel = samplesPerPixel;
+        }
+    }
+}
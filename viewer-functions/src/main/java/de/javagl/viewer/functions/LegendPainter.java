@@ -30,6 +30,7 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontMetrics;
+import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.geom.AffineTransform;
@@ -50,6 +51,16 @@ class LegendPainter implements Painter
      */
     private final Font font = new Font("Dialog", Font.PLAIN, 9);
     
+    /**
+     * The horizontal border between the legend bounds and the strings
+     */
+    private static final double BORDER_H = 5;
+    
+    /**
+     * The vertical border between the legend bounds and the strings
+     */
+    private static final double BORDER_V = 2;
+    
     /**
      * The strings to be painted
      */
@@ -65,6 +76,12 @@ class LegendPainter implements Painter
      */
     private String prototypeString;
     
+    /**
+     * The bounds of the legend, as of the last call to 
+     * {@link #paint(Graphics2D, AffineTransform, double, double)}
+     */
+    private final Rectangle2D paintedBounds;
+    
     /**
      * Default constructor
      */
@@ -72,27 +89,45 @@ class LegendPainter implements Painter
     {
         strings = new ArrayList<String>();
         paints = new ArrayList<Paint>();
+        paintedBounds = new Rectangle2D.Double();
     }
     
     /**
-     * Set the strings that will be painted
+     * Set the strings that will be painted, replacing the previous ones
      * 
-     * @param string The string
-     * @param paint The paint to use for the string
+     * @param newStrings The strings
+     * @param newPaints The paints to use for the strings
      */
-    void addString(String string, Paint paint)
+    void setStrings(List<String> newStrings, List<Paint> newPaints)
     {
-        strings.add(string);
-        paints.add(paint);
+        strings.clear();
+        strings.addAll(newStrings);
+        paints.clear();
+        paints.addAll(newPaints);
     }
     
     /**
-     * Remove all strings from this legend painter
+     * Returns the font that is used for the legend
+     * 
+     * @return The font
      */
-    void clearStrings()
+    Font getFont()
     {
-        strings.clear();
-        paints.clear();
+        return font;
+    }
+    
+    /**
+     * Returns a copy of the bounds of the legend, as of the last time 
+     * that it was painted. If no legend was painted, then the bounds
+     * will be empty.
+     * 
+     * @return The bounds
+     */
+    Rectangle2D getPaintedBounds()
+    {
+        return new Rectangle2D.Double(
+            paintedBounds.getX(), paintedBounds.getY(),
+            paintedBounds.getWidth(), paintedBounds.getHeight());
     }
     
     /**
@@ -113,33 +148,13 @@ class LegendPainter implements Painter
     {
         if (strings.size() == 0)
         {
+            paintedBounds.setRect(0, 0, 0, 0);
             return;
         }
         g.setFont(font);        
         FontMetrics fontMetrics = g.getFontMetrics();
-        
-        double maxWidth = 0;
-        double sumHeight = 0;
-        for (String string : strings)
-        {
-            Rectangle2D lineBounds = fontMetrics.getStringBounds(string, g);
-            maxWidth = Math.max(maxWidth, lineBounds.getWidth());
-            sumHeight += lineBounds.getHeight();
-        }
-        
-        if (prototypeString != null)
-        {
-            Rectangle2D lineBounds = 
-                fontMetrics.getStringBounds(prototypeString, g);
-            maxWidth = Math.max(maxWidth, lineBounds.getWidth());
-        }
-        
-        double borderH = 5;
-        double borderV = 2;
-        double totalWidth = maxWidth + borderH + borderH;
-        double totalHeight = sumHeight + borderV + borderV;
-        Rectangle2D totalBounds = new Rectangle2D.Double(
-            w - totalWidth, 0, totalWidth, totalHeight);
+        Rectangle2D totalBounds = computeBounds(fontMetrics, g, w);
+        paintedBounds.setRect(totalBounds);
         
         g.setStroke(new BasicStroke(1.0f));
         g.setColor(new Color(255,255,255,210));
@@ -148,7 +163,7 @@ class LegendPainter implements Painter
         g.draw(totalBounds);
         g.setColor(Color.BLACK);
         double y = 0;
-        double x = w - maxWidth - borderH;
+        double x = w - totalBounds.getWidth() + BORDER_H;
         for (int i=0; i<strings.size(); i++)
         {
             String string = strings.get(i);
@@ -161,4 +176,38 @@ class LegendPainter implements Painter
             g.drawString(string, (int)x, (int)y);
         }
     }
+    
+    /**
+     * Compute the bounds of the legend for the current strings, when
+     * it is painted into an area with the given width
+     * 
+     * @param fontMetrics The font metrics for the legend font
+     * @param g The graphics that provides the font render context. 
+     * If this is <code>null</code>, then a default context will be used.
+     * @param w The width of the painting area
+     * @return The bounds
+     */
+    Rectangle2D computeBounds(FontMetrics fontMetrics, Graphics g, double w)
+    {
+        double maxWidth = 0;
+        double sumHeight = 0;
+        for (String string : strings)
+        {
+            Rectangle2D lineBounds = fontMetrics.getStringBounds(string, g);
+            maxWidth = Math.max(maxWidth, lineBounds.getWidth());
+            sumHeight += lineBounds.getHeight();
+        }
+        
+        if (prototypeString != null)
+        {
+            Rectangle2D lineBounds = 
+                fontMetrics.getStringBounds(prototypeString, g);
+            maxWidth = Math.max(maxWidth, lineBounds.getWidth());
+        }
+        
+        double totalWidth = maxWidth + BORDER_H + BORDER_H;
+        double totalHeight = sumHeight + BORDER_V + BORDER_V;
+        return new Rectangle2D.Double(
+            w - totalWidth, 0, totalWidth, totalHeight);
+    }
 }
\ No newline at end of file
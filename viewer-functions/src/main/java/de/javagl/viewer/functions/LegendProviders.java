@@ -120,8 +120,18 @@ public class LegendProviders
         {
             return "?";
         }
-        String s = String.format(Locale.ENGLISH, "%.4f", value.doubleValue());
-        return String.format("%8s", s);
+        return defaultFormat(value.doubleValue());
+    }
+    
+    /**
+     * Returns a default-formatted string for the given value
+     * 
+     * @param value The value
+     * @return The string
+     */
+    private static String defaultFormat(double value)
+    {
+        return String.format(Locale.ENGLISH, "%8.4f", value);
     }
 
     /**
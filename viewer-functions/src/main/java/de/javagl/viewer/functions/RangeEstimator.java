@@ -0,0 +1,453 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A class for estimating the range of values that a set of functions 
+ * has in a certain interval. <br>
+ * <br>
+ * The functions are first evaluated on a regular grid, which is then
+ * refined repeatedly by evaluating the midpoints between all existing 
+ * samples, until the maximum number of samples is reached. The minimum
+ * and maximum are computed in the same pass. Afterwards, the samples 
+ * are refined locally around the positions of the minimum and maximum
+ * of each function, to capture the tips of narrow peaks. <br>
+ * <br>
+ * When a time budget is given, then no new refinement step will be 
+ * started after the budget has been exceeded, and the estimate will 
+ * be computed from the samples that have been evaluated until then. 
+ * The first step is always completed. <br>
+ * <br>
+ * When a pool is given, then the functions are evaluated in parallel,
+ * separately for each function and each chunk of the samples. 
+ */
+final class RangeEstimator
+{
+    /**
+     * The number of intervals of the initial grid
+     */
+    private static final int INITIAL_INTERVALS = 128;
+    
+    /**
+     * The maximum number of samples that are evaluated in one task
+     */
+    private static final int CHUNK_SIZE = 256;
+    
+    /**
+     * The number of intervals that are sampled in each step of the local
+     * refinement around an extremum
+     */
+    private static final int REFINEMENT_INTERVALS = 16;
+    
+    /**
+     * The number of steps of the local refinement around an extremum
+     */
+    private static final int REFINEMENT_STEPS = 4;
+    
+    /**
+     * The pool for the parallel evaluation. If this is <code>null</code>,
+     * then the functions are evaluated in the calling thread.
+     */
+    private final ForkJoinPool pool;
+    
+    /**
+     * The maximum number of samples for the regular grid of each function
+     */
+    private final int maxSamples;
+    
+    /**
+     * The time budget, in nanoseconds. If this is not positive, then 
+     * there is no time budget.
+     */
+    private final long timeBudgetNs;
+    
+    /**
+     * The time stamp (from <code>System.nanoTime()</code>) at which the
+     * time budget of the current estimation is exceeded
+     */
+    private long deadlineNs;
+    
+    /**
+     * Creates a new range estimator
+     * 
+     * @param pool The optional pool for the parallel evaluation
+     * @param maxSamples The maximum number of samples on the regular
+     * grid for each function
+     * @param timeBudgetMs The time budget, in milliseconds. If this 
+     * is not positive, then there is no time budget.
+     */
+    RangeEstimator(ForkJoinPool pool, int maxSamples, long timeBudgetMs)
+    {
+        this.pool = pool;
+        this.maxSamples = maxSamples;
+        this.timeBudgetNs = timeBudgetMs * 1000000L;
+    }
+    
+    /**
+     * Estimate the range of values that the given functions have in the
+     * interval [xMin, xMax]. Function values that are NaN or infinite 
+     * will be ignored. 
+     * 
+     * @param functions The functions
+     * @param xMin The minimum x-value
+     * @param xMax The maximum x-value
+     * @return An array containing the minimum and the maximum. These 
+     * will be NaN if none of the functions had a finite value at any
+     * of the sampled positions.
+     */
+    double[] estimate(List<? extends BatchFunction> functions, 
+        double xMin, double xMax)
+    {
+        deadlineNs = System.nanoTime() + timeBudgetNs;
+        int n = functions.size();
+        Extrema[] extrema = new Extrema[n];
+        for (int i = 0; i < n; i++)
+        {
+            extrema[i] = new Extrema();
+        }
+        
+        int intervals = INITIAL_INTERVALS;
+        double step = (xMax - xMin) / intervals;
+        sampleAll(functions, extrema, xMin, step, intervals + 1, true);
+        while (intervals * 2 + 1 <= maxSamples && !isTimeBudgetExceeded())
+        {
+            sampleAll(functions, extrema, 
+                xMin + step * 0.5, step, intervals, false);
+            intervals *= 2;
+            step *= 0.5;
+        }
+        refineAll(functions, extrema, xMin, xMax, step);
+        
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for (Extrema e : extrema)
+        {
+            min = FunctionUtils.min(min, e.min);
+            max = FunctionUtils.max(max, e.max);
+        }
+        return new double[] { min, max };
+    }
+    
+    /**
+     * Returns whether the time budget is exceeded
+     * 
+     * @return Whether the time budget is exceeded
+     */
+    private boolean isTimeBudgetExceeded()
+    {
+        return timeBudgetNs > 0 && System.nanoTime() - deadlineNs > 0;
+    }
+    
+    /**
+     * Evaluate all functions at the positions <code>start + i * step</code>
+     * for <code>i = 0...count-1</code>, and update their extrema
+     * 
+     * @param functions The functions
+     * @param extrema The extrema of the functions
+     * @param start The first position
+     * @param step The step between the positions
+     * @param count The number of positions
+     * @param mandatory Whether the samples must be evaluated even if
+     * the time budget is exceeded
+     */
+    private void sampleAll(List<? extends BatchFunction> functions, 
+        Extrema[] extrema, double start, double step, int count, 
+        boolean mandatory)
+    {
+        List<Callable<Extrema>> tasks = new ArrayList<Callable<Extrema>>();
+        List<Extrema> targets = new ArrayList<Extrema>();
+        for (int f = 0; f < functions.size(); f++)
+        {
+            BatchFunction function = functions.get(f);
+            for (int c0 = 0; c0 < count; c0 += CHUNK_SIZE)
+            {
+                double chunkStart = start + c0 * step;
+                int chunkCount = Math.min(CHUNK_SIZE, count - c0);
+                tasks.add(() -> 
+                {
+                    if (!mandatory && isTimeBudgetExceeded())
+                    {
+                        return new Extrema();
+                    }
+                    return sample(function, chunkStart, step, chunkCount);
+                });
+                targets.add(extrema[f]);
+            }
+        }
+        List<Extrema> results = execute(tasks);
+        for (int i = 0; i < results.size(); i++)
+        {
+            targets.get(i).merge(results.get(i));
+        }
+    }
+    
+    /**
+     * Refine the extrema of all functions locally, by evaluating the
+     * functions on successively finer grids around the positions of 
+     * their minimum and maximum.
+     * 
+     * @param functions The functions
+     * @param extrema The extrema of the functions
+     * @param xMin The minimum x-value
+     * @param xMax The maximum x-value
+     * @param step The step of the regular grid
+     */
+    private void refineAll(List<? extends BatchFunction> functions, 
+        Extrema[] extrema, double xMin, double xMax, double step)
+    {
+        List<Callable<Extrema>> tasks = new ArrayList<Callable<Extrema>>();
+        List<Extrema> targets = new ArrayList<Extrema>();
+        for (int f = 0; f < functions.size(); f++)
+        {
+            BatchFunction function = functions.get(f);
+            Extrema e = extrema[f];
+            if (!Double.isNaN(e.min))
+            {
+                double center = e.argMin;
+                tasks.add(() -> 
+                    refine(function, center, step, xMin, xMax, false));
+                targets.add(e);
+            }
+            if (!Double.isNaN(e.max))
+            {
+                double center = e.argMax;
+                tasks.add(() -> 
+                    refine(function, center, step, xMin, xMax, true));
+                targets.add(e);
+            }
+        }
+        List<Extrema> results = execute(tasks);
+        for (int i = 0; i < results.size(); i++)
+        {
+            targets.get(i).merge(results.get(i));
+        }
+    }
+    
+    /**
+     * Refine the given extremum of the given function locally, by 
+     * evaluating the function on successively finer grids around the
+     * given center, each time moving the center to the position of the 
+     * best sample
+     * 
+     * @param function The function
+     * @param center The initial center
+     * @param step The step of the regular grid
+     * @param xMin The minimum x-value
+     * @param xMax The maximum x-value
+     * @param maximum Whether the maximum should be refined. Otherwise,
+     * the minimum is refined.
+     * @return The extrema of all samples that have been evaluated
+     */
+    private Extrema refine(BatchFunction function, double center, 
+        double step, double xMin, double xMax, boolean maximum)
+    {
+        Extrema result = new Extrema();
+        double currentCenter = center;
+        double halfWidth = step;
+        for (int i = 0; i < REFINEMENT_STEPS; i++)
+        {
+            if (isTimeBudgetExceeded())
+            {
+                break;
+            }
+            double start = Math.max(xMin, currentCenter - halfWidth);
+            double end = Math.min(xMax, currentCenter + halfWidth);
+            double localStep = (end - start) / REFINEMENT_INTERVALS;
+            result.merge(sample(
+                function, start, localStep, REFINEMENT_INTERVALS + 1));
+            double next = maximum ? result.argMax : result.argMin;
+            if (Double.isNaN(next))
+            {
+                break;
+            }
+            currentCenter = next;
+            halfWidth = localStep;
+        }
+        return result;
+    }
+    
+    /**
+     * Evaluate the given function at the positions 
+     * <code>start + i * step</code> for <code>i = 0...count-1</code>,
+     * and return the extrema of the finite function values
+     * 
+     * @param function The function
+     * @param start The first position
+     * @param step The step between the positions
+     * @param count The number of positions
+     * @return The extrema
+     */
+    private static Extrema sample(
+        BatchFunction function, double start, double step, int count)
+    {
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            xs[i] = start + i * step;
+        }
+        function.evaluate(xs, ys, count);
+        Extrema extrema = new Extrema();
+        for (int i = 0; i < count; i++)
+        {
+            extrema.accept(xs[i], ys[i]);
+        }
+        return extrema;
+    }
+    
+    /**
+     * Execute the given tasks, in the {@link #pool} if it is not 
+     * <code>null</code>, or in the calling thread otherwise, and 
+     * return the results
+     * 
+     * @param tasks The tasks
+     * @return The results
+     */
+    private List<Extrema> execute(List<Callable<Extrema>> tasks)
+    {
+        List<Extrema> results = new ArrayList<Extrema>(tasks.size());
+        try
+        {
+            if (pool == null)
+            {
+                for (Callable<Extrema> task : tasks)
+                {
+                    results.add(task.call());
+                }
+            }
+            else
+            {
+                for (Future<Extrema> future : pool.invokeAll(tasks))
+                {
+                    results.add(future.get());
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException(e);
+        }
+        return results;
+    }
+    
+    /**
+     * The minimum and maximum of a set of function values, and the
+     * positions where they are attained
+     */
+    private static final class Extrema
+    {
+        /**
+         * The minimum, or NaN if no finite value was found
+         */
+        double min = Double.NaN;
+        
+        /**
+         * The position of the minimum
+         */
+        double argMin = Double.NaN;
+        
+        /**
+         * The maximum, or NaN if no finite value was found
+         */
+        double max = Double.NaN;
+        
+        /**
+         * The position of the maximum
+         */
+        double argMax = Double.NaN;
+        
+        /**
+         * Update these extrema with the given function value, if it is 
+         * finite
+         * 
+         * @param x The argument
+         * @param y The function value
+         */
+        void accept(double x, double y)
+        {
+            if (!Double.isFinite(y))
+            {
+                return;
+            }
+            if (Double.isNaN(min) || y < min)
+            {
+                min = y;
+                argMin = x;
+            }
+            if (Double.isNaN(max) || y > max)
+            {
+                max = y;
+                argMax = x;
+            }
+        }
+        
+        /**
+         * Update these extrema with the given ones
+         * 
+         * @param other The other extrema
+         */
+        void merge(Extrema other)
+        {
+            if (!Double.isNaN(other.min))
+            {
+                accept(other.argMin, other.min);
+            }
+            if (!Double.isNaN(other.max))
+            {
+                accept(other.argMax, other.max);
+            }
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A cache for the function values of one function. <br>
+ * <br>
+ * The function values are stored in {@link Level}s, which correspond to
+ * the world-x step of the sampling grid (that is, to one zoom level). 
+ * Inside one level, the values are stored with <code>long</code> keys 
+ * that describe positions on the grid. <br>
+ * <br>
+ * The total number of values that are stored in all levels is bounded 
+ * by the capacity. When the capacity is exceeded, then the least recently
+ * used levels will be evicted. 
+ */
+final class SampleCache
+{
+    /**
+     * The levels, in access order
+     */
+    private final Map<Double, Level> levels;
+    
+    /**
+     * The maximum number of values that should be stored
+     */
+    private int capacity;
+    
+    /**
+     * The step of the most recently obtained level
+     */
+    private double currentStep;
+    
+    /**
+     * The most recently obtained level
+     */
+    private Level currentLevel;
+    
+    /**
+     * Creates a new, empty cache
+     */
+    SampleCache()
+    {
+        this.levels = new LinkedHashMap<Double, Level>(16, 0.75f, true);
+        this.capacity = 0;
+        this.currentStep = Double.NaN;
+        this.currentLevel = null;
+    }
+    
+    /**
+     * Set the maximum number of values that should be stored in this 
+     * cache. If this is 0, then the cache is disabled.
+     * 
+     * @param capacity The capacity
+     * @throws IllegalArgumentException If the capacity is negative
+     */
+    void setCapacity(int capacity)
+    {
+        if (capacity < 0)
+        {
+            throw new IllegalArgumentException(
+                "The capacity may not be negative, but is " + capacity);
+        }
+        this.capacity = capacity;
+        if (capacity == 0)
+        {
+            clear();
+        }
+    }
+    
+    /**
+     * Returns whether this cache is enabled, meaning that its capacity 
+     * is positive
+     * 
+     * @return Whether this cache is enabled
+     */
+    boolean isEnabled()
+    {
+        return capacity > 0;
+    }
+    
+    /**
+     * Returns the {@link Level} for the given grid step, creating it if 
+     * necessary
+     * 
+     * @param step The grid step
+     * @return The {@link Level}
+     */
+    Level obtainLevel(double step)
+    {
+        if (currentLevel != null && step == currentStep)
+        {
+            return currentLevel;
+        }
+        Level level = levels.get(step);
+        if (level == null)
+        {
+            level = new Level();
+            levels.put(step, level);
+        }
+        currentStep = step;
+        currentLevel = level;
+        return level;
+    }
+    
+    /**
+     * Make sure that the number of values in this cache does not exceed
+     * the capacity. This will remove the least recently used levels, 
+     * except for the given one. If the given level alone exceeds the
+     * capacity, then only the values with keys in the given range will
+     * be retained, and if this is still too much, it will be cleared.
+     * 
+     * @param current The level that is currently used
+     * @param minKey The minimum key that is currently used
+     * @param maxKey The maximum key that is currently used
+     */
+    void trim(Level current, long minKey, long maxKey)
+    {
+        int size = 0;
+        for (Level level : levels.values())
+        {
+            size += level.size();
+        }
+        Iterator<Entry<Double, Level>> iterator = 
+            levels.entrySet().iterator();
+        while (size > capacity && iterator.hasNext())
+        {
+            Level level = iterator.next().getValue();
+            if (level != current)
+            {
+                size -= level.size();
+                iterator.remove();
+            }
+        }
+        if (current.size() > capacity)
+        {
+            current.retain(minKey, maxKey);
+        }
+        if (current.size() > capacity)
+        {
+            current.clear();
+        }
+    }
+    
+    /**
+     * Remove all values from this cache
+     */
+    void clear()
+    {
+        levels.clear();
+        currentStep = Double.NaN;
+        currentLevel = null;
+    }
+    
+    /**
+     * The values that are stored for one grid step. This is a simple
+     * hash map with open addressing, mapping <code>long</code> keys
+     * to <code>double</code> values.
+     */
+    static final class Level
+    {
+        /**
+         * The marker for empty slots
+         */
+        private static final long EMPTY = Long.MIN_VALUE;
+        
+        /**
+         * The initial number of slots. Must be a power of 2.
+         */
+        private static final int INITIAL_SLOTS = 1 << 10;
+        
+        /**
+         * The keys
+         */
+        private long[] keys;
+        
+        /**
+         * The values
+         */
+        private double[] values;
+        
+        /**
+         * The number of stored values
+         */
+        private int size;
+        
+        /**
+         * Creates a new, empty level
+         */
+        Level()
+        {
+            allocate(INITIAL_SLOTS);
+        }
+        
+        /**
+         * Allocate empty arrays with the given number of slots
+         * 
+         * @param slots The number of slots
+         */
+        private void allocate(int slots)
+        {
+            keys = new long[slots];
+            values = new double[slots];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+        
+        /**
+         * Returns the number of values in this level
+         * 
+         * @return The number of values
+         */
+        int size()
+        {
+            return size;
+        }
+        
+        /**
+         * Returns the slot that contains the given key, or -1 if the 
+         * key is not contained
+         * 
+         * @param key The key
+         * @return The slot
+         */
+        int indexOf(long key)
+        {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (true)
+            {
+                long k = keys[slot];
+                if (k == key)
+                {
+                    return slot;
+                }
+                if (k == EMPTY)
+                {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        
+        /**
+         * Returns the value in the given slot
+         * 
+         * @param slot The slot, as returned by {@link #indexOf(long)}
+         * @return The value
+         */
+        double valueAt(int slot)
+        {
+            return values[slot];
+        }
+        
+        /**
+         * Store the given value for the given key
+         * 
+         * @param key The key
+         * @param value The value
+         */
+        void put(long key, double value)
+        {
+            if ((size + 1) * 2 > keys.length)
+            {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (true)
+            {
+                long k = keys[slot];
+                if (k == key)
+                {
+                    values[slot] = value;
+                    return;
+                }
+                if (k == EMPTY)
+                {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    size++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        
+        /**
+         * Remove all values whose keys are not in the given range
+         * 
+         * @param minKey The minimum key, inclusive
+         * @param maxKey The maximum key, inclusive
+         */
+        void retain(long minKey, long maxKey)
+        {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            allocate(oldKeys.length);
+            for (int i = 0; i < oldKeys.length; i++)
+            {
+                long k = oldKeys[i];
+                if (k != EMPTY && k >= minKey && k <= maxKey)
+                {
+                    put(k, oldValues[i]);
+                }
+            }
+        }
+        
+        /**
+         * Remove all values from this level
+         */
+        void clear()
+        {
+            allocate(INITIAL_SLOTS);
+        }
+        
+        /**
+         * Move all values into new arrays with the given number of slots
+         * 
+         * @param slots The number of slots
+         */
+        private void rehash(int slots)
+        {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            allocate(slots);
+            for (int i = 0; i < oldKeys.length; i++)
+            {
+                long k = oldKeys[i];
+                if (k != EMPTY)
+                {
+                    put(k, oldValues[i]);
+                }
+            }
+        }
+        
+        /**
+         * Computes the hash code for the given key
+         * 
+         * @param key The key
+         * @return The hash code
+         */
+        private static int hash(long key)
+        {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+}
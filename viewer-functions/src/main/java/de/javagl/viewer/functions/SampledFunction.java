@@ -0,0 +1,165 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+/**
+ * Interface for functions that are given as a sequence of samples, 
+ * for example, recorded data. The x-coordinates of the samples must
+ * be sorted in ascending order. The function value between two samples
+ * is obtained by linear interpolation, and the function is undefined
+ * outside of the range of the x-coordinates.<br>
+ * <br>
+ * When such a function is added to a {@link FunctionPanel} (as a
+ * {@link BatchFunction}), then it is not sampled adaptively. Instead, the
+ * range of samples that is visible is looked up with a binary search, 
+ * and the samples are painted directly or, when there are more samples 
+ * than pixels, as the first, minimum, maximum and last value of each 
+ * pixel column. <br>
+ * <br>
+ * Instances may be created with the {@link SampledFunctions} class.
+ */
+public interface SampledFunction extends BatchFunction
+{
+    /**
+     * Returns the number of samples
+     * 
+     * @return The number of samples
+     */
+    long getSampleCount();
+    
+    /**
+     * Returns the x-coordinate of the sample with the given index
+     * 
+     * @param index The index
+     * @return The x-coordinate
+     * @throws IndexOutOfBoundsException If the index is negative or not
+     * smaller than the {@link #getSampleCount() sample count}
+     */
+    double getX(long index);
+    
+    /**
+     * Returns the y-coordinate of the sample with the given index. This
+     * may be <code>NaN</code> for samples where the function is undefined.
+     * 
+     * @param index The index
+     * @return The y-coordinate
+     * @throws IndexOutOfBoundsException If the index is negative or not
+     * smaller than the {@link #getSampleCount() sample count}
+     */
+    double getY(long index);
+    
+    /**
+     * Returns a view on the samples of this function that does not 
+     * change while it is used. This is called once for each time that
+     * the function is painted. The default implementation returns this
+     * function itself. Functions whose samples change concurrently 
+     * have to return a view on a consistent state of the samples.
+     * 
+     * @return The snapshot
+     */
+    default SampledFunction snapshot()
+    {
+        return this;
+    }
+    
+    /**
+     * Returns the index of the first sample whose x-coordinate is not
+     * smaller than the given value, or the {@link #getSampleCount() 
+     * sample count} if there is no such sample. This is computed with
+     * a binary search.
+     * 
+     * @param x The x-coordinate
+     * @return The index
+     */
+    default long findIndex(double x)
+    {
+        long low = 0;
+        long high = getSampleCount();
+        while (low < high)
+        {
+            long mid = (low + high) >>> 1;
+            if (getX(mid) < x)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Computes the function value at the given x-coordinate, by linearly
+     * interpolating between the neighboring samples. If the given value
+     * is outside of the range of the samples, then <code>NaN</code> is 
+     * returned.
+     * 
+     * @param x The x-coordinate
+     * @return The interpolated function value
+     */
+    default double interpolate(double x)
+    {
+        long n = getSampleCount();
+        long i = findIndex(x);
+        if (i >= n || Double.isNaN(x))
+        {
+            return Double.NaN;
+        }
+        double x1 = getX(i);
+        if (x1 == x)
+        {
+            return getY(i);
+        }
+        if (i == 0)
+        {
+            return Double.NaN;
+        }
+        double x0 = getX(i - 1);
+        double y0 = getY(i - 1);
+        double y1 = getY(i);
+        double alpha = (x - x0) / (x1 - x0);
+        return y0 + alpha * (y1 - y0);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * The values will be computed by {@link #interpolate(double) 
+     * interpolating} the samples.
+     */
+    @Override
+    default void evaluate(double[] xs, double[] ys, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            ys[i] = interpolate(xs[i]);
+        }
+    }
+}
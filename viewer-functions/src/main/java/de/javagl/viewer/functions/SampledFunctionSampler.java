@@ -0,0 +1,368 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A class that computes the path for painting a {@link SampledFunction},
+ * in screen coordinates.<br>
+ * <br>
+ * The samples are read from a {@link SampledFunction#snapshot() snapshot}
+ * of the function. The range of samples that is visible is determined
+ * with a binary search. When there are only few visible samples, then they are 
+ * connected directly, and samples with a <code>NaN</code> y-coordinate
+ * cause a gap in the path. Otherwise, the range of samples that falls 
+ * into each pixel column is determined with a binary search, and only 
+ * the first, the minimum, the maximum and the last sample of each column 
+ * are used for the path (M4 aggregation). The pixel columns may be 
+ * aggregated in parallel, in an evaluation pool. <br>
+ * <br>
+ * The buffers for the aggregated coordinates are reused between calls.
+ * Instances of this class are not thread-safe.
+ */
+final class SampledFunctionSampler
+{
+    /**
+     * The maximum number of visible samples per pixel column for which
+     * the samples are connected directly
+     */
+    private static final int MAX_DIRECT_SAMPLES_PER_COLUMN = 4;
+    
+    /**
+     * The number of pixel columns that are aggregated in one task
+     * of the evaluation pool
+     */
+    private static final int COLUMNS_PER_TASK = 32;
+    
+    /**
+     * The function
+     */
+    private final SampledFunction function;
+    
+    /**
+     * The {@link SampledFunction#snapshot() snapshot} of the function
+     * that is used during one call to {@link #sample}
+     */
+    private SampledFunction samples;
+    
+    /**
+     * The index of the first sample of each pixel column. The last
+     * element is the index after the last sample of the last column.
+     */
+    private long[] columnStarts;
+    
+    /**
+     * The interleaved (x,y) coordinates of the first, the minimum, the 
+     * maximum and the last sample of each pixel column, where the minimum
+     * and the maximum are stored in the order of their indices. These are
+     * first stored in world coordinates, and then transformed to screen 
+     * coordinates. In the direct mode, this contains the coordinates of 
+     * the visible samples.
+     */
+    private double[] coordinates;
+    
+    /**
+     * Whether each pixel column contains any sample with a y-coordinate
+     * that is not <code>NaN</code>
+     */
+    private boolean[] columnDefined;
+    
+    /**
+     * Creates a new sampler for the given function
+     * 
+     * @param function The function
+     */
+    SampledFunctionSampler(SampledFunction function)
+    {
+        this.function = function;
+        this.columnStarts = new long[0];
+        this.coordinates = new double[0];
+        this.columnDefined = new boolean[0];
+    }
+    
+    /**
+     * Compute the path for the function in the given range of 
+     * x-coordinates, and store it in the given path
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param w0 The minimum visible world x-coordinate
+     * @param w1 The maximum visible world x-coordinate
+     * @param columns The number of pixel columns
+     * @param pool The optional evaluation pool
+     * @param cancelled Whether the sampling was cancelled
+     * @param path The path that will store the result
+     * @return Whether the path was computed, and the sampling 
+     * was not cancelled
+     */
+    boolean sample(AffineTransform worldToScreen, 
+        double w0, double w1, int columns, 
+        ForkJoinPool pool, BooleanSupplier cancelled, Path2D path)
+    {
+        path.reset();
+        samples = function.snapshot();
+        long n = samples.getSampleCount();
+        long first = Math.max(0, samples.findIndex(w0) - 1);
+        long end = Math.min(n, samples.findIndex(w1) + 1);
+        if (end <= first)
+        {
+            return true;
+        }
+        long visible = end - first;
+        if (visible <= (long)columns * MAX_DIRECT_SAMPLES_PER_COLUMN)
+        {
+            buildDirectPath(worldToScreen, first, (int)visible, path);
+            return true;
+        }
+        if (columnDefined.length < columns)
+        {
+            columnStarts = new long[columns + 1];
+            coordinates = new double[columns * 8];
+            columnDefined = new boolean[columns];
+        }
+        double columnWidth = (w1 - w0) / columns;
+        columnStarts[0] = first + 1;
+        for (int c = 1; c < columns; c++)
+        {
+            columnStarts[c] = samples.findIndex(w0 + c * columnWidth);
+        }
+        columnStarts[columns] = end - 1;
+        
+        if (pool == null || columns < COLUMNS_PER_TASK * 2)
+        {
+            aggregateColumns(0, columns);
+        }
+        else
+        {
+            List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+            for (int c = 0; c < columns; c += COLUMNS_PER_TASK)
+            {
+                int c0 = c;
+                int c1 = Math.min(columns, c + COLUMNS_PER_TASK);
+                tasks.add(pool.submit(() -> 
+                {
+                    if (!cancelled.getAsBoolean())
+                    {
+                        aggregateColumns(c0, c1);
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks)
+            {
+                task.join();
+            }
+        }
+        if (cancelled.getAsBoolean())
+        {
+            return false;
+        }
+        worldToScreen.transform(
+            coordinates, 0, coordinates, 0, columns * 4);
+        buildEnvelopePath(worldToScreen, first, end - 1, columns, path);
+        return true;
+    }
+    
+    /**
+     * Build the path that directly connects the given samples
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param first The index of the first sample
+     * @param count The number of samples
+     * @param path The path
+     */
+    private void buildDirectPath(AffineTransform worldToScreen, 
+        long first, int count, Path2D path)
+    {
+        if (coordinates.length < count * 2)
+        {
+            coordinates = new double[count * 2];
+        }
+        for (int i = 0; i < count; i++)
+        {
+            coordinates[i * 2 + 0] = samples.getX(first + i);
+            coordinates[i * 2 + 1] = samples.getY(first + i);
+        }
+        worldToScreen.transform(coordinates, 0, coordinates, 0, count);
+        boolean connected = false;
+        for (int i = 0; i < count; i++)
+        {
+            double x = coordinates[i * 2 + 0];
+            double y = coordinates[i * 2 + 1];
+            if (Double.isNaN(x) || Double.isNaN(y))
+            {
+                connected = false;
+            }
+            else if (connected)
+            {
+                path.lineTo(x, y);
+            }
+            else
+            {
+                path.moveTo(x, y);
+                connected = true;
+            }
+        }
+    }
+    
+    /**
+     * Compute the first, minimum, maximum and last sample of each of the 
+     * given pixel columns, in world coordinates
+     * 
+     * @param c0 The first column, inclusive
+     * @param c1 The last column, exclusive
+     */
+    private void aggregateColumns(int c0, int c1)
+    {
+        for (int c = c0; c < c1; c++)
+        {
+            long start = columnStarts[c];
+            long end = columnStarts[c + 1];
+            long firstIndex = -1;
+            long lastIndex = -1;
+            long minIndex = -1;
+            long maxIndex = -1;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (long i = start; i < end; i++)
+            {
+                double y = samples.getY(i);
+                if (Double.isNaN(y))
+                {
+                    continue;
+                }
+                if (firstIndex == -1)
+                {
+                    firstIndex = i;
+                }
+                lastIndex = i;
+                if (y < minY)
+                {
+                    minY = y;
+                    minIndex = i;
+                }
+                if (y > maxY)
+                {
+                    maxY = y;
+                    maxIndex = i;
+                }
+            }
+            columnDefined[c] = firstIndex != -1;
+            if (columnDefined[c])
+            {
+                int base = c * 8;
+                store(base + 0, firstIndex);
+                store(base + 2, Math.min(minIndex, maxIndex));
+                store(base + 4, Math.max(minIndex, maxIndex));
+                store(base + 6, lastIndex);
+            }
+        }
+    }
+    
+    /**
+     * Store the coordinates of the specified sample in the coordinates
+     * array, at the given position
+     * 
+     * @param position The position in the coordinates array
+     * @param index The sample index
+     */
+    private void store(int position, long index)
+    {
+        coordinates[position + 0] = samples.getX(index);
+        coordinates[position + 1] = samples.getY(index);
+    }
+    
+    /**
+     * Build the path from the aggregated pixel columns. The path will 
+     * start at the sample before the first column, and end at the sample
+     * after the last column, if these are defined. Pixel columns that do
+     * not contain any defined samples break the path, in the same way as
+     * undefined samples do when the path is built from all samples.
+     * 
+     * @param worldToScreen The world-to-screen transform
+     * @param before The index of the sample before the first column
+     * @param after The index of the sample after the last column
+     * @param columns The number of columns
+     * @param path The path
+     */
+    private void buildEnvelopePath(AffineTransform worldToScreen,
+        long before, long after, int columns, Path2D path)
+    {
+        double[] point = new double[2];
+        boolean connected = false;
+        if (!Double.isNaN(samples.getY(before)))
+        {
+            point[0] = samples.getX(before);
+            point[1] = samples.getY(before);
+            worldToScreen.transform(point, 0, point, 0, 1);
+            path.moveTo(point[0], point[1]);
+            connected = true;
+        }
+        for (int c = 0; c < columns; c++)
+        {
+            if (!columnDefined[c])
+            {
+                connected = false;
+                continue;
+            }
+            int base = c * 8;
+            for (int i = 0; i < 8; i += 2)
+            {
+                double x = coordinates[base + i];
+                double y = coordinates[base + i + 1];
+                if (connected)
+                {
+                    path.lineTo(x, y);
+                }
+                else
+                {
+                    path.moveTo(x, y);
+                    connected = true;
+                }
+            }
+        }
+        if (!Double.isNaN(samples.getY(after)))
+        {
+            point[0] = samples.getX(after);
+            point[1] = samples.getY(after);
+            worldToScreen.transform(point, 0, point, 0, 1);
+            if (connected)
+            {
+                path.lineTo(point[0], point[1]);
+            }
+            else
+            {
+                path.moveTo(point[0], point[1]);
+            }
+        }
+    }
+}
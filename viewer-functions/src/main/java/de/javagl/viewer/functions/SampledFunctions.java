@@ -0,0 +1,207 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Methods to create {@link SampledFunction} instances
+ */
+public class SampledFunctions
+{
+    /**
+     * The number of bytes that one sample occupies in a file, namely 
+     * two <code>double</code> values
+     */
+    private static final int SAMPLE_SIZE_BYTES = 16;
+    
+    /**
+     * The base-2 logarithm of the number of samples that are mapped
+     * into one buffer. Buffers are indexed with <code>int</code> values,
+     * so larger files have to be mapped into several buffers.
+     */
+    private static final int SEGMENT_SHIFT = 26;
+    
+    /**
+     * The number of samples that are mapped into one buffer
+     */
+    private static final long SEGMENT_SAMPLES = 1L << SEGMENT_SHIFT;
+    
+    /**
+     * The mask for computing the index of a sample inside its buffer
+     */
+    private static final long SEGMENT_MASK = SEGMENT_SAMPLES - 1;
+    
+    /**
+     * Creates a {@link SampledFunction} that is backed by the given arrays.
+     * The arrays are not copied, so changes in the arrays will be visible
+     * in the returned function. The x-coordinates must be sorted in 
+     * ascending order.
+     * 
+     * @param xs The x-coordinates of the samples
+     * @param ys The y-coordinates of the samples
+     * @return The {@link SampledFunction}
+     * @throws NullPointerException If any argument is <code>null</code>
+     * @throws IllegalArgumentException If the arrays have different lengths
+     */
+    public static SampledFunction fromArrays(
+        final double[] xs, final double[] ys)
+    {
+        Objects.requireNonNull(xs, "The xs may not be null");
+        Objects.requireNonNull(ys, "The ys may not be null");
+        if (xs.length != ys.length)
+        {
+            throw new IllegalArgumentException(
+                "The xs have a length of " + xs.length + 
+                ", but the ys have a length of " + ys.length);
+        }
+        return new SampledFunction()
+        {
+            @Override
+            public long getSampleCount()
+            {
+                return xs.length;
+            }
+            
+            @Override
+            public double getX(long index)
+            {
+                return xs[(int)index];
+            }
+            
+            @Override
+            public double getY(long index)
+            {
+                return ys[(int)index];
+            }
+        };
+    }
+    
+    /**
+     * Creates a {@link SampledFunction} that is backed by the given file.
+     * The file must consist of pairs of <code>double</code> values in 
+     * little-endian byte order, each pair containing the x-coordinate 
+     * and the y-coordinate of one sample. The x-coordinates must be 
+     * sorted in ascending order.<br>
+     * <br>
+     * The file is mapped into memory, and is not loaded onto the heap.
+     * The samples are read by the operating system as they are accessed,
+     * so this may be used for files that are larger than the available
+     * heap. The mapping remains valid until the returned function is 
+     * garbage collected. 
+     * 
+     * @param path The path of the file
+     * @return The {@link SampledFunction}
+     * @throws NullPointerException If the path is <code>null</code>
+     * @throws IOException If the file cannot be read, or its size is 
+     * not a multiple of 16 bytes
+     */
+    public static SampledFunction fromFile(Path path) throws IOException
+    {
+        Objects.requireNonNull(path, "The path may not be null");
+        try (FileChannel channel = 
+            FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size % SAMPLE_SIZE_BYTES != 0)
+            {
+                throw new IOException("The size of the file must be a "
+                    + "multiple of " + SAMPLE_SIZE_BYTES 
+                    + " bytes, but is " + size);
+            }
+            final long sampleCount = size / SAMPLE_SIZE_BYTES;
+            int segmentCount = 
+                (int)((sampleCount + SEGMENT_SAMPLES - 1) / SEGMENT_SAMPLES);
+            final DoubleBuffer[] segments = new DoubleBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++)
+            {
+                long first = s * SEGMENT_SAMPLES;
+                long count = Math.min(SEGMENT_SAMPLES, sampleCount - first);
+                segments[s] = channel.map(MapMode.READ_ONLY, 
+                    first * SAMPLE_SIZE_BYTES, count * SAMPLE_SIZE_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+            }
+            return new SampledFunction()
+            {
+                @Override
+                public long getSampleCount()
+                {
+                    return sampleCount;
+                }
+                
+                @Override
+                public double getX(long index)
+                {
+                    return get(index, 0);
+                }
+                
+                @Override
+                public double getY(long index)
+                {
+                    return get(index, 1);
+                }
+                
+                /**
+                 * Returns the specified coordinate of the specified sample
+                 * 
+                 * @param index The sample index
+                 * @param coordinate The coordinate, 0 or 1
+                 * @return The value
+                 */
+                private double get(long index, int coordinate)
+                {
+                    if (index < 0 || index >= sampleCount)
+                    {
+                        throw new IndexOutOfBoundsException(
+                            "Index " + index + " is not in [0," 
+                            + sampleCount + ")");
+                    }
+                    DoubleBuffer segment = 
+                        segments[(int)(index >>> SEGMENT_SHIFT)];
+                    int offset = (int)(index & SEGMENT_MASK);
+                    return segment.get(offset + offset + coordinate);
+                }
+            };
+        }
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private SampledFunctions()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
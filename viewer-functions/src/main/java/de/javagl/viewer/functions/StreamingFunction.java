@@ -0,0 +1,425 @@
+/*
+ * www.javagl.de - Viewer
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.viewer.functions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SampledFunction} for live data, where samples are appended 
+ * continuously by a producer thread.<br>
+ * <br>
+ * The samples are stored in a ring buffer with a fixed capacity. When 
+ * the buffer is full, then each new sample replaces the oldest one. 
+ * Samples may only be {@link #add(double, double) added} by a single 
+ * producer thread, and their x-coordinates must be ascending. Adding a 
+ * sample never blocks and does not allocate any memory.<br>
+ * <br>
+ * Painting reads a {@link #snapshot() snapshot} of the samples, without
+ * blocking the producer. The snapshot does not contain the oldest 
+ * eighth of the buffer, but at least one sample, so that the producer
+ * may continue to add samples while the snapshot is in use. The samples
+ * of a snapshot remain valid as long as fewer samples are added than 
+ * this margin during its use.<br>
+ * <br>
+ * In order to show a sliding window of the most recent samples, the 
+ * {@link FunctionPanel#setAutoScrollWidth(double) auto-scrolling} of 
+ * the {@link FunctionPanel} may be enabled.
+ */
+public final class StreamingFunction implements SampledFunction
+{
+    /**
+     * The x-coordinates of the samples
+     */
+    private final double[] xs;
+    
+    /**
+     * The y-coordinates of the samples
+     */
+    private final double[] ys;
+    
+    /**
+     * The number of samples that are part of a snapshot
+     */
+    private final int snapshotCapacity;
+    
+    /**
+     * The total number of samples that have been added. This is only
+     * written by the producer, and published with release semantics 
+     * after the sample has been stored.
+     */
+    private final AtomicLong written;
+    
+    /**
+     * The x-coordinate of the last sample that was added. This is only
+     * accessed by the producer.
+     */
+    private double lastX;
+    
+    /**
+     * Creates a new streaming function with the given capacity
+     * 
+     * @param capacity The maximum number of samples that are stored
+     * @throws IllegalArgumentException If the capacity is smaller than 2
+     */
+    public StreamingFunction(int capacity)
+    {
+        if (capacity < 2)
+        {
+            throw new IllegalArgumentException(
+                "The capacity must be at least 2, but is " + capacity);
+        }
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.snapshotCapacity = capacity - Math.max(1, capacity / 8);
+        this.written = new AtomicLong();
+        this.lastX = Double.NEGATIVE_INFINITY;
+    }
+    
+    /**
+     * Returns the maximum number of samples that are stored
+     * 
+     * @return The capacity
+     */
+    public int getCapacity()
+    {
+        return xs.length;
+    }
+    
+    /**
+     * Add the given sample. This may only be called by a single producer
+     * thread.
+     * 
+     * @param x The x-coordinate
+     * @param y The y-coordinate. This may be <code>NaN</code> to indicate
+     * that the function is not defined at the given position. 
+     * @throws IllegalArgumentException If the x-coordinate is 
+     * <code>NaN</code>, or smaller than the x-coordinate of the 
+     * previous sample
+     */
+    public void add(double x, double y)
+    {
+        if (!(x >= lastX))
+        {
+            throw new IllegalArgumentException(
+                "The x-coordinates must be ascending, but " + x + 
+                " was added after " + lastX);
+        }
+        long n = written.get();
+        int index = (int)(n % xs.length);
+        xs[index] = x;
+        ys[index] = y;
+        lastX = x;
+        written.lazySet(n + 1);
+    }
+    
+    /**
+     * Returns the x-coordinate of the most recent sample, or 
+     * <code>NaN</code> if no samples have been added yet
+     * 
+     * @return The x-coordinate
+     */
+    public double getLatestX()
+    {
+        long n = written.get();
+        if (n == 0)
+        {
+            return Double.NaN;
+        }
+        return xs[(int)((n - 1) % xs.length)];
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * The snapshot contains the most recent samples that have been added
+     * until this call, up to seven eighths of the capacity. 
+     */
+    @Override
+    public SampledFunction snapshot()
+    {
+        long end = written.get();
+        return new Snapshot(start(end), count(end));
+    }
+    
+    /**
+     * Returns the total index of the first sample of a snapshot that 
+     * ends at the given total index
+     * 
+     * @param end The total number of samples that have been added
+     * @return The start index
+     */
+    private long start(long end)
+    {
+        return Math.max(0, end - snapshotCapacity);
+    }
+    
+    /**
+     * Returns the number of samples of a snapshot that ends at the 
+     * given total index
+     * 
+     * @param end The total number of samples that have been added
+     * @return The number of samples
+     */
+    private int count(long end)
+    {
+        return (int)Math.min(end, snapshotCapacity);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * This refers to the samples at the time of the call. Consistent
+     * results for multiple calls can only be obtained from a 
+     * {@link #snapshot() snapshot}.
+     */
+    @Override
+    public long getSampleCount()
+    {
+        return Math.min(written.get(), snapshotCapacity);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * This refers to the samples at the time of the call. Consistent
+     * results for multiple calls can only be obtained from a 
+     * {@link #snapshot() snapshot}.
+     */
+    @Override
+    public double getX(long index)
+    {
+        long end = written.get();
+        return xs[bufferIndex(start(end), count(end), index)];
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * This refers to the samples at the time of the call. Consistent
+     * results for multiple calls can only be obtained from a 
+     * {@link #snapshot() snapshot}.
+     */
+    @Override
+    public double getY(long index)
+    {
+        long end = written.get();
+        return ys[bufferIndex(start(end), count(end), index)];
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * This refers to the samples at the time of the call. Consistent
+     * results for multiple calls can only be obtained from a 
+     * {@link #snapshot() snapshot}.
+     */
+    @Override
+    public long findIndex(double x)
+    {
+        long end = written.get();
+        return findIndex(start(end), count(end), x);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * This refers to the samples at the time of the call. Consistent
+     * results for multiple calls can only be obtained from a 
+     * {@link #snapshot() snapshot}.
+     */
+    @Override
+    public double interpolate(double x)
+    {
+        long end = written.get();
+        return interpolate(start(end), count(end), x);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <br>
+     * <br>
+     * All values are computed from the samples at the time of the call.
+     */
+    @Override
+    public void evaluate(double[] xs, double[] ys, int count)
+    {
+        long end = written.get();
+        long snapshotStart = start(end);
+        int snapshotCount = count(end);
+        for (int i = 0; i < count; i++)
+        {
+            ys[i] = interpolate(snapshotStart, snapshotCount, xs[i]);
+        }
+    }
+    
+    /**
+     * Returns the index in the ring buffer for the given sample index 
+     * in the given range of samples
+     * 
+     * @param start The total index of the first sample
+     * @param count The number of samples
+     * @param index The sample index
+     * @return The buffer index
+     * @throws IndexOutOfBoundsException If the index is negative or
+     * not smaller than the sample count
+     */
+    private int bufferIndex(long start, int count, long index)
+    {
+        if (index < 0 || index >= count)
+        {
+            throw new IndexOutOfBoundsException(
+                "Index " + index + " is not in [0," + count + ")");
+        }
+        return (int)((start + index) % xs.length);
+    }
+    
+    /**
+     * Implementation of {@link SampledFunction#findIndex(double)} for 
+     * the given range of samples
+     * 
+     * @param start The total index of the first sample
+     * @param count The number of samples
+     * @param x The x-coordinate
+     * @return The index
+     */
+    private long findIndex(long start, int count, double x)
+    {
+        int low = 0;
+        int high = count;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (xs[(int)((start + mid) % xs.length)] < x)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Implementation of {@link SampledFunction#interpolate(double)} for 
+     * the given range of samples
+     * 
+     * @param start The total index of the first sample
+     * @param count The number of samples
+     * @param x The x-coordinate
+     * @return The interpolated function value
+     */
+    private double interpolate(long start, int count, double x)
+    {
+        long i = findIndex(start, count, x);
+        if (i >= count || Double.isNaN(x))
+        {
+            return Double.NaN;
+        }
+        int i1 = (int)((start + i) % xs.length);
+        double x1 = xs[i1];
+        if (x1 == x)
+        {
+            return ys[i1];
+        }
+        if (i == 0)
+        {
+            return Double.NaN;
+        }
+        int i0 = (int)((start + i - 1) % xs.length);
+        double x0 = xs[i0];
+        double y0 = ys[i0];
+        double y1 = ys[i1];
+        double alpha = (x - x0) / (x1 - x0);
+        return y0 + alpha * (y1 - y0);
+    }
+    
+    /**
+     * A view on a fixed range of the samples in the ring buffer
+     */
+    private final class Snapshot implements SampledFunction
+    {
+        /**
+         * The total index of the first sample
+         */
+        private final long start;
+        
+        /**
+         * The number of samples
+         */
+        private final int count;
+        
+        /**
+         * Creates a new snapshot
+         * 
+         * @param start The total index of the first sample
+         * @param count The number of samples
+         */
+        Snapshot(long start, int count)
+        {
+            this.start = start;
+            this.count = count;
+        }
+        
+        @Override
+        public long getSampleCount()
+        {
+            return count;
+        }
+        
+        @Override
+        public double getX(long index)
+        {
+            return xs[bufferIndex(start, count, index)];
+        }
+        
+        @Override
+        public double getY(long index)
+        {
+            return ys[bufferIndex(start, count, index)];
+        }
+        
+        @Override
+        public long findIndex(double x)
+        {
+            return StreamingFunction.this.findIndex(start, count, x);
+        }
+        
+        @Override
+        public double interpolate(double x)
+        {
+            return StreamingFunction.this.interpolate(start, count, x);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * www.javagl.de - Viewer - Functions
+ *
+ * Copyright (c) 2013-2015 Marco Hutter - http://www.javagl.de
+ */
+package de.javagl.viewer.functions;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.Locale;
+
+/**
+ * A test for the {@link FunctionPanel#setAutoScrollWidth(double) 
+ * auto-scrolling} of the {@link FunctionPanel}. It checks that 
+ * repeated steps of the auto-scrolling follow the latest x-coordinate
+ * of a {@link StreamingFunction}, and keep the visible y-range.
+ */
+public class FunctionPanelAutoScrollTest
+{
+    /**
+     * The number of auto-scrolling steps that are performed
+     */
+    private static final int NUM_STEPS = 10;
+    
+    /**
+     * The entry point of this test
+     *
+     * @param args Not used
+     */
+    public static void main(String[] args)
+    {
+        FunctionPanel functionPanel = new FunctionPanel();
+        functionPanel.setSize(400, 300);
+        StreamingFunction streamingFunction = new StreamingFunction(1000);
+        functionPanel.addBatchFunction(streamingFunction, Color.RED);
+        functionPanel.setDisplayedWorldArea(0.0, -10.0, 20.0, 6.0);
+        functionPanel.setAutoScrollWidth(20.0);
+        
+        for (int i = 0; i < NUM_STEPS; i++)
+        {
+            double x = 100.0 + i;
+            streamingFunction.add(x, -7.0);
+            functionPanel.autoScroll();
+            
+            AffineTransform screenToWorld = functionPanel.getScreenToWorld();
+            Point2D p0 = screenToWorld.transform(new Point(0, 0), null);
+            Point2D p1 = screenToWorld.transform(new Point(400, 300), null);
+            double xMin = Math.min(p0.getX(), p1.getX());
+            double xMax = Math.max(p0.getX(), p1.getX());
+            double yMin = Math.min(p0.getY(), p1.getY());
+            double yMax = Math.max(p0.getY(), p1.getY());
+            System.out.printf(Locale.ENGLISH, 
+                "Step %2d: x %8.3f .. %8.3f, y %8.3f .. %8.3f%n", 
+                i, xMin, xMax, yMin, yMax);
+            check("xMin", x - 20.0, xMin);
+            check("xMax", x, xMax);
+            check("yMin", -10.0, yMin);
+            check("yMax", -4.0, yMax);
+        }
+        System.out.println("Passed");
+    }
+    
+    /**
+     * Check whether the given value is equal to the expected value
+     * 
+     * @param name The name of the value
+     * @param expected The expected value
+     * @param actual The actual value
+     * @throws AssertionError If the values are not equal
+     */
+    private static void check(String name, double expected, double actual)
+    {
+        if (Math.abs(expected - actual) > 1e-6)
+        {
+            throw new AssertionError(
+                "Expected " + name + " to be " + expected + 
+                ", but it is " + actual);
+        }
+    }
+}
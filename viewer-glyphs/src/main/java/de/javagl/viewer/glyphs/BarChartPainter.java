@@ -40,6 +40,7 @@ import de.javagl.geom.AffineTransforms;
 import de.javagl.geom.Lines;
 import de.javagl.viewer.ObjectPainter;
 import de.javagl.viewer.painters.GeneralLabelPainterPredicate;
+import de.javagl.viewer.painters.LabelBatch;
 import de.javagl.viewer.painters.LabelPainter;
 
 
@@ -92,6 +93,12 @@ public final class BarChartPainter implements ObjectPainter<BarChart>
     private final GeneralLabelPainterPredicate widthPredicate = 
         new GeneralLabelPainterPredicate();
     
+    /**
+     * The batch that collects the labels, so that they can be painted
+     * at once, after all bars have been painted
+     */
+    private final LabelBatch labelBatch = new LabelBatch();
+    
     /**
      * Creates a default bar chart painter
      */
@@ -102,12 +109,14 @@ public final class BarChartPainter implements ObjectPainter<BarChart>
         valueStringLabelPainter = new LabelPainter();
         valueStringLabelPainter.setTransformingLabels(false);
         valueStringLabelPainter.setFont(font);
+        valueStringLabelPainter.setPaint(labelColor);
         valueStringLabelPainter.setLabelAnchor(0.5, 1.0);
         valueStringLabelPainter.setLabelPaintingCondition(widthPredicate);
         
         labelPainter = new LabelPainter();
         labelPainter.setTransformingLabels(false);
         labelPainter.setFont(font);
+        labelPainter.setPaint(labelColor);
         labelPainter.setLabelAnchor(0.5, 0.0);
         labelPainter.setLabelPaintingCondition(widthPredicate);
     }
@@ -176,22 +185,21 @@ public final class BarChartPainter implements ObjectPainter<BarChart>
                 String label = barChart.getLabel(i);
                 if (label != null)
                 {
-                    g.setColor(labelColor);
                     labelPainter.setLabelLocation(
                         TEMP_RECTANGLE.getCenterX(), 0.0);
-                    labelPainter.paint(
-                        g, worldToScreen, w, h, label);
+                    labelPainter.addLabel(
+                        labelBatch, worldToScreen, label);
                 }
                 String valueString = barChart.getValueString(i);
                 if (valueString != null)
                 {
-                    g.setColor(labelColor);
                     valueStringLabelPainter.setLabelLocation(
                         TEMP_RECTANGLE.getCenterX(), value);
-                    valueStringLabelPainter.paint(
-                        g, worldToScreen, w, h, valueString);
+                    valueStringLabelPainter.addLabel(
+                        labelBatch, worldToScreen, valueString);
                 }
             }
         }
+        labelBatch.paint(g);
     }
 }
\ No newline at end of file